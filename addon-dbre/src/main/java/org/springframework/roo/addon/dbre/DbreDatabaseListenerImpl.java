@@ -25,6 +25,7 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.addon.dbre.model.Column;
 import org.springframework.roo.addon.dbre.model.Database;
+import org.springframework.roo.addon.dbre.model.DatabaseDiff;
 import org.springframework.roo.addon.dbre.model.DbreModelService;
 import org.springframework.roo.addon.dbre.model.Table;
 import org.springframework.roo.addon.jpa.identifier.Identifier;
@@ -59,6 +60,12 @@ import org.springframework.roo.support.util.StringUtils;
 
 /**
  * Implementation of {@link DbreDatabaseListener}.
+ * <p>
+ * When the DBRE XML file changes, the new database model is compared with the
+ * one last reverse engineered, and only the entities of the tables affected by
+ * the differences (see {@link DatabaseDiff#getAffectedTables()}) are updated
+ * and notified. Everything is reverse engineered again if the database's
+ * settings have changed.
  * 
  * @author Alan Stewart
  * @since 1.1
@@ -87,6 +94,8 @@ public class DbreDatabaseListenerImpl extends
     @Reference private TypeManagementService typeManagementService;
 
     private Map<JavaType, List<Identifier>> identifierResults;
+    private Database lastDatabase;
+    private String lastDatabaseSettings;
 
     public void onFileEvent(final FileEvent fileEvent) {
         if (fileEvent.getFileDetails().getCanonicalPath().endsWith(DBRE_XML)) {
@@ -115,12 +124,53 @@ public class DbreDatabaseListenerImpl extends
     private void deserializeDatabase() {
         final Database database = dbreModelService.getDatabase(true);
         if (database != null) {
+            // Compare with the last database before reverse engineering, as
+            // that changes some of its settings
+            final String databaseSettings = getSettings(database);
+            DatabaseDiff databaseDiff = null;
+            if (lastDatabase != null
+                    && databaseSettings.equals(lastDatabaseSettings)) {
+                databaseDiff = new DatabaseDiff(lastDatabase, database);
+                if (databaseDiff.hasChanges()) {
+                    for (final String change : databaseDiff.toString().split(
+                            System.getProperty("line.separator"))) {
+                        shell.flash(Level.FINE, change,
+                                DbreDatabaseListenerImpl.class.getName());
+                    }
+                    shell.flash(Level.FINE, "",
+                            DbreDatabaseListenerImpl.class.getName());
+                }
+            }
+
+            lastDatabase = null;
             identifierResults = new LinkedHashMap<JavaType, List<Identifier>>();
-            reverseEngineer(database);
+            reverseEngineer(database, databaseDiff);
+            lastDatabase = database;
+            lastDatabaseSettings = databaseSettings;
         }
     }
 
-    private void reverseEngineer(final Database database) {
+    /**
+     * Returns the settings of the given database that apply to all of its
+     * entities, as given in the DBRE XML file.
+     */
+    private String getSettings(final Database database) {
+        return database.getModuleName() + ","
+                + database.getDestinationPackage() + ","
+                + database.isActiveRecord() + ","
+                + database.isTestAutomatically() + ","
+                + database.isIncludeNonPortableAttributes();
+    }
+
+    /**
+     * Reverse engineers the given database.
+     * 
+     * @param database the database to reverse engineer (required)
+     * @param databaseDiff the differences from the database last reverse
+     *            engineered, or <code>null</code> to update all entities
+     */
+    private void reverseEngineer(final Database database,
+            final DatabaseDiff databaseDiff) {
         final Set<ClassOrInterfaceTypeDetails> managedEntities = typeLocationService
                 .findClassesOrInterfaceDetailsWithAnnotation(ROO_DB_MANAGED);
         // Determine whether to create "active record" CRUD methods
@@ -135,16 +185,22 @@ public class DbreDatabaseListenerImpl extends
 
         // Get tables from database
         final Set<Table> tables = new LinkedHashSet<Table>(database.getTables());
+        final Set<Table> affectedTables = databaseDiff == null ? database
+                .getTables() : databaseDiff.getAffectedTables();
 
         // Manage existing entities with @RooDbManaged annotation
+        final List<ClassOrInterfaceTypeDetails> updatedEntities = new ArrayList<ClassOrInterfaceTypeDetails>();
         for (final ClassOrInterfaceTypeDetails managedEntity : managedEntities) {
             // Remove table from set as each managed entity is processed.
             // The tables that remain in the set will be used for creation of
             // new entities later
             final Table table = updateOrDeleteManagedEntity(managedEntity,
-                    database);
+                    database, affectedTables);
             if (table != null) {
                 tables.remove(table);
+                if (affectedTables.contains(table)) {
+                    updatedEntities.add(managedEntity);
+                }
             }
         }
 
@@ -183,8 +239,9 @@ public class DbreDatabaseListenerImpl extends
         // Notify
         final List<ClassOrInterfaceTypeDetails> allEntities = new ArrayList<ClassOrInterfaceTypeDetails>();
         allEntities.addAll(newEntities);
-        allEntities.addAll(managedEntities);
-        notify(allEntities);
+        allEntities.addAll(databaseDiff == null ? managedEntities
+                : updatedEntities);
+        notify(allEntities, databaseDiff == null);
     }
 
     /**
@@ -230,8 +287,26 @@ public class DbreDatabaseListenerImpl extends
         return destinationPackage;
     }
 
-    private void notify(final List<ClassOrInterfaceTypeDetails> entities) {
+    /**
+     * Notifies the metadata of the given entities and of the managed
+     * identifiers
+     * 
+     * @param entities the entities to notify (required)
+     * @param allIdentifiers whether to notify all managed identifiers, rather
+     *            than just those of the given entities
+     */
+    private void notify(final List<ClassOrInterfaceTypeDetails> entities,
+            final boolean allIdentifiers) {
+        final Set<JavaType> identifierTypes = new HashSet<JavaType>();
+        for (final ClassOrInterfaceTypeDetails entity : entities) {
+            identifierTypes.add(getIdentifierType(entity.getName()));
+        }
         for (final ClassOrInterfaceTypeDetails managedIdentifierType : getManagedIdentifiers()) {
+            if (!allIdentifiers
+                    && !identifierTypes.contains(managedIdentifierType
+                            .getName())) {
+                continue;
+            }
             final MetadataItem metadataItem = metadataService
                     .evictAndGet(managedIdentifierType
                             .getDeclaredByMetadataId());
@@ -268,7 +343,7 @@ public class DbreDatabaseListenerImpl extends
 
     private Table updateOrDeleteManagedEntity(
             final ClassOrInterfaceTypeDetails managedEntity,
-            final Database database) {
+            final Database database, final Set<Table> affectedTables) {
         // Update the attributes of the existing JPA-related annotation
         final AnnotationMetadata jpaAnnotation = getJpaAnnotation(managedEntity);
         Assert.state(jpaAnnotation != null,
@@ -305,6 +380,13 @@ public class DbreDatabaseListenerImpl extends
         table.setIncludeNonPortableAttributes(database
                 .isIncludeNonPortableAttributes());
 
+        if (!affectedTables.contains(table)) {
+            // Unchanged, so the type and any identifier class are up to date
+            addIdentifierResults(managedEntity.getName(),
+                    getIdentifierType(managedEntity.getName()), table);
+            return table;
+        }
+
         // Update the @RooJpaEntity/@RooJpaActiveRecord attributes
         final AnnotationMetadataBuilder jpaAnnotationBuilder = new AnnotationMetadataBuilder(
                 jpaAnnotation);
@@ -462,11 +544,7 @@ public class DbreDatabaseListenerImpl extends
             attributesToDeleteIfPresent
                     .add(new JavaSymbolName(IDENTIFIER_TYPE));
 
-            // We don't need a PK class, so we just tell the
-            // JpaActiveRecordProvider via IdentifierService the column name,
-            // field type and field name to use
-            final List<Identifier> identifiers = getIdentifiersFromPrimaryKeys(table);
-            identifierResults.put(javaType, identifiers);
+            addIdentifierResults(javaType, identifierType, table);
         }
         else if (pkCount == 0 || pkCount > 1) {
             // Table has either no primary keys or more than one primary key so
@@ -483,12 +561,26 @@ public class DbreDatabaseListenerImpl extends
             jpaAnnotationBuilder.addClassAttribute(IDENTIFIER_TYPE,
                     identifierType);
 
+            addIdentifierResults(javaType, identifierType, table);
+        }
+    }
+
+    private void addIdentifierResults(final JavaType javaType,
+            final JavaType identifierType, final Table table) {
+        if (table.getPrimaryKeyCount() == 1) {
+            // We don't need a PK class, so we just tell the
+            // JpaActiveRecordProvider via IdentifierService the column name,
+            // field type and field name to use
+            identifierResults.put(javaType,
+                    getIdentifiersFromPrimaryKeys(table));
+        }
+        else {
             // We need a PK class, so we tell the IdentifierMetadataProvider via
             // IdentifierService the various column names, field types and field
             // names to use
             // For tables with no primary keys, create a composite key using all
             // the table's columns
-            final List<Identifier> identifiers = pkCount == 0 ? getIdentifiersFromColumns(table)
+            final List<Identifier> identifiers = table.getPrimaryKeyCount() == 0 ? getIdentifiersFromColumns(table)
                     : getIdentifiersFromPrimaryKeys(table);
             identifierResults.put(identifierType, identifiers);
         }
@@ -1,5 +1,6 @@
 package org.springframework.roo.addon.dbre;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -108,11 +109,15 @@ public class DbreOperationsImpl implements DbreOperations {
         else {
             try {
                 if (displayOnly) {
-                    Document document = DatabaseXmlUtils
-                            .getDatabaseDocument(database);
-                    OutputStream outputStream = file != null ? new FileOutputStream(
-                            file) : new ByteArrayOutputStream();
-                    XmlUtils.writeXml(outputStream, document);
+                    OutputStream outputStream = file != null ? new BufferedOutputStream(
+                            new FileOutputStream(file))
+                            : new ByteArrayOutputStream();
+                    try {
+                        DatabaseXmlUtils.writeDatabase(database, outputStream);
+                    }
+                    finally {
+                        outputStream.close();
+                    }
                     LOGGER.info(file != null ? "Database metadata written to file "
                             + file.getAbsolutePath()
                             : outputStream.toString());
@@ -1,10 +1,13 @@
 package org.springframework.roo.addon.dbre.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -23,6 +26,9 @@ public class Database {
     /** All tables. */
     private final Set<Table> tables;
 
+    /** All tables, keyed by name, for looking them up */
+    private final Map<String, List<Table>> tablesByName = new HashMap<String, List<Table>>();
+
     /** The module where the entities are created */
     private String moduleName;
 
@@ -52,6 +58,14 @@ public class Database {
     Database(final Set<Table> tables) {
         Assert.notNull(tables, "Tables required");
         this.tables = tables;
+        for (Table table : tables) {
+            List<Table> namedTables = tablesByName.get(table.getName());
+            if (namedTables == null) {
+                namedTables = new ArrayList<Table>();
+                tablesByName.put(table.getName(), namedTables);
+            }
+            namedTables.add(table);
+        }
         init();
     }
 
@@ -64,14 +78,15 @@ public class Database {
     }
 
     public Table getTable(final String name, final String schemaName) {
-        for (Table table : tables) {
-            if (table.getName().equals(name)) {
-                if (StringUtils.isBlank(schemaName)
-                        || DbreModelService.NO_SCHEMA_REQUIRED
-                                .equals(schemaName)
-                        || table.getSchema().getName().equals(schemaName)) {
-                    return table;
-                }
+        List<Table> namedTables = tablesByName.get(name);
+        if (namedTables == null) {
+            return null;
+        }
+        for (Table table : namedTables) {
+            if (StringUtils.isBlank(schemaName)
+                    || DbreModelService.NO_SCHEMA_REQUIRED.equals(schemaName)
+                    || table.getSchema().getName().equals(schemaName)) {
+                return table;
             }
         }
         return null;
@@ -0,0 +1,250 @@
+package org.springframework.roo.addon.dbre.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.ObjectUtils;
+
+/**
+ * The structural differences between two versions of a {@link Database}
+ * model, in terms of their tables and the columns, foreign keys and indices
+ * of those tables.
+ * <p>
+ * Tables are matched by name and schema. The settings of the databases (such
+ * as the destination package) are not compared.
+ *
+ * @since 1.2.1
+ */
+public class DatabaseDiff {
+
+    // Fields
+    private final Database previous;
+    private final Database current;
+    private final Set<Table> addedTables = new LinkedHashSet<Table>();
+    private final Set<Table> removedTables = new LinkedHashSet<Table>();
+    /** key: table in the current database, value: descriptions of changes */
+    private final Map<Table, List<String>> changedTables = new LinkedHashMap<Table, List<String>>();
+
+    /**
+     * Constructor
+     *
+     * @param previous the previous version of the database (required)
+     * @param current the current version of the database (required)
+     */
+    public DatabaseDiff(final Database previous, final Database current) {
+        Assert.notNull(previous, "Previous database required");
+        Assert.notNull(current, "Current database required");
+        this.previous = previous;
+        this.current = current;
+
+        for (Table table : current.getTables()) {
+            Table previousTable = find(previous, table);
+            if (previousTable == null) {
+                addedTables.add(table);
+                continue;
+            }
+            List<String> changes = compare(previousTable, table);
+            if (!changes.isEmpty()) {
+                changedTables.put(table, changes);
+            }
+        }
+        for (Table table : previous.getTables()) {
+            if (find(current, table) == null) {
+                removedTables.add(table);
+            }
+        }
+    }
+
+    /**
+     * Returns the tables in the current database that were not in the
+     * previous one.
+     */
+    public Set<Table> getAddedTables() {
+        return Collections.unmodifiableSet(addedTables);
+    }
+
+    /**
+     * Returns the tables in the current database whose columns, foreign keys,
+     * indices or description have changed.
+     */
+    public Set<Table> getChangedTables() {
+        return Collections.unmodifiableSet(changedTables.keySet());
+    }
+
+    /**
+     * Returns descriptions of how the given table has changed.
+     *
+     * @param table a table in the current database
+     * @return a non-<code>null</code> list, empty if the table has not changed
+     */
+    public List<String> getChanges(final Table table) {
+        List<String> changes = changedTables.get(table);
+        if (changes == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Indicates whether any tables were added, removed or changed.
+     */
+    public boolean hasChanges() {
+        return !addedTables.isEmpty() || !removedTables.isEmpty()
+                || !changedTables.isEmpty();
+    }
+
+    /**
+     * Returns the tables in the current database whose entities may need to
+     * be regenerated, being the added and changed tables and the tables they
+     * are related to by foreign keys, either previously or currently. The
+     * latter covers the tables on the other side of any changed relationships
+     * and the tables joined by changed many-to-many join tables.
+     *
+     * @return a non-<code>null</code> set
+     */
+    public Set<Table> getAffectedTables() {
+        Set<Table> affectedTables = new LinkedHashSet<Table>();
+        affectedTables.addAll(addedTables);
+        affectedTables.addAll(changedTables.keySet());
+
+        Set<Table> relatedTables = new LinkedHashSet<Table>();
+        for (Table table : affectedTables) {
+            addRelatedTables(table, relatedTables);
+            Table previousTable = find(previous, table);
+            if (previousTable != null) {
+                addRelatedTables(previousTable, relatedTables);
+            }
+        }
+        for (Table table : removedTables) {
+            addRelatedTables(table, relatedTables);
+        }
+        for (Table table : relatedTables) {
+            Table currentTable = find(current, table);
+            if (currentTable != null) {
+                affectedTables.add(currentTable);
+            }
+        }
+        return affectedTables;
+    }
+
+    private void addRelatedTables(final Table table,
+            final Set<Table> relatedTables) {
+        for (ForeignKey foreignKey : table.getImportedKeys()) {
+            if (foreignKey.getForeignTable() != null) {
+                relatedTables.add(foreignKey.getForeignTable());
+            }
+        }
+        for (ForeignKey foreignKey : table.getExportedKeys()) {
+            if (foreignKey.getForeignTable() != null) {
+                relatedTables.add(foreignKey.getForeignTable());
+            }
+        }
+    }
+
+    private Table find(final Database database, final Table table) {
+        return database.getTable(table.getName(), table.getSchema().getName());
+    }
+
+    private List<String> compare(final Table previousTable, final Table table) {
+        List<String> changes = new ArrayList<String>();
+        if (!ObjectUtils.nullSafeEquals(previousTable.getDescription(),
+                table.getDescription())) {
+            changes.add("description changed");
+        }
+        compare("column", getColumns(previousTable), getColumns(table),
+                changes);
+        compare("foreign key", getForeignKeys(previousTable),
+                getForeignKeys(table), changes);
+        compare("index", getIndices(previousTable), getIndices(table), changes);
+        return changes;
+    }
+
+    /**
+     * Compares two versions of a table's elements of the given kind.
+     *
+     * @param kind the kind of element, for the descriptions of changes
+     * @param previousElements the previous elements' descriptions, keyed by
+     *            name
+     * @param elements the current elements' descriptions, keyed by name
+     * @param changes the list to which to add descriptions of any changes
+     */
+    private void compare(final String kind,
+            final Map<String, String> previousElements,
+            final Map<String, String> elements, final List<String> changes) {
+        for (Map.Entry<String, String> entry : elements.entrySet()) {
+            String previousElement = previousElements.get(entry.getKey());
+            if (previousElement == null) {
+                changes.add(kind + " '" + entry.getKey() + "' added");
+            }
+            else if (!previousElement.equals(entry.getValue())) {
+                changes.add(kind + " '" + entry.getKey() + "' changed");
+            }
+        }
+        for (String name : previousElements.keySet()) {
+            if (!elements.containsKey(name)) {
+                changes.add(kind + " '" + name + "' removed");
+            }
+        }
+    }
+
+    private Map<String, String> getColumns(final Table table) {
+        Map<String, String> columns = new LinkedHashMap<String, String>();
+        for (Column column : table.getColumns()) {
+            columns.put(column.getName(), column.toString());
+        }
+        return columns;
+    }
+
+    private Map<String, String> getForeignKeys(final Table table) {
+        Map<String, String> foreignKeys = new LinkedHashMap<String, String>();
+        for (ForeignKey foreignKey : table.getImportedKeys()) {
+            foreignKeys.put(foreignKey.getName() + " to "
+                    + foreignKey.getForeignTableName(), foreignKey.toString());
+        }
+        for (ForeignKey foreignKey : table.getExportedKeys()) {
+            foreignKeys.put(foreignKey.getName() + " from "
+                    + foreignKey.getForeignTableName(), foreignKey.toString());
+        }
+        return foreignKeys;
+    }
+
+    private Map<String, String> getIndices(final Table table) {
+        Map<String, String> indices = new LinkedHashMap<String, String>();
+        for (Index index : table.getIndices()) {
+            indices.put(index.getName(), index.toString());
+        }
+        return indices;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Table table : addedTables) {
+            append(builder, table, "added");
+        }
+        for (Table table : removedTables) {
+            append(builder, table, "removed");
+        }
+        for (Map.Entry<Table, List<String>> entry : changedTables.entrySet()) {
+            for (String change : entry.getValue()) {
+                append(builder, entry.getKey(), change);
+            }
+        }
+        return builder.length() == 0 ? "No changes" : builder.toString();
+    }
+
+    private void append(final StringBuilder builder, final Table table,
+            final String change) {
+        if (builder.length() > 0) {
+            builder.append(System.getProperty("line.separator"));
+        }
+        builder.append("Table ").append(table.getFullyQualifiedTableName())
+                .append(": ").append(change);
+    }
+}
@@ -4,8 +4,12 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -23,8 +27,9 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     // Fields
     private final Set<Schema> schemas;
     private final boolean view;
-    private final Set<String> includeTables;
-    private final Set<String> excludeTables;
+    private final List<Pattern> includeTables;
+    private final List<Pattern> excludeTables;
+    private final String databaseProductName;
 
     public DatabaseIntrospector(final Connection connection,
             final Set<Schema> schemas, final boolean view,
@@ -33,8 +38,9 @@ public class DatabaseIntrospector extends AbstractIntrospector {
         super(connection);
         this.schemas = schemas;
         this.view = view;
-        this.includeTables = includeTables;
-        this.excludeTables = excludeTables;
+        this.includeTables = getPatterns(includeTables);
+        this.excludeTables = getPatterns(excludeTables);
+        databaseProductName = getDatabaseProductName();
     }
 
     public Database createDatabase() throws SQLException {
@@ -46,7 +52,8 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     }
 
     private Set<Table> getTables(final Schema schema) throws SQLException {
-        Set<Table> tables = new LinkedHashSet<Table>();
+        // key: catalog and schema name, value: tables keyed by name
+        Map<List<String>, Map<String, Table>> tablesBySchema = new LinkedHashMap<List<String>, Map<String, Table>>();
 
         String[] types = view ? new String[] { TableType.TABLE.name(),
                 TableType.VIEW.name() }
@@ -69,19 +76,14 @@ public class DatabaseIntrospector extends AbstractIntrospector {
                     table.setCatalog(rs.getString("TABLE_CAT"));
                     table.setDescription(rs.getString("REMARKS"));
 
-                    readColumns(table);
-                    readForeignKeys(table, false);
-                    readForeignKeys(table, true);
-                    readIndices(table);
-
-                    for (String columnName : readPrimaryKeyNames(table)) {
-                        Column column = table.findColumn(columnName);
-                        if (column != null) {
-                            column.setPrimaryKey(true);
-                        }
+                    List<String> key = Arrays.asList(table.getCatalog(), table
+                            .getSchema().getName());
+                    Map<String, Table> schemaTables = tablesBySchema.get(key);
+                    if (schemaTables == null) {
+                        schemaTables = new LinkedHashMap<String, Table>();
+                        tablesBySchema.put(key, schemaTables);
                     }
-
-                    tables.add(table);
+                    schemaTables.put(tableName, table);
                 }
             }
         }
@@ -89,112 +91,111 @@ public class DatabaseIntrospector extends AbstractIntrospector {
             rs.close();
         }
 
+        Set<Table> tables = new LinkedHashSet<Table>();
+        for (Map.Entry<List<String>, Map<String, Table>> entry : tablesBySchema
+                .entrySet()) {
+            String catalog = entry.getKey().get(0);
+            String schemaName = entry.getKey().get(1);
+            Map<String, Table> schemaTables = entry.getValue();
+
+            // The columns must be read before the primary keys
+            read(new ColumnReader(), catalog, schemaName, schemaTables);
+            read(new ForeignKeyReader(false), catalog, schemaName,
+                    schemaTables);
+            read(new ForeignKeyReader(true), catalog, schemaName,
+                    schemaTables);
+            read(new IndexReader(), catalog, schemaName, schemaTables);
+            read(new PrimaryKeyReader(), catalog, schemaName, schemaTables);
+
+            tables.addAll(schemaTables.values());
+        }
         return tables;
     }
 
     private boolean ignoreTables(final String tableName) {
         boolean ignore = false;
-        try {
-            if ("Oracle".equalsIgnoreCase(databaseMetaData
-                    .getDatabaseProductName()) && tableName.startsWith("BIN$")) {
-                ignore = true;
-            }
-            if ("MySQL".equalsIgnoreCase(databaseMetaData
-                    .getDatabaseProductName()) && tableName.equals("SEQUENCE")) {
-                ignore = true;
-            }
+        if ("Oracle".equalsIgnoreCase(databaseProductName)
+                && tableName.startsWith("BIN$")) {
+            ignore = true;
         }
-        catch (SQLException ignored) {
+        if ("MySQL".equalsIgnoreCase(databaseProductName)
+                && tableName.equals("SEQUENCE")) {
+            ignore = true;
         }
         return ignore;
     }
 
-    private void readColumns(final Table table) throws SQLException {
-        ResultSet rs = databaseMetaData.getColumns(table.getCatalog(), table
-                .getSchema().getName(), table.getName(), null);
-        try {
-            while (rs.next()) {
-                Column column = new Column(rs.getString("COLUMN_NAME"),
-                        rs.getInt("DATA_TYPE"), rs.getString("TYPE_NAME"),
-                        rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"));
-                column.setDescription(rs.getString("REMARKS"));
-                column.setDefaultValue(rs.getString("COLUMN_DEF"));
-                column.setRequired("NO".equalsIgnoreCase(rs
-                        .getString("IS_NULLABLE")));
-
-                table.addColumn(column);
+    /**
+     * Reads the given kind of metadata for the given tables, which all belong
+     * to the given catalog and schema.
+     * <p>
+     * Where there are several tables, the metadata of the whole schema is
+     * first requested at once, by passing a <code>null</code> table name. Only
+     * {@link DatabaseMetaData#getColumns} is required to accept this, so if the
+     * driver rejects it or returns nothing, the metadata is requested table by
+     * table instead.
+     */
+    private void read(final TableMetadataReader reader, final String catalog,
+            final String schemaName, final Map<String, Table> tables)
+            throws SQLException {
+        if (tables.size() < 2 || !readAll(reader, catalog, schemaName, tables)) {
+            for (Table table : tables.values()) {
+                ResultSet rs = reader.query(catalog, schemaName,
+                        table.getName());
+                if (rs == null) {
+                    continue;
+                }
+                try {
+                    while (rs.next()) {
+                        reader.readRow(table, rs);
+                    }
+                }
+                finally {
+                    rs.close();
+                }
             }
         }
-        finally {
-            rs.close();
+        for (Table table : tables.values()) {
+            reader.finish(table);
         }
     }
 
-    private void readForeignKeys(final Table table, final boolean exported)
-            throws SQLException {
-        Map<String, ForeignKey> foreignKeys = new LinkedHashMap<String, ForeignKey>();
-
+    private boolean readAll(final TableMetadataReader reader,
+            final String catalog, final String schemaName,
+            final Map<String, Table> tables) throws SQLException {
         ResultSet rs;
-        if (exported) {
-            rs = databaseMetaData.getExportedKeys(table.getCatalog(), table
-                    .getSchema().getName(), table.getName());
+        try {
+            rs = reader.query(catalog, schemaName, null);
         }
-        else {
-            rs = databaseMetaData.getImportedKeys(table.getCatalog(), table
-                    .getSchema().getName(), table.getName());
+        catch (SQLException e) {
+            return false;
+        }
+        catch (RuntimeException e) {
+            // Some drivers fail to build their query without a table name
+            return false;
+        }
+        if (rs == null) {
+            return false;
         }
 
         try {
+            // Only trust the result if it covers at least one of the tables
+            boolean read = false;
+            String prefix = reader.getTableColumnPrefix();
             while (rs.next()) {
-                String name = rs.getString("FK_NAME");
-                String foreignTableName = rs
-                        .getString(exported ? "FKTABLE_NAME" : "PKTABLE_NAME");
-                String key = name + "_" + foreignTableName;
-
-                if (!hasExcludedTable(foreignTableName)) {
-                    ForeignKey foreignKey = new ForeignKey(name,
-                            foreignTableName);
-                    foreignKey.setForeignSchemaName(StringUtils.defaultIfEmpty(
-                            rs.getString(exported ? "FKTABLE_SCHEM"
-                                    : "PKTABLE_SCHEM"),
-                            DbreModelService.NO_SCHEMA_REQUIRED));
-                    foreignKey.setOnUpdate(getCascadeAction(rs
-                            .getShort("UPDATE_RULE")));
-                    foreignKey.setOnDelete(getCascadeAction(rs
-                            .getShort("DELETE_RULE")));
-                    foreignKey.setExported(exported);
-
-                    String localColumnName = rs
-                            .getString(exported ? "PKCOLUMN_NAME"
-                                    : "FKCOLUMN_NAME");
-                    String foreignColumnName = rs
-                            .getString(exported ? "FKCOLUMN_NAME"
-                                    : "PKCOLUMN_NAME");
-                    Reference reference = new Reference(localColumnName,
-                            foreignColumnName);
-
-                    if (foreignKeys.containsKey(key)) {
-                        foreignKeys.get(key).addReference(reference);
-                    }
-                    else {
-                        foreignKey.addReference(reference);
-                        foreignKeys.put(key, foreignKey);
-                    }
+                Table table = tables.get(rs.getString(prefix + "NAME"));
+                if (table != null
+                        && table.getSchema().equals(
+                                new Schema(rs.getString(prefix + "SCHEM")))) {
+                    reader.readRow(table, rs);
+                    read = true;
                 }
             }
+            return read;
         }
         finally {
             rs.close();
         }
-
-        for (ForeignKey foreignKey : foreignKeys.values()) {
-            if (exported) {
-                table.addExportedKey(foreignKey);
-            }
-            else {
-                table.addImportedKey(foreignKey);
-            }
-        }
     }
 
     private CascadeAction getCascadeAction(final Short actionValue) {
@@ -222,24 +223,21 @@ public class DatabaseIntrospector extends AbstractIntrospector {
     }
 
     private boolean hasIncludedTable(final String tableName) {
-        if (includeTables == null || includeTables.isEmpty()) {
+        if (includeTables.isEmpty()) {
             return true;
         }
         return hasTable(includeTables, tableName);
     }
 
     private boolean hasExcludedTable(final String tableName) {
-        if (excludeTables == null || excludeTables.isEmpty()) {
+        if (excludeTables.isEmpty()) {
             return false;
         }
         return hasTable(excludeTables, tableName);
     }
 
-    private boolean hasTable(final Set<String> tables, final String tableName) {
-        for (String table : tables) {
-            String regex = table.replaceAll("\\*", ".*")
-                    .replaceAll("\\?", ".?");
-            Pattern pattern = Pattern.compile(regex);
+    private boolean hasTable(final List<Pattern> tables, final String tableName) {
+        for (Pattern pattern : tables) {
             if (pattern.matcher(tableName).matches()) {
                 return true;
             }
@@ -247,54 +245,16 @@ public class DatabaseIntrospector extends AbstractIntrospector {
         return false;
     }
 
-    private void readIndices(final Table table) throws SQLException {
-        Set<Index> indices = new LinkedHashSet<Index>();
-
-        ResultSet rs;
-        try {
-            // Catching SQLException here due to Oracle throwing exception when
-            // attempting to retrieve indices for deleted tables that exist in
-            // Oracle's recycle bin
-            rs = databaseMetaData.getIndexInfo(table.getCatalog(), table
-                    .getSchema().getName(), table.getName(), false, false);
-        }
-        catch (SQLException e) {
-            return;
-        }
-
-        if (rs != null) {
-            try {
-                while (rs.next()) {
-                    Short type = rs.getShort("TYPE");
-                    if (type == DatabaseMetaData.tableIndexStatistic) {
-                        continue;
-                    }
-
-                    String indexName = rs.getString("INDEX_NAME");
-                    Index index = findIndex(indexName, indices);
-                    if (index == null) {
-                        index = new Index(indexName);
-                    }
-                    else {
-                        indices.remove(index);
-                    }
-                    index.setUnique(!rs.getBoolean("NON_UNIQUE"));
-
-                    IndexColumn indexColumn = new IndexColumn(
-                            rs.getString("COLUMN_NAME"));
-                    index.addColumn(indexColumn);
-
-                    indices.add(index);
-                }
-            }
-            finally {
-                rs.close();
+    private List<Pattern> getPatterns(final Set<String> tables) {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        if (tables != null) {
+            for (String table : tables) {
+                String regex = table.replaceAll("\\*", ".*").replaceAll(
+                        "\\?", ".?");
+                patterns.add(Pattern.compile(regex));
             }
         }
-
-        for (Index index : indices) {
-            table.addIndex(index);
-        }
+        return patterns;
     }
 
     private Index findIndex(final String name, final Set<Index> indices) {
@@ -306,22 +266,13 @@ public class DatabaseIntrospector extends AbstractIntrospector {
         return null;
     }
 
-    private Set<String> readPrimaryKeyNames(final Table table)
-            throws SQLException {
-        Set<String> columnNames = new LinkedHashSet<String>();
-
-        ResultSet rs = databaseMetaData.getPrimaryKeys(table.getCatalog(),
-                table.getSchema().getName(), table.getName());
+    private String getDatabaseProductName() {
         try {
-            while (rs.next()) {
-                columnNames.add(rs.getString("COLUMN_NAME"));
-            }
+            return databaseMetaData.getDatabaseProductName();
         }
-        finally {
-            rs.close();
+        catch (SQLException e) {
+            return null;
         }
-
-        return columnNames;
     }
 
     private String getArtifact(final String artifactName) throws SQLException {
@@ -335,4 +286,231 @@ public class DatabaseIntrospector extends AbstractIntrospector {
             return artifactName;
         }
     }
+
+    /**
+     * Reads one kind of table metadata from the result sets of a
+     * {@link DatabaseMetaData} method.
+     */
+    private abstract class TableMetadataReader {
+
+        /**
+         * Returns the metadata of the given table, or of all tables in the
+         * schema if the table name is <code>null</code>.
+         * 
+         * @return the metadata, or <code>null</code> if there is none
+         */
+        abstract ResultSet query(String catalog, String schemaName,
+                String tableName) throws SQLException;
+
+        /**
+         * Returns the prefix of the result set columns that identify the table
+         * each row is for, e.g. "TABLE_" for "TABLE_NAME".
+         */
+        String getTableColumnPrefix() {
+            return "TABLE_";
+        }
+
+        abstract void readRow(Table table, ResultSet rs) throws SQLException;
+
+        /**
+         * Adds anything collected from the rows to the given table.
+         */
+        void finish(final Table table) {
+        }
+    }
+
+    private class ColumnReader extends TableMetadataReader {
+
+        @Override
+        ResultSet query(final String catalog, final String schemaName,
+                final String tableName) throws SQLException {
+            return databaseMetaData.getColumns(catalog, schemaName, tableName,
+                    null);
+        }
+
+        @Override
+        void readRow(final Table table, final ResultSet rs)
+                throws SQLException {
+            Column column = new Column(rs.getString("COLUMN_NAME"),
+                    rs.getInt("DATA_TYPE"), rs.getString("TYPE_NAME"),
+                    rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS"));
+            column.setDescription(rs.getString("REMARKS"));
+            column.setDefaultValue(rs.getString("COLUMN_DEF"));
+            column.setRequired("NO".equalsIgnoreCase(rs
+                    .getString("IS_NULLABLE")));
+
+            table.addColumn(column);
+        }
+    }
+
+    private class ForeignKeyReader extends TableMetadataReader {
+        private final boolean exported;
+        // key: table name, value: the table's foreign keys by name
+        private final Map<String, Map<String, ForeignKey>> foreignKeysByTable = new HashMap<String, Map<String, ForeignKey>>();
+
+        ForeignKeyReader(final boolean exported) {
+            this.exported = exported;
+        }
+
+        @Override
+        ResultSet query(final String catalog, final String schemaName,
+                final String tableName) throws SQLException {
+            if (exported) {
+                return databaseMetaData.getExportedKeys(catalog, schemaName,
+                        tableName);
+            }
+            return databaseMetaData.getImportedKeys(catalog, schemaName,
+                    tableName);
+        }
+
+        @Override
+        String getTableColumnPrefix() {
+            return exported ? "PKTABLE_" : "FKTABLE_";
+        }
+
+        @Override
+        void readRow(final Table table, final ResultSet rs)
+                throws SQLException {
+            String name = rs.getString("FK_NAME");
+            String foreignTableName = rs.getString(exported ? "FKTABLE_NAME"
+                    : "PKTABLE_NAME");
+            String key = name + "_" + foreignTableName;
+
+            if (hasExcludedTable(foreignTableName)) {
+                return;
+            }
+
+            Map<String, ForeignKey> foreignKeys = foreignKeysByTable.get(table
+                    .getName());
+            if (foreignKeys == null) {
+                foreignKeys = new LinkedHashMap<String, ForeignKey>();
+                foreignKeysByTable.put(table.getName(), foreignKeys);
+            }
+
+            ForeignKey foreignKey = new ForeignKey(name, foreignTableName);
+            foreignKey.setForeignSchemaName(StringUtils.defaultIfEmpty(
+                    rs.getString(exported ? "FKTABLE_SCHEM" : "PKTABLE_SCHEM"),
+                    DbreModelService.NO_SCHEMA_REQUIRED));
+            foreignKey.setOnUpdate(getCascadeAction(rs.getShort("UPDATE_RULE")));
+            foreignKey.setOnDelete(getCascadeAction(rs.getShort("DELETE_RULE")));
+            foreignKey.setExported(exported);
+
+            String localColumnName = rs.getString(exported ? "PKCOLUMN_NAME"
+                    : "FKCOLUMN_NAME");
+            String foreignColumnName = rs.getString(exported ? "FKCOLUMN_NAME"
+                    : "PKCOLUMN_NAME");
+            Reference reference = new Reference(localColumnName,
+                    foreignColumnName);
+
+            if (foreignKeys.containsKey(key)) {
+                foreignKeys.get(key).addReference(reference);
+            }
+            else {
+                foreignKey.addReference(reference);
+                foreignKeys.put(key, foreignKey);
+            }
+        }
+
+        @Override
+        void finish(final Table table) {
+            Map<String, ForeignKey> foreignKeys = foreignKeysByTable.get(table
+                    .getName());
+            if (foreignKeys == null) {
+                return;
+            }
+            for (ForeignKey foreignKey : foreignKeys.values()) {
+                if (exported) {
+                    table.addExportedKey(foreignKey);
+                }
+                else {
+                    table.addImportedKey(foreignKey);
+                }
+            }
+        }
+    }
+
+    private class IndexReader extends TableMetadataReader {
+        // key: table name, value: the table's indices
+        private final Map<String, Set<Index>> indicesByTable = new HashMap<String, Set<Index>>();
+
+        @Override
+        ResultSet query(final String catalog, final String schemaName,
+                final String tableName) throws SQLException {
+            if (tableName == null) {
+                return databaseMetaData.getIndexInfo(catalog, schemaName,
+                        null, false, false);
+            }
+            try {
+                // Catching SQLException here due to Oracle throwing exception
+                // when attempting to retrieve indices for deleted tables that
+                // exist in Oracle's recycle bin
+                return databaseMetaData.getIndexInfo(catalog, schemaName,
+                        tableName, false, false);
+            }
+            catch (SQLException e) {
+                return null;
+            }
+        }
+
+        @Override
+        void readRow(final Table table, final ResultSet rs)
+                throws SQLException {
+            Short type = rs.getShort("TYPE");
+            if (type == DatabaseMetaData.tableIndexStatistic) {
+                return;
+            }
+
+            Set<Index> indices = indicesByTable.get(table.getName());
+            if (indices == null) {
+                indices = new LinkedHashSet<Index>();
+                indicesByTable.put(table.getName(), indices);
+            }
+
+            String indexName = rs.getString("INDEX_NAME");
+            Index index = findIndex(indexName, indices);
+            if (index == null) {
+                index = new Index(indexName);
+            }
+            else {
+                indices.remove(index);
+            }
+            index.setUnique(!rs.getBoolean("NON_UNIQUE"));
+
+            IndexColumn indexColumn = new IndexColumn(
+                    rs.getString("COLUMN_NAME"));
+            index.addColumn(indexColumn);
+
+            indices.add(index);
+        }
+
+        @Override
+        void finish(final Table table) {
+            Set<Index> indices = indicesByTable.get(table.getName());
+            if (indices == null) {
+                return;
+            }
+            for (Index index : indices) {
+                table.addIndex(index);
+            }
+        }
+    }
+
+    private class PrimaryKeyReader extends TableMetadataReader {
+
+        @Override
+        ResultSet query(final String catalog, final String schemaName,
+                final String tableName) throws SQLException {
+            return databaseMetaData.getPrimaryKeys(catalog, schemaName,
+                    tableName);
+        }
+
+        @Override
+        void readRow(final Table table, final ResultSet rs)
+                throws SQLException {
+            Column column = table.findColumn(rs.getString("COLUMN_NAME"));
+            if (column != null) {
+                column.setPrimaryKey(true);
+            }
+        }
+    }
 }
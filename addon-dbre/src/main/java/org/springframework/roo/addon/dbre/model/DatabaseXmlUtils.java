@@ -1,6 +1,7 @@
 package org.springframework.roo.addon.dbre.model;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.EmptyStackException;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -8,16 +9,30 @@ import java.util.Set;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 
 import org.springframework.roo.model.JavaPackage;
+import org.springframework.roo.support.util.Assert;
 import org.springframework.roo.support.util.StringUtils;
 import org.springframework.roo.support.util.XmlUtils;
 import org.w3c.dom.Comment;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 /**
  * Assists converting a {@link Database} to and from XML using DOM or SAX.
+ * <p>
+ * The SAX-based {@link #readDatabase(InputStream)} and
+ * {@link #writeDatabase(Database, OutputStream)} stream the XML, so unlike
+ * their DOM-based equivalents they never hold a document for the whole
+ * database in memory.
  * 
  * @author Alan Stewart
  * @since 1.1
@@ -34,6 +49,9 @@ public abstract class DatabaseXmlUtils {
     public static final String ON_UPDATE = "onUpdate";
     public static final String ON_DELETE = "onDelete";
 
+    private static final String COMMENT = "WARNING: DO NOT EDIT THIS FILE. THIS FILE IS MANAGED BY SPRING ROO.";
+    private static final String CDATA = "CDATA";
+
     public static enum IndexType {
         INDEX, UNIQUE
     }
@@ -183,8 +201,7 @@ public abstract class DatabaseXmlUtils {
 
     public static Document getDatabaseDocument(final Database database) {
         final Document document = XmlUtils.getDocumentBuilder().newDocument();
-        final Comment comment = document
-                .createComment("WARNING: DO NOT EDIT THIS FILE. THIS FILE IS MANAGED BY SPRING ROO.");
+        final Comment comment = document.createComment(COMMENT);
         document.appendChild(comment);
 
         final Element databaseElement = document.createElement("database");
@@ -272,6 +289,195 @@ public abstract class DatabaseXmlUtils {
         return document;
     }
 
+    /**
+     * Writes the given database as XML to the given stream, producing the same
+     * XML as serializing {@link #getDatabaseDocument(Database)} with an
+     * indenting transformer, but without building the document.
+     * 
+     * @param database the database to write (required)
+     * @param outputStream the stream to write to (required; not closed by
+     *            this method)
+     */
+    public static void writeDatabase(final Database database,
+            final OutputStream outputStream) {
+        Assert.notNull(database, "Database required");
+        Assert.notNull(outputStream, "Output stream required");
+        try {
+            final TransformerHandler handler = createTransformerHandler();
+            handler.setResult(new StreamResult(outputStream));
+            handler.startDocument();
+            final char[] comment = COMMENT.toCharArray();
+            handler.comment(comment, 0, comment.length);
+
+            // Attributes are written in name order, as the DOM does
+            final AttributesImpl databaseAttributes = new AttributesImpl();
+            addAttribute(databaseAttributes, NAME, "deprecated");
+            if (database.getDestinationPackage() != null) {
+                addAttribute(databaseAttributes, "package", database
+                        .getDestinationPackage().getFullyQualifiedPackageName());
+            }
+            startElement(handler, "database", databaseAttributes);
+
+            writeOptionElement(handler, "moduleName", database.getModuleName());
+            writeOptionElement(handler, "activeRecord",
+                    String.valueOf(database.isActiveRecord()));
+            writeOptionElement(handler, "includeNonPortableAttributes",
+                    String.valueOf(database.isIncludeNonPortableAttributes()));
+            writeOptionElement(handler, "testAutomatically",
+                    String.valueOf(database.isTestAutomatically()));
+
+            for (final Table table : database.getTables()) {
+                writeTableElement(handler, table);
+            }
+
+            handler.endElement("", "", "database");
+            handler.endDocument();
+        }
+        catch (final SAXException e) {
+            throw new IllegalStateException(
+                    "Unable to write database to XML", e);
+        }
+    }
+
+    private static TransformerHandler createTransformerHandler() {
+        final TransformerHandler handler;
+        try {
+            final TransformerFactory transformerFactory = TransformerFactory
+                    .newInstance();
+            transformerFactory.setAttribute("indent-number", 4);
+            handler = ((SAXTransformerFactory) transformerFactory)
+                    .newTransformerHandler();
+        }
+        catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+        final Transformer transformer = handler.getTransformer();
+        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        transformer.setOutputProperty(OutputKeys.STANDALONE, "no");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty(
+                "{http://xml.apache.org/xslt}indent-amount", "4");
+        return handler;
+    }
+
+    private static void writeTableElement(final TransformerHandler handler,
+            final Table table) throws SAXException {
+        final AttributesImpl tableAttributes = new AttributesImpl();
+        final String schemaName = table.getSchema().getName();
+        if (!DbreModelService.NO_SCHEMA_REQUIRED.equals(schemaName)) {
+            addAttribute(tableAttributes, "alias", schemaName);
+        }
+        if (StringUtils.hasText(table.getDescription())) {
+            addAttribute(tableAttributes, DESCRIPTION, table.getDescription());
+        }
+        addAttribute(tableAttributes, NAME, table.getName());
+        startElement(handler, "table", tableAttributes);
+
+        for (final Column column : table.getColumns()) {
+            final AttributesImpl columnAttributes = new AttributesImpl();
+            if (StringUtils.hasText(column.getDescription())) {
+                addAttribute(columnAttributes, DESCRIPTION,
+                        column.getDescription());
+            }
+            addAttribute(columnAttributes, NAME, column.getName());
+            addAttribute(columnAttributes, "primaryKey",
+                    String.valueOf(column.isPrimaryKey()));
+            addAttribute(columnAttributes, "required",
+                    String.valueOf(column.isRequired()));
+            addAttribute(columnAttributes, "scale",
+                    String.valueOf(column.getScale()));
+            addAttribute(columnAttributes, "size",
+                    String.valueOf(column.getColumnSize()));
+            addAttribute(columnAttributes, "type", column.getDataType() + ","
+                    + column.getTypeName());
+            startElement(handler, "column", columnAttributes);
+            handler.endElement("", "", "column");
+        }
+
+        writeForeignKeyElements(handler, table.getImportedKeys(), false);
+        writeForeignKeyElements(handler, table.getExportedKeys(), true);
+
+        for (final Index index : table.getIndices()) {
+            final String indexElementName = index.isUnique() ? IndexType.UNIQUE
+                    .name().toLowerCase() : IndexType.INDEX.name()
+                    .toLowerCase();
+            final AttributesImpl indexAttributes = new AttributesImpl();
+            addAttribute(indexAttributes, NAME, index.getName());
+            startElement(handler, indexElementName, indexAttributes);
+            for (final IndexColumn indexColumn : index.getColumns()) {
+                final AttributesImpl indexColumnAttributes = new AttributesImpl();
+                addAttribute(indexColumnAttributes, NAME, indexColumn.getName());
+                startElement(handler, indexElementName + "-column",
+                        indexColumnAttributes);
+                handler.endElement("", "", indexElementName + "-column");
+            }
+            handler.endElement("", "", indexElementName);
+        }
+
+        handler.endElement("", "", "table");
+    }
+
+    private static void writeForeignKeyElements(
+            final TransformerHandler handler,
+            final Set<ForeignKey> foreignKeys, final boolean exported)
+            throws SAXException {
+        for (final ForeignKey foreignKey : foreignKeys) {
+            final AttributesImpl foreignKeyAttributes = new AttributesImpl();
+            addAttribute(foreignKeyAttributes, FOREIGN_TABLE,
+                    foreignKey.getForeignTableName());
+            addAttribute(foreignKeyAttributes, NAME, foreignKey.getName());
+            addAttribute(foreignKeyAttributes, ON_DELETE, foreignKey
+                    .getOnDelete().getCode());
+            addAttribute(foreignKeyAttributes, ON_UPDATE, foreignKey
+                    .getOnUpdate().getCode());
+            startElement(handler, "foreign-key", foreignKeyAttributes);
+
+            final String foreignSchemaName = foreignKey.getForeignSchemaName();
+            if (!DbreModelService.NO_SCHEMA_REQUIRED.equals(foreignSchemaName)) {
+                writeOptionElement(handler, "foreignSchemaName",
+                        foreignSchemaName);
+            }
+            writeOptionElement(handler, "exported", String.valueOf(exported));
+
+            for (final Reference reference : foreignKey.getReferences()) {
+                final AttributesImpl referenceAttributes = new AttributesImpl();
+                addAttribute(referenceAttributes, FOREIGN,
+                        reference.getForeignColumnName());
+                addAttribute(referenceAttributes, LOCAL,
+                        reference.getLocalColumnName());
+                startElement(handler, REFERENCE, referenceAttributes);
+                handler.endElement("", "", REFERENCE);
+            }
+            handler.endElement("", "", "foreign-key");
+        }
+    }
+
+    private static void writeOptionElement(final TransformerHandler handler,
+            final String key, final String value) throws SAXException {
+        final AttributesImpl attributes = new AttributesImpl();
+        addAttribute(attributes, "key", key);
+        addAttribute(attributes, "value", value);
+        startElement(handler, "option", attributes);
+        handler.endElement("", "", "option");
+    }
+
+    private static void startElement(final TransformerHandler handler,
+            final String name, final AttributesImpl attributes)
+            throws SAXException {
+        handler.startElement("", "", name, attributes);
+    }
+
+    /**
+     * Adds the given attribute, writing a <code>null</code> value as an empty
+     * one, as the DOM does
+     */
+    private static void addAttribute(final AttributesImpl attributes,
+            final String name, final String value) {
+        attributes.addAttribute("", "", name, CDATA, value == null ? ""
+                : value);
+    }
+
     /**
      * Adds an <option key="foo" value="true"> element as a child of the given
      * parent element
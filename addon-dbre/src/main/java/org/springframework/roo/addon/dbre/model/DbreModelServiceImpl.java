@@ -1,8 +1,11 @@
 package org.springframework.roo.addon.dbre.model;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.util.Collections;
@@ -21,6 +24,7 @@ import org.springframework.roo.addon.dbre.jdbc.ConnectionProvider;
 import org.springframework.roo.addon.propfiles.PropFileOperations;
 import org.springframework.roo.file.monitor.event.FileDetails;
 import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.process.manager.MutableFile;
 import org.springframework.roo.project.LogicalPath;
 import org.springframework.roo.project.Path;
 import org.springframework.roo.project.ProjectOperations;
@@ -118,9 +122,51 @@ public class DbreModelServiceImpl implements DbreModelService {
     }
 
     public void writeDatabase(final Database database) {
-        Document document = DatabaseXmlUtils.getDatabaseDocument(database);
-        fileManager.createOrUpdateTextFileIfRequired(getDbreXmlPath(),
-                XmlUtils.nodeToString(document), true);
+        // Stream the XML rather than building it in memory, first to check
+        // whether the file needs updating and then to update it
+        final String dbreXmlPath = getDbreXmlPath();
+        final MutableFile mutableFile;
+        if (fileManager.exists(dbreXmlPath)) {
+            if (!hasChanged(database, dbreXmlPath)) {
+                return;
+            }
+            mutableFile = fileManager.updateFile(dbreXmlPath);
+        }
+        else {
+            mutableFile = fileManager.createFile(dbreXmlPath);
+        }
+
+        OutputStream outputStream = null;
+        try {
+            outputStream = new BufferedOutputStream(
+                    mutableFile.getOutputStream());
+            DatabaseXmlUtils.writeDatabase(database, outputStream);
+            outputStream.close();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not output '"
+                    + mutableFile.getCanonicalPath() + "'", e);
+        }
+        finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+    }
+
+    private boolean hasChanged(final Database database,
+            final String dbreXmlPath) {
+        ComparingOutputStream outputStream = null;
+        try {
+            outputStream = new ComparingOutputStream(fileManager
+                    .getInputStream(dbreXmlPath));
+            DatabaseXmlUtils.writeDatabase(database, outputStream);
+            return outputStream.hasDifferences();
+        }
+        catch (IOException e) {
+            return true;
+        }
+        finally {
+            IOUtils.closeQuietly(outputStream);
+        }
     }
 
     public Database refreshDatabase(final Set<Schema> schemas,
@@ -255,4 +301,39 @@ public class DbreModelServiceImpl implements DbreModelService {
         }
         return properties;
     }
+
+    /**
+     * An {@link OutputStream} that compares the bytes written to it with the
+     * contents of an {@link InputStream}, discarding them.
+     */
+    private static class ComparingOutputStream extends OutputStream {
+
+        // Fields
+        private final InputStream expected;
+        private boolean differences;
+
+        ComparingOutputStream(final InputStream expected) {
+            this.expected = new BufferedInputStream(expected);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (!differences && expected.read() != (b & 0xff)) {
+                differences = true;
+            }
+        }
+
+        /**
+         * Indicates whether the bytes written so far differ from the input
+         * or are fewer than it.
+         */
+        boolean hasDifferences() throws IOException {
+            return differences || expected.read() != -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            expected.close();
+        }
+    }
 }
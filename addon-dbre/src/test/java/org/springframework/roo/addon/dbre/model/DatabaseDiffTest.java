@@ -0,0 +1,100 @@
+package org.springframework.roo.addon.dbre.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link DatabaseDiff}
+ *
+ * @since 1.2.1
+ */
+public class DatabaseDiffTest {
+
+    private static final Schema SCHEMA = new Schema("public");
+
+    private Table createTable(final String name, final String... columnNames) {
+        final Table table = new Table(name, SCHEMA);
+        for (final String columnName : columnNames) {
+            table.addColumn(new Column(columnName, Types.INTEGER, "INTEGER",
+                    10, 0));
+        }
+        return table;
+    }
+
+    private void addForeignKey(final Table table, final Table foreignTable,
+            final String columnName) {
+        final ForeignKey importedKey = new ForeignKey("FK_" + table.getName(),
+                foreignTable.getName());
+        importedKey.addReference(new Reference(columnName, "ID"));
+        table.addImportedKey(importedKey);
+
+        final ForeignKey exportedKey = new ForeignKey("FK_" + table.getName(),
+                table.getName());
+        exportedKey.setExported(true);
+        exportedKey.addReference(new Reference("ID", columnName));
+        foreignTable.addExportedKey(exportedKey);
+    }
+
+    private Database createDatabase(final Table... tables) {
+        return new Database(new LinkedHashSet<Table>(Arrays.asList(tables)));
+    }
+
+    @Test
+    public void testUnchangedDatabase() {
+        final DatabaseDiff diff = new DatabaseDiff(createDatabase(createTable(
+                "OWNER", "ID")), createDatabase(createTable("OWNER", "ID")));
+
+        assertFalse(diff.hasChanges());
+        assertTrue(diff.getAffectedTables().isEmpty());
+        assertEquals("No changes", diff.toString());
+    }
+
+    @Test
+    public void testAddedAndRemovedTables() {
+        final DatabaseDiff diff = new DatabaseDiff(createDatabase(
+                createTable("OWNER", "ID"), createTable("VET", "ID")),
+                createDatabase(createTable("OWNER", "ID"),
+                        createTable("PET", "ID")));
+
+        assertEquals(1, diff.getAddedTables().size());
+        assertEquals("PET", diff.getAddedTables().iterator().next().getName());
+        assertTrue(diff.getChangedTables().isEmpty());
+        assertTrue(diff.hasChanges());
+        assertEquals("Table public.PET: added"
+                + System.getProperty("line.separator")
+                + "Table public.VET: removed", diff.toString());
+    }
+
+    @Test
+    public void testChangedColumnAffectsRelatedTables() {
+        final Table previousOwner = createTable("OWNER", "ID", "NAME");
+        final Table previousPet = createTable("PET", "ID", "OWNER_ID");
+        addForeignKey(previousPet, previousOwner, "OWNER_ID");
+        final Database previous = createDatabase(previousOwner, previousPet,
+                createTable("VET", "ID"));
+
+        final Table owner = createTable("OWNER", "ID", "NAME", "EMAIL");
+        final Table pet = createTable("PET", "ID", "OWNER_ID");
+        addForeignKey(pet, owner, "OWNER_ID");
+        final Database current = createDatabase(owner, pet,
+                createTable("VET", "ID"));
+
+        final DatabaseDiff diff = new DatabaseDiff(previous, current);
+
+        assertEquals(1, diff.getChangedTables().size());
+        assertEquals(Arrays.asList("column 'EMAIL' added"),
+                diff.getChanges(owner));
+        final Set<Table> affectedTables = diff.getAffectedTables();
+        assertEquals(2, affectedTables.size());
+        assertTrue(affectedTables.contains(owner));
+        assertTrue(affectedTables.contains(pet));
+    }
+}
@@ -0,0 +1,139 @@
+package org.springframework.roo.addon.dbre.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test of {@link DatabaseIntrospector}
+ *
+ * @since 1.2.1
+ */
+public class DatabaseIntrospectorTest {
+
+    // Constants
+    private static final String SCHEMA = "public";
+    private static final String[] TABLE_COLUMNS = { "TABLE_NAME",
+            "TABLE_SCHEM" };
+    private static final String[] COLUMN_COLUMNS = { "TABLE_NAME",
+            "TABLE_SCHEM", "COLUMN_NAME" };
+
+    // Fixture
+    private DatabaseMetaData mockDatabaseMetaData;
+    private DatabaseIntrospector introspector;
+
+    @Before
+    public void setUp() throws SQLException {
+        mockDatabaseMetaData = mock(DatabaseMetaData.class);
+        final Connection mockConnection = mock(Connection.class);
+        when(mockConnection.getMetaData()).thenReturn(mockDatabaseMetaData);
+
+        final ResultSet tables = getResultSet(TABLE_COLUMNS, new Object[] {
+                "ORDERS", SCHEMA }, new Object[] { "CUSTOMER", SCHEMA });
+        when(
+                mockDatabaseMetaData.getTables(null, SCHEMA, null,
+                        new String[] { TableType.TABLE.name() })).thenReturn(
+                tables);
+
+        introspector = new DatabaseIntrospector(mockConnection,
+                Collections.singleton(new Schema(SCHEMA)), false, null, null);
+    }
+
+    /**
+     * Returns a result set of the given rows, whose values are those of the
+     * given columns, in the same order
+     */
+    private ResultSet getResultSet(final String[] columnNames,
+            final Object[]... rows) throws SQLException {
+        final ResultSet mockResultSet = mock(ResultSet.class);
+        final int[] rowIndex = { -1 };
+        when(mockResultSet.next()).thenAnswer(new Answer<Boolean>() {
+            public Boolean answer(final InvocationOnMock invocation) {
+                rowIndex[0]++;
+                return rowIndex[0] < rows.length;
+            }
+        });
+        for (int i = 0; i < columnNames.length; i++) {
+            final int columnIndex = i;
+            when(mockResultSet.getString(columnNames[i])).thenAnswer(
+                    new Answer<Object>() {
+                        public Object answer(final InvocationOnMock invocation) {
+                            return rows[rowIndex[0]][columnIndex];
+                        }
+                    });
+        }
+        return mockResultSet;
+    }
+
+    private ResultSet getColumns(final String tableName) throws SQLException {
+        return getResultSet(COLUMN_COLUMNS, new Object[] { tableName, SCHEMA,
+                "ID" });
+    }
+
+    private void assertIdColumns(final Database database) {
+        for (final String tableName : new String[] { "ORDERS", "CUSTOMER" }) {
+            final Table table = database.getTable(tableName, SCHEMA);
+            assertNotNull(tableName, table);
+            assertEquals(1, table.getColumns().size());
+            assertNotNull(table.findColumn("ID"));
+        }
+    }
+
+    @Test
+    public void testColumnsOfAllTablesAreReadAtOnce() throws SQLException {
+        final ResultSet columns = getResultSet(COLUMN_COLUMNS, new Object[] {
+                "ORDERS", SCHEMA, "ID" }, new Object[] { "CUSTOMER", SCHEMA,
+                "ID" });
+        when(mockDatabaseMetaData.getColumns(null, SCHEMA, null, null))
+                .thenReturn(columns);
+
+        final Database database = introspector.createDatabase();
+
+        assertIdColumns(database);
+        verify(mockDatabaseMetaData, never()).getColumns(null, SCHEMA,
+                "ORDERS", null);
+        verify(mockDatabaseMetaData, never()).getColumns(null, SCHEMA,
+                "CUSTOMER", null);
+    }
+
+    @Test
+    public void testColumnsAreReadPerTableWhenTheDriverRejectsNullTable()
+            throws SQLException {
+        when(mockDatabaseMetaData.getColumns(null, SCHEMA, null, null))
+                .thenThrow(new SQLException("Table name required"));
+        when(mockDatabaseMetaData.getColumns(null, SCHEMA, "ORDERS", null))
+                .thenReturn(getColumns("ORDERS"));
+        when(mockDatabaseMetaData.getColumns(null, SCHEMA, "CUSTOMER", null))
+                .thenReturn(getColumns("CUSTOMER"));
+
+        assertIdColumns(introspector.createDatabase());
+    }
+
+    @Test
+    public void testColumnsAreReadPerTableWhenTheDriverFindsNoRows()
+            throws SQLException {
+        final ResultSet noColumns = getResultSet(COLUMN_COLUMNS);
+        when(mockDatabaseMetaData.getColumns(null, SCHEMA, null, null))
+                .thenReturn(noColumns);
+        when(mockDatabaseMetaData.getColumns(null, SCHEMA, "ORDERS", null))
+                .thenReturn(getColumns("ORDERS"));
+        when(mockDatabaseMetaData.getColumns(null, SCHEMA, "CUSTOMER", null))
+                .thenReturn(getColumns("CUSTOMER"));
+
+        assertIdColumns(introspector.createDatabase());
+    }
+}
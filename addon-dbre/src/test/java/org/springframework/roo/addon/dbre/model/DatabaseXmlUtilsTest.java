@@ -0,0 +1,82 @@
+package org.springframework.roo.addon.dbre.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.sql.Types;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.roo.model.JavaPackage;
+import org.springframework.roo.support.util.XmlUtils;
+
+/**
+ * Unit test of {@link DatabaseXmlUtils}
+ *
+ * @since 1.2.1
+ */
+public class DatabaseXmlUtilsTest {
+
+    private Database createDatabase() {
+        final Table owner = new Table("OWNER", new Schema("public"));
+        owner.setDescription("Pet <owners> & \"friends\"");
+        final Column ownerId = new Column("ID", Types.INTEGER, "INTEGER", 10,
+                0);
+        ownerId.setPrimaryKey(true);
+        ownerId.setRequired(true);
+        owner.addColumn(ownerId);
+        owner.addColumn(new Column("NAME", Types.VARCHAR, "VARCHAR", 30, 0));
+        final Index index = new Index("IDX_NAME");
+        index.setUnique(true);
+        index.addColumn(new IndexColumn("NAME"));
+        owner.addIndex(index);
+
+        final Table pet = new Table("PET", new Schema("public"));
+        pet.addColumn(new Column("ID", Types.INTEGER, "INTEGER", 10, 0));
+        pet.addColumn(new Column("OWNER_ID", Types.INTEGER, "INTEGER", 10, 0));
+        final ForeignKey foreignKey = new ForeignKey("FK_OWNER", "OWNER");
+        foreignKey.setForeignSchemaName("public");
+        foreignKey.setOnDelete(CascadeAction.CASCADE);
+        foreignKey.addReference(new Reference("OWNER_ID", "ID"));
+        pet.addImportedKey(foreignKey);
+
+        final Set<Table> tables = new LinkedHashSet<Table>();
+        tables.add(owner);
+        tables.add(pet);
+        final Database database = new Database(tables);
+        database.setDestinationPackage(new JavaPackage("com.example"));
+        database.setActiveRecord(true);
+        return database;
+    }
+
+    @Test
+    public void testWriteDatabaseMatchesDocument() throws Exception {
+        final Database database = createDatabase();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        DatabaseXmlUtils.writeDatabase(database, outputStream);
+
+        assertEquals(XmlUtils.nodeToString(DatabaseXmlUtils
+                .getDatabaseDocument(database)), outputStream.toString("UTF-8"));
+    }
+
+    @Test
+    public void testWrittenDatabaseCanBeRead() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DatabaseXmlUtils.writeDatabase(createDatabase(), outputStream);
+
+        final Database database = DatabaseXmlUtils
+                .readDatabase(new ByteArrayInputStream(outputStream
+                        .toByteArray()));
+
+        assertEquals(2, database.getTables().size());
+        assertEquals("com.example", database.getDestinationPackage()
+                .getFullyQualifiedPackageName());
+        final Table pet = database.getTable("PET", "public");
+        assertEquals(1, pet.getImportedKeyCount());
+        assertEquals(CascadeAction.CASCADE, pet.getImportedKey("FK_OWNER")
+                .getOnDelete());
+    }
+}
@@ -92,6 +92,7 @@ public class JpaOperationsImpl implements JpaOperations {
     private static final String DATABASE_PASSWORD = "database.password";
     private static final String DEFAULT_PERSISTENCE_UNIT = "persistenceUnit";
     private static final String GAE_PERSISTENCE_UNIT_NAME = "transactions-optional";
+    private static final String JDBC_BATCH_SIZE = "50";
     private static final String PERSISTENCE_UNIT = "persistence-unit";
 
     static final String APPLICATION_CONTEXT_XML = "applicationContext.xml";
@@ -567,6 +568,15 @@ public class JpaOperationsImpl implements JpaOperations {
                     "org.hibernate.cfg.ImprovedNamingStrategy", persistence));
             properties.appendChild(createPropertyElement(
                     "hibernate.connection.charSet", "UTF-8", persistence));
+            properties
+                    .appendChild(persistence
+                            .createComment(" Send inserts and updates to the database in JDBC batches; inserts of entities with IDENTITY identifiers are not batched "));
+            properties.appendChild(createPropertyElement(
+                    "hibernate.jdbc.batch_size", JDBC_BATCH_SIZE, persistence));
+            properties.appendChild(createPropertyElement(
+                    "hibernate.order_inserts", "true", persistence));
+            properties.appendChild(createPropertyElement(
+                    "hibernate.order_updates", "true", persistence));
             properties
                     .appendChild(persistence
                             .createComment(" Uncomment the following two properties for JBoss only "));
@@ -611,6 +621,11 @@ public class JpaOperationsImpl implements JpaOperations {
                     persistence));
             properties.appendChild(createPropertyElement("eclipselink.weaving",
                     "static", persistence));
+            properties.appendChild(createPropertyElement(
+                    "eclipselink.jdbc.batch-writing", "JDBC", persistence));
+            properties.appendChild(createPropertyElement(
+                    "eclipselink.jdbc.batch-writing.size", JDBC_BATCH_SIZE,
+                    persistence));
             break;
         case DATANUCLEUS:
             String connectionString = getConnectionString(jdbcDatabase,
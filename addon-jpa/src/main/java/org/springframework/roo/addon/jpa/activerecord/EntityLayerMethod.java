@@ -26,6 +26,18 @@ enum EntityLayerMethod {
     // The names of these enum constants are arbitrary
 
     CLEAR(CustomDataKeys.CLEAR_METHOD, true) {
+        @Override
+        public String getCall(final JpaCrudAnnotationValues annotationValues,
+                final JavaType targetEntity, final String plural,
+                final List<MethodParameter> callerParameters) {
+            // The entity's clear method is an instance method, and callers
+            // clearing between batches have no instance to invoke it upon,
+            // so clear the entity manager it delegates to instead
+            return targetEntity.getSimpleTypeName() + "."
+                    + JpaActiveRecordMetadata.ENTITY_MANAGER_METHOD_NAME
+                    + "().clear()";
+        }
+
         @Override
         public String getName(final JpaCrudAnnotationValues annotationValues,
                 final JavaType targetEntity, final String plural) {
@@ -113,6 +125,25 @@ enum EntityLayerMethod {
         }
     },
 
+    FIND_ENTRIES_AFTER(CustomDataKeys.FIND_ENTRIES_AFTER_METHOD, true) {
+        @Override
+        public String getName(final JpaCrudAnnotationValues annotationValues,
+                final JavaType targetEntity, final String plural) {
+            if (StringUtils.hasText(annotationValues
+                    .getFindEntriesAfterMethod())) {
+                return annotationValues.getFindEntriesAfterMethod()
+                        + targetEntity.getSimpleTypeName() + "EntriesAfter";
+            }
+            return null;
+        }
+
+        @Override
+        protected List<JavaType> getParameterTypes(final JavaType targetEntity,
+                final JavaType idType) {
+            return Arrays.asList(idType, JavaType.INT_PRIMITIVE);
+        }
+    },
+
     FLUSH(CustomDataKeys.FLUSH_METHOD, false) {
         @Override
         public String getName(final JpaCrudAnnotationValues annotationValues,
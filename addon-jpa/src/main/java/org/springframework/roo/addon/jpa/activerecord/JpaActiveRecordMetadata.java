@@ -2,6 +2,7 @@ package org.springframework.roo.addon.jpa.activerecord;
 
 import static org.springframework.roo.model.JavaType.INT_PRIMITIVE;
 import static org.springframework.roo.model.JdkJavaType.LIST;
+import static org.springframework.roo.model.JpaJavaType.EMBEDDED_ID;
 import static org.springframework.roo.model.JpaJavaType.ENTITY_MANAGER;
 import static org.springframework.roo.model.JpaJavaType.PERSISTENCE_CONTEXT;
 import static org.springframework.roo.model.SpringJavaType.PROPAGATION;
@@ -47,7 +48,7 @@ public class JpaActiveRecordMetadata extends
         AbstractItdTypeDetailsProvidingMetadataItem {
 
     // Constants
-    private static final String ENTITY_MANAGER_METHOD_NAME = "entityManager";
+    static final String ENTITY_MANAGER_METHOD_NAME = "entityManager";
     private static final String PROVIDES_TYPE_STRING = JpaActiveRecordMetadata.class
             .getName();
     private static final String PROVIDES_TYPE = MetadataIdentificationUtils
@@ -147,6 +148,7 @@ public class JpaActiveRecordMetadata extends
         builder.addMethod(getFindAllMethod());
         setFindMethod();
         builder.addMethod(getFindEntriesMethod());
+        builder.addMethod(getFindEntriesAfterMethod());
 
         // Add helper methods
         builder.addMethod(getPersistMethod());
@@ -762,6 +764,102 @@ public class JpaActiveRecordMetadata extends
         return methodBuilder.build();
     }
 
+    /**
+     * Returns the method that finds a page of entities in order of their
+     * identifier, starting after a given identifier value (or at the start if
+     * that value is <code>null</code>). Unlike the "find entries" method, this
+     * doesn't make the database skip over the preceding entities.
+     * 
+     * @return the find entries after method (may return null)
+     */
+    private MethodMetadata getFindEntriesAfterMethod() {
+        if ("".equals(crudAnnotationValues.getFindEntriesAfterMethod())
+                || identifierField.getAnnotation(EMBEDDED_ID) != null) {
+            return null;
+        }
+
+        // Method definition to find or build
+        final String idFieldName = identifierField.getFieldName()
+                .getSymbolName();
+        final JavaSymbolName methodName = new JavaSymbolName(
+                crudAnnotationValues.getFindEntriesAfterMethod()
+                        + destination.getSimpleTypeName() + "EntriesAfter");
+        final JavaType[] parameterTypes = { identifierField.getFieldType(),
+                INT_PRIMITIVE };
+        final List<JavaSymbolName> parameterNames = Arrays.asList(
+                new JavaSymbolName(idFieldName), new JavaSymbolName(
+                        "maxResults"));
+        final JavaType returnType = new JavaType(
+                LIST.getFullyQualifiedTypeName(), 0, DataType.TYPE, null,
+                Arrays.asList(destination));
+
+        // Locate user-defined method
+        final MethodMetadata userMethod = getGovernorMethod(methodName,
+                parameterTypes);
+        if (userMethod != null) {
+            Assert.isTrue(
+                    userMethod.getReturnType().equals(returnType),
+                    "Method '" + methodName + "' on '" + destination
+                            + "' must return '"
+                            + returnType.getNameIncludingTypeParameters() + "'");
+            return userMethod;
+        }
+
+        // Create method
+        final List<AnnotationMetadataBuilder> annotations = new ArrayList<AnnotationMetadataBuilder>();
+        if (isGaeEnabled) {
+            addTransactionalAnnotation(annotations);
+        }
+
+        final InvocableMemberBodyBuilder bodyBuilder = getFindEntriesAfterMethodBody(
+                entityName, destination.getSimpleTypeName(), idFieldName,
+                !identifierField.getFieldType().isPrimitive());
+
+        final MethodMetadataBuilder methodBuilder = new MethodMetadataBuilder(
+                getId(), Modifier.PUBLIC | Modifier.STATIC, methodName,
+                returnType,
+                AnnotatedJavaType.convertFromJavaTypes(parameterTypes),
+                parameterNames, bodyBuilder);
+        methodBuilder.setAnnotations(annotations);
+        return methodBuilder.build();
+    }
+
+    /**
+     * Returns the body of the "find entries after" method
+     * 
+     * @param entityName the JPA name of the entity (required)
+     * @param typeName the simple name of the entity's Java type (required)
+     * @param idFieldName the name of the identifier field and of the method's
+     *            first parameter (required)
+     * @param nullableId whether the identifier parameter can be
+     *            <code>null</code>, meaning the first page is wanted
+     * @return a non-<code>null</code> builder
+     */
+    static InvocableMemberBodyBuilder getFindEntriesAfterMethodBody(
+            final String entityName, final String typeName,
+            final String idFieldName, final boolean nullableId) {
+        final String orderBy = " ORDER BY o." + idFieldName;
+        final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        if (nullableId) {
+            bodyBuilder.appendFormalLine("if (" + idFieldName + " == null) {");
+            bodyBuilder.indent();
+            bodyBuilder.appendFormalLine("return "
+                    + ENTITY_MANAGER_METHOD_NAME
+                    + "().createQuery(\"SELECT o FROM " + entityName + " o"
+                    + orderBy + "\", " + typeName
+                    + ".class).setMaxResults(maxResults).getResultList();");
+            bodyBuilder.indentRemove();
+            bodyBuilder.appendFormalLine("}");
+        }
+        bodyBuilder.appendFormalLine("return " + ENTITY_MANAGER_METHOD_NAME
+                + "().createQuery(\"SELECT o FROM " + entityName
+                + " o WHERE o." + idFieldName + " > :" + idFieldName
+                + orderBy + "\", " + typeName + ".class).setParameter(\""
+                + idFieldName + "\", " + idFieldName
+                + ").setMaxResults(maxResults).getResultList();");
+        return bodyBuilder;
+    }
+
     /**
      * @return the dynamic, custom finders (never returns null, but may return
      *         an empty list)
@@ -11,6 +11,7 @@ import static org.springframework.roo.addon.jpa.activerecord.RooJpaActiveRecord.
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.CLEAR_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.COUNT_ALL_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ALL_METHOD;
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ENTRIES_AFTER_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ENTRIES_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FLUSH_METHOD;
@@ -104,6 +105,10 @@ public class JpaActiveRecordMetadataProviderImpl extends
                                 ROO_JPA_ACTIVE_RECORD, new JavaSymbolName(
                                         "findEntriesMethod"), "find", false,
                                 true, "Entries"), new MethodMatcher(
+                                FIND_ENTRIES_AFTER_METHOD,
+                                ROO_JPA_ACTIVE_RECORD, new JavaSymbolName(
+                                        "findEntriesAfterMethod"), null,
+                                false, true, "EntriesAfter"), new MethodMatcher(
                                 FIND_METHOD, ROO_JPA_ACTIVE_RECORD,
                                 new JavaSymbolName("findMethod"),
                                 FIND_METHOD_DEFAULT, false, true),
@@ -31,6 +31,7 @@ public class JpaCrudAnnotationValues extends AbstractAnnotationValues {
     @AutoPopulate private String countMethod = COUNT_METHOD_DEFAULT;
     @AutoPopulate private String findAllMethod = FIND_ALL_METHOD_DEFAULT;
     @AutoPopulate private String findEntriesMethod = FIND_ENTRIES_METHOD_DEFAULT;
+    @AutoPopulate private String findEntriesAfterMethod = "";
     @AutoPopulate private String findMethod = FIND_METHOD_DEFAULT;
     @AutoPopulate private String flushMethod = FLUSH_METHOD_DEFAULT;
     @AutoPopulate private String mergeMethod = MERGE_METHOD_DEFAULT;
@@ -74,6 +75,16 @@ public class JpaCrudAnnotationValues extends AbstractAnnotationValues {
         return findEntriesMethod;
     }
 
+    /**
+     * Returns the prefix for the "find entries after" method, e.g. the "find"
+     * part of "findFooEntriesAfter"
+     * 
+     * @return an empty string if no such method is wanted
+     */
+    public String getFindEntriesAfterMethod() {
+        return findEntriesAfterMethod;
+    }
+
     /**
      * Returns the custom finder names specified by the annotation
      * 
@@ -79,6 +79,21 @@ public @interface RooJpaActiveRecord {
      */
     String findEntriesMethod() default FIND_ENTRIES_METHOD_DEFAULT;
 
+    /**
+     * Generates a "find[Name]EntriesAfter" method that pages through the
+     * entities in order of their identifier, starting after a given identifier
+     * value ("keyset" paging). Unlike "find[Name]Entries", the cost of fetching
+     * a page doesn't grow with the number of entities before it, and the order
+     * of the entities is stable between pages. Not generated for entities
+     * with an embedded identifier.
+     * 
+     * @return the prefix of the "find[Name]EntriesAfter" method to generate
+     *         (defaults to "", with the simple name of the entity appended
+     *         after the specified method name, followed by "EntriesAfter"; if
+     *         empty, does not create such a method)
+     */
+    String findEntriesAfterMethod() default "";
+
     /**
      * @return an array of strings, with each string being the full name of a
      *         method that should be created as a "dynamic finder" by an
@@ -164,6 +164,10 @@ public class JpaOperationsImplTest {
             + "            <property name=\"hibernate.hbm2ddl.auto\" value=\"create\"/>\n"
             + "            <property name=\"hibernate.ejb.naming_strategy\" value=\"org.hibernate.cfg.ImprovedNamingStrategy\"/>\n"
             + "            <property name=\"hibernate.connection.charSet\" value=\"UTF-8\"/>\n"
+            + "            <!-- Send inserts and updates to the database in JDBC batches; inserts of entities with IDENTITY identifiers are not batched -->\n"
+            + "            <property name=\"hibernate.jdbc.batch_size\" value=\"50\"/>\n"
+            + "            <property name=\"hibernate.order_inserts\" value=\"true\"/>\n"
+            + "            <property name=\"hibernate.order_updates\" value=\"true\"/>\n"
             + "            <!-- Uncomment the following two properties for JBoss only -->\n"
             + "            <!-- property name=\"hibernate.validator.apply_to_ddl\" value=\"false\" /-->\n"
             + "            <!-- property name=\"hibernate.validator.autoregister_listeners\" value=\"false\" /-->\n"
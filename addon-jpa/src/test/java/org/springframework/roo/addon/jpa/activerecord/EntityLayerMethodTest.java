@@ -80,7 +80,8 @@ public class EntityLayerMethodTest {
         when(mockAnnotationValues.getClearMethod()).thenReturn("erase");
 
         // Invoke and check
-        assertMethodCall("Person.erase()", EntityLayerMethod.CLEAR);
+        assertMethodCall("Person.entityManager().clear()",
+                EntityLayerMethod.CLEAR);
     }
 
     @Test
@@ -102,6 +103,17 @@ public class EntityLayerMethodTest {
                 EntityLayerMethod.FIND_ENTRIES, "x", "y");
     }
 
+    @Test
+    public void testCallFindEntriesAfterMethod() {
+        // Set up
+        when(mockAnnotationValues.getFindEntriesAfterMethod()).thenReturn(
+                "lookFor");
+
+        // Invoke and check
+        assertMethodCall("Person.lookForPersonEntriesAfter(x, y)",
+                EntityLayerMethod.FIND_ENTRIES_AFTER, "x", "y");
+    }
+
     @Test
     public void testCallFlushMethod() {
         // Set up
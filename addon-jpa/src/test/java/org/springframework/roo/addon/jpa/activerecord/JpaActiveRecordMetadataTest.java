@@ -0,0 +1,42 @@
+package org.springframework.roo.addon.jpa.activerecord;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit test of the code generated by {@link JpaActiveRecordMetadata}
+ *
+ * @since 1.2.1
+ */
+public class JpaActiveRecordMetadataTest {
+
+    // Constants
+    private static final String INDENT = "        ";
+    private static final String FIRST_PAGE = "return entityManager().createQuery(\"SELECT o FROM Human o ORDER BY o.key\", Person.class).setMaxResults(maxResults).getResultList();";
+    private static final String NEXT_PAGE = "return entityManager().createQuery(\"SELECT o FROM Human o WHERE o.key > :key ORDER BY o.key\", Person.class).setParameter(\"key\", key).setMaxResults(maxResults).getResultList();";
+
+    @Test
+    public void testFindEntriesAfterReturnsFirstPageForNullId() {
+        // Invoke
+        final String body = JpaActiveRecordMetadata
+                .getFindEntriesAfterMethodBody("Human", "Person", "key", true)
+                .getOutput();
+
+        // Check
+        assertEquals(INDENT + "if (key == null) {\n" + INDENT + "    "
+                + FIRST_PAGE + "\n" + INDENT + "}\n" + INDENT + NEXT_PAGE
+                + "\n", body);
+    }
+
+    @Test
+    public void testFindEntriesAfterWithPrimitiveIdHasNoNullCheck() {
+        // Invoke
+        final String body = JpaActiveRecordMetadata
+                .getFindEntriesAfterMethodBody("Human", "Person", "key", false)
+                .getOutput();
+
+        // Check
+        assertEquals(INDENT + NEXT_PAGE + "\n", body);
+    }
+}
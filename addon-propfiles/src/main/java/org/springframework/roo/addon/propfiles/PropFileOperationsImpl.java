@@ -1,10 +1,12 @@
 package org.springframework.roo.addon.propfiles;
 
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -19,16 +21,30 @@ import java.util.TreeSet;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.file.monitor.event.FileEvent;
+import org.springframework.roo.file.monitor.event.FileEventListener;
+import org.springframework.roo.file.undo.UndoEvent;
+import org.springframework.roo.file.undo.UndoListener;
+import org.springframework.roo.file.undo.UndoManager;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.process.manager.MutableFile;
 import org.springframework.roo.project.LogicalPath;
 import org.springframework.roo.project.ProjectOperations;
 import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.FileCopyUtils;
 import org.springframework.roo.support.util.FileUtils;
 import org.springframework.roo.support.util.IOUtils;
 
 /**
  * Provides property file configuration operations.
+ * <p>
+ * The contents of each properties file are kept in memory once read, until
+ * the file monitor reports that the file has changed. The file's size and
+ * modification time are checked on each use, and its contents are compared
+ * if those can't be relied upon. Changes are written using the
+ * {@link FileManager}'s deferred writes, so that a file changed many times
+ * within one command is only written once, when the command completes.
  * 
  * @author Ben Alex
  * @author Stefan Schmidt
@@ -36,15 +52,37 @@ import org.springframework.roo.support.util.IOUtils;
  */
 @Component
 @Service
-public class PropFileOperationsImpl implements PropFileOperations {
+public class PropFileOperationsImpl implements PropFileOperations,
+        FileEventListener, UndoListener {
 
     // Constants
     private static final boolean SORTED = true;
     private static final boolean CHANGE_EXISTING = true;
+    private static final String ENCODING = "ISO-8859-1";
+    /**
+     * The coarsest modification time resolution of the file systems we expect
+     * to run on (FAT)
+     */
+    private static final long TIMESTAMP_GRANULARITY_MILLIS = 2000;
 
     // Fields
-    @Reference private FileManager fileManager;
-    @Reference private ProjectOperations projectOperations;
+    @Reference FileManager fileManager;
+    @Reference ProjectOperations projectOperations;
+    @Reference private UndoManager undoManager;
+
+    /** key: canonical path of a properties file, value: its contents */
+    private final Map<String, CachedProperties> propertiesCache = new HashMap<String, CachedProperties>();
+
+    protected void activate(final ComponentContext context) {
+        undoManager.addUndoListener(this);
+    }
+
+    protected void deactivate(final ComponentContext context) {
+        undoManager.removeUndoListener(this);
+        synchronized (propertiesCache) {
+            propertiesCache.clear();
+        }
+    }
 
     public boolean isPropertiesCommandAvailable() {
         return projectOperations.isFocusedProjectAvailable();
@@ -94,60 +132,28 @@ public class PropFileOperationsImpl implements PropFileOperations {
 
         String filePath = projectOperations.getPathResolver().getIdentifier(
                 propertyFilePath, propertyFilename);
-        MutableFile mutableFile = null;
+        synchronized (propertiesCache) {
+            Properties props = getCachedProperties(filePath);
+            if (props == null) {
+                // Unable to find the file, so let's create it
+                props = new Properties();
+            }
 
-        Properties props;
-        if (sorted) {
-            props = new Properties() {
-                private static final long serialVersionUID = 1L;
-
-                // Override the keys() method to order the keys alphabetically
-                @SuppressWarnings("all")
-                public synchronized Enumeration keys() {
-                    final Object[] keys = keySet().toArray();
-                    Arrays.sort(keys);
-                    return new Enumeration() {
-                        int i = 0;
-
-                        public boolean hasMoreElements() {
-                            return i < keys.length;
-                        }
-
-                        public Object nextElement() {
-                            return keys[i++];
-                        }
-                    };
+            boolean saveNeeded = false;
+            for (final Entry<String, String> entry : properties.entrySet()) {
+                final String key = entry.getKey();
+                final String newValue = entry.getValue();
+                final String existingValue = props.getProperty(key);
+                if (existingValue == null
+                        || (!existingValue.equals(newValue) && changeExisting)) {
+                    props.setProperty(key, newValue);
+                    saveNeeded = true;
                 }
-            };
-        }
-        else {
-            props = new Properties();
-        }
-
-        if (fileManager.exists(filePath)) {
-            mutableFile = fileManager.updateFile(filePath);
-            loadProperties(props, mutableFile.getInputStream());
-        }
-        else {
-            // Unable to find the file, so let's create it
-            mutableFile = fileManager.createFile(filePath);
-        }
-
-        boolean saveNeeded = false;
-        for (final Entry<String, String> entry : properties.entrySet()) {
-            final String key = entry.getKey();
-            final String newValue = entry.getValue();
-            final String existingValue = props.getProperty(key);
-            if (existingValue == null
-                    || (!existingValue.equals(newValue) && changeExisting)) {
-                props.setProperty(key, newValue);
-                saveNeeded = true;
             }
-        }
 
-        if (saveNeeded) {
-            storeProps(props, mutableFile.getOutputStream(), "Updated at "
-                    + new Date());
+            if (saveNeeded) {
+                storeProperties(filePath, props, sorted);
+            }
         }
     }
 
@@ -159,21 +165,15 @@ public class PropFileOperationsImpl implements PropFileOperations {
 
         String filePath = projectOperations.getPathResolver().getIdentifier(
                 propertyFilePath, propertyFilename);
-        MutableFile mutableFile = null;
-        Properties props = new Properties();
-
-        if (fileManager.exists(filePath)) {
-            mutableFile = fileManager.updateFile(filePath);
-            loadProperties(props, mutableFile.getInputStream());
-        }
-        else {
-            throw new IllegalStateException("Properties file not found");
+        synchronized (propertiesCache) {
+            Properties props = getCachedProperties(filePath);
+            if (props == null) {
+                throw new IllegalStateException("Properties file not found");
+            }
+            if (props.remove(key) != null) {
+                storeProperties(filePath, props, !SORTED);
+            }
         }
-
-        props.remove(key);
-
-        storeProps(props, mutableFile.getOutputStream(), "Updated at "
-                + new Date());
     }
 
     public String getProperty(final LogicalPath propertyFilePath,
@@ -184,18 +184,10 @@ public class PropFileOperationsImpl implements PropFileOperations {
 
         String filePath = projectOperations.getPathResolver().getIdentifier(
                 propertyFilePath, propertyFilename);
-        MutableFile mutableFile = null;
-        Properties props = new Properties();
-
-        if (fileManager.exists(filePath)) {
-            mutableFile = fileManager.updateFile(filePath);
-            loadProperties(props, mutableFile.getInputStream());
+        synchronized (propertiesCache) {
+            Properties props = getCachedProperties(filePath);
+            return props == null ? null : props.getProperty(key);
         }
-        else {
-            return null;
-        }
-
-        return props.getProperty(key);
     }
 
     public SortedSet<String> getPropertyKeys(
@@ -204,28 +196,12 @@ public class PropFileOperationsImpl implements PropFileOperations {
         Assert.notNull(propertyFilePath, "Property file path required");
         Assert.hasText(propertyFilename, "Property filename required");
 
-        String filePath = projectOperations.getPathResolver().getIdentifier(
-                propertyFilePath, propertyFilename);
-        Properties props = new Properties();
-
-        try {
-            if (fileManager.exists(filePath)) {
-                loadProperties(props, new BufferedInputStream(
-                        new FileInputStream(filePath)));
-            }
-            else {
-                throw new IllegalStateException("Properties file not found");
-            }
-        }
-        catch (IOException ioe) {
-            throw new IllegalStateException(ioe);
-        }
-
         SortedSet<String> result = new TreeSet<String>();
-        for (Object key : props.keySet()) {
-            String info = key.toString();
+        for (Entry<String, String> entry : getProperties(propertyFilePath,
+                propertyFilename).entrySet()) {
+            String info = entry.getKey();
             if (includeValues) {
-                info += " = " + props.getProperty(key.toString());
+                info += " = " + entry.getValue();
             }
             result.add(info);
         }
@@ -239,26 +215,148 @@ public class PropFileOperationsImpl implements PropFileOperations {
 
         String filePath = projectOperations.getPathResolver().getIdentifier(
                 propertyFilePath, propertyFilename);
-        Properties props = new Properties();
+        Map<String, String> result = new HashMap<String, String>();
+        synchronized (propertiesCache) {
+            Properties props = getCachedProperties(filePath);
+            if (props == null) {
+                throw new IllegalStateException("Properties file not found");
+            }
+            for (Object key : props.keySet()) {
+                result.put(key.toString(), props.getProperty(key.toString()));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
 
-        try {
-            if (fileManager.exists(filePath)) {
-                loadProperties(props, new BufferedInputStream(
-                        new FileInputStream(filePath)));
+    public void onFileEvent(final FileEvent fileEvent) {
+        Assert.notNull(fileEvent, "File event required");
+        synchronized (propertiesCache) {
+            if (propertiesCache.isEmpty()) {
+                return;
             }
-            else {
-                throw new IllegalStateException("Properties file not found");
+            // Changes not yet written are kept, as they will overwrite the
+            // file anyway
+            forgetUnchanged(fileEvent.getFileDetails().getCanonicalPath());
+            if (fileEvent.getPreviousName() != null) {
+                forgetUnchanged(FileUtils.getCanonicalPath(fileEvent
+                        .getPreviousName()));
             }
         }
-        catch (IOException ioe) {
-            throw new IllegalStateException(ioe);
+    }
+
+    public void onUndoEvent(final UndoEvent event) {
+        synchronized (propertiesCache) {
+            if (event.isUndoing()) {
+                // The file manager discards our deferred writes
+                propertiesCache.clear();
+                return;
+            }
+            // The file manager is writing our changes, after which they are
+            // checked against the file like any other contents
+            for (CachedProperties cached : propertiesCache.values()) {
+                cached.changed = false;
+            }
         }
+    }
 
-        Map<String, String> result = new HashMap<String, String>();
-        for (Object key : props.keySet()) {
-            result.put(key.toString(), props.getProperty(key.toString()));
+    private void forgetUnchanged(final String canonicalPath) {
+        CachedProperties cached = propertiesCache.get(canonicalPath);
+        if (cached != null && !cached.changed) {
+            propertiesCache.remove(canonicalPath);
         }
-        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the contents of the given properties file, including any
+     * changes not yet written to disk. Callers must hold the lock on the
+     * cache, and may modify the returned properties only if they then call
+     * {@link #storeProperties(String, Properties, boolean)}.
+     * 
+     * @param filePath the canonical path of the file (required)
+     * @return <code>null</code> if the file doesn't exist
+     */
+    private Properties getCachedProperties(final String filePath) {
+        File file = new File(filePath);
+        String canonicalPath = FileUtils.getCanonicalPath(file);
+        CachedProperties cached = propertiesCache.get(canonicalPath);
+        if (cached != null && cached.isCurrent(file)) {
+            return cached.properties;
+        }
+
+        // Compare the contents as the file manager sees them, i.e. including
+        // any deferred write (of ours or of anyone else)
+        if (!fileManager.exists(filePath)
+                && (cached == null || !cached.changed)) {
+            propertiesCache.remove(canonicalPath);
+            return null;
+        }
+        String contents = readContents(filePath);
+        if (cached == null || !contents.equals(cached.contents)) {
+            cached = new CachedProperties();
+            cached.contents = contents;
+            try {
+                loadProperties(cached.properties, new ByteArrayInputStream(
+                        contents.getBytes(ENCODING)));
+            }
+            catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            propertiesCache.put(canonicalPath, cached);
+        }
+        cached.stamp(file);
+        return cached.properties;
+    }
+
+    private String readContents(final String filePath) {
+        InputStream inputStream = fileManager.getInputStream(filePath);
+        try {
+            return new String(FileCopyUtils.copyToByteArray(inputStream),
+                    ENCODING);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Could not read properties file '"
+                    + filePath + "'", e);
+        }
+        finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Writes the given properties to the given file once the current
+     * transaction has completed. Callers must hold the lock on the cache.
+     */
+    private void storeProperties(final String filePath,
+            final Properties props, final boolean sorted) {
+        String canonicalPath = FileUtils.getCanonicalPath(new File(filePath));
+        CachedProperties cached = propertiesCache.get(canonicalPath);
+        if (cached == null) {
+            cached = new CachedProperties();
+            propertiesCache.put(canonicalPath, cached);
+        }
+        if (cached.properties != props) {
+            cached.properties.clear();
+            cached.properties.putAll(props);
+        }
+
+        Properties toStore = props;
+        if (sorted) {
+            toStore = new SortedProperties();
+            toStore.putAll(props);
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        storeProps(toStore, outputStream, "Updated at " + new Date());
+        try {
+            // Properties.store escapes all non-ASCII characters
+            cached.contents = outputStream.toString(ENCODING);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        cached.changed = true;
+        cached.checked = 0;
+        fileManager.createOrUpdateTextFileIfRequired(filePath,
+                cached.contents, false);
     }
 
     public Properties loadProperties(final InputStream inputStream) {
@@ -306,4 +404,69 @@ public class PropFileOperationsImpl implements PropFileOperations {
             final Class<?> loadingClass) {
         return loadProperties(FileUtils.getInputStream(loadingClass, filename));
     }
+
+    /**
+     * The contents of a properties file, and the size and modification time
+     * of the file when they were last found to match it
+     */
+    private static class CachedProperties {
+
+        // Fields
+        final Properties properties = new Properties();
+        /** the text the properties were read from or last stored as */
+        String contents;
+        long lastModified;
+        long length;
+        /** when the contents were last found to match the file */
+        long checked;
+        /** whether the properties have changes not yet written to disk */
+        boolean changed;
+
+        /**
+         * Indicates whether the file can be assumed to match these contents
+         * without reading it. It can't if they haven't been written yet, nor
+         * if the file was modified so shortly before it was last read that a
+         * later change may have left its size and modification time as they
+         * were.
+         */
+        boolean isCurrent(final File file) {
+            return !changed
+                    && lastModified + TIMESTAMP_GRANULARITY_MILLIS < checked
+                    && lastModified == file.lastModified()
+                    && length == file.length();
+        }
+
+        void stamp(final File file) {
+            lastModified = file.lastModified();
+            length = file.length();
+            checked = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Properties that are stored with their keys in alphabetical order
+     */
+    private static class SortedProperties extends Properties {
+
+        // Constants
+        private static final long serialVersionUID = 1L;
+
+        // Override the keys() method to order the keys alphabetically
+        @SuppressWarnings("all")
+        public synchronized Enumeration keys() {
+            final Object[] keys = keySet().toArray();
+            Arrays.sort(keys);
+            return new Enumeration() {
+                int i = 0;
+
+                public boolean hasMoreElements() {
+                    return i < keys.length;
+                }
+
+                public Object nextElement() {
+                    return keys[i++];
+                }
+            };
+        }
+    }
 }
@@ -1,12 +1,34 @@
 package org.springframework.roo.addon.propfiles;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.SortedSet;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.roo.addon.propfiles.caller.PropertiesTestClient;
+import org.springframework.roo.file.monitor.event.FileDetails;
+import org.springframework.roo.file.undo.UndoEvent;
+import org.springframework.roo.file.undo.UndoEvent.UndoOperation;
+import org.springframework.roo.process.manager.FileManager;
+import org.springframework.roo.process.manager.MutableFile;
+import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.project.Path;
+import org.springframework.roo.project.PathResolver;
+import org.springframework.roo.project.ProjectOperations;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.roo.support.util.FileUtils;
 
 /**
  * Unit test of {@link PropFileOperationsImpl} N.B. for this test to pass, the
@@ -22,12 +44,149 @@ import org.springframework.roo.addon.propfiles.caller.PropertiesTestClient;
  */
 public class PropFileOperationsImplTest {
 
+    // Constants
+    private static final LogicalPath PATH = LogicalPath.getInstance(
+            Path.ROOT, "");
+    private static final String FILENAME = "test.properties";
+
     // Fixture
     private PropFileOperationsImpl propFileOperations;
+    private File directory;
+    private File file;
+    private StubFileManager fileManager;
 
     @Before
-    public void setUp() {
+    public void setUp() throws IOException {
         this.propFileOperations = new PropFileOperationsImpl();
+        directory = File.createTempFile("PropFileOperationsImplTest", "");
+        directory.delete();
+        directory.mkdir();
+        file = new File(directory, FILENAME);
+        fileManager = new StubFileManager();
+        final PathResolver mockPathResolver = mock(PathResolver.class);
+        when(mockPathResolver.getIdentifier(PATH, FILENAME)).thenReturn(
+                file.getPath());
+        final ProjectOperations mockProjectOperations = mock(ProjectOperations.class);
+        when(mockProjectOperations.getPathResolver()).thenReturn(
+                mockPathResolver);
+        propFileOperations.fileManager = fileManager;
+        propFileOperations.projectOperations = mockProjectOperations;
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively(directory);
+    }
+
+    /**
+     * Writes the given contents to the test file, with the given modification
+     * time relative to now
+     */
+    private void writeFile(final String contents, final long ageMillis)
+            throws IOException {
+        FileCopyUtils.copy(contents.getBytes(), file);
+        file.setLastModified(System.currentTimeMillis() - ageMillis);
+    }
+
+    private String getProperty(final String key) {
+        return propFileOperations.getProperty(PATH, FILENAME, key);
+    }
+
+    private Properties readFile() throws IOException {
+        final Properties properties = new Properties();
+        final InputStream inputStream = new FileInputStream(file);
+        try {
+            properties.load(inputStream);
+        }
+        finally {
+            inputStream.close();
+        }
+        return properties;
+    }
+
+    @Test
+    public void testGetPropertyReadsFileOnlyOnce() throws IOException {
+        writeFile("colour=red", 10000);
+
+        assertEquals("red", getProperty("colour"));
+        assertEquals("red", getProperty("colour"));
+        final SortedSet<String> keys = propFileOperations.getPropertyKeys(
+                PATH, FILENAME, false);
+
+        assertEquals(1, keys.size());
+        assertEquals(1, fileManager.reads);
+    }
+
+    @Test
+    public void testExternalEditIsSeen() throws IOException {
+        writeFile("colour=red", 10000);
+        assertEquals("red", getProperty("colour"));
+
+        writeFile("colour=blue", 0);
+
+        assertEquals("blue", getProperty("colour"));
+    }
+
+    @Test
+    public void testExternalEditWithUnchangedSizeAndTimestampIsSeen()
+            throws IOException {
+        writeFile("colour=red", 0);
+        final long lastModified = file.lastModified();
+        assertEquals("red", getProperty("colour"));
+
+        // Same size, and within the same timestamp tick
+        FileCopyUtils.copy("colour=tan".getBytes(), file);
+        file.setLastModified(lastModified);
+
+        assertEquals("tan", getProperty("colour"));
+    }
+
+    @Test
+    public void testChangeIsDeferredUntilFlushed() throws IOException {
+        writeFile("colour=red", 10000);
+
+        propFileOperations.changeProperty(PATH, FILENAME, "colour", "green");
+        propFileOperations.addPropertyIfNotExists(PATH, FILENAME, "size",
+                "large");
+
+        assertEquals("green", getProperty("colour"));
+        assertEquals("red", readFile().getProperty("colour"));
+
+        // Flush
+        fileManager.commit();
+        propFileOperations.onUndoEvent(new UndoEvent(UndoOperation.FLUSH));
+
+        final Properties written = readFile();
+        assertEquals("green", written.getProperty("colour"));
+        assertEquals("large", written.getProperty("size"));
+        assertEquals("green", getProperty("colour"));
+        assertEquals("large", getProperty("size"));
+    }
+
+    @Test
+    public void testUndoDiscardsUnwrittenChanges() throws IOException {
+        writeFile("colour=red", 10000);
+        propFileOperations.changeProperty(PATH, FILENAME, "colour", "green");
+        assertEquals("green", getProperty("colour"));
+
+        // Undo
+        fileManager.clear();
+        propFileOperations.onUndoEvent(new UndoEvent(UndoOperation.UNDO));
+
+        assertEquals("red", getProperty("colour"));
+    }
+
+    @Test
+    public void testUnwrittenChangesAreCheckedAgainstFileManager()
+            throws IOException {
+        writeFile("colour=red", 10000);
+        propFileOperations.changeProperty(PATH, FILENAME, "colour", "green");
+
+        // Another writer replaces our deferred write
+        fileManager.createOrUpdateTextFileIfRequired(file.getPath(),
+                "colour=pink", false);
+
+        assertEquals("pink", getProperty("colour"));
     }
 
     @Test
@@ -41,4 +200,101 @@ public class PropFileOperationsImplTest {
         assertEquals("Shimano Ultegra", properties.getProperty("groupset"));
         assertEquals("Rolf Vector", properties.getProperty("wheels"));
     }
+
+    /**
+     * A {@link FileManager} that defers writes until committed, as the real
+     * one does
+     */
+    private static class StubFileManager implements FileManager {
+
+        // Fields
+        private final Map<String, String> deferredWrites = new HashMap<String, String>();
+        int reads;
+
+        public boolean exists(final String fileIdentifier) {
+            return new File(fileIdentifier).exists();
+        }
+
+        public InputStream getInputStream(final String fileIdentifier) {
+            reads++;
+            final String deferredContents = deferredWrites.get(fileIdentifier);
+            if (deferredContents != null) {
+                return new ByteArrayInputStream(deferredContents.getBytes());
+            }
+            try {
+                return new FileInputStream(fileIdentifier);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public void createOrUpdateTextFileIfRequired(
+                final String fileIdentifier, final String newContents,
+                final boolean writeImmediately) {
+            createOrUpdateTextFileIfRequired(fileIdentifier, newContents, null,
+                    writeImmediately);
+        }
+
+        public void createOrUpdateTextFileIfRequired(
+                final String fileIdentifier, final String newContents,
+                final String descriptionOfChange,
+                final boolean writeImmediately) {
+            deferredWrites.put(fileIdentifier, newContents);
+            if (writeImmediately) {
+                commit();
+            }
+        }
+
+        public void commit() {
+            try {
+                for (final Map.Entry<String, String> entry : deferredWrites
+                        .entrySet()) {
+                    FileCopyUtils.copy(entry.getValue().getBytes(), new File(
+                            entry.getKey()));
+                }
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            deferredWrites.clear();
+        }
+
+        public void clear() {
+            deferredWrites.clear();
+        }
+
+        public FileDetails createDirectory(final String fileIdentifier) {
+            throw new UnsupportedOperationException();
+        }
+
+        public FileDetails readFile(final String fileIdentifier) {
+            throw new UnsupportedOperationException();
+        }
+
+        public MutableFile createFile(final String fileIdentifier) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void delete(final String pathname) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void delete(final String pathname,
+                final String reasonForDeletion) {
+            throw new UnsupportedOperationException();
+        }
+
+        public MutableFile updateFile(final String fileIdentifier) {
+            throw new UnsupportedOperationException();
+        }
+
+        public SortedSet<FileDetails> findMatchingAntPath(final String antPath) {
+            throw new UnsupportedOperationException();
+        }
+
+        public int scan() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
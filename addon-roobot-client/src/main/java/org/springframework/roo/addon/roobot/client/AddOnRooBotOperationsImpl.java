@@ -2,7 +2,9 @@ package org.springframework.roo.addon.roobot.client;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -15,6 +17,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.zip.ZipInputStream;
 
@@ -35,6 +38,7 @@ import org.springframework.roo.addon.roobot.client.model.Rating;
 import org.springframework.roo.classpath.preferences.Preferences;
 import org.springframework.roo.classpath.preferences.PreferencesService;
 import org.springframework.roo.felix.BundleSymbolicName;
+import org.springframework.roo.felix.HttpPgpUrlStreamHandlerService;
 import org.springframework.roo.felix.pgp.PgpKeyId;
 import org.springframework.roo.felix.pgp.PgpService;
 import org.springframework.roo.shell.Shell;
@@ -92,6 +96,7 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
             "org.springframework.roo.uaa");
 
     // Fields
+    @Reference private HttpPgpUrlStreamHandlerService httpPgpUrlStreamHandlerService;
     @Reference private PgpService pgpService;
     @Reference private PreferencesService preferencesService;
     @Reference private Shell shell;
@@ -99,9 +104,13 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
     private final DateFormat dateFormat = new SimpleDateFormat(
             "yyyy-MM-dd hh:mm:ss");
     private final Object mutex = new Object();
+    private final RooBotIndexCache rooBotIndexCache = new RooBotIndexCache(
+            new File(System.getProperty("user.home") + File.separatorChar
+                    + ".spring_roo_roobot_index.xml"));
     private boolean rooBotIndexDownload = true;
     private ComponentContext context;
     private Map<String, Bundle> bundleCache;
+    private BundleIndex bundleIndex;
     private Map<String, Bundle> searchResultCache;
     private Preferences prefs;
     private String rooBotXmlUrl = "http://spring-roo-repository.springsource.org/roobot/roobot.xml.zip";
@@ -112,6 +121,7 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
         prefs = preferencesService
                 .getPreferencesFor(AddOnRooBotOperationsImpl.class);
         bundleCache = new HashMap<String, Bundle>();
+        bundleIndex = new BundleIndex(bundleCache.values());
         searchResultCache = new HashMap<String, Bundle>();
         BundleContext bundleContext = context.getBundleContext();
         if (bundleContext != null) {
@@ -125,9 +135,9 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
         if (rooBotIndexDownload) {
             rooBotEagerDownload = new Thread(new Runnable() {
                 public void run() {
-                    synchronized (mutex) {
-                        populateBundleCache(true);
-                    }
+                    // Locks the mutex only while updating the bundle cache,
+                    // so the add-ons cached on disk are usable meanwhile
+                    populateBundleCache(true);
                 }
             }, "Spring Roo RooBot Add-In Index Eager Download");
             rooBotEagerDownload.start();
@@ -369,28 +379,27 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
             }
             if (bundleCache.size() != 0) {
                 boolean onlyRelevantBundles = false;
+                List<Bundle> bundles;
                 if (searchTerms != null && !"".equals(searchTerms)) {
                     onlyRelevantBundles = true;
-                    String[] terms = searchTerms.split(",");
+                    Map<Bundle, Float> matches = bundleIndex
+                            .search(searchTerms);
+                    for (Entry<Bundle, Float> match : matches.entrySet()) {
+                        match.getKey().setSearchRelevance(match.getValue());
+                    }
+                    bundles = Bundle
+                            .orderBySearchRelevance(new ArrayList<Bundle>(
+                                    matches.keySet()));
+                }
+                else {
+                    // Forget the relevance to any previous search
                     for (Bundle bundle : bundleCache.values()) {
-                        // First set relevance of all bundles to zero
                         bundle.setSearchRelevance(0f);
-                        int hits = 0;
-                        BundleVersion latest = bundle.getLatestVersion();
-                        for (String term : terms) {
-                            if ((bundle.getSymbolicName() + ";" + latest
-                                    .getSummary()).toLowerCase().contains(
-                                    term.trim().toLowerCase())
-                                    || term.equals("*")) {
-                                hits++;
-                            }
-                        }
-                        bundle.setSearchRelevance(hits / terms.length);
                     }
+                    bundles = Bundle
+                            .orderBySearchRelevance(new ArrayList<Bundle>(
+                                    bundleCache.values()));
                 }
-                List<Bundle> bundles = Bundle
-                        .orderBySearchRelevance(new ArrayList<Bundle>(
-                                bundleCache.values()));
                 List<Bundle> filteredSearchResults = filterList(bundles,
                         trustedOnly, compatibleOnly, communityOnly,
                         requiresCommand, onlyRelevantBundles);
@@ -470,6 +479,19 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
         synchronized (mutex) {
             final AddOnStabilityLevel addonStabilityLevel = checkAddOnStabilityLevel(null);
             final Map<String, Bundle> bundles = getUpgradableBundles(addonStabilityLevel);
+
+            // Download the add-ons together, rather than as each is installed
+            final List<URL> urls = new ArrayList<URL>();
+            for (final Bundle bundle : bundles.values()) {
+                try {
+                    urls.add(new URL(bundle.getLatestVersion().getUri()));
+                }
+                catch (final MalformedURLException ignored) {
+                    // It will be reported when installing it
+                }
+            }
+            httpPgpUrlStreamHandlerService.prefetch(urls);
+
             boolean upgraded = false;
             for (final Bundle bundle : bundles.values()) {
                 final BundleVersion bundleVersion = bundle.getLatestVersion();
@@ -601,6 +623,10 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
         if (trustedOnly) {
             keys = pgpService.getTrustedKeys();
         }
+        Set<Bundle> offeringCommand = null;
+        if (requiresCommand != null && requiresCommand.length() > 0) {
+            offeringCommand = bundleIndex.findByCommand(requiresCommand);
+        }
         bundle_loop: for (Bundle bundle : bundles) {
             BundleVersion latest = bundle.getLatestVersion();
             if (onlyRelevantBundles && !(bundle.getSearchRelevance() > 0)) {
@@ -621,18 +647,8 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
             if (isBundleInstalled(bundle)) {
                 continue bundle_loop;
             }
-            if (requiresCommand != null && requiresCommand.length() > 0) {
-                boolean matchingCommand = false;
-                for (String cmd : latest.getCommands().keySet()) {
-                    if (cmd.startsWith(requiresCommand)
-                            || requiresCommand.startsWith(cmd)) {
-                        matchingCommand = true;
-                        break;
-                    }
-                }
-                if (!matchingCommand) {
-                    continue bundle_loop;
-                }
+            if (offeringCommand != null && !offeringCommand.contains(bundle)) {
+                continue bundle_loop;
             }
             filteredList.add(bundle);
         }
@@ -706,19 +722,33 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
         return false;
     }
 
+    /**
+     * Brings the add-on index up to date. The index saved by an earlier
+     * session is loaded first (if nothing is loaded yet), after which the
+     * index is only downloaded again if it has changed since. The download
+     * itself happens without holding the mutex, unless the caller already
+     * holds it.
+     *
+     * @param startupTime whether this is the eager download at startup
+     * @return <code>true</code> if the index was downloaded or found to be
+     *         unchanged
+     */
     private boolean populateBundleCache(final boolean startupTime) {
+        final Map<String, String> validators;
+        synchronized (mutex) {
+            if (bundleCache.isEmpty()) {
+                loadCachedIndex();
+            }
+            // Only ask whether the index we already have has changed
+            validators = bundleCache.isEmpty() ? new HashMap<String, String>()
+                    : rooBotIndexCache.getValidators(rooBotXmlUrl);
+        }
+
         boolean success = false;
-        InputStream is = null;
-        ByteArrayInputStream bais = null;
-        ByteArrayOutputStream baos = null;
         try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            DocumentBuilder db = dbf.newDocumentBuilder();
             if (rooBotXmlUrl.startsWith("http://")) {
-                // Handle it as HTTP
-                URL httpUrl = new URL(rooBotXmlUrl);
                 String failureMessage = urlInputStreamService
-                        .getUrlCannotBeOpenedMessage(httpUrl);
+                        .getUrlCannotBeOpenedMessage(new URL(rooBotXmlUrl));
                 if (failureMessage != null) {
                     if (!startupTime) {
                         // This wasn't just an eager startup time attempt, so
@@ -728,151 +758,161 @@ public class AddOnRooBotOperationsImpl implements AddOnRooBotOperations {
                     }
                     return false;
                 }
-                // It appears we can acquire the URL, so let's do it
-                is = urlInputStreamService.openConnection(httpUrl);
             }
-            else {
-                // Fall back to normal protocol handler (likely in local
-                // development testing etc)
-                is = new URL(rooBotXmlUrl).openStream();
+            // It appears we can acquire the URL, so let's do it; other
+            // protocols are likely local development testing etc
+            byte[] index = rooBotIndexCache.fetchIndex(rooBotXmlUrl,
+                    validators, urlInputStreamService);
+            if (index != null) {
+                synchronized (mutex) {
+                    parseIndex(index);
+                }
+                rooBotIndexCache.put(rooBotXmlUrl, index, validators);
             }
-            if (is == null) {
+            success = true;
+        }
+        catch (IOException e) {
+            if (!startupTime) {
                 LOGGER.warning("Could not connect to Roo Addon bundle repository index");
-                return false;
             }
+        }
+        catch (Throwable ignore) {
+            // Ignore
+        }
+        if (success && startupTime) {
+            synchronized (mutex) {
+                printAddonStats();
+            }
+        }
+        return success;
+    }
 
-            ZipInputStream zip = new ZipInputStream(is);
-            zip.getNextEntry();
-
-            baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[8192];
-            int length = -1;
-            while (zip.available() > 0) {
-                length = zip.read(buffer, 0, 8192);
-                if (length > 0) {
-                    baos.write(buffer, 0, length);
-                }
+    /**
+     * Populates the bundle cache from the index saved by an earlier session,
+     * if any.
+     */
+    private void loadCachedIndex() {
+        byte[] index = rooBotIndexCache.getIndex(rooBotXmlUrl);
+        if (index != null) {
+            try {
+                parseIndex(index);
             }
+            catch (Exception ignore) {
+                // It will be downloaded again
+            }
+        }
+    }
 
-            bais = new ByteArrayInputStream(baos.toByteArray());
-            Document roobotXml = db.parse(bais);
+    /**
+     * Replaces the contents of the bundle cache with the add-ons in the given
+     * index. The bundle cache is left untouched if the index can't be parsed.
+     *
+     * @param index the unzipped RooBot index (required)
+     */
+    private void parseIndex(final byte[] index) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        DocumentBuilder db = dbf.newDocumentBuilder();
+        Document roobotXml = db.parse(new ByteArrayInputStream(index));
 
-            if (roobotXml != null) {
-                bundleCache.clear();
-                for (Element bundleElement : XmlUtils.findElements(
-                        "/roobot/bundles/bundle",
-                        roobotXml.getDocumentElement())) {
-                    String bsn = bundleElement.getAttribute("bsn");
-                    if (NO_UPGRADE_BSN_LIST.contains(bsn)) {
-                        // List only add-ons which are not core (see ROO-2190)
-                        continue;
-                    }
-                    List<Comment> comments = new ArrayList<Comment>();
-                    for (Element commentElement : XmlUtils.findElements(
-                            "comments/comment", bundleElement)) {
-                        comments.add(new Comment(Rating.fromInt(new Integer(
-                                commentElement.getAttribute("rating"))),
-                                commentElement.getAttribute("comment"),
-                                dateFormat.parse(commentElement
-                                        .getAttribute("date"))));
+        // Look up the signers' descriptions once, rather than per version
+        Map<String, String> pgpKeyDescriptions = new HashMap<String, String>();
+        for (Element pgpKeyElement : XmlUtils.findElements(
+                "/roobot/pgp-keys/pgp-key", roobotXml.getDocumentElement())) {
+            Element pgpKeyDescription = XmlUtils.findFirstElement(
+                    "pgp-key-description", pgpKeyElement);
+            String id = pgpKeyElement.getAttribute("id");
+            if (pgpKeyDescription != null
+                    && !pgpKeyDescriptions.containsKey(id)) {
+                pgpKeyDescriptions.put(id,
+                        pgpKeyDescription.getAttribute("text"));
+            }
+        }
+
+        Map<String, Bundle> bundles = new HashMap<String, Bundle>();
+        for (Element bundleElement : XmlUtils.findElements(
+                "/roobot/bundles/bundle", roobotXml.getDocumentElement())) {
+            String bsn = bundleElement.getAttribute("bsn");
+            if (NO_UPGRADE_BSN_LIST.contains(bsn)) {
+                // List only add-ons which are not core (see ROO-2190)
+                continue;
+            }
+            List<Comment> comments = new ArrayList<Comment>();
+            for (Element commentElement : XmlUtils.findElements(
+                    "comments/comment", bundleElement)) {
+                comments.add(new Comment(Rating.fromInt(new Integer(
+                        commentElement.getAttribute("rating"))), commentElement
+                        .getAttribute("comment"), dateFormat
+                        .parse(commentElement.getAttribute("date"))));
+            }
+            Bundle bundle = new Bundle(bundleElement.getAttribute("bsn"),
+                    new Float(bundleElement.getAttribute("uaa-ranking")),
+                    comments);
+            for (Element versionElement : XmlUtils.findElements(
+                    "versions/version", bundleElement)) {
+                if (bsn != null && bsn.length() > 0 && versionElement != null) {
+                    String signedBy = "";
+                    String pgpKey = versionElement.getAttribute("pgp-key-id");
+                    if (pgpKey != null && pgpKey.length() > 0
+                            && pgpKeyDescriptions.containsKey(pgpKey)) {
+                        signedBy = pgpKeyDescriptions.get(pgpKey);
                     }
-                    Bundle bundle = new Bundle(
-                            bundleElement.getAttribute("bsn"), new Float(
-                                    bundleElement.getAttribute("uaa-ranking")),
-                            comments);
-                    for (Element versionElement : XmlUtils.findElements(
-                            "versions/version", bundleElement)) {
-                        if (bsn != null && bsn.length() > 0
-                                && versionElement != null) {
-                            String signedBy = "";
-                            String pgpKey = versionElement
-                                    .getAttribute("pgp-key-id");
-                            if (pgpKey != null && pgpKey.length() > 0) {
-                                Element pgpSigned = XmlUtils.findFirstElement(
-                                        "/roobot/pgp-keys/pgp-key[@id='"
-                                                + pgpKey
-                                                + "']/pgp-key-description",
-                                        roobotXml.getDocumentElement());
-                                if (pgpSigned != null) {
-                                    signedBy = pgpSigned.getAttribute("text");
-                                }
-                            }
 
-                            Map<String, String> commands = new HashMap<String, String>();
-                            for (Element shell : XmlUtils.findElements(
-                                    "shell-commands/shell-command",
-                                    versionElement)) {
-                                commands.put(shell.getAttribute("command"),
-                                        shell.getAttribute("help"));
-                            }
+                    Map<String, String> commands = new HashMap<String, String>();
+                    for (Element shell : XmlUtils.findElements(
+                            "shell-commands/shell-command", versionElement)) {
+                        commands.put(shell.getAttribute("command"),
+                                shell.getAttribute("help"));
+                    }
 
-                            StringBuilder versionBuilder = new StringBuilder();
-                            versionBuilder
-                                    .append(versionElement
-                                            .getAttribute("major"))
-                                    .append(".")
-                                    .append(versionElement
-                                            .getAttribute("minor"));
-                            String versionMicro = versionElement
-                                    .getAttribute("micro");
-                            if (versionMicro != null
-                                    && versionMicro.length() > 0) {
-                                versionBuilder.append(".").append(versionMicro);
-                            }
-                            String versionQualifier = versionElement
-                                    .getAttribute("qualifier");
-                            if (versionQualifier != null
-                                    && versionQualifier.length() > 0) {
-                                versionBuilder.append(".").append(
-                                        versionQualifier);
-                            }
+                    StringBuilder versionBuilder = new StringBuilder();
+                    versionBuilder.append(versionElement.getAttribute("major"))
+                            .append(".")
+                            .append(versionElement.getAttribute("minor"));
+                    String versionMicro = versionElement.getAttribute("micro");
+                    if (versionMicro != null && versionMicro.length() > 0) {
+                        versionBuilder.append(".").append(versionMicro);
+                    }
+                    String versionQualifier = versionElement
+                            .getAttribute("qualifier");
+                    if (versionQualifier != null
+                            && versionQualifier.length() > 0) {
+                        versionBuilder.append(".").append(versionQualifier);
+                    }
 
-                            String rooVersion = versionElement
-                                    .getAttribute("roo-version");
-                            if (rooVersion.equals("*")
-                                    || rooVersion.length() == 0) {
-                                rooVersion = getVersionForCompatibility();
-                            }
-                            else {
-                                String[] split = rooVersion.split("\\.");
-                                if (split.length > 2) {
-                                    // Only interested in major.minor
-                                    rooVersion = split[0] + "." + split[1];
-                                }
-                            }
-                            BundleVersion version = new BundleVersion(
-                                    versionElement.getAttribute("url"),
-                                    versionElement.getAttribute("obr-url"),
-                                    versionBuilder.toString(),
-                                    versionElement.getAttribute("name"),
-                                    new Long(versionElement
-                                            .getAttribute("size")).longValue(),
-                                    versionElement.getAttribute("description"),
-                                    pgpKey, signedBy, rooVersion, commands);
-                            // For security reasons we ONLY accept httppgp://
-                            // add-on versions
-                            if (!version.getUri().startsWith("httppgp://")) {
-                                continue;
-                            }
-                            bundle.addVersion(version);
+                    String rooVersion = versionElement
+                            .getAttribute("roo-version");
+                    if (rooVersion.equals("*") || rooVersion.length() == 0) {
+                        rooVersion = getVersionForCompatibility();
+                    }
+                    else {
+                        String[] split = rooVersion.split("\\.");
+                        if (split.length > 2) {
+                            // Only interested in major.minor
+                            rooVersion = split[0] + "." + split[1];
                         }
-                        bundleCache.put(bsn, bundle);
                     }
+                    BundleVersion version = new BundleVersion(
+                            versionElement.getAttribute("url"),
+                            versionElement.getAttribute("obr-url"),
+                            versionBuilder.toString(),
+                            versionElement.getAttribute("name"), new Long(
+                                    versionElement.getAttribute("size"))
+                                    .longValue(),
+                            versionElement.getAttribute("description"), pgpKey,
+                            signedBy, rooVersion, commands);
+                    // For security reasons we ONLY accept httppgp:// add-on
+                    // versions
+                    if (!version.getUri().startsWith("httppgp://")) {
+                        continue;
+                    }
+                    bundle.addVersion(version);
                 }
-                success = true;
+                bundles.put(bsn, bundle);
             }
-            zip.close();
         }
-        catch (Throwable ignore) {
-            // Ignore
-        }
-        finally {
-            IOUtils.closeQuietly(is, baos, bais);
-        }
-        if (success && startupTime) {
-            printAddonStats();
-        }
-        return success;
+        bundleCache.clear();
+        bundleCache.putAll(bundles);
+        bundleIndex = new BundleIndex(bundles.values());
     }
 
     private void printAddonStats() {
@@ -0,0 +1,300 @@
+package org.springframework.roo.addon.roobot.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.roo.addon.roobot.client.model.Bundle;
+import org.springframework.roo.addon.roobot.client.model.BundleVersion;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * An inverted index of add-ons, for searching them by keyword or by the
+ * commands they offer.
+ * <p>
+ * The symbolic name and the summary of the latest version of each add-on are
+ * split into lower case words, which are reduced to their singular form. A
+ * search term matches an add-on if each of its words is a prefix of one of
+ * the add-on's words (or, once reduced to its singular form, equal to one); a
+ * term of several words must also appear verbatim in the add-on's text. Each
+ * match is weighted by where the word appears (the names and commands of an
+ * add-on count for more than its descriptions) and by how few add-ons contain
+ * it. A term that matches no add-on this way is looked for anywhere in the
+ * symbolic names and summaries of the add-ons, so that for example "sql"
+ * still finds "mysql".
+ * <p>
+ * Not thread safe.
+ *
+ * @since 1.2.1
+ */
+class BundleIndex {
+
+    // Constants
+    private static final String ANY = "*";
+    private static final float SYMBOLIC_NAME_WEIGHT = 3;
+    private static final float PRESENTATION_NAME_WEIGHT = 2;
+    private static final float COMMAND_WEIGHT = 2;
+    private static final float DESCRIPTION_WEIGHT = 1;
+    private static final float PREFIX_MATCH_FACTOR = 0.5f;
+    private static final float SUBSTRING_MATCH_WEIGHT = 0.25f;
+
+    // Fields
+    private final List<Bundle> bundles;
+    /** key: word, value: the bundles containing it, with its weight in each */
+    private final SortedMap<String, Map<Bundle, Float>> words = new TreeMap<String, Map<Bundle, Float>>();
+    /** key: command, value: the bundles whose latest version offers it */
+    private final SortedMap<String, Set<Bundle>> commands = new TreeMap<String, Set<Bundle>>();
+    /** key: bundle, value: its searchable text in lower case */
+    private final Map<Bundle, String> texts = new HashMap<Bundle, String>();
+
+    /**
+     * Constructor
+     *
+     * @param bundles the bundles to index (required, each with at least one
+     *            version)
+     */
+    BundleIndex(final Collection<Bundle> bundles) {
+        Assert.notNull(bundles, "Bundles required");
+        this.bundles = new ArrayList<Bundle>(bundles);
+        for (Bundle bundle : this.bundles) {
+            BundleVersion latest = bundle.getLatestVersion();
+            texts.put(bundle, (bundle.getSymbolicName() + ";" + latest
+                    .getSummary()).toLowerCase());
+            addWords(bundle, bundle.getSymbolicName(), SYMBOLIC_NAME_WEIGHT);
+            addWords(bundle, latest.getPresentationName(),
+                    PRESENTATION_NAME_WEIGHT);
+            addWords(bundle, latest.getDescription(), DESCRIPTION_WEIGHT);
+            addWords(bundle, latest.getPgpDescriptions(), DESCRIPTION_WEIGHT);
+            for (Entry<String, String> command : latest.getCommands()
+                    .entrySet()) {
+                addWords(bundle, command.getKey(), COMMAND_WEIGHT);
+                addWords(bundle, command.getValue(), DESCRIPTION_WEIGHT);
+                Set<Bundle> offering = commands.get(command.getKey());
+                if (offering == null) {
+                    offering = new HashSet<Bundle>();
+                    commands.put(command.getKey(), offering);
+                }
+                offering.add(bundle);
+            }
+        }
+    }
+
+    /**
+     * Finds the bundles matching all of the given search terms. The term "*"
+     * matches every bundle.
+     *
+     * @param searchTerms a comma separated list of search terms (required)
+     * @return key: each matching bundle, value: its relevance to the search
+     *         terms, being greater than zero (never <code>null</code>)
+     */
+    Map<Bundle, Float> search(final String searchTerms) {
+        Assert.notNull(searchTerms, "Search terms required");
+        Map<Bundle, Float> matches = null;
+        for (String term : searchTerms.split(",")) {
+            term = term.trim().toLowerCase();
+            if (ANY.equals(term)) {
+                continue;
+            }
+            matches = intersect(matches, findTerm(term));
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        return matches == null ? getAll() : matches;
+    }
+
+    /**
+     * Finds the bundles offering the given command, a command starting with
+     * it, or a command it starts with.
+     *
+     * @param command the command (required)
+     * @return a new set (never <code>null</code>)
+     */
+    Set<Bundle> findByCommand(final String command) {
+        Assert.notNull(command, "Command required");
+        Set<Bundle> offering = new HashSet<Bundle>();
+        for (Set<Bundle> bundles : commands.subMap(command,
+                command + Character.MAX_VALUE).values()) {
+            offering.addAll(bundles);
+        }
+        for (int i = 0; i < command.length(); i++) {
+            Set<Bundle> bundles = commands.get(command.substring(0, i));
+            if (bundles != null) {
+                offering.addAll(bundles);
+            }
+        }
+        return offering;
+    }
+
+    private Map<Bundle, Float> findTerm(final String term) {
+        Map<Bundle, Float> matches = findIndexedTerm(term);
+        if (matches.isEmpty()) {
+            for (Entry<Bundle, String> text : texts.entrySet()) {
+                if (text.getValue().contains(term)) {
+                    matches.put(text.getKey(), SUBSTRING_MATCH_WEIGHT);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private Map<Bundle, Float> findIndexedTerm(final String term) {
+        List<String> termWords = getWords(term, false);
+        Map<Bundle, Float> matches = null;
+        for (String termWord : termWords) {
+            matches = intersect(matches, findWord(termWord));
+            if (matches.isEmpty()) {
+                return matches;
+            }
+        }
+        if (termWords.size() != 1) {
+            // Words alone don't capture the term, so match it verbatim
+            if (matches == null) {
+                matches = getAll();
+            }
+            for (Iterator<Bundle> iter = matches.keySet().iterator(); iter
+                    .hasNext();) {
+                if (!texts.get(iter.next()).contains(term)) {
+                    iter.remove();
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the bundles containing a word starting with the given term word
+     * or equal to its singular form; the term word itself isn't reduced, as
+     * it may be the start of a longer word (e.g. "dies" for "diesel").
+     */
+    private Map<Bundle, Float> findWord(final String termWord) {
+        Map<Bundle, Float> matches = new HashMap<Bundle, Float>();
+        for (Entry<String, Map<Bundle, Float>> entry : words.subMap(termWord,
+                termWord + Character.MAX_VALUE).entrySet()) {
+            addMatches(matches, entry.getValue(),
+                    entry.getKey().equals(termWord) ? 1 : PREFIX_MATCH_FACTOR);
+        }
+        String stemmed = stem(termWord);
+        if (!stemmed.startsWith(termWord) && words.containsKey(stemmed)) {
+            addMatches(matches, words.get(stemmed), 1);
+        }
+        return matches;
+    }
+
+    private void addMatches(final Map<Bundle, Float> matches,
+            final Map<Bundle, Float> postings, final float factor) {
+        float idf = (float) Math.log(1 + (double) bundles.size()
+                / postings.size());
+        for (Entry<Bundle, Float> posting : postings.entrySet()) {
+            // Only count the best of the words matched
+            float score = posting.getValue() * idf * factor;
+            Float previous = matches.get(posting.getKey());
+            if (previous == null || previous < score) {
+                matches.put(posting.getKey(), score);
+            }
+        }
+    }
+
+    /**
+     * Returns the bundles in both of the given maps, with the sum of their
+     * scores; the first map may be <code>null</code> to stand for all bundles.
+     */
+    private Map<Bundle, Float> intersect(final Map<Bundle, Float> matches,
+            final Map<Bundle, Float> moreMatches) {
+        if (matches == null) {
+            return moreMatches;
+        }
+        Map<Bundle, Float> result = new HashMap<Bundle, Float>();
+        for (Entry<Bundle, Float> entry : matches.entrySet()) {
+            Float score = moreMatches.get(entry.getKey());
+            if (score != null) {
+                result.put(entry.getKey(), entry.getValue() + score);
+            }
+        }
+        return result;
+    }
+
+    private Map<Bundle, Float> getAll() {
+        Map<Bundle, Float> all = new HashMap<Bundle, Float>();
+        for (Bundle bundle : bundles) {
+            all.put(bundle, 1f);
+        }
+        return all;
+    }
+
+    private void addWords(final Bundle bundle, final String text,
+            final float weight) {
+        for (String word : getWords(text)) {
+            Map<Bundle, Float> postings = words.get(word);
+            if (postings == null) {
+                postings = new HashMap<Bundle, Float>();
+                words.put(word, postings);
+            }
+            Float previous = postings.get(bundle);
+            postings.put(bundle, previous == null ? weight : previous + weight);
+        }
+    }
+
+    /**
+     * Splits the given text into lower case words in their singular form.
+     *
+     * @param text the text to split (can be <code>null</code>)
+     * @return a non-<code>null</code> list
+     */
+    static List<String> getWords(final String text) {
+        return getWords(text, true);
+    }
+
+    private static List<String> getWords(final String text,
+            final boolean singular) {
+        List<String> result = new ArrayList<String>();
+        if (text == null) {
+            return result;
+        }
+        String lowerCase = text.toLowerCase();
+        int start = -1;
+        for (int i = 0; i <= lowerCase.length(); i++) {
+            if (i < lowerCase.length()
+                    && Character.isLetterOrDigit(lowerCase.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            }
+            else if (start >= 0) {
+                String word = lowerCase.substring(start, i);
+                result.add(singular ? stem(word) : word);
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reduces an English word to its singular form, using the rules of the
+     * "S" stemmer.
+     */
+    private static String stem(final String word) {
+        int length = word.length();
+        if (length > 3 && word.endsWith("ies") && !word.endsWith("eies")
+                && !word.endsWith("aies")) {
+            return word.substring(0, length - 3) + "y";
+        }
+        if (length > 3 && word.endsWith("es") && !word.endsWith("aes")
+                && !word.endsWith("ees") && !word.endsWith("oes")) {
+            return word.substring(0, length - 1);
+        }
+        if (length > 2 && word.endsWith("s") && !word.endsWith("us")
+                && !word.endsWith("ss")) {
+            return word.substring(0, length - 1);
+        }
+        return word;
+    }
+}
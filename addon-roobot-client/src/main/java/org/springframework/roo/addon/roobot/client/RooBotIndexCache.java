@@ -0,0 +1,227 @@
+package org.springframework.roo.addon.roobot.client;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.ZipInputStream;
+
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.roo.support.util.IOUtils;
+import org.springframework.roo.url.stream.ConditionalUrlInputStreamService;
+import org.springframework.roo.url.stream.UrlInputStreamService;
+
+/**
+ * Keeps the most recently downloaded RooBot index on disk, along with the
+ * validators (such as the entity tag) needed to ask the server whether it has
+ * changed since.
+ * <p>
+ * The index is stored unzipped but otherwise as downloaded, as the add-on
+ * versions it describes are only filtered once the running Roo version is
+ * known. Each index is stored against the URL it was downloaded from, so that
+ * changing the <code>roobot.url</code> property invalidates the cache.
+ * <p>
+ * Thread safe.
+ *
+ * @since 1.2.1
+ */
+class RooBotIndexCache {
+
+    // Constants
+    private static final String URL_KEY = "url";
+    private static final String VALIDATOR_PREFIX = "validator.";
+
+    // Fields
+    private final File indexFile;
+    private final File propertiesFile;
+
+    /**
+     * Constructor
+     *
+     * @param indexFile the file in which to store the index (required); its
+     *            URL and validators are stored alongside, in a file of the
+     *            same name plus ".properties"
+     */
+    RooBotIndexCache(final File indexFile) {
+        Assert.notNull(indexFile, "Index file required");
+        this.indexFile = indexFile;
+        propertiesFile = new File(indexFile.getPath() + ".properties");
+    }
+
+    /**
+     * Returns the cached index, if it was downloaded from the given URL.
+     *
+     * @param url the URL of the index (required)
+     * @return the unzipped index, or <code>null</code> if none is cached
+     */
+    synchronized byte[] getIndex(final String url) {
+        if (!url.equals(loadProperties().getProperty(URL_KEY))
+                || !indexFile.isFile()) {
+            return null;
+        }
+        try {
+            return FileCopyUtils.copyToByteArray(indexFile);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the validators of the cached index, if it was downloaded from
+     * the given URL.
+     *
+     * @param url the URL of the index (required)
+     * @return a new modifiable map (never <code>null</code>, but empty if no
+     *         index is cached for that URL)
+     */
+    synchronized Map<String, String> getValidators(final String url) {
+        Map<String, String> validators = new HashMap<String, String>();
+        Properties properties = loadProperties();
+        if (url.equals(properties.getProperty(URL_KEY))) {
+            for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+                String key = (String) entry.getKey();
+                if (key.startsWith(VALIDATOR_PREFIX)) {
+                    validators.put(key.substring(VALIDATOR_PREFIX.length()),
+                            (String) entry.getValue());
+                }
+            }
+        }
+        return validators;
+    }
+
+    /**
+     * Caches the given index, replacing any previously cached one. Failures
+     * are ignored, as the cache is merely an optimisation.
+     *
+     * @param url the URL the index was downloaded from (required)
+     * @param index the unzipped index (required)
+     * @param validators the validators returned with the index (required, can
+     *            be empty)
+     */
+    synchronized void put(final String url, final byte[] index,
+            final Map<String, String> validators) {
+        Properties properties = new Properties();
+        properties.setProperty(URL_KEY, url);
+        for (Map.Entry<String, String> entry : validators.entrySet()) {
+            properties.setProperty(VALIDATOR_PREFIX + entry.getKey(),
+                    entry.getValue());
+        }
+
+        // Forget the old index first, so that it can't be served with the
+        // new validators if writing fails part way through
+        propertiesFile.delete();
+        OutputStream outputStream = null;
+        boolean stored = false;
+        try {
+            FileCopyUtils.copy(index, indexFile);
+            outputStream = new FileOutputStream(propertiesFile);
+            properties.store(outputStream, "RooBot index cache");
+            stored = true;
+        }
+        catch (IOException ignored) {
+        }
+        finally {
+            IOUtils.closeQuietly(outputStream);
+            if (!stored) {
+                propertiesFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Downloads the index from the given URL, unless it is known not to have
+     * changed since the given validators were obtained. HTTP URLs are opened
+     * using the given service, conditionally if it supports that. For other
+     * protocols (e.g. a <code>file:</code> URL standing in for the server
+     * during local testing), the resource's modification date serves as the
+     * validator.
+     *
+     * @param url the URL of the zipped index (required)
+     * @param validators those of the index already held (required, can be
+     *            empty); replaced by those of the index if it's downloaded
+     * @param urlInputStreamService the service with which to open HTTP URLs
+     *            (required)
+     * @return the unzipped index, or <code>null</code> if it hasn't changed
+     * @throws IOException if the index can't be downloaded
+     */
+    byte[] fetchIndex(final String url, final Map<String, String> validators,
+            final UrlInputStreamService urlInputStreamService)
+            throws IOException {
+        Assert.notNull(validators, "Validators required");
+        InputStream inputStream = null;
+        try {
+            if (url.startsWith("http://")) {
+                URL httpUrl = new URL(url);
+                if (urlInputStreamService instanceof ConditionalUrlInputStreamService) {
+                    inputStream = ((ConditionalUrlInputStreamService) urlInputStreamService)
+                            .openConnectionIfModified(httpUrl, validators);
+                    if (inputStream == null) {
+                        // Not modified
+                        return null;
+                    }
+                }
+                else {
+                    validators.clear();
+                    inputStream = urlInputStreamService.openConnection(httpUrl);
+                    if (inputStream == null) {
+                        throw new IOException("Could not connect to " + url);
+                    }
+                }
+            }
+            else {
+                URLConnection connection = new URL(url).openConnection();
+                String lastModified = connection.getLastModified() > 0 ? String
+                        .valueOf(connection.getLastModified()) : null;
+                if (lastModified != null
+                        && lastModified.equals(validators
+                                .get(ConditionalUrlInputStreamService.LAST_MODIFIED))) {
+                    return null;
+                }
+                validators.clear();
+                if (lastModified != null) {
+                    validators.put(
+                            ConditionalUrlInputStreamService.LAST_MODIFIED,
+                            lastModified);
+                }
+                inputStream = connection.getInputStream();
+            }
+            ZipInputStream zip = new ZipInputStream(inputStream);
+            zip.getNextEntry();
+            return FileCopyUtils.copyToByteArray(zip);
+        }
+        finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    private Properties loadProperties() {
+        Properties properties = new Properties();
+        if (propertiesFile.isFile()) {
+            InputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream(propertiesFile);
+                properties.load(inputStream);
+            }
+            catch (IOException e) {
+                properties.clear();
+            }
+            catch (IllegalArgumentException e) {
+                // Malformed escape sequence
+                properties.clear();
+            }
+            finally {
+                IOUtils.closeQuietly(inputStream);
+            }
+        }
+        return properties;
+    }
+}
@@ -131,10 +131,11 @@ public class Bundle {
     public static List<Bundle> orderBySearchRelevance(final List<Bundle> bundles) {
         Collections.sort(bundles, new Comparator<Bundle>() {
             public int compare(final Bundle o1, final Bundle o2) {
+                // Most relevant first
                 if (o1.getSearchRelevance() < o2.getSearchRelevance())
-                    return -1;
-                else if (o1.getSearchRelevance() > o2.getSearchRelevance())
                     return 1;
+                else if (o1.getSearchRelevance() > o2.getSearchRelevance())
+                    return -1;
                 // Order by ranking if search relevance is equal
                 else {
                     if (o1.getRanking() == o2.getRanking())
@@ -0,0 +1,111 @@
+package org.springframework.roo.addon.roobot.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.addon.roobot.client.model.Bundle;
+import org.springframework.roo.addon.roobot.client.model.BundleVersion;
+import org.springframework.roo.addon.roobot.client.model.Comment;
+
+/**
+ * Unit test of {@link BundleIndex}
+ *
+ * @since 1.2.1
+ */
+public class BundleIndexTest {
+
+    // Fixture
+    private Bundle postgres;
+    private Bundle mysql;
+    private Bundle pdf;
+    private BundleIndex bundleIndex;
+
+    @Before
+    public void setUp() {
+        postgres = getBundle("org.example.jdbc.postgres", "PostgreSQL driver",
+                "#jdbcdriver driverclass:org.postgresql.Driver",
+                Collections.<String, String> emptyMap());
+        mysql = getBundle("org.example.jdbc.mysql", "MySQL driver",
+                "#jdbcdriver driverclass:com.mysql.jdbc.Driver",
+                Collections.<String, String> emptyMap());
+        Map<String, String> commands = new HashMap<String, String>();
+        commands.put("pdf setup", "Adds PDF views");
+        pdf = getBundle("org.example.pdf", "PDF views",
+                "Renders entities as documents", commands);
+        bundleIndex = new BundleIndex(Arrays.asList(postgres, mysql, pdf));
+    }
+
+    private Bundle getBundle(final String bsn, final String name,
+            final String description, final Map<String, String> commands) {
+        Bundle bundle = new Bundle(bsn, 0.5f, new ArrayList<Comment>());
+        bundle.addVersion(new BundleVersion("httppgp://example.org/" + bsn,
+                "http://example.org/repository.xml", "1.0.0", name, 1000L,
+                description, "", "", "1.2", commands));
+        return bundle;
+    }
+
+    @Test
+    public void testSearchMatchesAllTerms() {
+        assertEquals(new HashSet<Bundle>(Arrays.asList(postgres)), bundleIndex
+                .search("#jdbcdriver,driverclass:org.postgresql.Driver")
+                .keySet());
+        assertEquals(2, bundleIndex.search("#jdbcdriver").size());
+        assertEquals(3, bundleIndex.search("*").size());
+        assertTrue(bundleIndex.search("jdbc,pdf").isEmpty());
+    }
+
+    @Test
+    public void testSearchMatchesPrefixesAndPlurals() {
+        assertEquals(Collections.singleton(pdf), bundleIndex.search("view")
+                .keySet());
+        assertEquals(Collections.singleton(pdf),
+                bundleIndex.search("document").keySet());
+        assertEquals(Collections.singleton(mysql), bundleIndex.search("MYS")
+                .keySet());
+    }
+
+    @Test
+    public void testSearchFallsBackToSubstrings() {
+        assertEquals(new HashSet<Bundle>(Arrays.asList(postgres, mysql)),
+                bundleIndex.search("sql").keySet());
+        assertTrue(bundleIndex.search("xyz").isEmpty());
+    }
+
+    @Test
+    public void testSearchDoesNotReduceQueryPrefixes() {
+        Bundle diesel = getBundle("org.example.diesel", "Diesel engines",
+                "Models engines", Collections.<String, String> emptyMap());
+        bundleIndex = new BundleIndex(Arrays.asList(pdf, diesel));
+        assertEquals(Collections.singleton(diesel), bundleIndex.search("dies")
+                .keySet());
+        assertEquals(Collections.singleton(pdf), bundleIndex.search("views")
+                .keySet());
+    }
+
+    @Test
+    public void testSearchRanksNamesAboveDescriptions() {
+        Bundle entities = getBundle("org.example.entities", "Entities",
+                "Adds PDF support", Collections.<String, String> emptyMap());
+        bundleIndex = new BundleIndex(Arrays.asList(pdf, entities));
+        Map<Bundle, Float> matches = bundleIndex.search("pdf");
+        assertTrue(matches.get(pdf) > matches.get(entities));
+    }
+
+    @Test
+    public void testFindByCommand() {
+        assertEquals(Collections.singleton(pdf),
+                bundleIndex.findByCommand("pdf"));
+        assertEquals(Collections.singleton(pdf),
+                bundleIndex.findByCommand("pdf setup --type A4"));
+        assertTrue(bundleIndex.findByCommand("jms").isEmpty());
+    }
+}
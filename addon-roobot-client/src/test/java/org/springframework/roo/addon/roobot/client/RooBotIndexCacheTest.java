@@ -0,0 +1,187 @@
+package org.springframework.roo.addon.roobot.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.roo.support.util.FileUtils;
+import org.springframework.roo.url.stream.ConditionalUrlInputStreamService;
+import org.springframework.roo.url.stream.UrlInputStreamService;
+
+/**
+ * Unit test of {@link RooBotIndexCache}
+ *
+ * @since 1.2.1
+ */
+public class RooBotIndexCacheTest {
+
+    // Constants
+    private static final String HTTP_URL = "http://example.org/roobot.xml.zip";
+    private static final byte[] INDEX = "<roobot/>".getBytes();
+
+    // Fixture
+    private File directory;
+    private File indexFile;
+    private RooBotIndexCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("RooBotIndexCacheTest", "");
+        directory.delete();
+        directory.mkdir();
+        indexFile = new File(directory, "roobot.xml");
+        cache = new RooBotIndexCache(indexFile);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively(directory);
+    }
+
+    private byte[] zip(final byte[] contents) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry("roobot.xml"));
+        zip.write(contents);
+        zip.close();
+        return bytes.toByteArray();
+    }
+
+    private File getPropertiesFile() {
+        return new File(indexFile.getPath() + ".properties");
+    }
+
+    @Test
+    public void testCacheHit() {
+        final Map<String, String> validators = Collections.singletonMap(
+                ConditionalUrlInputStreamService.ETAG, "\"1\"");
+        cache.put(HTTP_URL, INDEX, validators);
+
+        assertArrayEquals(INDEX, cache.getIndex(HTTP_URL));
+        assertEquals(validators, cache.getValidators(HTTP_URL));
+        assertNull(cache.getIndex("http://example.org/other.xml.zip"));
+        assertTrue(cache.getValidators("http://example.org/other.xml.zip")
+                .isEmpty());
+    }
+
+    @Test
+    public void testMissingPropertiesFileInvalidatesIndex() {
+        cache.put(HTTP_URL, INDEX, Collections.<String, String> emptyMap());
+        assertTrue(getPropertiesFile().delete());
+
+        assertNull(cache.getIndex(HTTP_URL));
+        assertTrue(cache.getValidators(HTTP_URL).isEmpty());
+    }
+
+    @Test
+    public void testCorruptPropertiesFileInvalidatesIndex() throws IOException {
+        cache.put(HTTP_URL, INDEX, Collections.<String, String> emptyMap());
+        FileCopyUtils.copy("url=\\uZZZZ".getBytes(), getPropertiesFile());
+
+        assertNull(cache.getIndex(HTTP_URL));
+        assertTrue(cache.getValidators(HTTP_URL).isEmpty());
+    }
+
+    @Test
+    public void testFetchFileUrlOnlyIfModified() throws IOException {
+        final File zipFile = new File(directory, "roobot.xml.zip");
+        FileCopyUtils.copy(zip(INDEX), zipFile);
+        zipFile.setLastModified(1000000000000L);
+        final String url = zipFile.toURI().toURL().toString();
+        final Map<String, String> validators = new HashMap<String, String>();
+
+        // Initial download
+        assertArrayEquals(INDEX, cache.fetchIndex(url, validators, null));
+        assertEquals(String.valueOf(zipFile.lastModified()),
+                validators.get(ConditionalUrlInputStreamService.LAST_MODIFIED));
+
+        // Not modified
+        assertNull(cache.fetchIndex(url, validators, null));
+
+        // Modified
+        final byte[] newIndex = "<roobot><bundles/></roobot>".getBytes();
+        FileCopyUtils.copy(zip(newIndex), zipFile);
+        zipFile.setLastModified(1000000002000L);
+        assertArrayEquals(newIndex, cache.fetchIndex(url, validators, null));
+        assertEquals(String.valueOf(zipFile.lastModified()),
+                validators.get(ConditionalUrlInputStreamService.LAST_MODIFIED));
+    }
+
+    @Test
+    public void testFetchHttpUrlOnlyIfModified() throws IOException {
+        final StubUrlInputStreamService service = new StubUrlInputStreamService();
+        service.content = zip(INDEX);
+        service.etag = "\"1\"";
+        final Map<String, String> validators = new HashMap<String, String>();
+
+        // Initial download
+        assertArrayEquals(INDEX,
+                cache.fetchIndex(HTTP_URL, validators, service));
+        assertTrue(service.lastValidators.isEmpty());
+        assertEquals("\"1\"",
+                validators.get(ConditionalUrlInputStreamService.ETAG));
+
+        // Not modified
+        assertNull(cache.fetchIndex(HTTP_URL, validators, service));
+        assertEquals("\"1\"",
+                service.lastValidators
+                        .get(ConditionalUrlInputStreamService.ETAG));
+
+        // Modified
+        final byte[] newIndex = "<roobot><bundles/></roobot>".getBytes();
+        service.content = zip(newIndex);
+        service.etag = "\"2\"";
+        assertArrayEquals(newIndex,
+                cache.fetchIndex(HTTP_URL, validators, service));
+        assertEquals("\"2\"",
+                validators.get(ConditionalUrlInputStreamService.ETAG));
+    }
+
+    /**
+     * Serves a single resource, honouring its entity tag
+     */
+    private static class StubUrlInputStreamService implements
+            UrlInputStreamService, ConditionalUrlInputStreamService {
+
+        // Fields
+        byte[] content;
+        String etag;
+        Map<String, String> lastValidators;
+
+        public InputStream openConnection(final URL httpUrl) {
+            return new ByteArrayInputStream(content);
+        }
+
+        public InputStream openConnectionIfModified(final URL httpUrl,
+                final Map<String, String> validators) {
+            lastValidators = new HashMap<String, String>(validators);
+            if (etag.equals(validators.get(ETAG))) {
+                return null;
+            }
+            validators.clear();
+            validators.put(ETAG, etag);
+            return openConnection(httpUrl);
+        }
+
+        public String getUrlCannotBeOpenedMessage(final URL httpUrl) {
+            return null;
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package org.springframework.roo.addon.web.mvc.controller.details;
 
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.CLEAR_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.COUNT_ALL_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ALL_METHOD;
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ENTRIES_AFTER_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ENTRIES_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_METHOD;
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.FLUSH_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.IDENTIFIER_ACCESSOR_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.IDENTIFIER_TYPE;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.MERGE_METHOD;
@@ -585,8 +588,23 @@ public class WebMetadataServiceImpl implements WebMetadataService {
         additions.put(FIND_ALL_METHOD, persistenceDetails.getFindAllMethod());
         additions.put(FIND_ENTRIES_METHOD,
                 persistenceDetails.getFindEntriesMethod());
+        additions.put(FIND_ENTRIES_AFTER_METHOD, layerService
+                .getMemberTypeAdditions(metadataId,
+                        FIND_ENTRIES_AFTER_METHOD.name(), domainType,
+                        persistenceDetails.getIdentifierType(),
+                        LAYER_POSITION, new MethodParameter(persistenceDetails
+                                .getIdentifierType(), "after"),
+                        MAX_RESULTS_PARAMETER));
         additions.put(MERGE_METHOD, persistenceDetails.getMergeMethod());
         additions.put(PERSIST_METHOD, persistenceDetails.getPersistMethod());
+        additions.put(FLUSH_METHOD, layerService.getMemberTypeAdditions(
+                metadataId, FLUSH_METHOD.name(), domainType, persistenceDetails
+                        .getIdentifierType(), LAYER_POSITION,
+                new MethodParameter(domainType, JavaSymbolName
+                        .getReservedWordSafeName(domainType))));
+        additions.put(CLEAR_METHOD, layerService.getMemberTypeAdditions(
+                metadataId, CLEAR_METHOD.name(), domainType,
+                persistenceDetails.getIdentifierType(), LAYER_POSITION));
         return additions;
     }
 }
@@ -80,6 +80,22 @@ public @interface RooWebJson {
      */
     String listJsonMethod() default LIST_JSON;
 
+    /**
+     * Makes the listJson() method write the objects straight to the response
+     * as a JSON array, fetching them in chunks of this many objects in order
+     * of their identifier and clearing the persistence context after each
+     * chunk, so that its memory use doesn't grow with the number of objects.
+     * Requires the JSON object to provide "find entries after" and "clear"
+     * methods, e.g. an active record entity whose "findEntriesAfterMethod" is
+     * set, and to have a non-primitive identifier; otherwise a warning is
+     * logged and the whole array is built in memory. Repository and service
+     * layers don't offer a "find entries after" method.
+     * 
+     * @return the number of objects to fetch at a time, or zero to build the
+     *         whole array in memory (defaults to zero; optional)
+     */
+    int listJsonChunkSize() default 0;
+
     /**
      * Creates a createFromJson() method which finds all objects. Set methodName
      * to "" to prevent its generation.
@@ -98,6 +114,23 @@ public @interface RooWebJson {
      */
     String createFromJsonArrayMethod() default CREATE_FROM_JSON_ARRAY;
 
+    /**
+     * Makes the createFromJsonArray() method persist all the objects in one
+     * transaction, flushing them to the database and clearing the persistence
+     * context after each batch of this many objects. This saves the JPA
+     * provider from checking ever more managed objects at each flush and
+     * allows it to batch the inserts. It doesn't bound the memory used, as the
+     * whole array is still deserialized into a collection before any object
+     * is persisted. Requires the JSON object to provide "flush" and "clear"
+     * methods, as active record entities do; otherwise a warning is logged
+     * and each object is persisted in its own transaction.
+     * 
+     * @return the number of objects to persist between flushes, or zero to
+     *         persist each object in its own transaction (defaults to zero;
+     *         optional)
+     */
+    int createFromJsonArrayBatchSize() default 0;
+
     /**
      * Creates a updateFromJson() method which finds all objects. Set methodName
      * to "" to prevent its generation.
@@ -28,8 +28,10 @@ public class WebJsonAnnotationValues extends AbstractAnnotationValues {
     @AutoPopulate JavaType jsonObject;
     @AutoPopulate String showJsonMethod = SHOW_JSON;
     @AutoPopulate String listJsonMethod = LIST_JSON;
+    @AutoPopulate int listJsonChunkSize;
     @AutoPopulate String createFromJsonMethod = CREATE_FROM_JSON;
     @AutoPopulate String createFromJsonArrayMethod = CREATE_FROM_JSON_ARRAY;
+    @AutoPopulate int createFromJsonArrayBatchSize;
     @AutoPopulate String updateFromJsonMethod = UPDATE_FROM_JSON;
     @AutoPopulate String updateFromJsonArrayMethod = UPDATE_FROM_JSON_ARRAY;
     @AutoPopulate String deleteFromJsonMethod = DELETE_FROM_JSON_ARRAY;
@@ -58,6 +60,10 @@ public class WebJsonAnnotationValues extends AbstractAnnotationValues {
         return listJsonMethod;
     }
 
+    public int getListJsonChunkSize() {
+        return listJsonChunkSize;
+    }
+
     public String getCreateFromJsonMethod() {
         return createFromJsonMethod;
     }
@@ -66,6 +72,10 @@ public class WebJsonAnnotationValues extends AbstractAnnotationValues {
         return createFromJsonArrayMethod;
     }
 
+    public int getCreateFromJsonArrayBatchSize() {
+        return createFromJsonArrayBatchSize;
+    }
+
     public String getUpdateFromJsonMethod() {
         return updateFromJsonMethod;
     }
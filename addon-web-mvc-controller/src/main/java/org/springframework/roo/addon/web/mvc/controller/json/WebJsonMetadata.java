@@ -1,8 +1,11 @@
 package org.springframework.roo.addon.web.mvc.controller.json;
 
 import static java.lang.reflect.Modifier.PUBLIC;
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.CLEAR_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ALL_METHOD;
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ENTRIES_AFTER_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_METHOD;
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.FLUSH_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.MERGE_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.PERSIST_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.REMOVE_METHOD;
@@ -18,12 +21,14 @@ import static org.springframework.roo.model.SpringJavaType.REQUEST_METHOD;
 import static org.springframework.roo.model.SpringJavaType.REQUEST_PARAM;
 import static org.springframework.roo.model.SpringJavaType.RESPONSE_BODY;
 import static org.springframework.roo.model.SpringJavaType.RESPONSE_ENTITY;
+import static org.springframework.roo.model.SpringJavaType.TRANSACTIONAL;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Logger;
 
 import org.springframework.roo.addon.json.JsonMetadata;
 import org.springframework.roo.addon.web.mvc.controller.details.FinderMetadataDetails;
@@ -33,6 +38,7 @@ import org.springframework.roo.classpath.PhysicalTypeMetadata;
 import org.springframework.roo.classpath.customdata.tagkeys.MethodMetadataCustomDataKey;
 import org.springframework.roo.classpath.details.FieldMetadata;
 import org.springframework.roo.classpath.details.MemberFindingUtils;
+import org.springframework.roo.classpath.details.MethodMetadata;
 import org.springframework.roo.classpath.details.MethodMetadataBuilder;
 import org.springframework.roo.classpath.details.annotations.AnnotatedJavaType;
 import org.springframework.roo.classpath.details.annotations.AnnotationAttributeValue;
@@ -50,6 +56,7 @@ import org.springframework.roo.model.EnumDetails;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
 import org.springframework.roo.project.LogicalPath;
+import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.style.ToStringCreator;
 import org.springframework.roo.support.util.Assert;
 import org.springframework.roo.support.util.StringUtils;
@@ -64,10 +71,17 @@ public class WebJsonMetadata extends
         AbstractItdTypeDetailsProvidingMetadataItem {
 
     // Constants
+    private static final Logger LOGGER = HandlerUtils
+            .getLogger(WebJsonMetadata.class);
     private static final JavaType RESPONSE_ENTITY_STRING = new JavaType(
             RESPONSE_ENTITY.getFullyQualifiedTypeName(), 0, DataType.TYPE,
             null, Arrays.asList(JavaType.STRING));
     private static final String CONTENT_TYPE = "application/json";
+    private static final JavaType HTTP_SERVLET_RESPONSE = new JavaType(
+            "javax.servlet.http.HttpServletResponse");
+    private static final JavaType IO_EXCEPTION = new JavaType(
+            "java.io.IOException");
+    private static final JavaType WRITER = new JavaType("java.io.Writer");
     private static final String PROVIDES_TYPE_STRING = WebJsonMetadata.class
             .getName();
     private static final String PROVIDES_TYPE = MetadataIdentificationUtils
@@ -89,6 +103,7 @@ public class WebJsonMetadata extends
      * @param annotationValues
      * @param persistenceAdditions
      * @param identifierField
+     * @param identifierAccessor can be <code>null</code>
      * @param plural
      * @param finderDetails (required)
      * @param jsonMetadata
@@ -101,7 +116,8 @@ public class WebJsonMetadata extends
             final PhysicalTypeMetadata governorPhysicalTypeMetadata,
             final WebJsonAnnotationValues annotationValues,
             final Map<MethodMetadataCustomDataKey, MemberTypeAdditions> persistenceAdditions,
-            final FieldMetadata identifierField, final String plural,
+            final FieldMetadata identifierField,
+            final MethodMetadata identifierAccessor, final String plural,
             final Set<FinderMetadataDetails> finderDetails,
             final JsonMetadata jsonMetadata,
             final boolean introduceLayerComponents) {
@@ -130,12 +146,34 @@ public class WebJsonMetadata extends
 
         MemberTypeAdditions findAllMethod = persistenceAdditions
                 .get(FIND_ALL_METHOD);
-        builder.addMethod(getJsonListMethod(findAllMethod));
+        MemberTypeAdditions findEntriesAfterMethod = persistenceAdditions
+                .get(FIND_ENTRIES_AFTER_METHOD);
+        MemberTypeAdditions clearMethod = persistenceAdditions
+                .get(CLEAR_METHOD);
+        final String streamingProblem = getStreamingProblem(
+                findEntriesAfterMethod, clearMethod, identifierField,
+                identifierAccessor);
+        if (annotationValues.getListJsonChunkSize() > 0
+                && streamingProblem == null) {
+            builder.addMethod(getStreamingJsonListMethod(
+                    findEntriesAfterMethod, clearMethod, identifierField,
+                    identifierAccessor));
+        }
+        else {
+            if (annotationValues.getListJsonChunkSize() > 0) {
+                LOGGER.warning("Ignoring listJsonChunkSize in "
+                        + destination.getSimpleTypeName() + ", as "
+                        + jsonEnabledType.getSimpleTypeName() + " "
+                        + streamingProblem);
+            }
+            builder.addMethod(getJsonListMethod(findAllMethod));
+        }
 
         MemberTypeAdditions persistMethod = persistenceAdditions
                 .get(PERSIST_METHOD);
         builder.addMethod(getJsonCreateMethod(persistMethod));
-        builder.addMethod(getCreateFromJsonArrayMethod(persistMethod));
+        builder.addMethod(getCreateFromJsonArrayMethod(persistMethod,
+                persistenceAdditions.get(FLUSH_METHOD), clearMethod));
 
         MemberTypeAdditions mergeMethod = persistenceAdditions
                 .get(MERGE_METHOD);
@@ -297,8 +335,18 @@ public class WebJsonMetadata extends
         return methodBuilder;
     }
 
+    /**
+     * Returns the method that creates objects from a JSON array
+     * 
+     * @param persistMethod
+     * @param flushMethod can be <code>null</code> if there is none
+     * @param clearMethod can be <code>null</code> if there is none
+     * @return <code>null</code> if no such method is to be introduced
+     */
     private MethodMetadataBuilder getCreateFromJsonArrayMethod(
-            final MemberTypeAdditions persistMethod) {
+            final MemberTypeAdditions persistMethod,
+            final MemberTypeAdditions flushMethod,
+            final MemberTypeAdditions clearMethod) {
         if (StringUtils
                 .isBlank(annotationValues.getCreateFromJsonArrayMethod())
                 || persistMethod == null) {
@@ -334,19 +382,33 @@ public class WebJsonMetadata extends
         List<AnnotationMetadataBuilder> annotations = new ArrayList<AnnotationMetadataBuilder>();
         annotations.add(requestMapping);
 
+        // Persist in batches if asked to and able to
+        final int batchSize = annotationValues
+                .getCreateFromJsonArrayBatchSize();
+        final boolean batched = batchSize > 0 && flushMethod != null
+                && clearMethod != null;
+        if (batched) {
+            annotations.add(new AnnotationMetadataBuilder(TRANSACTIONAL));
+        }
+        else if (batchSize > 0) {
+            LOGGER.warning("Ignoring createFromJsonArrayBatchSize in "
+                    + destination.getSimpleTypeName() + ", as "
+                    + jsonEnabledType.getSimpleTypeName()
+                    + " offers no flush and clear methods"
+                    + " (e.g. it is accessed via a repository or service)");
+        }
+
         InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
         String beanName = jsonEnabledType.getNameIncludingTypeParameters(false,
                 builder.getImportRegistrationResolver());
 
         List<JavaType> params = new ArrayList<JavaType>();
         params.add(jsonEnabledType);
-        bodyBuilder.appendFormalLine("for (" + beanName + " " + entityName
-                + ": " + beanName + "."
-                + fromJsonArrayMethodName.getSymbolName() + "(json)) {");
-        bodyBuilder.indent();
-        bodyBuilder.appendFormalLine(persistMethod.getMethodCall() + ";");
-        bodyBuilder.indentRemove();
-        bodyBuilder.appendFormalLine("}");
+        appendPersistJsonArray(bodyBuilder, beanName, entityName,
+                fromJsonArrayMethodName.getSymbolName(),
+                persistMethod.getMethodCall(), batched ? batchSize : 0,
+                batched ? flushMethod.getMethodCall() : null,
+                batched ? clearMethod.getMethodCall() : null);
         String httpHeadersShortName = getShortName(HTTP_HEADERS);
         bodyBuilder.appendFormalLine(httpHeadersShortName + " headers = new "
                 + httpHeadersShortName + "();");
@@ -360,6 +422,10 @@ public class WebJsonMetadata extends
 
         if (introduceLayerComponents) {
             persistMethod.copyAdditionsTo(builder, governorTypeDetails);
+            if (batched) {
+                flushMethod.copyAdditionsTo(builder, governorTypeDetails);
+                clearMethod.copyAdditionsTo(builder, governorTypeDetails);
+            }
         }
 
         MethodMetadataBuilder methodBuilder = new MethodMetadataBuilder(
@@ -369,6 +435,52 @@ public class WebJsonMetadata extends
         return methodBuilder;
     }
 
+    /**
+     * Appends the loop that persists each object of the "json" array,
+     * flushing and clearing the persistence context after each batch of them
+     * if a batch size is given.
+     * 
+     * @param bodyBuilder the builder to append to (required)
+     * @param beanName the name of the JSON object's type (required)
+     * @param entityName the name of the loop variable (required)
+     * @param fromJsonArrayMethodName the name of the JSON object's
+     *            fromJsonArray method (required)
+     * @param persistCall the call that persists the loop variable (required)
+     * @param batchSize the number of objects to persist between flushes, or
+     *            zero to not flush
+     * @param flushCall the call that flushes the loop variable (required if
+     *            batching)
+     * @param clearCall the call that clears the persistence context (required
+     *            if batching)
+     * @return the given builder
+     */
+    static InvocableMemberBodyBuilder appendPersistJsonArray(
+            final InvocableMemberBodyBuilder bodyBuilder,
+            final String beanName, final String entityName,
+            final String fromJsonArrayMethodName, final String persistCall,
+            final int batchSize, final String flushCall, final String clearCall) {
+        if (batchSize > 0) {
+            bodyBuilder.appendFormalLine("int count = 0;");
+        }
+        bodyBuilder.appendFormalLine("for (" + beanName + " " + entityName
+                + ": " + beanName + "." + fromJsonArrayMethodName
+                + "(json)) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine(persistCall + ";");
+        if (batchSize > 0) {
+            bodyBuilder.appendFormalLine("if (++count % " + batchSize
+                    + " == 0) {");
+            bodyBuilder.indent();
+            bodyBuilder.appendFormalLine(flushCall + ";");
+            bodyBuilder.appendFormalLine(clearCall + ";");
+            bodyBuilder.indentRemove();
+            bodyBuilder.appendFormalLine("}");
+        }
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        return bodyBuilder;
+    }
+
     private MethodMetadataBuilder getJsonListMethod(
             final MemberTypeAdditions findAllMethod) {
         if (StringUtils.isBlank(annotationValues.getListJsonMethod())
@@ -426,6 +538,164 @@ public class WebJsonMetadata extends
         return methodBuilder;
     }
 
+    /**
+     * Indicates why the JSON objects can't be listed in chunks, if they can't
+     * 
+     * @param findEntriesAfterMethod can be <code>null</code>
+     * @param clearMethod can be <code>null</code>
+     * @param identifierField can be <code>null</code>
+     * @param identifierAccessor can be <code>null</code>
+     * @return <code>null</code> if they can be
+     */
+    private String getStreamingProblem(
+            final MemberTypeAdditions findEntriesAfterMethod,
+            final MemberTypeAdditions clearMethod,
+            final FieldMetadata identifierField,
+            final MethodMetadata identifierAccessor) {
+        if (findEntriesAfterMethod == null) {
+            return "offers no \"find entries after\" method (e.g. set the findEntriesAfterMethod of @RooJpaActiveRecord)";
+        }
+        if (clearMethod == null) {
+            return "offers no clear method";
+        }
+        if (identifierField == null || identifierAccessor == null
+                || identifierField.getFieldType().isPrimitive()) {
+            return "has no accessible, non-primitive identifier";
+        }
+        return null;
+    }
+
+    /**
+     * Returns a "list" method that writes the JSON array to the response one
+     * chunk of objects at a time, instead of building it in memory.
+     * 
+     * @param findEntriesAfterMethod (required)
+     * @param clearMethod (required)
+     * @param identifierField (required)
+     * @param identifierAccessor (required)
+     * @return <code>null</code> if no such method is to be introduced
+     */
+    private MethodMetadataBuilder getStreamingJsonListMethod(
+            final MemberTypeAdditions findEntriesAfterMethod,
+            final MemberTypeAdditions clearMethod,
+            final FieldMetadata identifierField,
+            final MethodMetadata identifierAccessor) {
+        if (StringUtils.isBlank(annotationValues.getListJsonMethod())) {
+            return null;
+        }
+        JavaSymbolName methodName = new JavaSymbolName(
+                annotationValues.getListJsonMethod());
+        if (governorHasMethodWithSameName(methodName)) {
+            return null;
+        }
+
+        JavaSymbolName toJsonMethodName = jsonMetadata.getToJsonMethodName();
+
+        final List<AnnotatedJavaType> parameterTypes = Arrays
+                .asList(new AnnotatedJavaType(HTTP_SERVLET_RESPONSE));
+        final List<JavaSymbolName> parameterNames = Arrays
+                .asList(new JavaSymbolName("response"));
+
+        List<AnnotationAttributeValue<?>> requestMappingAttributes = new ArrayList<AnnotationAttributeValue<?>>();
+        requestMappingAttributes.add(new StringAttributeValue(
+                new JavaSymbolName("headers"), "Accept=application/json"));
+        AnnotationMetadataBuilder requestMapping = new AnnotationMetadataBuilder(
+                REQUEST_MAPPING, requestMappingAttributes);
+        List<AnnotationMetadataBuilder> annotations = new ArrayList<AnnotationMetadataBuilder>();
+        annotations.add(requestMapping);
+
+        InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
+        String beanName = getShortName(jsonEnabledType);
+        JavaType list = new JavaType(List.class.getName(), 0, DataType.TYPE,
+                null, Arrays.asList(jsonEnabledType));
+        bodyBuilder.appendFormalLine("response.setContentType(\""
+                + CONTENT_TYPE + "; charset=utf-8\");");
+        bodyBuilder.appendFormalLine(getShortName(WRITER)
+                + " out = response.getWriter();");
+        appendJsonArrayInChunks(bodyBuilder,
+                annotationValues.getListJsonChunkSize(),
+                getShortName(identifierField.getFieldType()),
+                getShortName(list), beanName, entityName,
+                findEntriesAfterMethod.getMethodCall(),
+                clearMethod.getMethodCall(),
+                toJsonMethodName.getSymbolName(), identifierAccessor
+                        .getMethodName().getSymbolName());
+
+        if (introduceLayerComponents) {
+            findEntriesAfterMethod.copyAdditionsTo(builder,
+                    governorTypeDetails);
+            clearMethod.copyAdditionsTo(builder, governorTypeDetails);
+        }
+
+        MethodMetadataBuilder methodBuilder = new MethodMetadataBuilder(
+                getId(), PUBLIC, methodName, JavaType.VOID_PRIMITIVE,
+                parameterTypes, parameterNames, bodyBuilder);
+        methodBuilder.setAnnotations(annotations);
+        methodBuilder.addThrowsType(IO_EXCEPTION);
+        return methodBuilder;
+    }
+
+    /**
+     * Appends the statements that write each chunk of JSON objects to the
+     * "out" writer as elements of one JSON array. The chunks are fetched in
+     * order of identifier, each after the last identifier written, until a
+     * chunk isn't full; as the identifier is only <code>null</code> before the
+     * first element, it also tells when to write a separating comma.
+     * 
+     * @param bodyBuilder the builder to append to (required)
+     * @param chunkSize the number of objects to fetch at a time
+     * @param identifierType the name of the identifier's type, which must
+     *            allow <code>null</code> (required)
+     * @param listType the name of the type of list returned by the finder
+     *            (required)
+     * @param beanName the name of the JSON object's type (required)
+     * @param entityName the name of the loop variable (required)
+     * @param findEntriesAfterCall the finder call, taking the "after" and
+     *            "sizeNo" variables (required)
+     * @param clearCall a static call that clears the persistence context, as
+     *            no JSON object is in scope where it's made (required)
+     * @param toJsonMethodName the name of the JSON object's toJson method
+     *            (required)
+     * @param identifierAccessorName the name of the JSON object's identifier
+     *            accessor (required)
+     * @return the given builder
+     */
+    static InvocableMemberBodyBuilder appendJsonArrayInChunks(
+            final InvocableMemberBodyBuilder bodyBuilder, final int chunkSize,
+            final String identifierType, final String listType,
+            final String beanName, final String entityName,
+            final String findEntriesAfterCall, final String clearCall,
+            final String toJsonMethodName, final String identifierAccessorName) {
+        bodyBuilder.appendFormalLine("final int sizeNo = " + chunkSize + ";");
+        bodyBuilder.appendFormalLine(identifierType + " after = null;");
+        bodyBuilder.appendFormalLine(listType + " chunk;");
+        bodyBuilder.appendFormalLine("out.write(\"[\");");
+        bodyBuilder.appendFormalLine("do {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("chunk = " + findEntriesAfterCall + ";");
+        bodyBuilder.appendFormalLine("for (" + beanName + " " + entityName
+                + " : chunk) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("if (after != null) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("out.write(\",\");");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine("out.write(" + entityName + "."
+                + toJsonMethodName + "());");
+        bodyBuilder.appendFormalLine("after = " + entityName + "."
+                + identifierAccessorName + "();");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        bodyBuilder.appendFormalLine(clearCall + ";");
+        bodyBuilder.appendFormalLine("out.flush();");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("} while (chunk.size() == sizeNo);");
+        bodyBuilder.appendFormalLine("out.write(\"]\");");
+        bodyBuilder.appendFormalLine("out.flush();");
+        return bodyBuilder;
+    }
+
     private MethodMetadataBuilder getJsonUpdateMethod(
             final MemberTypeAdditions mergeMethod) {
         if (StringUtils.isBlank(annotationValues.getUpdateFromJsonMethod())
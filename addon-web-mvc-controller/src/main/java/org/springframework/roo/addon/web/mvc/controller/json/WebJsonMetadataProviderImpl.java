@@ -214,6 +214,8 @@ public class WebJsonMetadataProviderImpl extends
                 governorPhysicalTypeMetadata, annotationValues,
                 persistenceAdditions,
                 javaTypePersistenceMetadataDetails.getIdentifierField(),
+                javaTypePersistenceMetadataDetails
+                        .getIdentifierAccessorMethod(),
                 pluralMetadata.getPlural(), finderDetails, jsonMetadata,
                 introduceLayerComponents(governorPhysicalTypeMetadata));
     }
@@ -115,4 +115,21 @@ public @interface RooWebScaffold {
      *         (defaults to "true"; optional)
      */
     boolean populateMethods() default true;
+
+    /**
+     * Indicates if the list() method should accept an "after" request
+     * parameter and, when given, list the entities whose identifiers follow
+     * that value in order ("keyset" paging) instead of skipping to a page
+     * number. This requires the form backing object to provide a "find entries
+     * after" method, e.g. via the "findEntriesAfterMethod" attribute of
+     * RooJpaActiveRecord; otherwise the list() method pages by number as usual.
+     * When a page was listed by identifier, the identifier that the next page
+     * starts after is put into the model as "nextAfter", which the pagination
+     * links then use. Unless the identifier is of a primitive type, the first
+     * page is also listed by identifier.
+     * 
+     * @return indicates if the list() method should page by identifier
+     *         (defaults to "false"; optional)
+     */
+    boolean keysetPaging() default false;
 }
@@ -21,6 +21,7 @@ public class WebScaffoldAnnotationValues extends AbstractAnnotationValues {
     @AutoPopulate boolean create = true;
     @AutoPopulate boolean delete = true;
     @AutoPopulate boolean exposeFinders = true;
+    @AutoPopulate boolean keysetPaging;
     @AutoPopulate boolean populateMethods = true;
     @AutoPopulate boolean registerConverters = true;
     @AutoPopulate boolean update = true;
@@ -68,6 +69,10 @@ public class WebScaffoldAnnotationValues extends AbstractAnnotationValues {
         return exposeFinders;
     }
 
+    public boolean isKeysetPaging() {
+        return keysetPaging;
+    }
+
     public boolean isRegisterConverters() {
         return registerConverters;
     }
@@ -81,6 +86,7 @@ public class WebScaffoldAnnotationValues extends AbstractAnnotationValues {
         // For debugging
         return "WebScaffoldAnnotationValues [" + "create=" + create
                 + ", delete=" + delete + ", exposeFinders=" + exposeFinders
+                + ", keysetPaging=" + keysetPaging
                 + ", populateMethods=" + populateMethods
                 + ", registerConverters=" + registerConverters + ", update="
                 + update + ", formBackingObject=" + formBackingObject
@@ -2,6 +2,7 @@ package org.springframework.roo.addon.web.mvc.controller.scaffold;
 
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.COUNT_ALL_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ALL_METHOD;
+import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ENTRIES_AFTER_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_ENTRIES_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.FIND_METHOD;
 import static org.springframework.roo.classpath.customdata.CustomDataKeys.MERGE_METHOD;
@@ -191,6 +192,12 @@ public class WebScaffoldMetadata extends
                 .get(FIND_ALL_METHOD);
         final MemberTypeAdditions findEntriesMethod = crudAdditions
                 .get(FIND_ENTRIES_METHOD);
+        final MemberTypeAdditions findEntriesAfterMethod = annotationValues
+                .isKeysetPaging()
+                && !compositePk
+                && javaTypeMetadataHolder.getPersistenceDetails()
+                        .getIdentifierAccessorMethod() != null ? crudAdditions
+                .get(FIND_ENTRIES_AFTER_METHOD) : null;
 
         // "show" method
         if (findMethod != null) {
@@ -201,10 +208,14 @@ public class WebScaffoldMetadata extends
         if (countAllMethod != null && findAllMethod != null
                 && findEntriesMethod != null) {
             builder.addMethod(getListMethod(findAllMethod, countAllMethod,
-                    findEntriesMethod));
+                    findEntriesMethod, findEntriesAfterMethod));
             countAllMethod.copyAdditionsTo(builder, governorTypeDetails);
             findAllMethod.copyAdditionsTo(builder, governorTypeDetails);
             findEntriesMethod.copyAdditionsTo(builder, governorTypeDetails);
+            if (findEntriesAfterMethod != null) {
+                findEntriesAfterMethod.copyAdditionsTo(builder,
+                        governorTypeDetails);
+            }
         }
 
         // "update" methods
@@ -353,12 +364,16 @@ public class WebScaffoldMetadata extends
      * @param findAllAdditions
      * @param countAllAdditions
      * @param findEntriesAdditions
+     * @param findEntriesAfterAdditions can be <code>null</code> to only page
+     *            by page number; otherwise see
+     *            {@link #appendKeysetPage(InvocableMemberBodyBuilder, String, String, String, String, String, boolean)}
      * @return <code>null</code> if no such method is to be introduced
      */
     private MethodMetadataBuilder getListMethod(
             final MemberTypeAdditions findAllAdditions,
             final MemberTypeAdditions countAllAdditions,
-            final MemberTypeAdditions findEntriesAdditions) {
+            final MemberTypeAdditions findEntriesAdditions,
+            final MemberTypeAdditions findEntriesAfterAdditions) {
         final JavaSymbolName methodName = new JavaSymbolName("list");
         if (governorHasMethodWithSameName(methodName)) {
             return null;
@@ -380,14 +395,31 @@ public class WebScaffoldMetadata extends
         final AnnotationMetadataBuilder maxResultAnnotation = new AnnotationMetadataBuilder(
                 REQUEST_PARAM, maxResultsAttributes);
 
-        final List<AnnotatedJavaType> parameterTypes = Arrays
-                .asList(new AnnotatedJavaType(INT_OBJECT, firstResultAnnotation
-                        .build()), new AnnotatedJavaType(INT_OBJECT,
-                        maxResultAnnotation.build()), new AnnotatedJavaType(
-                        MODEL));
-        final List<JavaSymbolName> parameterNames = Arrays.asList(
-                new JavaSymbolName("page"), new JavaSymbolName("size"),
-                new JavaSymbolName("uiModel"));
+        final List<AnnotatedJavaType> parameterTypes = new ArrayList<AnnotatedJavaType>(
+                Arrays.asList(new AnnotatedJavaType(INT_OBJECT,
+                        firstResultAnnotation.build()), new AnnotatedJavaType(
+                        INT_OBJECT, maxResultAnnotation.build())));
+        final List<JavaSymbolName> parameterNames = new ArrayList<JavaSymbolName>(
+                Arrays.asList(new JavaSymbolName("page"), new JavaSymbolName(
+                        "size")));
+        if (findEntriesAfterAdditions != null) {
+            final List<AnnotationAttributeValue<?>> afterAttributes = new ArrayList<AnnotationAttributeValue<?>>();
+            afterAttributes.add(new StringAttributeValue(new JavaSymbolName(
+                    "value"), "after"));
+            afterAttributes.add(new BooleanAttributeValue(new JavaSymbolName(
+                    "required"), false));
+            // The parameter is optional, so a primitive type can't be used
+            final JavaType identifierType = javaTypeMetadataHolder
+                    .getPersistenceDetails().getIdentifierType();
+            final JavaType afterType = identifierType.isPrimitive() ? new JavaType(
+                    identifierType.getFullyQualifiedTypeName()) : identifierType;
+            parameterTypes.add(new AnnotatedJavaType(afterType,
+                    new AnnotationMetadataBuilder(REQUEST_PARAM,
+                            afterAttributes).build()));
+            parameterNames.add(new JavaSymbolName("after"));
+        }
+        parameterTypes.add(new AnnotatedJavaType(MODEL));
+        parameterNames.add(new JavaSymbolName("uiModel"));
 
         final List<AnnotationAttributeValue<?>> requestMappingAttributes = new ArrayList<AnnotationAttributeValue<?>>();
         requestMappingAttributes.add(PRODUCES_HTML);
@@ -398,14 +430,34 @@ public class WebScaffoldMetadata extends
         final String plural = javaTypeMetadataHolder.getPlural().toLowerCase();
 
         final InvocableMemberBodyBuilder bodyBuilder = new InvocableMemberBodyBuilder();
-        bodyBuilder.appendFormalLine("if (page != null || size != null) {");
+        if (findEntriesAfterAdditions == null) {
+            bodyBuilder.appendFormalLine("if (page != null || size != null) {");
+        }
+        else {
+            bodyBuilder
+                    .appendFormalLine("if (page != null || size != null || after != null) {");
+        }
         bodyBuilder.indent();
         bodyBuilder
                 .appendFormalLine("int sizeNo = size == null ? 10 : size.intValue();");
         bodyBuilder
                 .appendFormalLine("final int firstResult = page == null ? 0 : (page.intValue() - 1) * sizeNo;");
-        bodyBuilder.appendFormalLine("uiModel.addAttribute(\"" + plural
-                + "\", " + findEntriesAdditions.getMethodCall() + ");");
+        if (findEntriesAfterAdditions == null) {
+            bodyBuilder.appendFormalLine("uiModel.addAttribute(\"" + plural
+                    + "\", " + findEntriesAdditions.getMethodCall() + ");");
+        }
+        else {
+            final JavaTypePersistenceMetadataDetails persistenceDetails = javaTypeMetadataHolder
+                    .getPersistenceDetails();
+            appendKeysetPage(bodyBuilder, JavaType.listOf(formBackingType)
+                    .getNameIncludingTypeParameters(false,
+                            builder.getImportRegistrationResolver()), plural,
+                    findEntriesAdditions.getMethodCall(),
+                    findEntriesAfterAdditions.getMethodCall(),
+                    persistenceDetails.getIdentifierAccessorMethod()
+                            .getMethodName().getSymbolName(),
+                    !persistenceDetails.getIdentifierType().isPrimitive());
+        }
         bodyBuilder.appendFormalLine("float nrOfPages = (float) "
                 + countAllAdditions.getMethodCall() + " / sizeNo;");
         bodyBuilder
@@ -429,6 +481,51 @@ public class WebScaffoldMetadata extends
         return methodBuilder;
     }
 
+    /**
+     * Appends the statements of the "list" method that fetch a page of
+     * entities, by identifier if the "after" parameter is given, otherwise by
+     * page number. The identifier that the next page starts after is only put
+     * into the model as "nextAfter" if the page was fetched by identifier, as
+     * only then are the entities in order of identifier. The first page is
+     * also fetched by identifier where the finder accepts a <code>null</code>
+     * one, so that following the "next" links pages by identifier throughout.
+     * 
+     * @param bodyBuilder the builder to append to (required)
+     * @param listType the name of the type of list returned by the finders
+     *            (required)
+     * @param plural the name of the list variable and model attribute
+     *            (required)
+     * @param findEntriesCall the call that finds a page by number (required)
+     * @param findEntriesAfterCall the call that finds a page by identifier
+     *            (required)
+     * @param identifierAccessorName the name of the entity's identifier
+     *            accessor (required)
+     * @param nullableId whether the identifier type allows <code>null</code>
+     * @return the given builder
+     */
+    static InvocableMemberBodyBuilder appendKeysetPage(
+            final InvocableMemberBodyBuilder bodyBuilder,
+            final String listType, final String plural,
+            final String findEntriesCall, final String findEntriesAfterCall,
+            final String identifierAccessorName, final boolean nullableId) {
+        bodyBuilder.appendFormalLine("final boolean keyset = after != null"
+                + (nullableId ? " || firstResult == 0" : "") + ";");
+        bodyBuilder.appendFormalLine("final " + listType + " " + plural
+                + " = keyset ? " + findEntriesAfterCall + " : "
+                + findEntriesCall + ";");
+        bodyBuilder.appendFormalLine("uiModel.addAttribute(\"" + plural
+                + "\", " + plural + ");");
+        bodyBuilder.appendFormalLine("if (keyset && " + plural
+                + ".size() == sizeNo) {");
+        bodyBuilder.indent();
+        bodyBuilder.appendFormalLine("uiModel.addAttribute(\"nextAfter\", "
+                + plural + ".get(sizeNo - 1)." + identifierAccessorName
+                + "());");
+        bodyBuilder.indentRemove();
+        bodyBuilder.appendFormalLine("}");
+        return bodyBuilder;
+    }
+
     private MethodMetadataBuilder getShowMethod(
             final MemberTypeAdditions findMethod) {
         final JavaTypePersistenceMetadataDetails javaTypePersistenceMetadataHolder = javaTypeMetadataHolder
@@ -0,0 +1,81 @@
+package org.springframework.roo.addon.web.mvc.controller.json;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
+
+/**
+ * Unit test of the code generated by {@link WebJsonMetadata}
+ *
+ * @since 1.2.1
+ */
+public class WebJsonMetadataTest {
+
+    @Test
+    public void testJsonArrayIsWrittenInChunks() {
+        // Invoke
+        final String body = WebJsonMetadata.appendJsonArrayInChunks(
+                new InvocableMemberBodyBuilder(), 100, "Long", "List<Person>",
+                "Person", "person", "Person.findPersonEntriesAfter(after, sizeNo)",
+                "Person.entityManager().clear()", "toJson", "getId")
+                .getOutput();
+
+        // Check
+        final String expected = "        final int sizeNo = 100;\n"
+                + "        Long after = null;\n"
+                + "        List<Person> chunk;\n"
+                + "        out.write(\"[\");\n"
+                + "        do {\n"
+                + "            chunk = Person.findPersonEntriesAfter(after, sizeNo);\n"
+                // A comma precedes every element except the first
+                + "            for (Person person : chunk) {\n"
+                + "                if (after != null) {\n"
+                + "                    out.write(\",\");\n"
+                + "                }\n"
+                + "                out.write(person.toJson());\n"
+                + "                after = person.getId();\n"
+                + "            }\n"
+                + "            Person.entityManager().clear();\n"
+                + "            out.flush();\n"
+                // A chunk that isn't full is the last one
+                + "        } while (chunk.size() == sizeNo);\n"
+                + "        out.write(\"]\");\n"
+                + "        out.flush();\n";
+        assertEquals(expected, body);
+    }
+
+    @Test
+    public void testJsonArrayIsPersistedInOneGo() {
+        // Invoke
+        final String body = WebJsonMetadata.appendPersistJsonArray(
+                new InvocableMemberBodyBuilder(), "Person", "person",
+                "fromJsonArrayToPeople", "person.persist()", 0, null, null)
+                .getOutput();
+
+        // Check
+        final String expected = "        for (Person person: Person.fromJsonArrayToPeople(json)) {\n"
+                + "            person.persist();\n" + "        }\n";
+        assertEquals(expected, body);
+    }
+
+    @Test
+    public void testJsonArrayIsPersistedInBatches() {
+        // Invoke
+        final String body = WebJsonMetadata.appendPersistJsonArray(
+                new InvocableMemberBodyBuilder(), "Person", "person",
+                "fromJsonArrayToPeople", "person.persist()", 50,
+                "person.flush()", "Person.entityManager().clear()")
+                .getOutput();
+
+        // Check
+        final String expected = "        int count = 0;\n"
+                + "        for (Person person: Person.fromJsonArrayToPeople(json)) {\n"
+                + "            person.persist();\n"
+                + "            if (++count % 50 == 0) {\n"
+                + "                person.flush();\n"
+                + "                Person.entityManager().clear();\n"
+                + "            }\n" + "        }\n";
+        assertEquals(expected, body);
+    }
+}
@@ -0,0 +1,65 @@
+package org.springframework.roo.addon.web.mvc.controller.scaffold;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.springframework.roo.classpath.itd.InvocableMemberBodyBuilder;
+
+/**
+ * Unit test of the code generated by {@link WebScaffoldMetadata}
+ *
+ * @since 1.2.1
+ */
+public class WebScaffoldMetadataTest {
+
+    // Constants
+    private static final String FIND_ENTRIES_CALL = "Person.findPersonEntries(firstResult, sizeNo)";
+    private static final String FIND_ENTRIES_AFTER_CALL = "Person.findPersonEntriesAfter(after, sizeNo)";
+
+    private String getListBody(final boolean nullableId) {
+        return WebScaffoldMetadata.appendKeysetPage(
+                new InvocableMemberBodyBuilder(), "List<Person>", "people",
+                FIND_ENTRIES_CALL, FIND_ENTRIES_AFTER_CALL, "getId",
+                nullableId).getOutput();
+    }
+
+    @Test
+    public void testFirstPageIsListedByNullableIdentifier() {
+        // Invoke
+        final String body = getListBody(true);
+
+        // Check
+        final String expected = "        final boolean keyset = after != null || firstResult == 0;\n"
+                + "        final List<Person> people = keyset ? "
+                + FIND_ENTRIES_AFTER_CALL
+                + " : "
+                + FIND_ENTRIES_CALL
+                + ";\n"
+                + "        uiModel.addAttribute(\"people\", people);\n"
+                // Only a page in order of identifier tells where the next
+                // one starts
+                + "        if (keyset && people.size() == sizeNo) {\n"
+                + "            uiModel.addAttribute(\"nextAfter\", people.get(sizeNo - 1).getId());\n"
+                + "        }\n";
+        assertEquals(expected, body);
+    }
+
+    @Test
+    public void testFirstPageIsListedByNumberForPrimitiveIdentifier() {
+        // Invoke
+        final String body = getListBody(false);
+
+        // Check
+        final String expected = "        final boolean keyset = after != null;\n"
+                + "        final List<Person> people = keyset ? "
+                + FIND_ENTRIES_AFTER_CALL
+                + " : "
+                + FIND_ENTRIES_CALL
+                + ";\n"
+                + "        uiModel.addAttribute(\"people\", people);\n"
+                + "        if (keyset && people.size() == sizeNo) {\n"
+                + "            uiModel.addAttribute(\"nextAfter\", people.get(sizeNo - 1).getId());\n"
+                + "        }\n";
+        assertEquals(expected, body);
+    }
+}
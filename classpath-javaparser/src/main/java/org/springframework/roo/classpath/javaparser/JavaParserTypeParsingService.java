@@ -24,12 +24,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.classpath.PhysicalTypeCategory;
+import org.springframework.roo.classpath.SuperclassUtils;
 import org.springframework.roo.classpath.TypeLocationService;
 import org.springframework.roo.classpath.TypeParsingService;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
@@ -47,7 +50,9 @@ import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.model.JavaType;
+import org.springframework.roo.support.style.ToStringCreator;
 import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.DigestUtils;
 import org.springframework.roo.support.util.FileUtils;
 import org.springframework.roo.support.util.StringUtils;
 
@@ -55,10 +60,31 @@ import org.springframework.roo.support.util.StringUtils;
 @Service
 public class JavaParserTypeParsingService implements TypeParsingService {
 
+    // Constants
+    private static final int PARSE_CACHE_SIZE = Math.max(0,
+            Integer.getInteger("roo.parse.cacheSize", 5000));
+
     // Fields
     @Reference MetadataService metadataService;
     @Reference TypeLocationService typeLocationService;
 
+    /**
+     * The most recently parsed types, keyed by declaring MID and type name;
+     * also the mutex for the cache statistics
+     */
+    private final Map<String, ParsedType> parseCache = new LinkedHashMap<String, ParsedType>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<String, ParsedType> eldest) {
+            return size() > PARSE_CACHE_SIZE;
+        }
+    };
+    private int parseCacheHits;
+    private int parseCacheMisses;
+
     public final String getCompilationUnitContents(
             final ClassOrInterfaceTypeDetails cid) {
         Assert.notNull(cid, "Class or interface type details are required");
@@ -107,6 +133,37 @@ public class JavaParserTypeParsingService implements TypeParsingService {
 
         Assert.hasText(declaredByMetadataId, "Declaring metadata ID required");
         Assert.notNull(typeName, "Java type to locate required");
+
+        // Unchanged contents parse to the same type, save for its superclass
+        final String cacheKey = declaredByMetadataId + "#"
+                + typeName.getFullyQualifiedTypeName();
+        final String contentHash = DigestUtils.sha1Hex(fileContents
+                .getBytes());
+        ParsedType parsedType;
+        synchronized (parseCache) {
+            parsedType = parseCache.get(cacheKey);
+            if (parsedType != null
+                    && parsedType.contentHash.equals(contentHash)) {
+                parseCacheHits++;
+            }
+            else {
+                parsedType = null;
+                parseCacheMisses++;
+            }
+        }
+        if (parsedType != null) {
+            final List<ClassOrInterfaceTypeDetails> superclasses = SuperclassUtils
+                    .getSuperclasses(parsedType.cid, typeLocationService,
+                            metadataService);
+            if (isSame(superclasses, parsedType.superclasses)) {
+                return parsedType.cid;
+            }
+            final ClassOrInterfaceTypeDetails cid = SuperclassUtils
+                    .setSuperclasses(parsedType.cid, superclasses);
+            cacheParsedType(cacheKey, contentHash, cid, superclasses);
+            return cid;
+        }
+
         try {
             CompilationUnit compilationUnit = JavaParser
                     .parse(new ByteArrayInputStream(fileContents.getBytes()));
@@ -115,16 +172,64 @@ public class JavaParserTypeParsingService implements TypeParsingService {
             if (typeDeclaration == null) {
                 return null;
             }
-            return JavaParserClassOrInterfaceTypeDetailsBuilder.getInstance(
-                    compilationUnit, null, typeDeclaration,
-                    declaredByMetadataId, typeName, metadataService,
-                    typeLocationService).build();
+            final ClassOrInterfaceTypeDetails cid = JavaParserClassOrInterfaceTypeDetailsBuilder
+                    .getInstance(compilationUnit, null, typeDeclaration,
+                            declaredByMetadataId, typeName, metadataService,
+                            typeLocationService).build();
+            cacheParsedType(cacheKey, contentHash, cid, SuperclassUtils
+                    .getSuperclasses(cid, typeLocationService,
+                            metadataService));
+            return cid;
         }
         catch (ParseException e) {
             throw new IllegalStateException(e);
         }
     }
 
+    private void cacheParsedType(final String cacheKey,
+            final String contentHash, final ClassOrInterfaceTypeDetails cid,
+            final List<ClassOrInterfaceTypeDetails> superclasses) {
+        if (contentHash == null) {
+            return;
+        }
+        synchronized (parseCache) {
+            parseCache.put(cacheKey, new ParsedType(contentHash, cid,
+                    superclasses));
+        }
+    }
+
+    /**
+     * Indicates whether the given lists hold the same instances in the same
+     * order
+     */
+    private boolean isSame(final List<ClassOrInterfaceTypeDetails> list1,
+            final List<ClassOrInterfaceTypeDetails> list2) {
+        if (list1.size() != list2.size()) {
+            return false;
+        }
+        for (int i = 0; i < list1.size(); i++) {
+            if (list1.get(i) != list2.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (parseCache) {
+            final int requests = parseCacheHits + parseCacheMisses;
+            final ToStringCreator tsc = new ToStringCreator(this);
+            tsc.append("parseCacheHits", parseCacheHits);
+            tsc.append("parseCacheMisses", parseCacheMisses);
+            tsc.append("parseCacheHitRate", requests == 0 ? "0%"
+                    : parseCacheHits * 100 / requests + "%");
+            tsc.append("parseCacheCurrentSize", parseCache.size());
+            tsc.append("parseCacheMaximumSize", PARSE_CACHE_SIZE);
+            return tsc.toString().replaceFirst("@[0-9a-f]+", ":");
+        }
+    }
+
     /**
      * Appends the presented class to the end of the presented body
      * declarations. The body declarations appear within the presented
@@ -436,4 +541,23 @@ public class JavaParserTypeParsingService implements TypeParsingService {
                 name.getSymbolName());
         constants.add(constants.size(), newEntry);
     }
+
+    /**
+     * A parsed type, the hash of the contents it was parsed from and the
+     * superclass details it was linked to at the time.
+     */
+    private static class ParsedType {
+        final String contentHash;
+        final ClassOrInterfaceTypeDetails cid;
+        /** the superclasses it was linked to, see {@link SuperclassUtils} */
+        final List<ClassOrInterfaceTypeDetails> superclasses;
+
+        ParsedType(final String contentHash,
+                final ClassOrInterfaceTypeDetails cid,
+                final List<ClassOrInterfaceTypeDetails> superclasses) {
+            this.contentHash = contentHash;
+            this.cid = cid;
+            this.superclasses = superclasses;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package org.springframework.roo.classpath;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.SortedSet;
@@ -12,6 +13,7 @@ import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.ReferenceStrategy;
 import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
+import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.DefaultPhysicalTypeMetadata;
 import org.springframework.roo.classpath.scanner.MemberDetails;
@@ -35,6 +37,10 @@ import org.springframework.roo.support.util.StringUtils;
  * each, also providing type creation and deleting methods. Prior to 1.2.0, the
  * default implementation of PhysicalTypeMetadataProvider was
  * JavaParserMetadataProvider.
+ * <p>
+ * Parsed types are kept in a {@link PhysicalTypeSnapshot} under the project's
+ * <code>target</code> directory, so that source files which have not changed
+ * since the previous shell session need not be parsed again.
  * 
  * @author Ben Alex
  * @author James Tyrrell
@@ -46,6 +52,10 @@ import org.springframework.roo.support.util.StringUtils;
 public class DefaultPhysicalTypeMetadataProvider implements
         PhysicalTypeMetadataProvider, FileEventListener {
 
+    // Constants
+    private static final String SNAPSHOT_FILE = "target" + File.separator
+            + "roo" + File.separator + "physical-types.ser";
+
     // Fields
     @Reference private FileManager fileManager;
     @Reference private MetadataDependencyRegistry metadataDependencyRegistry;
@@ -57,6 +67,8 @@ public class DefaultPhysicalTypeMetadataProvider implements
     // Mutex
     private final Object lock = new Object();
 
+    private PhysicalTypeSnapshot snapshot;
+
     private final SortedSet<MemberDetailsDecorator> decorators = new TreeSet<MemberDetailsDecorator>(
             new Comparator<MemberDetailsDecorator>() {
                 public int compare(final MemberDetailsDecorator o1,
@@ -80,6 +92,15 @@ public class DefaultPhysicalTypeMetadataProvider implements
         }
     }
 
+    protected void deactivate(final ComponentContext context) {
+        synchronized (lock) {
+            if (snapshot != null) {
+                snapshot.save();
+                snapshot = null;
+            }
+        }
+    }
+
     public String getProvidesType() {
         return PhysicalTypeIdentifier.getMetadataIdentiferType();
     }
@@ -123,9 +144,8 @@ public class DefaultPhysicalTypeMetadataProvider implements
         }
         final JavaType javaType = PhysicalTypeIdentifier
                 .getJavaType(metadataIdentificationString);
-        final ClassOrInterfaceTypeDetails typeDetails = typeParsingService
-                .getTypeAtLocation(canonicalPath, metadataIdentificationString,
-                        javaType);
+        final ClassOrInterfaceTypeDetails typeDetails = getTypeDetails(
+                canonicalPath, metadataIdentificationString, javaType);
         if (typeDetails == null) {
             return null;
         }
@@ -191,4 +211,39 @@ public class DefaultPhysicalTypeMetadataProvider implements
                 canonicalPath, (ClassOrInterfaceTypeDetails) memberDetails
                         .getDetails().get(0));
     }
+
+    /**
+     * Returns the details of the given type, from the snapshot if its source
+     * file is unchanged, otherwise by parsing it.
+     */
+    private ClassOrInterfaceTypeDetails getTypeDetails(
+            final String canonicalPath, final String physicalTypeId,
+            final JavaType javaType) {
+        final PhysicalTypeSnapshot snapshot = getSnapshot();
+        final ClassOrInterfaceTypeDetails snapshotted = snapshot.get(
+                physicalTypeId, canonicalPath);
+        if (snapshotted != null) {
+            // Link it to the current superclasses, as parsing would
+            return SuperclassUtils.setSuperclasses(snapshotted,
+                    SuperclassUtils.getSuperclasses(snapshotted,
+                            typeLocationService, metadataService));
+        }
+        final ClassOrInterfaceTypeDetails parsed = typeParsingService
+                .getTypeAtLocation(canonicalPath, physicalTypeId, javaType);
+        if (parsed != null) {
+            snapshot.put(physicalTypeId, parsed);
+        }
+        return parsed;
+    }
+
+    private PhysicalTypeSnapshot getSnapshot() {
+        synchronized (lock) {
+            if (snapshot == null) {
+                snapshot = new PhysicalTypeSnapshot(new File(projectOperations
+                        .getPathResolver().getRoot(), SNAPSHOT_FILE));
+                snapshot.load();
+            }
+            return snapshot;
+        }
+    }
 }
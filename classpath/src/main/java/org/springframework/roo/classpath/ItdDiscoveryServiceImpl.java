@@ -14,6 +14,8 @@ import org.springframework.roo.support.util.StringUtils;
 
 /**
  * Implementation of {@link ItdDiscoveryService}.
+ * <p>
+ * Synchronized, as ITDs may be produced concurrently.
  * 
  * @author James Tyrrell
  * @since 1.2.0
@@ -27,7 +29,8 @@ public class ItdDiscoveryServiceImpl implements ItdDiscoveryService {
     private final Map<String, String> itdIdToTypeMap = new HashMap<String, String>();
     private final Map<String, Set<String>> changeMap = new HashMap<String, Set<String>>();
 
-    public void addItdTypeDetails(final ItdTypeDetails itdTypeDetails) {
+    public synchronized void addItdTypeDetails(
+            final ItdTypeDetails itdTypeDetails) {
         if (itdTypeDetails == null || itdTypeDetails.getGovernor() == null) {
             return;
         }
@@ -47,7 +50,8 @@ public class ItdDiscoveryServiceImpl implements ItdDiscoveryService {
         updateChanges(itdTypeDetails.getGovernor().getName(), false);
     }
 
-    public void removeItdTypeDetails(final String itdTypeDetailsId) {
+    public synchronized void removeItdTypeDetails(
+            final String itdTypeDetailsId) {
         if (StringUtils.isBlank(itdTypeDetailsId)) {
             return;
         }
@@ -62,8 +66,8 @@ public class ItdDiscoveryServiceImpl implements ItdDiscoveryService {
         }
     }
 
-    public boolean haveItdsChanged(final String requestingClass,
-            final JavaType javaType) {
+    public synchronized boolean haveItdsChanged(
+            final String requestingClass, final JavaType javaType) {
         Set<String> changesSinceLastRequest = changeMap.get(requestingClass);
         if (changesSinceLastRequest == null) {
             changesSinceLastRequest = new LinkedHashSet<String>(
@@ -2,12 +2,17 @@ package org.springframework.roo.classpath;
 
 import static org.springframework.roo.support.util.StringUtils.LINE_SEPARATOR;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
+import org.springframework.roo.classpath.itd.ItdRegenerationScheduler;
 import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
+import org.springframework.roo.metadata.MetadataCacheStatistic;
 import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataLogger;
@@ -33,12 +38,15 @@ public class MetadataCommands implements CommandMarker {
     private static final String METADATA_FOR_MODULE_COMMAND = "metadata for module";
 
     // Fields
+    @Reference private ItdRegenerationScheduler itdRegenerationScheduler;
     @Reference private MetadataService metadataService;
     @Reference private MetadataDependencyRegistry metadataDependencyRegistry;
     @Reference private MemberDetailsScanner memberDetailsScanner;
     @Reference private MetadataLogger metadataLogger;
     @Reference private ProjectOperations projectOperations;
+    @Reference private TypeCache typeCache;
     @Reference private TypeLocationService typeLocationService;
+    @Reference private TypeParsingService typeParsingService;
 
     @CliCommand(value = "metadata trace", help = "Traces metadata event delivery notifications")
     public void metadataTrace(
@@ -52,7 +60,13 @@ public class MetadataCommands implements CommandMarker {
         for (MetadataTimingStatistic stat : metadataLogger.getTimings()) {
             sb.append(stat.toString()).append(LINE_SEPARATOR);
         }
-        sb.append(metadataService.toString());
+        sb.append(metadataService.toString()).append(LINE_SEPARATOR);
+        sb.append(metadataDependencyRegistry.toString()).append(LINE_SEPARATOR);
+        for (MetadataCacheStatistic stat : metadataService.getStatistics()) {
+            sb.append(stat.toString()).append(LINE_SEPARATOR);
+        }
+        sb.append(memberDetailsScanner.toString()).append(LINE_SEPARATOR);
+        sb.append(typeParsingService.toString());
         return sb.toString();
     }
 
@@ -138,12 +152,37 @@ public class MetadataCommands implements CommandMarker {
         return sb.toString();
     }
 
+    @CliCommand(value = "metadata regenerate", help = "Regenerates the ITDs of the indicated type, or of every type if none is given")
+    public String metadataRegenerate(
+            @CliOption(key = { "", "type" }, mandatory = false, help = "The Java type whose ITDs to regenerate (defaults to all types)") final JavaType javaType) {
+        Collection<String> physicalTypeIds;
+        if (javaType == null) {
+            physicalTypeIds = typeCache.getAllTypeIdentifiers();
+        }
+        else {
+            String id = typeLocationService.getPhysicalTypeIdentifier(javaType);
+            if (id == null) {
+                return "Cannot locate source for "
+                        + javaType.getFullyQualifiedTypeName();
+            }
+            physicalTypeIds = Collections.singleton(id);
+        }
+        int regenerated = itdRegenerationScheduler.regenerate(physicalTypeIds);
+        return "Regenerated " + regenerated + " ITD metadata items for "
+                + physicalTypeIds.size() + " types";
+    }
+
     @CliCommand(value = "metadata cache", help = "Shows detailed metadata for the indicated type")
     public String metadataCacheMaximum(
-            @CliOption(key = { "maximumCapacity" }, mandatory = true, help = "The maximum number of metadata items to cache") final int maxCapacity) {
+            @CliOption(key = { "maximumCapacity" }, mandatory = true, help = "The maximum number of metadata items to cache") final int maxCapacity,
+            @CliOption(key = { "maximumWeight" }, mandatory = false, help = "The maximum estimated size of the cached metadata items in megabytes (0 for no limit)") final Integer maxWeight) {
         Assert.isTrue(maxCapacity >= 100,
                 "Maximum capacity must be 100 or greater");
         metadataService.setMaxCapacity(maxCapacity);
+        if (maxWeight != null) {
+            Assert.isTrue(maxWeight >= 0, "Maximum weight must be 0 or greater");
+            metadataService.setMaxWeight(maxWeight * 1024L * 1024L);
+        }
         // Show them that the change has taken place
         return metadataTimings();
     }
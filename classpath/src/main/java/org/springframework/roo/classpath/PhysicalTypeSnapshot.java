@@ -0,0 +1,312 @@
+package org.springframework.roo.classpath;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.support.logging.HandlerUtils;
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.DigestUtils;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.roo.support.util.IOUtils;
+
+/**
+ * An on-disk snapshot of parsed {@link ClassOrInterfaceTypeDetails}, allowing
+ * the shell to skip reparsing source files that have not changed since the
+ * previous session.
+ * <p>
+ * Each entry records the size, last modified time and SHA-1 hash of the source
+ * file it was parsed from. An entry is only reused if the file has the same
+ * size and either the same last modified time or the same content hash. Types
+ * are stored without their superclasses (nor those of their inner types),
+ * which the caller must resolve afresh using {@link SuperclassUtils}, so that
+ * changes to a superclass are never masked by a stale copy.
+ * <p>
+ * Entries are serialized individually, so a type whose details cannot be
+ * serialized (e.g. due to custom data from an add-on) is simply not
+ * snapshotted. The model classes intentionally declare no
+ * <code>serialVersionUID</code>, meaning any change to their structure makes
+ * older entries unreadable, in which case they are discarded and the type is
+ * parsed as usual. Only entries used during the current session are saved,
+ * so types whose files have been deleted are dropped from the snapshot.
+ * <p>
+ * Thread safe.
+ *
+ * @since 1.2.1
+ */
+class PhysicalTypeSnapshot {
+
+    // Constants
+    private static final Logger LOGGER = HandlerUtils
+            .getLogger(PhysicalTypeSnapshot.class);
+    private static final int FORMAT_VERSION = 1;
+
+    // Fields
+    private final File snapshotFile;
+    /** key: physical type MID, value: entry */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    /** the MIDs of the entries looked up or stored during this session */
+    private final Set<String> usedIds = new HashSet<String>();
+    /** the source file fingerprints taken before parsing, keyed by MID */
+    private final Map<String, Entry> pendingFingerprints = new HashMap<String, Entry>();
+    private boolean dirty;
+
+    /**
+     * Constructor for a snapshot backed by the given file; call
+     * {@link #load()} to read any existing entries.
+     *
+     * @param snapshotFile the file in which to store the snapshot (required)
+     */
+    PhysicalTypeSnapshot(final File snapshotFile) {
+        Assert.notNull(snapshotFile, "Snapshot file required");
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Reads the entries from the snapshot file, if it exists. A missing,
+     * corrupt or incompatible snapshot leaves this snapshot empty.
+     */
+    synchronized void load() {
+        entries.clear();
+        if (!snapshotFile.isFile()) {
+            return;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(
+                    new FileInputStream(snapshotFile)));
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final Entry entry = new Entry(in.readUTF(), in.readUTF(),
+                        in.readLong(), in.readLong(), in.readUTF(),
+                        (byte[]) in.readObject());
+                entries.put(entry.physicalTypeId, entry);
+            }
+        }
+        catch (final Exception e) {
+            LOGGER.log(Level.FINE, "Discarding unreadable type snapshot '"
+                    + snapshotFile + "'", e);
+            entries.clear();
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes the entries used during this session to the snapshot file, if
+     * anything has changed since it was loaded.
+     */
+    synchronized void save() {
+        if (entries.keySet().retainAll(usedIds)) {
+            dirty = true;
+        }
+        if (!dirty) {
+            return;
+        }
+        final File parent = snapshotFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            return;
+        }
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(snapshotFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (final Entry entry : entries.values()) {
+                out.writeUTF(entry.physicalTypeId);
+                out.writeUTF(entry.canonicalPath);
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeUTF(entry.contentHash);
+                out.writeObject(entry.serializedType);
+            }
+            dirty = false;
+        }
+        catch (final IOException e) {
+            LOGGER.log(Level.FINE, "Unable to write type snapshot '"
+                    + snapshotFile + "'", e);
+            snapshotFile.delete();
+        }
+        finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Returns the snapshotted details of the given type, provided its source
+     * file is unchanged since they were stored.
+     *
+     * @param physicalTypeId the type's physical type MID (required)
+     * @param canonicalPath the canonical path of the type's source file
+     *            (required)
+     * @return the type's details without any superclass, or <code>null</code>
+     *         if the type must be parsed
+     */
+    synchronized ClassOrInterfaceTypeDetails get(final String physicalTypeId,
+            final String canonicalPath) {
+        usedIds.add(physicalTypeId);
+        final Entry entry = entries.get(physicalTypeId);
+        final File file = new File(canonicalPath);
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        if (entry != null && entry.canonicalPath.equals(canonicalPath)
+                && entry.size == size && entry.lastModified == lastModified) {
+            return deserialize(entry);
+        }
+
+        // The caller will parse the file, so take its fingerprint now in
+        // case it changes while being parsed
+        final String contentHash = getContentHash(file);
+        if (entry != null && entry.canonicalPath.equals(canonicalPath)
+                && entry.size == size && entry.contentHash.equals(contentHash)) {
+            // Touched but not changed; remember the new time to avoid hashing
+            // the file again next session
+            final Entry touched = new Entry(physicalTypeId, canonicalPath,
+                    size, lastModified, contentHash, entry.serializedType);
+            entries.put(physicalTypeId, touched);
+            dirty = true;
+            return deserialize(touched);
+        }
+        if (contentHash != null) {
+            pendingFingerprints.put(physicalTypeId, new Entry(physicalTypeId,
+                    canonicalPath, size, lastModified, contentHash, null));
+        }
+        return null;
+    }
+
+    /**
+     * Stores the details of the given type, parsed after a call to
+     * {@link #get(String, String)} for it returned <code>null</code>.
+     *
+     * @param physicalTypeId the type's physical type MID (required)
+     * @param cid the parsed details (required)
+     */
+    synchronized void put(final String physicalTypeId,
+            final ClassOrInterfaceTypeDetails cid) {
+        final Entry fingerprint = pendingFingerprints.remove(physicalTypeId);
+        final byte[] serializedType = serialize(cid);
+        if (fingerprint == null || serializedType == null) {
+            if (entries.remove(physicalTypeId) != null) {
+                dirty = true;
+            }
+            return;
+        }
+        entries.put(physicalTypeId, new Entry(physicalTypeId,
+                fingerprint.canonicalPath, fingerprint.size,
+                fingerprint.lastModified, fingerprint.contentHash,
+                serializedType));
+        dirty = true;
+    }
+
+    private byte[] serialize(final ClassOrInterfaceTypeDetails cid) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(bytes);
+            out.writeObject(SuperclassUtils.setSuperclasses(cid, null));
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (final IOException e) {
+            // Typically a non-serializable custom data value
+            return null;
+        }
+        finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    private ClassOrInterfaceTypeDetails deserialize(final Entry entry) {
+        ObjectInputStream in = null;
+        try {
+            in = new BundleObjectInputStream(new ByteArrayInputStream(
+                    entry.serializedType));
+            return (ClassOrInterfaceTypeDetails) in.readObject();
+        }
+        catch (final Exception e) {
+            // Typically a model class whose structure has since changed
+            entries.remove(entry.physicalTypeId);
+            dirty = true;
+            return null;
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private String getContentHash(final File file) {
+        try {
+            return DigestUtils.sha1Hex(FileCopyUtils.copyToByteArray(file));
+        }
+        catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A snapshotted type and the fingerprint of the file it was parsed from.
+     */
+    private static class Entry {
+        final String physicalTypeId;
+        final String canonicalPath;
+        final long size;
+        final long lastModified;
+        final String contentHash;
+        final byte[] serializedType;
+
+        Entry(final String physicalTypeId, final String canonicalPath,
+                final long size, final long lastModified,
+                final String contentHash, final byte[] serializedType) {
+            this.physicalTypeId = physicalTypeId;
+            this.canonicalPath = canonicalPath;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.serializedType = serializedType;
+        }
+    }
+
+    /**
+     * Resolves classes through this bundle's class loader, which can see the
+     * model and type details classes, rather than the caller's.
+     */
+    private static class BundleObjectInputStream extends ObjectInputStream {
+
+        BundleObjectInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc)
+                throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false,
+                        PhysicalTypeSnapshot.class.getClassLoader());
+            }
+            catch (final ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.springframework.roo.classpath;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * Links {@link ClassOrInterfaceTypeDetails} to the details of their
+ * superclasses, the same way they are linked when a source file is parsed.
+ * This allows a type parsed earlier to be reused with up-to-date superclass
+ * details, for its inner types as well as for itself.
+ * <p>
+ * The superclasses of a type are listed in the order its types are visited:
+ * the type itself, then each of its inner types in turn, each followed by its
+ * own inner types.
+ *
+ * @since 1.2.1
+ */
+public final class SuperclassUtils {
+
+    /**
+     * Returns the current details of the superclasses of the given type and
+     * its inner types.
+     *
+     * @param cid the type whose superclasses to find (required)
+     * @param typeLocationService (required)
+     * @param metadataService (required)
+     * @return a non-<code>null</code> list, with a <code>null</code> element
+     *         for each type without a superclass in the project
+     */
+    public static List<ClassOrInterfaceTypeDetails> getSuperclasses(
+            final ClassOrInterfaceTypeDetails cid,
+            final TypeLocationService typeLocationService,
+            final MetadataService metadataService) {
+        Assert.notNull(cid, "Type details required");
+        final List<ClassOrInterfaceTypeDetails> superclasses = new ArrayList<ClassOrInterfaceTypeDetails>();
+        addSuperclasses(cid, typeLocationService, metadataService,
+                superclasses);
+        return superclasses;
+    }
+
+    private static void addSuperclasses(final ClassOrInterfaceTypeDetails cid,
+            final TypeLocationService typeLocationService,
+            final MetadataService metadataService,
+            final List<ClassOrInterfaceTypeDetails> superclasses) {
+        superclasses.add(getSuperclass(cid, typeLocationService,
+                metadataService));
+        for (final ClassOrInterfaceTypeDetails innerType : cid
+                .getDeclaredInnerTypes()) {
+            addSuperclasses(innerType, typeLocationService, metadataService,
+                    superclasses);
+        }
+    }
+
+    /**
+     * Returns the current details of the given type's superclass
+     *
+     * @param cid the type whose superclass to find (required)
+     * @param typeLocationService (required)
+     * @param metadataService (required)
+     * @return <code>null</code> if the type has no superclass in the project
+     */
+    public static ClassOrInterfaceTypeDetails getSuperclass(
+            final ClassOrInterfaceTypeDetails cid,
+            final TypeLocationService typeLocationService,
+            final MetadataService metadataService) {
+        if (cid.getPhysicalTypeCategory() != PhysicalTypeCategory.CLASS
+                || cid.getExtendsTypes().size() != 1) {
+            return null;
+        }
+        final JavaType superclass = cid.getExtendsTypes().get(0);
+        final String superclassId = typeLocationService
+                .getPhysicalTypeIdentifier(superclass);
+        if (superclassId == null) {
+            return null;
+        }
+        final PhysicalTypeMetadata superPtm = (PhysicalTypeMetadata) metadataService
+                .get(superclassId);
+        return superPtm == null ? null : superPtm.getMemberHoldingTypeDetails();
+    }
+
+    /**
+     * Returns a copy of the given type linked to the given superclasses.
+     *
+     * @param cid the type to copy (required)
+     * @param superclasses the superclasses of the type and its inner types, as
+     *            returned by {@link #getSuperclasses}; can be
+     *            <code>null</code> to unlink them all
+     * @return a non-<code>null</code> copy
+     */
+    public static ClassOrInterfaceTypeDetails setSuperclasses(
+            final ClassOrInterfaceTypeDetails cid,
+            final List<ClassOrInterfaceTypeDetails> superclasses) {
+        Assert.notNull(cid, "Type details required");
+        final ClassOrInterfaceTypeDetailsBuilder cidBuilder = new ClassOrInterfaceTypeDetailsBuilder(
+                cid);
+        final Iterator<ClassOrInterfaceTypeDetails> iterator = superclasses == null ? null
+                : superclasses.iterator();
+        setSuperclasses(cidBuilder, iterator);
+        Assert.isTrue(iterator == null || !iterator.hasNext(),
+                "More superclasses given than types in " + cid.getName());
+        return cidBuilder.build();
+    }
+
+    private static void setSuperclasses(
+            final ClassOrInterfaceTypeDetailsBuilder cidBuilder,
+            final Iterator<ClassOrInterfaceTypeDetails> superclasses) {
+        final ClassOrInterfaceTypeDetails superclass = superclasses == null ? null
+                : superclasses.next();
+        if (superclass == null) {
+            cidBuilder.setSuperclass((ClassOrInterfaceTypeDetailsBuilder) null);
+        }
+        else {
+            cidBuilder.setSuperclass(superclass);
+        }
+        for (final ClassOrInterfaceTypeDetailsBuilder innerType : cidBuilder
+                .getDeclaredInnerTypes()) {
+            setSuperclasses(innerType, superclasses);
+        }
+    }
+
+    /**
+     * Constructor is private to prevent instantiation
+     */
+    private SuperclassUtils() {
+    }
+}
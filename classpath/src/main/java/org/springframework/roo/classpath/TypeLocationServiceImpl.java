@@ -66,7 +66,7 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     private final Map<String, Set<Object>> typeCustomDataMap = new HashMap<String, Set<Object>>();
     private final Map<String, Set<String>> changeMap = new HashMap<String, Set<String>>();
     private final Set<String> dirtyFiles = new HashSet<String>();
-    private final Set<String> discoveredTypes = new HashSet<String>();
+    private final TypePathIndex discoveredTypes = new TypePathIndex();
 
     public Set<ClassOrInterfaceTypeDetails> findClassesOrInterfaceDetailsWithAnnotation(
             final JavaType... annotationsToDetect) {
@@ -443,7 +443,7 @@ public class TypeLocationServiceImpl implements TypeLocationService {
         }
     }
 
-    private Set<String> discoverTypes() {
+    private TypePathIndex discoverTypes() {
         // Retrieve a list of paths that have been discovered or modified since
         // the last invocation by this class
         for (final String change : fileMonitorService
@@ -465,13 +465,7 @@ public class TypeLocationServiceImpl implements TypeLocationService {
     }
 
     private String getParentPath(final JavaType javaType) {
-        final String relativePath = javaType.getRelativeFileName();
-        for (final String typePath : discoverTypes()) {
-            if (typePath.endsWith(relativePath)) {
-                return StringUtils.removeSuffix(typePath, relativePath);
-            }
-        }
-        return null;
+        return discoverTypes().getParentPath(javaType.getRelativeFileName());
     }
 
     private PhysicalPath getPhysicalPath(final JavaType javaType) {
@@ -0,0 +1,88 @@
+package org.springframework.roo.classpath;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.StringUtils;
+
+/**
+ * An index of Java source files by their simple file name, allowing the source
+ * directory of a given type to be found without visiting every known source
+ * file.
+ * <p>
+ * Not thread safe; callers are expected to synchronize if necessary.
+ * 
+ * @since 1.2.1
+ */
+class TypePathIndex {
+
+    // Fields
+    /** key: simple file name (e.g. "Foo.java"), value: canonical file paths */
+    private final Map<String, Set<String>> pathsByFileName = new HashMap<String, Set<String>>();
+    private int size;
+
+    /**
+     * Adds the given source file to this index.
+     * 
+     * @param fileCanonicalPath the canonical path of the source file
+     *            (required)
+     * @return <code>true</code> if the file was not already indexed
+     */
+    boolean add(final String fileCanonicalPath) {
+        Assert.hasText(fileCanonicalPath, "File canonical path required");
+        final String fileName = getFileName(fileCanonicalPath);
+        Set<String> paths = pathsByFileName.get(fileName);
+        if (paths == null) {
+            paths = new LinkedHashSet<String>();
+            pathsByFileName.put(fileName, paths);
+        }
+        if (paths.add(fileCanonicalPath)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the directory containing the given type's package hierarchy,
+     * i.e. the canonical path of the first indexed file whose path ends with
+     * the given relative file name, minus that relative file name.
+     * 
+     * @param relativeFileName the type's path relative to its source directory,
+     *            as returned by
+     *            {@link org.springframework.roo.model.JavaType#getRelativeFileName()}
+     *            (required)
+     * @return <code>null</code> if no such file has been indexed
+     */
+    String getParentPath(final String relativeFileName) {
+        Assert.hasText(relativeFileName, "Relative file name required");
+        final Set<String> paths = pathsByFileName
+                .get(getFileName(relativeFileName));
+        if (paths == null) {
+            return null;
+        }
+        for (final String path : paths) {
+            if (path.endsWith(relativeFileName)) {
+                return StringUtils.removeSuffix(path, relativeFileName);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of indexed source files.
+     * 
+     * @return zero or more
+     */
+    int size() {
+        return size;
+    }
+
+    private String getFileName(final String path) {
+        return path.substring(path.lastIndexOf(File.separatorChar) + 1);
+    }
+}
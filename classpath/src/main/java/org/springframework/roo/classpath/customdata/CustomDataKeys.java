@@ -81,6 +81,8 @@ public final class CustomDataKeys {
             "FIND_METHOD");
     public static final MethodMetadataCustomDataKey FIND_ENTRIES_METHOD = new MethodMetadataCustomDataKey(
             "FIND_ENTRIES_METHOD");
+    public static final MethodMetadataCustomDataKey FIND_ENTRIES_AFTER_METHOD = new MethodMetadataCustomDataKey(
+            "FIND_ENTRIES_AFTER_METHOD");
 
     // Dynamic finder method names; CustomData value expected to be a
     // java.util.List<String> of finder names
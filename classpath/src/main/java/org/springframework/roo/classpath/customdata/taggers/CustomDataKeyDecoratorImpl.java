@@ -9,6 +9,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.jvnet.inflector.Noun;
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
@@ -18,6 +19,7 @@ import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
 import org.springframework.roo.classpath.details.MethodMetadata;
 import org.springframework.roo.classpath.scanner.MemberDetails;
 import org.springframework.roo.classpath.scanner.MemberDetailsBuilder;
+import org.springframework.roo.classpath.scanner.MemberDetailsScanner;
 import org.springframework.roo.model.CustomDataAccessor;
 import org.springframework.roo.support.util.Assert;
 
@@ -32,6 +34,8 @@ import org.springframework.roo.support.util.Assert;
 public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
 
     // Fields
+    @Reference private MemberDetailsScanner memberDetailsScanner;
+
     private final Map<String, Matcher<? extends CustomDataAccessor>> taggerMap = new HashMap<String, Matcher<? extends CustomDataAccessor>>();
     private final Map<String, String> pluralMap = new HashMap<String, String>();
 
@@ -132,6 +136,7 @@ public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
         Assert.notNull(addingClass, "The calling class must be specified");
         Assert.notNull(matcher, "The matcher must be specified");
         taggerMap.put(addingClass + matcher.getCustomDataKey(), matcher);
+        matchersChanged();
     }
 
     public void registerMatchers(final Class<?> addingClass,
@@ -155,12 +160,25 @@ public class CustomDataKeyDecoratorImpl implements CustomDataKeyDecorator {
         for (String taggerKey : toRemove) {
             taggerMap.remove(taggerKey);
         }
+        if (!toRemove.isEmpty()) {
+            matchersChanged();
+        }
     }
 
     public void unregisterMatchers(final Class<?> addingClass) {
         unregisterMatchers(addingClass.getName());
     }
 
+    /**
+     * Discards any member details that were tagged using the previous
+     * matchers.
+     */
+    private void matchersChanged() {
+        if (memberDetailsScanner != null) {
+            memberDetailsScanner.evictMemberDetails();
+        }
+    }
+
     public List<MethodMatcher> getMethodTaggers() {
         List<MethodMatcher> methodTaggers = new ArrayList<MethodMatcher>();
         for (Matcher<? extends CustomDataAccessor> matcher : taggerMap.values()) {
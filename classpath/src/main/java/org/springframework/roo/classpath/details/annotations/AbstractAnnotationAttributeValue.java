@@ -1,5 +1,7 @@
 package org.springframework.roo.classpath.details.annotations;
 
+import java.io.Serializable;
+
 import org.springframework.roo.model.JavaSymbolName;
 import org.springframework.roo.support.util.Assert;
 
@@ -10,7 +12,7 @@ import org.springframework.roo.support.util.Assert;
  * @since 1.0
  */
 public abstract class AbstractAnnotationAttributeValue<T extends Object>
-        implements AnnotationAttributeValue<T> {
+        implements AnnotationAttributeValue<T>, Serializable {
 
     // Fields
     private final JavaSymbolName name;
@@ -1,5 +1,6 @@
 package org.springframework.roo.classpath.details.annotations;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -15,7 +16,7 @@ import org.springframework.roo.support.util.Assert;
  * @author Ben Alex
  * @since 1.0
  */
-public class AnnotatedJavaType {
+public class AnnotatedJavaType implements Serializable {
 
     /**
      * Converts a non-null bag of {@link JavaType}s into a {@link List} of
@@ -1,5 +1,6 @@
 package org.springframework.roo.classpath.details.annotations;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -16,7 +17,8 @@ import org.springframework.roo.support.util.Assert;
  * @author Ben Alex
  * @since 1.0
  */
-public class DefaultAnnotationMetadata implements AnnotationMetadata {
+public class DefaultAnnotationMetadata implements AnnotationMetadata,
+        Serializable {
 
     // Fields
     private final JavaType annotationType;
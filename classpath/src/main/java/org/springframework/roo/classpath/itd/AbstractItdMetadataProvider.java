@@ -364,6 +364,18 @@ public abstract class AbstractItdMetadataProvider extends
     }
 
     public final MetadataItem get(final String metadataIdentificationString) {
+        try {
+            return produce(metadataIdentificationString);
+        }
+        finally {
+            // Member details memoized in the meantime may reflect the ITD as
+            // it was, or its absence during the recursive requests above
+            memberDetailsScanner
+                    .evictMemberDetails(metadataIdentificationString);
+        }
+    }
+
+    private MetadataItem produce(final String metadataIdentificationString) {
         Assert.isTrue(
                 MetadataIdentificationUtils.getMetadataClass(
                         metadataIdentificationString).equals(
@@ -502,6 +514,11 @@ public abstract class AbstractItdMetadataProvider extends
                         false);
             }
 
+            // The downstream metadata we're about to notify mustn't see
+            // member details memoized from the previous ITD
+            memberDetailsScanner
+                    .evictMemberDetails(metadataIdentificationString);
+
             // Eagerly notify that the metadata has been updated; this also
             // registers the metadata hash code in the superclass' cache to
             // avoid
@@ -0,0 +1,29 @@
+package org.springframework.roo.classpath.itd;
+
+import java.util.Collection;
+
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+
+/**
+ * Regenerates the ITDs of a number of governors in one go.
+ * <p>
+ * The ITD metadata to regenerate is grouped into dependency levels using the
+ * {@link MetadataDependencyRegistry}, such that an ITD is only regenerated
+ * after every other requested ITD it depends upon.
+ * 
+ * @since 1.2.1
+ */
+public interface ItdRegenerationScheduler {
+
+    /**
+     * Regenerates the metadata (and thus the ITD files) of every
+     * {@link ItdMetadataProvider} for the given governors. The resulting ITD
+     * file writes are deferred until the file manager next commits, as they
+     * would be for a regular metadata notification.
+     * 
+     * @param physicalTypeIds the physical type IDs of the governors (required,
+     *            can be empty)
+     * @return the number of ITD metadata items that were regenerated
+     */
+    int regenerate(Collection<String> physicalTypeIds);
+}
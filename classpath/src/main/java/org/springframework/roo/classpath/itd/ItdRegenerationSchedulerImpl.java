@@ -0,0 +1,187 @@
+package org.springframework.roo.classpath.itd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.ReferenceStrategy;
+import org.apache.felix.scr.annotations.Service;
+import org.springframework.roo.classpath.PhysicalTypeIdentifier;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataProvider;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * Default implementation of {@link ItdRegenerationScheduler}.
+ * <p>
+ * The ITDs are regenerated on the calling thread, one level after the other.
+ * They aren't regenerated concurrently, as the providers write their ITD
+ * files and notify downstream metadata via collaborators (such as the file
+ * manager's undo support and the type location service) that aren't thread
+ * safe.
+ * 
+ * @since 1.2.1
+ */
+@Component(immediate = true)
+@Service
+@Reference(name = "metadataProvider", strategy = ReferenceStrategy.EVENT, policy = ReferencePolicy.DYNAMIC, referenceInterface = MetadataProvider.class, cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
+public class ItdRegenerationSchedulerImpl implements ItdRegenerationScheduler {
+
+    // Fields
+    @Reference private MetadataDependencyRegistry metadataDependencyRegistry;
+    @Reference private MetadataService metadataService;
+
+    private final SortedSet<ItdMetadataProvider> providers = new TreeSet<ItdMetadataProvider>(
+            new Comparator<ItdMetadataProvider>() {
+                public int compare(final ItdMetadataProvider o1,
+                        final ItdMetadataProvider o2) {
+                    return o1.getClass().getName()
+                            .compareTo(o2.getClass().getName());
+                }
+            });
+
+    // Mutex
+    private final Object lock = new Object();
+
+    protected void bindMetadataProvider(final MetadataProvider mp) {
+        if (mp instanceof ItdMetadataProvider) {
+            synchronized (lock) {
+                providers.add((ItdMetadataProvider) mp);
+            }
+        }
+    }
+
+    protected void unbindMetadataProvider(final MetadataProvider mp) {
+        synchronized (lock) {
+            providers.remove(mp);
+        }
+    }
+
+    public int regenerate(final Collection<String> physicalTypeIds) {
+        Assert.notNull(physicalTypeIds, "Physical type IDs required");
+
+        // Work out the ITD metadata to regenerate
+        final Set<String> itdIds = new LinkedHashSet<String>();
+        synchronized (lock) {
+            for (final String physicalTypeId : physicalTypeIds) {
+                Assert.isTrue(PhysicalTypeIdentifier.isValid(physicalTypeId),
+                        "Metadata id '" + physicalTypeId
+                                + "' is not a valid physical type id");
+                for (final ItdMetadataProvider provider : providers) {
+                    itdIds.add(provider.getIdForPhysicalJavaType(physicalTypeId));
+                }
+            }
+        }
+
+        for (final Collection<String> level : getLevels(itdIds).values()) {
+            for (final String itdId : level) {
+                metadataService.evictAndGet(itdId);
+            }
+        }
+        return itdIds.size();
+    }
+
+    /**
+     * Groups the given ITD metadata by dependency level. Level zero contains
+     * the ITDs that don't (even indirectly) depend upon any other given ITD;
+     * every other ITD is one level below the deepest given ITD it depends
+     * upon.
+     * 
+     * @param itdIds the ITD metadata IDs to group (required)
+     * @return a non-<code>null</code> map of level to the ITD IDs in it
+     */
+    private SortedMap<Integer, Collection<String>> getLevels(
+            final Set<String> itdIds) {
+        final Map<String, Integer> levels = new HashMap<String, Integer>();
+        final SortedMap<Integer, Collection<String>> result = new TreeMap<Integer, Collection<String>>();
+        for (final String itdId : itdIds) {
+            final Integer level = getLevel(itdId, itdIds, levels,
+                    new HashSet<String>());
+            Collection<String> levelIds = result.get(level);
+            if (levelIds == null) {
+                levelIds = new ArrayList<String>();
+                result.put(level, levelIds);
+            }
+            levelIds.add(itdId);
+        }
+        return result;
+    }
+
+    private int getLevel(final String metadataId,
+            final Set<String> scheduledIds, final Map<String, Integer> levels,
+            final Set<String> visiting) {
+        final Integer knownLevel = levels.get(metadataId);
+        if (knownLevel != null) {
+            return knownLevel;
+        }
+        if (!visiting.add(metadataId)) {
+            // Can't happen, as the registry rejects circular dependencies
+            return 0;
+        }
+
+        int level = 0;
+        for (final String upstream : getUpstream(metadataId)) {
+            int upstreamLevel = getLevel(upstream, scheduledIds, levels,
+                    visiting);
+            if (scheduledIds.contains(upstream)) {
+                upstreamLevel++;
+            }
+            level = Math.max(level, upstreamLevel);
+        }
+
+        visiting.remove(metadataId);
+        levels.put(metadataId, level);
+        return level;
+    }
+
+    /**
+     * Returns the instance-specific upstream dependencies of the given
+     * metadata. Class-level upstream dependencies are resolved to the instance
+     * for the same governor, as that is the instance such a notification
+     * would be resolved to by an {@link AbstractItdMetadataProvider}.
+     * 
+     * @param metadataId the downstream metadata ID (required)
+     * @return a non-<code>null</code> set of upstream metadata IDs
+     */
+    private Set<String> getUpstream(final String metadataId) {
+        final Set<String> upstream = new HashSet<String>();
+        for (final String upstreamId : metadataDependencyRegistry
+                .getUpstream(metadataId)) {
+            if (MetadataIdentificationUtils.isIdentifyingInstance(upstreamId)) {
+                upstream.add(upstreamId);
+            }
+        }
+        if (MetadataIdentificationUtils.isIdentifyingInstance(metadataId)) {
+            final String instance = MetadataIdentificationUtils
+                    .getMetadataInstance(metadataId);
+            for (final String upstreamClassId : metadataDependencyRegistry
+                    .getUpstream(MetadataIdentificationUtils
+                            .getMetadataClassId(metadataId))) {
+                if (MetadataIdentificationUtils
+                        .isIdentifyingClass(upstreamClassId)) {
+                    upstream.add(MetadataIdentificationUtils.create(
+                            MetadataIdentificationUtils
+                                    .getMetadataClass(upstreamClassId),
+                            instance));
+                }
+            }
+        }
+        upstream.remove(metadataId);
+        return upstream;
+    }
+}
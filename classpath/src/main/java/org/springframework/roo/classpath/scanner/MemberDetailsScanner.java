@@ -1,6 +1,7 @@
 package org.springframework.roo.classpath.scanner;
 
 import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.itd.ItdMetadataProvider;
 import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
 import org.springframework.roo.model.CustomDataAccessor;
 import org.springframework.roo.model.JavaType;
@@ -74,4 +75,26 @@ public interface MemberDetailsScanner {
      */
     MemberDetails getMemberDetails(String requestingClass,
             ClassOrInterfaceTypeDetails cid);
+
+    /**
+     * Discards any {@link MemberDetails} the implementation has memoized. A
+     * {@link MemberDetailsDecorator} must call this whenever the way it
+     * decorates member details changes.
+     * 
+     * @since 1.2.1
+     */
+    void evictMemberDetails();
+
+    /**
+     * Discards any {@link MemberDetails} the implementation has memoized that
+     * the given metadata contributed to. An {@link ItdMetadataProvider} calls
+     * this whenever it has produced (or failed to produce) its metadata, as
+     * the memoized member details might otherwise still reflect the previous
+     * ITD.
+     * 
+     * @param metadataIdentificationString the contributing metadata
+     *            (required)
+     * @since 1.2.1
+     */
+    void evictMemberDetails(String metadataIdentificationString);
 }
\ No newline at end of file
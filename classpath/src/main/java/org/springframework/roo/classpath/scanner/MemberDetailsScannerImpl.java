@@ -2,7 +2,12 @@ package org.springframework.roo.classpath.scanner;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -18,10 +23,13 @@ import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
 import org.springframework.roo.classpath.details.MemberHoldingTypeDetails;
 import org.springframework.roo.classpath.itd.ItdMetadataProvider;
 import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataNotificationListener;
 import org.springframework.roo.metadata.MetadataProvider;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.support.style.ToStringCreator;
 import org.springframework.roo.support.util.Assert;
 
 /**
@@ -37,6 +45,15 @@ import org.springframework.roo.support.util.Assert;
  * the metadata infrastructure does not require special type naming approaches
  * to be employed. The ordering behaviour exists solely to simplify debugging
  * for add-on developers and log comparison between invocations.
+ * <p>
+ * Results are memoized per requesting class and governor, for the most
+ * recently used governors only. A memoized result is returned without
+ * consulting the ITD metadata again, provided the governor's class hierarchy
+ * is still the very same instances that produced it. It is evicted as soon as
+ * an ITD contributing to it is produced again (see
+ * {@link #evictMemberDetails(String)}), or when the
+ * {@link MetadataDependencyRegistry} reports a change to any contributing
+ * metadata identification.
  * 
  * @author Ben Alex
  * @since 1.1
@@ -46,9 +63,15 @@ import org.springframework.roo.support.util.Assert;
 @References(value = {
         @Reference(name = "memberHoldingDecorator", strategy = ReferenceStrategy.EVENT, policy = ReferencePolicy.DYNAMIC, referenceInterface = MemberDetailsDecorator.class, cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE),
         @Reference(name = "metadataProvider", strategy = ReferenceStrategy.EVENT, policy = ReferencePolicy.DYNAMIC, referenceInterface = MetadataProvider.class, cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE) })
-public class MemberDetailsScannerImpl implements MemberDetailsScanner {
+public class MemberDetailsScannerImpl implements MemberDetailsScanner,
+        MetadataNotificationListener {
+
+    // Constants
+    private static final int CACHE_SIZE = Math.max(0,
+            Integer.getInteger("roo.memberDetails.cacheSize", 1000));
 
     // Fields
+    @Reference protected MetadataDependencyRegistry metadataDependencyRegistry;
     @Reference protected MetadataService metadataService;
 
     // Mutex
@@ -63,6 +86,31 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
                 }
             });
 
+    // Memoized results, keyed by requesting class and governor MID
+    private final Map<String, CachedMemberDetails> cache = new LinkedHashMap<String, CachedMemberDetails>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<String, CachedMemberDetails> eldest) {
+            if (size() <= CACHE_SIZE) {
+                return false;
+            }
+            removeContributors(eldest.getKey(), eldest.getValue());
+            cacheEvictions++;
+            return true;
+        }
+    };
+    // Cache keys, keyed by the MIDs that contributed to them
+    private final Map<String, Set<String>> cacheKeysByContributor = new HashMap<String, Set<String>>();
+    private int cacheHits;
+    private int cacheMisses;
+    private int cacheEvictions;
+    // Incremented by every request to evict, whether or not anything was
+    // memoized for it
+    private int evictionRequests;
+
     private final SortedSet<MemberDetailsDecorator> decorators = new TreeSet<MemberDetailsDecorator>(
             new Comparator<MemberDetailsDecorator>() {
                 public int compare(final MemberDetailsDecorator o1,
@@ -76,6 +124,7 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
             final MemberDetailsDecorator decorator) {
         synchronized (lock) {
             decorators.add(decorator);
+            clearCache();
         }
     }
 
@@ -83,6 +132,7 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
             final MemberDetailsDecorator decorator) {
         synchronized (lock) {
             decorators.remove(decorator);
+            clearCache();
         }
     }
 
@@ -95,6 +145,7 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
                             + "' violated interface contract by returning '"
                             + mid + "'");
             providers.add(mp);
+            clearCache();
         }
     }
 
@@ -102,11 +153,19 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
         synchronized (lock) {
             Assert.notNull(mp, "Metadata provider required");
             providers.remove(mp);
+            clearCache();
         }
     }
 
+    protected void activate(final ComponentContext componentContext) {
+        metadataDependencyRegistry.addNotificationListener(this);
+    }
+
     protected void deactivate(final ComponentContext componentContext) {
-        // Empty
+        metadataDependencyRegistry.removeNotificationListener(this);
+        synchronized (lock) {
+            clearCache();
+        }
     }
 
     public final MemberDetails getMemberDetails(final String requestingClass,
@@ -114,69 +173,84 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
         if (cid == null) {
             return null;
         }
+
+        // Build a List representing the class hierarchy, where the first
+        // element is the absolute superclass
+        List<ClassOrInterfaceTypeDetails> cidHierarchy = new ArrayList<ClassOrInterfaceTypeDetails>();
+        while (cid != null) {
+            cidHierarchy.add(0, cid); // Note to the top of the list
+            cid = cid.getSuperclass();
+        }
+
+        String cacheKey = requestingClass
+                + "#"
+                + cidHierarchy.get(cidHierarchy.size() - 1)
+                        .getDeclaredByMetadataId();
+
+        List<ItdMetadataProvider> itdProviders = new ArrayList<ItdMetadataProvider>();
+        int startEvictionRequests;
         synchronized (lock) {
-            // Create a list of discovered members
-            List<MemberHoldingTypeDetails> memberHoldingTypeDetails = new ArrayList<MemberHoldingTypeDetails>();
-
-            // Build a List representing the class hierarchy, where the first
-            // element is the absolute superclass
-            List<ClassOrInterfaceTypeDetails> cidHierarchy = new ArrayList<ClassOrInterfaceTypeDetails>();
-            while (cid != null) {
-                cidHierarchy.add(0, cid); // Note to the top of the list
-                cid = cid.getSuperclass();
+            CachedMemberDetails cached = cache.get(cacheKey);
+            if (cached != null && cached.isCurrent(cidHierarchy)) {
+                cacheHits++;
+                return cached.memberDetails;
             }
+            cacheMisses++;
+            startEvictionRequests = evictionRequests;
 
-            // Now we add this governor, plus all of its superclasses
-            for (ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
-                memberHoldingTypeDetails.add(currentClass);
-
-                // Locate all MetadataProvider instances that provide ITDs and
-                // thus MemberHoldingTypeDetails information
-                for (MetadataProvider mp : providers) {
-                    // Skip non-ITD providers
-                    if (!(mp instanceof ItdMetadataProvider)) {
-                        continue;
-                    }
+            for (MetadataProvider mp : providers) {
+                // Skip non-ITD providers and myself
+                if (mp instanceof ItdMetadataProvider
+                        && !mp.getClass().getName().equals(requestingClass)) {
+                    itdProviders.add((ItdMetadataProvider) mp);
+                }
+            }
+        }
 
-                    // Skip myself
-                    if (mp.getClass().getName().equals(requestingClass)) {
-                        continue;
-                    }
+        // Create a list of discovered members, recording every ITD we
+        // consulted (even those that were unavailable) as contributing to
+        // the result
+        List<MemberHoldingTypeDetails> memberHoldingTypeDetails = new ArrayList<MemberHoldingTypeDetails>();
+        Set<String> itdIds = new HashSet<String>();
 
-                    // Determine the key the ITD provider uses for this
-                    // particular type
-                    String key = ((ItdMetadataProvider) mp)
-                            .getIdForPhysicalJavaType(currentClass
-                                    .getDeclaredByMetadataId());
-                    Assert.isTrue(MetadataIdentificationUtils
-                            .isIdentifyingInstance(key),
-                            "ITD metadata provider '" + mp
-                                    + "' returned an illegal key ('" + key
-                                    + "'");
-
-                    // Get the metadata and ensure we have ITD type details
-                    // available
-                    MetadataItem metadataItem = metadataService.get(key);
-                    if (metadataItem == null || !metadataItem.isValid()) {
-                        continue;
-                    }
-                    Assert.isInstanceOf(
-                            ItdTypeDetailsProvidingMetadataItem.class,
-                            metadataItem,
-                            "ITD metadata provider '"
-                                    + mp
-                                    + "' failed to return the correct metadata type");
-                    ItdTypeDetailsProvidingMetadataItem itdTypeDetailsMd = (ItdTypeDetailsProvidingMetadataItem) metadataItem;
-                    if (itdTypeDetailsMd.getMemberHoldingTypeDetails() == null) {
-                        continue;
-                    }
+        // Now we add this governor, plus all of its superclasses
+        for (ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
+            memberHoldingTypeDetails.add(currentClass);
+
+            // Locate all MetadataProvider instances that provide ITDs and
+            // thus MemberHoldingTypeDetails information
+            for (ItdMetadataProvider mp : itdProviders) {
+                // Determine the key the ITD provider uses for this
+                // particular type
+                String key = mp.getIdForPhysicalJavaType(currentClass
+                        .getDeclaredByMetadataId());
+                Assert.isTrue(
+                        MetadataIdentificationUtils.isIdentifyingInstance(key),
+                        "ITD metadata provider '" + mp
+                                + "' returned an illegal key ('" + key + "'");
 
-                    // Capture the member details
-                    memberHoldingTypeDetails.add(itdTypeDetailsMd
-                            .getMemberHoldingTypeDetails());
+                // Get the metadata and ensure we have ITD type details
+                // available
+                MetadataItem metadataItem = metadataService.get(key);
+                itdIds.add(key);
+                if (metadataItem == null || !metadataItem.isValid()) {
+                    continue;
                 }
+                Assert.isInstanceOf(ItdTypeDetailsProvidingMetadataItem.class,
+                        metadataItem, "ITD metadata provider '" + mp
+                                + "' failed to return the correct metadata type");
+                ItdTypeDetailsProvidingMetadataItem itdTypeDetailsMd = (ItdTypeDetailsProvidingMetadataItem) metadataItem;
+                if (itdTypeDetailsMd.getMemberHoldingTypeDetails() == null) {
+                    continue;
+                }
+
+                // Capture the member details
+                memberHoldingTypeDetails.add(itdTypeDetailsMd
+                        .getMemberHoldingTypeDetails());
             }
+        }
 
+        synchronized (lock) {
             // Turn out list of discovered members into a result
             MemberDetails result = new MemberDetailsImpl(
                     memberHoldingTypeDetails);
@@ -199,7 +273,146 @@ public class MemberDetailsScannerImpl implements MemberDetailsScanner {
                 }
             }
 
+            // Only memoize the result if no eviction was requested meanwhile,
+            // as it may have been built from the inputs concerned
+            if (evictionRequests == startEvictionRequests) {
+                evict(cacheKey);
+                CachedMemberDetails entry = new CachedMemberDetails(
+                        cidHierarchy, itdIds, result);
+                for (String contributor : entry.getContributors()) {
+                    addContributor(contributor, cacheKey);
+                }
+                cache.put(cacheKey, entry);
+            }
             return result;
         }
     }
-}
\ No newline at end of file
+
+    public void evictMemberDetails() {
+        synchronized (lock) {
+            clearCache();
+        }
+    }
+
+    public void evictMemberDetails(final String metadataIdentificationString) {
+        synchronized (lock) {
+            evictionRequests++;
+            Set<String> cacheKeys = cacheKeysByContributor
+                    .remove(metadataIdentificationString);
+            if (cacheKeys == null) {
+                return;
+            }
+            for (String cacheKey : cacheKeys) {
+                evict(cacheKey);
+            }
+        }
+    }
+
+    public void notify(final String upstreamDependency,
+            final String downstreamDependency) {
+        evictMemberDetails(upstreamDependency);
+    }
+
+    private void addContributor(final String contributor,
+            final String cacheKey) {
+        Set<String> cacheKeys = cacheKeysByContributor.get(contributor);
+        if (cacheKeys == null) {
+            cacheKeys = new HashSet<String>();
+            cacheKeysByContributor.put(contributor, cacheKeys);
+        }
+        cacheKeys.add(cacheKey);
+    }
+
+    private void removeContributors(final String cacheKey,
+            final CachedMemberDetails entry) {
+        for (String contributor : entry.getContributors()) {
+            Set<String> cacheKeys = cacheKeysByContributor.get(contributor);
+            if (cacheKeys != null && cacheKeys.remove(cacheKey)
+                    && cacheKeys.isEmpty()) {
+                cacheKeysByContributor.remove(contributor);
+            }
+        }
+    }
+
+    /**
+     * Removes the memoized result for the given key; the caller must hold the
+     * lock.
+     */
+    private void evict(final String cacheKey) {
+        CachedMemberDetails entry = cache.remove(cacheKey);
+        if (entry != null) {
+            removeContributors(cacheKey, entry);
+            cacheEvictions++;
+        }
+    }
+
+    /**
+     * Discards all memoized results, as the available providers or decorators
+     * (or the latter's behaviour) have changed; the caller must hold the lock.
+     */
+    private void clearCache() {
+        evictionRequests++;
+        cacheEvictions += cache.size();
+        cache.clear();
+        cacheKeysByContributor.clear();
+    }
+
+    @Override
+    public final String toString() {
+        synchronized (lock) {
+            ToStringCreator tsc = new ToStringCreator(this);
+            tsc.append("cacheHits", cacheHits);
+            tsc.append("cacheMisses", cacheMisses);
+            tsc.append("cacheEvictions", cacheEvictions);
+            tsc.append("cacheCurrentSize", cache.size());
+            return tsc.toString().replaceFirst("@[0-9a-f]+", ":");
+        }
+    }
+
+    /**
+     * A memoized {@link MemberDetails} together with the inputs that produced
+     * it.
+     */
+    private static class CachedMemberDetails {
+        final List<ClassOrInterfaceTypeDetails> cidHierarchy;
+        final Set<String> itdIds;
+        final MemberDetails memberDetails;
+
+        CachedMemberDetails(
+                final List<ClassOrInterfaceTypeDetails> cidHierarchy,
+                final Set<String> itdIds, final MemberDetails memberDetails) {
+            this.cidHierarchy = cidHierarchy;
+            this.itdIds = itdIds;
+            this.memberDetails = memberDetails;
+        }
+
+        /**
+         * Returns the MIDs whose change invalidates this result.
+         */
+        Set<String> getContributors() {
+            Set<String> contributors = new HashSet<String>(itdIds);
+            for (ClassOrInterfaceTypeDetails currentClass : cidHierarchy) {
+                contributors.add(currentClass.getDeclaredByMetadataId());
+            }
+            return contributors;
+        }
+
+        /**
+         * Indicates whether the given class hierarchy is identical (not merely
+         * equal) to the one this result was computed from; the ITDs are kept
+         * current by eviction instead.
+         */
+        boolean isCurrent(
+                final List<ClassOrInterfaceTypeDetails> currentHierarchy) {
+            if (currentHierarchy.size() != cidHierarchy.size()) {
+                return false;
+            }
+            for (int i = 0; i < cidHierarchy.size(); i++) {
+                if (currentHierarchy.get(i) != cidHierarchy.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
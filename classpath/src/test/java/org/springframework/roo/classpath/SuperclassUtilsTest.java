@@ -0,0 +1,163 @@
+package org.springframework.roo.classpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetailsBuilder;
+import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Unit test of {@link SuperclassUtils}
+ *
+ * @since 1.2.1
+ */
+public class SuperclassUtilsTest {
+
+    // Constants
+    private static final JavaType PARENT = new JavaType("com.example.Parent");
+    private static final String PARENT_MID = "MID:parent";
+    private static final String CHILD_MID = "MID:child#com.example.Child";
+
+    // Fixture
+    private TypeLocationService mockTypeLocationService;
+    private MetadataService mockMetadataService;
+    private ClassOrInterfaceTypeDetails mockParent;
+
+    @Before
+    public void setUp() {
+        mockTypeLocationService = mock(TypeLocationService.class);
+        mockMetadataService = mock(MetadataService.class);
+        mockParent = mock(ClassOrInterfaceTypeDetails.class);
+        final PhysicalTypeMetadata mockParentMetadata = mock(PhysicalTypeMetadata.class);
+        when(mockTypeLocationService.getPhysicalTypeIdentifier(PARENT))
+                .thenReturn(PARENT_MID);
+        when(mockMetadataService.get(PARENT_MID)).thenReturn(
+                mockParentMetadata);
+        when(mockParentMetadata.getMemberHoldingTypeDetails()).thenReturn(
+                mockParent);
+    }
+
+    private ClassOrInterfaceTypeDetails getMockType(
+            final PhysicalTypeCategory category, final List<JavaType> extendsTypes,
+            final ClassOrInterfaceTypeDetails... innerTypes) {
+        final ClassOrInterfaceTypeDetails mockType = mock(ClassOrInterfaceTypeDetails.class);
+        when(mockType.getPhysicalTypeCategory()).thenReturn(category);
+        when(mockType.getExtendsTypes()).thenReturn(extendsTypes);
+        when(mockType.getDeclaredInnerTypes()).thenReturn(
+                Arrays.asList(innerTypes));
+        return mockType;
+    }
+
+    @Test
+    public void testClassExtendingProjectType() {
+        final ClassOrInterfaceTypeDetails child = getMockType(
+                PhysicalTypeCategory.CLASS, Arrays.asList(PARENT));
+
+        assertSame(mockParent, SuperclassUtils.getSuperclass(child,
+                mockTypeLocationService, mockMetadataService));
+    }
+
+    @Test
+    public void testClassExtendingTypeOutsideProject() {
+        final ClassOrInterfaceTypeDetails child = getMockType(
+                PhysicalTypeCategory.CLASS,
+                Arrays.asList(new JavaType("java.util.Date")));
+
+        assertNull(SuperclassUtils.getSuperclass(child,
+                mockTypeLocationService, mockMetadataService));
+    }
+
+    @Test
+    public void testInterfaceHasNoSuperclass() {
+        final ClassOrInterfaceTypeDetails child = getMockType(
+                PhysicalTypeCategory.INTERFACE, Arrays.asList(PARENT));
+
+        assertNull(SuperclassUtils.getSuperclass(child,
+                mockTypeLocationService, mockMetadataService));
+    }
+
+    @Test
+    public void testSuperclassesOfInnerTypesAreListedInOrder() {
+        final List<JavaType> none = Collections.emptyList();
+        final ClassOrInterfaceTypeDetails innerInner = getMockType(
+                PhysicalTypeCategory.CLASS, Arrays.asList(PARENT));
+        final ClassOrInterfaceTypeDetails inner1 = getMockType(
+                PhysicalTypeCategory.CLASS, none, innerInner);
+        final ClassOrInterfaceTypeDetails inner2 = getMockType(
+                PhysicalTypeCategory.CLASS, Arrays.asList(PARENT));
+        final ClassOrInterfaceTypeDetails outer = getMockType(
+                PhysicalTypeCategory.CLASS, none, inner1, inner2);
+
+        final List<ClassOrInterfaceTypeDetails> superclasses = SuperclassUtils
+                .getSuperclasses(outer, mockTypeLocationService,
+                        mockMetadataService);
+
+        assertEquals(Arrays.asList(null, null, mockParent, mockParent),
+                superclasses);
+    }
+
+    private ClassOrInterfaceTypeDetailsBuilder getClassBuilder(
+            final String name, final ClassOrInterfaceTypeDetails superclass) {
+        final ClassOrInterfaceTypeDetailsBuilder cidBuilder = new ClassOrInterfaceTypeDetailsBuilder(
+                CHILD_MID, Modifier.PUBLIC, new JavaType(name),
+                PhysicalTypeCategory.CLASS);
+        cidBuilder.addExtendsTypes(PARENT);
+        if (superclass != null) {
+            cidBuilder.setSuperclass(superclass);
+        }
+        return cidBuilder;
+    }
+
+    @Test
+    public void testSetSuperclassesLinksInnerTypes() {
+        final ClassOrInterfaceTypeDetails parent = getClassBuilder(
+                "com.example.Parent", null).build();
+        final ClassOrInterfaceTypeDetailsBuilder outerBuilder = getClassBuilder(
+                "com.example.Child", null);
+        outerBuilder.addInnerType(getClassBuilder("com.example.Child.Inner",
+                null));
+        final ClassOrInterfaceTypeDetails outer = outerBuilder.build();
+        final List<ClassOrInterfaceTypeDetails> superclasses = Arrays.asList(
+                null, parent);
+
+        final ClassOrInterfaceTypeDetails linked = SuperclassUtils
+                .setSuperclasses(outer, superclasses);
+
+        assertNull(linked.getSuperclass());
+        final ClassOrInterfaceTypeDetails inner = linked
+                .getDeclaredInnerTypes().get(0);
+        assertNotNull(inner.getSuperclass());
+        assertEquals(parent.getName(), inner.getSuperclass().getName());
+    }
+
+    @Test
+    public void testSetNoSuperclassesUnlinksInnerTypes() {
+        final ClassOrInterfaceTypeDetails parent = getClassBuilder(
+                "com.example.Parent", null).build();
+        final ClassOrInterfaceTypeDetailsBuilder outerBuilder = getClassBuilder(
+                "com.example.Child", parent);
+        outerBuilder.addInnerType(getClassBuilder("com.example.Child.Inner",
+                parent));
+        final ClassOrInterfaceTypeDetails outer = outerBuilder.build();
+
+        final ClassOrInterfaceTypeDetails unlinked = SuperclassUtils
+                .setSuperclasses(outer, null);
+
+        assertNotNull(outer.getSuperclass());
+        assertNull(unlinked.getSuperclass());
+        assertNull(unlinked.getDeclaredInnerTypes().get(0).getSuperclass());
+    }
+}
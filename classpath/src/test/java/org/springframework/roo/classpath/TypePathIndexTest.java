@@ -0,0 +1,72 @@
+package org.springframework.roo.classpath;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.model.JavaType;
+
+/**
+ * Unit test of {@link TypePathIndex}
+ * 
+ * @since 1.2.1
+ */
+public class TypePathIndexTest {
+
+    // Constants
+    private static final String CORE_ROOT = File.separator + "project"
+            + File.separator + "core" + File.separator + "src"
+            + File.separator + "main" + File.separator + "java"
+            + File.separator;
+    private static final String WEB_ROOT = File.separator + "project"
+            + File.separator + "web" + File.separator + "src"
+            + File.separator + "main" + File.separator + "java"
+            + File.separator;
+    private static final JavaType PERSON = new JavaType("com.foo.Person");
+    private static final JavaType OTHER_PERSON = new JavaType(
+            "com.bar.Person");
+
+    // Fixture
+    private TypePathIndex index;
+
+    @Before
+    public void setUp() {
+        index = new TypePathIndex();
+    }
+
+    @Test
+    public void testGetParentPathOfUnknownType() {
+        index.add(CORE_ROOT + PERSON.getRelativeFileName());
+        assertNull(index.getParentPath(new JavaType("com.foo.Address")
+                .getRelativeFileName()));
+    }
+
+    @Test
+    public void testGetParentPathOfKnownType() {
+        index.add(CORE_ROOT + PERSON.getRelativeFileName());
+        assertEquals(CORE_ROOT,
+                index.getParentPath(PERSON.getRelativeFileName()));
+    }
+
+    @Test
+    public void testGetParentPathDistinguishesTypesWithTheSameSimpleName() {
+        index.add(CORE_ROOT + PERSON.getRelativeFileName());
+        index.add(WEB_ROOT + OTHER_PERSON.getRelativeFileName());
+        assertEquals(CORE_ROOT,
+                index.getParentPath(PERSON.getRelativeFileName()));
+        assertEquals(WEB_ROOT,
+                index.getParentPath(OTHER_PERSON.getRelativeFileName()));
+    }
+
+    @Test
+    public void testAddingTheSameFileTwice() {
+        assertTrue(index.add(CORE_ROOT + PERSON.getRelativeFileName()));
+        assertFalse(index.add(CORE_ROOT + PERSON.getRelativeFileName()));
+        assertEquals(1, index.size());
+    }
+}
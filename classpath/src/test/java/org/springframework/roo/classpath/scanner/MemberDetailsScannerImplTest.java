@@ -0,0 +1,114 @@
+package org.springframework.roo.classpath.scanner;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.classpath.details.ClassOrInterfaceTypeDetails;
+import org.springframework.roo.classpath.details.ItdTypeDetails;
+import org.springframework.roo.classpath.itd.ItdMetadataProvider;
+import org.springframework.roo.classpath.itd.ItdTypeDetailsProvidingMetadataItem;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataItem;
+import org.springframework.roo.metadata.MetadataService;
+
+/**
+ * Unit test of {@link MemberDetailsScannerImpl}
+ *
+ * @since 1.2.1
+ */
+public class MemberDetailsScannerImplTest {
+
+    // Constants
+    private static final String GOVERNOR_ID = MetadataIdentificationUtils
+            .create("com.example.PhysicalType", "Person");
+    private static final String ITD_ID = MetadataIdentificationUtils.create(
+            "com.example.FooMetadata", "Person");
+    private static final String REQUESTING_CLASS = "com.example.BarMetadataProvider";
+
+    // Fixture
+    private ClassOrInterfaceTypeDetails mockGovernor;
+    private MetadataService mockMetadataService;
+    private ItdTypeDetailsProvidingMetadataItem mockItd;
+    private MemberDetailsScannerImpl scanner;
+
+    @Before
+    public void setUp() {
+        mockGovernor = mock(ClassOrInterfaceTypeDetails.class);
+        when(mockGovernor.getDeclaredByMetadataId()).thenReturn(GOVERNOR_ID);
+
+        final ItdMetadataProvider mockProvider = mock(ItdMetadataProvider.class);
+        when(mockProvider.getProvidesType()).thenReturn(
+                MetadataIdentificationUtils
+                        .getMetadataClassId(ITD_ID));
+        when(mockProvider.getIdForPhysicalJavaType(GOVERNOR_ID)).thenReturn(
+                ITD_ID);
+
+        mockItd = mock(ItdTypeDetailsProvidingMetadataItem.class);
+        when(mockItd.isValid()).thenReturn(true);
+        when(mockItd.getMemberHoldingTypeDetails()).thenReturn(
+                mock(ItdTypeDetails.class));
+        mockMetadataService = mock(MetadataService.class);
+        when(mockMetadataService.get(ITD_ID)).thenReturn(mockItd);
+
+        scanner = new MemberDetailsScannerImpl();
+        scanner.metadataService = mockMetadataService;
+        scanner.bindMetadataProvider(mockProvider);
+    }
+
+    @Test
+    public void testMemoizedResultIsReturnedWithoutGettingTheItds() {
+        final MemberDetails memberDetails = scanner.getMemberDetails(
+                REQUESTING_CLASS, mockGovernor);
+
+        // Invoke
+        final MemberDetails memoized = scanner.getMemberDetails(
+                REQUESTING_CLASS, mockGovernor);
+
+        // Check
+        assertSame(memberDetails, memoized);
+        verify(mockMetadataService, times(1)).get(ITD_ID);
+    }
+
+    @Test
+    public void testResultIsBuiltAgainOnceAContributingItdIsEvicted() {
+        final MemberDetails memberDetails = scanner.getMemberDetails(
+                REQUESTING_CLASS, mockGovernor);
+
+        // Invoke
+        scanner.evictMemberDetails(ITD_ID);
+        final MemberDetails rebuilt = scanner.getMemberDetails(
+                REQUESTING_CLASS, mockGovernor);
+
+        // Check
+        assertNotSame(memberDetails, rebuilt);
+        verify(mockMetadataService, times(2)).get(ITD_ID);
+    }
+
+    @Test
+    public void testResultIsNotMemoizedIfAnItdIsEvictedWhileBuildingIt() {
+        // The ITD is (re)produced while the scanner is getting it
+        when(mockMetadataService.get(ITD_ID)).thenAnswer(
+                new Answer<MetadataItem>() {
+                    public MetadataItem answer(
+                            final InvocationOnMock invocation) {
+                        scanner.evictMemberDetails(ITD_ID);
+                        return mockItd;
+                    }
+                });
+        scanner.getMemberDetails(REQUESTING_CLASS, mockGovernor);
+
+        // Invoke
+        scanner.getMemberDetails(REQUESTING_CLASS, mockGovernor);
+
+        // Check
+        verify(mockMetadataService, times(2)).get(ITD_ID);
+    }
+}
@@ -1,11 +1,25 @@
 package org.springframework.roo.felix;
 
+import java.net.URL;
+import java.util.Collection;
+
 /**
- * Marker interface for SCR reference usage of
+ * Interface for SCR reference usage of
  * {@link HttpPgpUrlStreamHandlerServiceImpl}.
  * 
  * @author Ben Alex
  * @since 1.1
  */
 public interface HttpPgpUrlStreamHandlerService {
+
+    /**
+     * Downloads and verifies the given <code>httppgp://</code> resources
+     * concurrently, so that they can be opened later without being downloaded
+     * again. Resources that can't be downloaded or verified are skipped; the
+     * problem is reported when they are opened.
+     * 
+     * @param httpPgpUrls the resources to download (required, can be empty)
+     * @since 1.2.1
+     */
+    void prefetch(Collection<URL> httpPgpUrls);
 }
@@ -1,13 +1,24 @@
 package org.springframework.roo.felix;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,6 +33,8 @@ import org.springframework.roo.felix.pgp.PgpService;
 import org.springframework.roo.felix.pgp.SignatureDecision;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.DigestUtils;
+import org.springframework.roo.support.util.ExecutorUtils;
 import org.springframework.roo.support.util.FileCopyUtils;
 import org.springframework.roo.support.util.IOUtils;
 import org.springframework.roo.url.stream.UrlInputStreamService;
@@ -40,6 +53,13 @@ import org.springframework.roo.url.stream.UrlInputStreamService;
  * "gpg --armor --detach-sign file_to_sign.ext")</li> </li>
  * </ul>
  * <p>
+ * Verified resources are kept in the
+ * <code>~/.spring_roo_httppgp_cache</code> directory, under the hashes of
+ * their URL and of their signature. The signature is always downloaded, so a
+ * cached resource is only used while its signature is unchanged (and still
+ * trusted); it is verified again before use. When no version of a resource is
+ * cached, it is downloaded while its signature is being checked.
+ * <p>
  * As such this module simplifies security management and proxy server
  * compatibility for Spring Roo.
  * 
@@ -55,96 +75,233 @@ public class HttpPgpUrlStreamHandlerServiceImpl extends
     // Constants
     private static final Logger LOGGER = HandlerUtils
             .getLogger(HttpPgpUrlStreamHandlerServiceImpl.class);
+    private static final File CACHE_DIRECTORY = new File(
+            System.getProperty("user.home") + File.separatorChar
+                    + ".spring_roo_httppgp_cache");
 
     // Fields
-    @Reference private UrlInputStreamService urlInputStreamService;
-    @Reference private PgpService pgpService;
+    @Reference UrlInputStreamService urlInputStreamService;
+    @Reference PgpService pgpService;
+    File cacheDirectory = CACHE_DIRECTORY;
+    ExecutorService executor;
 
     protected void activate(final ComponentContext context) {
+        executor = Executors.newCachedThreadPool(ExecutorUtils
+                .getDaemonThreadFactory("httppgp download"));
         Hashtable<String, String> dict = new Hashtable<String, String>();
         dict.put(URLConstants.URL_HANDLER_PROTOCOL, "httppgp");
         context.getBundleContext().registerService(
                 URLStreamHandlerService.class.getName(), this, dict);
     }
 
+    protected void deactivate(final ComponentContext context) {
+        executor.shutdownNow();
+    }
+
     @Override
     public URLConnection openConnection(final URL u) throws IOException {
+        return getVerifiedResource(u, true).toURI().toURL().openConnection();
+    }
+
+    public void prefetch(final Collection<URL> httpPgpUrls) {
+        Assert.notNull(httpPgpUrls, "URLs required");
+        List<Future<File>> downloads = new ArrayList<Future<File>>();
+        for (final URL httpPgpUrl : httpPgpUrls) {
+            downloads.add(executor.submit(new Callable<File>() {
+                public File call() throws IOException {
+                    return getVerifiedResource(httpPgpUrl, false);
+                }
+            }));
+        }
+        for (Future<File> download : downloads) {
+            try {
+                download.get();
+            }
+            catch (ExecutionException ignored) {
+                // It will be reported when the resource is opened
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a local copy of the given resource, having verified its
+     * signature.
+     * 
+     * @param u the <code>httppgp://</code> URL of the resource (required)
+     * @param logUntrusted whether to explain to the user how to trust the key
+     *            of an untrusted signature
+     * @return the verified file (never <code>null</code>)
+     * @throws IOException if the signature is untrusted or a download fails
+     */
+    private File getVerifiedResource(final URL u, final boolean logUntrusted)
+            throws IOException {
         // Convert httppgp:// URL into a standard http:// URL
-        URL resourceUrl = new URL(u.toExternalForm().replace("httppgp", "http"));
+        final URL resourceUrl = new URL(u.toExternalForm().replace("httppgp",
+                "http"));
         // Add .asc to the end of the standard resource URL
         URL ascUrl = new URL(resourceUrl.toExternalForm() + ".asc");
 
-        // Start with the ASC file, as if this is for an untrusted key, there's
-        // no point download the larger resource
-        File ascUrlFile = File.createTempFile("roo_asc", null);
-        ascUrlFile.deleteOnExit();
-
-        try {
-            FileCopyUtils.copy(urlInputStreamService.openConnection(ascUrl),
-                    new FileOutputStream(ascUrlFile));
-        }
-        catch (IOException ioe) {
-            // This is not considered fatal; it is likely the ASC isn't
-            // available, so we will continue
-            ascUrlFile.delete();
+        // If no version of the resource is cached, download it while checking
+        // the signature; otherwise it is probably unchanged, in which case
+        // it's not needed
+        File resourceCacheDirectory = new File(cacheDirectory,
+                DigestUtils.sha1Hex(resourceUrl.toExternalForm().getBytes(
+                        "UTF-8")));
+        Future<File> resourceDownload = null;
+        if (!resourceCacheDirectory.isDirectory()) {
+            resourceDownload = executor.submit(new Callable<File>() {
+                public File call() throws IOException {
+                    return download(resourceUrl);
+                }
+            });
         }
 
-        // Abort if a signature wasn't downloaded (this is a httppgp:// URL
-        // after all, so it should be available)
-        Assert.isTrue(
-                ascUrlFile.exists(),
-                "Signature verification file is not available at '"
-                        + ascUrl.toExternalForm() + "'; continuing");
-
-        // Decide if this signature file is well-formed and of a key ID that is
-        // trusted by the user
-        InputStream resource = null;
-        InputStream signature = null;
         try {
-            signature = new FileInputStream(ascUrlFile);
+            // Start with the ASC file, as if this is for an untrusted key,
+            // there's no point download the larger resource
+            byte[] signature = null;
+            try {
+                signature = FileCopyUtils
+                        .copyToByteArray(urlInputStreamService
+                                .openConnection(ascUrl));
+            }
+            catch (IOException ioe) {
+                // This is not considered fatal; it is likely the ASC isn't
+                // available, so we will continue
+            }
+
+            // Abort if a signature wasn't downloaded (this is a httppgp:// URL
+            // after all, so it should be available)
+            Assert.notNull(signature,
+                    "Signature verification file is not available at '"
+                            + ascUrl.toExternalForm() + "'; continuing");
+
+            // Decide if this signature file is well-formed and of a key ID
+            // that is trusted by the user
             SignatureDecision decision = pgpService
-                    .isSignatureAcceptable(signature);
+                    .isSignatureAcceptable(new ByteArrayInputStream(signature));
             if (!decision.isSignatureAcceptable()) {
-                LOGGER.log(Level.SEVERE,
-                        "Download URL '" + resourceUrl.toExternalForm()
-                                + "' failed");
-                LOGGER.log(
-                        Level.SEVERE,
-                        "This resource was signed with PGP key ID '"
-                                + decision.getSignatureAsHex()
-                                + "', which is not currently trusted");
-                LOGGER.log(
-                        Level.SEVERE,
-                        "Use 'pgp key view' to view this key, 'pgp trust' to trust it, or 'pgp automatic trust' to trust any keys");
+                if (logUntrusted) {
+                    LOGGER.log(Level.SEVERE,
+                            "Download URL '" + resourceUrl.toExternalForm()
+                                    + "' failed");
+                    LOGGER.log(Level.SEVERE,
+                            "This resource was signed with PGP key ID '"
+                                    + decision.getSignatureAsHex()
+                                    + "', which is not currently trusted");
+                    LOGGER.log(
+                            Level.SEVERE,
+                            "Use 'pgp key view' to view this key, 'pgp trust' to trust it, or 'pgp automatic trust' to trust any keys");
+                }
                 throw new IOException("Download URL '"
                         + resourceUrl.toExternalForm()
                         + "' has untrusted PGP signature "
                         + JdkDelegatingLogListener.DO_NOT_LOG);
             }
 
+            File cachedFile = new File(resourceCacheDirectory,
+                    DigestUtils.sha1Hex(signature));
+            if (cachedFile.isFile()) {
+                try {
+                    if (isSignedBy(cachedFile, signature)) {
+                        return cachedFile;
+                    }
+                }
+                catch (IllegalStateException e) {
+                    // Unreadable, so download it again
+                }
+            }
+
             // So far so good. Next we need the actual resource to ensure the
             // ASC file really did sign it
-            File resourceFile = File.createTempFile("roo_resource", null);
-            resourceFile.deleteOnExit();
-            FileCopyUtils.copy(
-                    urlInputStreamService.openConnection(resourceUrl),
-                    new FileOutputStream(resourceFile));
-
-            resource = new FileInputStream(resourceFile);
-            signature = new FileInputStream(ascUrlFile);
-            Assert.isTrue(
-                    pgpService.isResourceSignedBySignature(resource, signature),
+            File resourceFile = resourceDownload == null ? download(resourceUrl)
+                    : getResult(resourceDownload);
+            Assert.isTrue(isSignedBy(resourceFile, signature),
                     "PGP signature illegal for URL '"
                             + resourceUrl.toExternalForm() + "'");
 
-            // Excellent it worked! We don't need the ASC file anymore, so get
-            // rid of it
-            ascUrlFile.delete();
+            // Excellent it worked! Keep it in place of any other version
+            File[] staleFiles = resourceCacheDirectory.listFiles();
+            if (staleFiles != null) {
+                for (File staleFile : staleFiles) {
+                    staleFile.delete();
+                }
+            }
+            if (resourceCacheDirectory.isDirectory()
+                    || resourceCacheDirectory.mkdirs()) {
+                if (resourceFile.renameTo(cachedFile)) {
+                    return cachedFile;
+                }
+            }
+            return resourceFile;
+        }
+        finally {
+            if (resourceDownload != null) {
+                resourceDownload.cancel(true);
+            }
+        }
+    }
+
+    private File download(final URL httpUrl) throws IOException {
+        File file = File.createTempFile("roo_resource", null);
+        file.deleteOnExit();
+        InputStream inputStream = null;
+        OutputStream outputStream = null;
+        try {
+            inputStream = urlInputStreamService.openConnection(httpUrl);
+            outputStream = new FileOutputStream(file);
+            byte[] buffer = new byte[FileCopyUtils.BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    // No longer needed
+                    throw new InterruptedIOException("Download of '"
+                            + httpUrl + "' cancelled");
+                }
+                outputStream.write(buffer, 0, bytesRead);
+            }
+            return file;
+        }
+        catch (IOException e) {
+            IOUtils.closeQuietly(outputStream);
+            outputStream = null;
+            file.delete();
+            throw e;
+        }
+        finally {
+            IOUtils.closeQuietly(inputStream, outputStream);
+        }
+    }
+
+    private File getResult(final Future<File> download) throws IOException {
+        try {
+            return download.get();
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        }
+    }
 
-            return resourceFile.toURI().toURL().openConnection();
+    private boolean isSignedBy(final File file, final byte[] signature)
+            throws IOException {
+        InputStream resource = new FileInputStream(file);
+        try {
+            return pgpService.isResourceSignedBySignature(resource,
+                    new ByteArrayInputStream(signature));
         }
         finally {
-            IOUtils.closeQuietly(resource, signature);
+            IOUtils.closeQuietly(resource);
         }
     }
 }
@@ -77,8 +77,13 @@ public class PgpServiceImpl implements PgpService {
     // Instance fields
     @Reference private UrlInputStreamService urlInputStreamService;
     private boolean automaticTrust;
+    File keyRingFile = ROO_PGP_FILE;
     private BundleContext context;
     private final SortedSet<PgpKeyId> discoveredKeyIds = new TreeSet<PgpKeyId>();
+    /** the contents of {@link #keyRingFile}, as of the following fields */
+    private List<PGPPublicKeyRing> trustedKeys;
+    private long trustedKeysLastModified;
+    private long trustedKeysLength;
 
     protected void activate(final ComponentContext context) {
         this.context = context.getBundleContext();
@@ -125,7 +130,7 @@ public class PgpServiceImpl implements PgpService {
 
     public String getKeyStorePhysicalLocation() {
         try {
-            return ROO_PGP_FILE.getCanonicalPath();
+            return keyRingFile.getCanonicalPath();
         }
         catch (IOException e) {
             throw new IllegalStateException(e);
@@ -140,14 +145,31 @@ public class PgpServiceImpl implements PgpService {
         this.automaticTrust = automaticTrust;
     }
 
-    @SuppressWarnings("unchecked")
-    public List<PGPPublicKeyRing> getTrustedKeys() {
-        if (!ROO_PGP_FILE.exists()) {
+    /**
+     * Returns the keys in {@link #keyRingFile}, only reading the file again
+     * if it has changed since it was last read.
+     */
+    public synchronized List<PGPPublicKeyRing> getTrustedKeys() {
+        if (!keyRingFile.exists()) {
+            trustedKeys = null;
             return new ArrayList<PGPPublicKeyRing>();
         }
+        long lastModified = keyRingFile.lastModified();
+        long length = keyRingFile.length();
+        if (trustedKeys == null || lastModified != trustedKeysLastModified
+                || length != trustedKeysLength) {
+            trustedKeys = readTrustedKeys();
+            trustedKeysLastModified = lastModified;
+            trustedKeysLength = length;
+        }
+        return new ArrayList<PGPPublicKeyRing>(trustedKeys);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<PGPPublicKeyRing> readTrustedKeys() {
         FileInputStream fis = null;
         try {
-            fis = new FileInputStream(ROO_PGP_FILE);
+            fis = new FileInputStream(keyRingFile);
             PGPPublicKeyRingCollection pubRings = new PGPPublicKeyRingCollection(
                     PGPUtil.getDecoderStream(fis));
             Iterator<PGPPublicKeyRing> rIt = pubRings.getKeyRings();
@@ -173,7 +195,7 @@ public class PgpServiceImpl implements PgpService {
         return trust(keyRing);
     }
 
-    private PGPPublicKeyRing trust(final PGPPublicKeyRing keyRing) {
+    private synchronized PGPPublicKeyRing trust(final PGPPublicKeyRing keyRing) {
         rememberKey(keyRing);
 
         // Get the keys we currently trust
@@ -190,7 +212,7 @@ public class PgpServiceImpl implements PgpService {
         try {
             PGPPublicKeyRingCollection newCollection = new PGPPublicKeyRingCollection(
                     trusted);
-            fos = new FileOutputStream(ROO_PGP_FILE);
+            fos = new FileOutputStream(keyRingFile);
             newCollection.encode(fos);
         }
         catch (Exception e) {
@@ -198,12 +220,14 @@ public class PgpServiceImpl implements PgpService {
         }
         finally {
             IOUtils.closeQuietly(fos);
+            // Read it again next time, as it may be only partly written
+            trustedKeys = null;
         }
         return keyRing;
     }
 
     @SuppressWarnings("unchecked")
-    public PGPPublicKeyRing untrust(final PgpKeyId keyId) {
+    public synchronized PGPPublicKeyRing untrust(final PgpKeyId keyId) {
         Assert.notNull(keyId, "Key ID required");
         // Get the keys we currently trust
         List<PGPPublicKeyRing> trusted = getTrustedKeys();
@@ -240,7 +264,7 @@ public class PgpServiceImpl implements PgpService {
         try {
             PGPPublicKeyRingCollection newCollection = new PGPPublicKeyRingCollection(
                     stillTrusted);
-            fos = new FileOutputStream(ROO_PGP_FILE);
+            fos = new FileOutputStream(keyRingFile);
             newCollection.encode(fos);
         }
         catch (Exception e) {
@@ -248,11 +272,13 @@ public class PgpServiceImpl implements PgpService {
         }
         finally {
             IOUtils.closeQuietly(fos);
+            // Read it again next time, as it may be only partly written
+            trustedKeys = null;
         }
         return removed;
     }
 
-    public SortedMap<PgpKeyId, String> refresh() {
+    public synchronized SortedMap<PgpKeyId, String> refresh() {
         SortedMap<PgpKeyId, String> result = new TreeMap<PgpKeyId, String>();
         // Get the keys we currently trust
         List<PGPPublicKeyRing> trusted = getTrustedKeys();
@@ -293,7 +319,7 @@ public class PgpServiceImpl implements PgpService {
         try {
             PGPPublicKeyRingCollection newCollection = new PGPPublicKeyRingCollection(
                     stillTrusted);
-            fos = new FileOutputStream(ROO_PGP_FILE);
+            fos = new FileOutputStream(keyRingFile);
             newCollection.encode(fos);
         }
         catch (Exception e) {
@@ -301,6 +327,8 @@ public class PgpServiceImpl implements PgpService {
         }
         finally {
             IOUtils.closeQuietly(fos);
+            // Read it again next time, as it may be only partly written
+            trustedKeys = null;
         }
 
         return result;
@@ -405,7 +433,9 @@ public class PgpServiceImpl implements PgpService {
 
         // Special case where we directly store the key ID, as we know it's
         // valid
-        discoveredKeyIds.add(keyIdInHex);
+        synchronized (this) {
+            discoveredKeyIds.add(keyIdInHex);
+        }
 
         boolean signatureAcceptable = false;
 
@@ -440,7 +470,12 @@ public class PgpServiceImpl implements PgpService {
             }
 
             pgpSignature = isSignatureAcceptable(signature).getPgpSignature();
-            PGPPublicKeyRing keyRing = getPublicKey(new PgpKeyId(pgpSignature));
+            PgpKeyId keyId = new PgpKeyId(pgpSignature);
+            PGPPublicKeyRing keyRing = getTrustedKey(keyId);
+            if (keyRing == null) {
+                // Not trusted, so we don't have a copy of it
+                keyRing = getPublicKey(keyId);
+            }
             rememberKey(keyRing);
             publicKey = keyRing.getPublicKey();
 
@@ -467,8 +502,18 @@ public class PgpServiceImpl implements PgpService {
         }
     }
 
-    public SortedSet<PgpKeyId> getDiscoveredKeyIds() {
-        return Collections.unmodifiableSortedSet(discoveredKeyIds);
+    private PGPPublicKeyRing getTrustedKey(final PgpKeyId keyId) {
+        for (PGPPublicKeyRing keyRing : getTrustedKeys()) {
+            if (new PgpKeyId(keyRing.getPublicKey()).equals(keyId)) {
+                return keyRing;
+            }
+        }
+        return null;
+    }
+
+    public synchronized SortedSet<PgpKeyId> getDiscoveredKeyIds() {
+        return Collections.unmodifiableSortedSet(new TreeSet<PgpKeyId>(
+                discoveredKeyIds));
     }
 
     /**
@@ -483,7 +528,7 @@ public class PgpServiceImpl implements PgpService {
      * @param keyRing the key ID to store (required)
      */
     @SuppressWarnings("unchecked")
-    private void rememberKey(final PGPPublicKeyRing keyRing) {
+    private synchronized void rememberKey(final PGPPublicKeyRing keyRing) {
         PGPPublicKey key = keyRing.getPublicKey();
         if (key != null) {
             PgpKeyId keyId = new PgpKeyId(key);
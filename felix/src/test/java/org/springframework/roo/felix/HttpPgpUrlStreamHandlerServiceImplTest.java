@@ -0,0 +1,234 @@
+package org.springframework.roo.felix;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import org.bouncycastle.openpgp.PGPSignature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.roo.felix.pgp.PgpKeyId;
+import org.springframework.roo.felix.pgp.PgpService;
+import org.springframework.roo.felix.pgp.SignatureDecision;
+import org.springframework.roo.support.util.DigestUtils;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.roo.support.util.FileUtils;
+import org.springframework.roo.url.stream.UrlInputStreamService;
+
+/**
+ * Unit test of the cache of verified resources kept by
+ * {@link HttpPgpUrlStreamHandlerServiceImpl}
+ *
+ * @since 1.2.1
+ */
+public class HttpPgpUrlStreamHandlerServiceImplTest {
+
+    // Constants
+    private static final String HTTP_URL = "http://example.org/addon.jar";
+    private static final String SIGNATURE_PREFIX = "signature of ";
+
+    // Fixture
+    private File cacheDirectory;
+    private HttpPgpUrlStreamHandlerServiceImpl service;
+    private StubUrlInputStreamService urlInputStreamService;
+    private PgpService mockPgpService;
+    private boolean trusted;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDirectory = File.createTempFile("HttpPgpUrlStreamHandlerTest", "");
+        cacheDirectory.delete();
+        cacheDirectory.mkdir();
+
+        urlInputStreamService = new StubUrlInputStreamService();
+        mockPgpService = mock(PgpService.class);
+        trusted = true;
+        when(mockPgpService.isSignatureAcceptable(any(InputStream.class)))
+                .thenAnswer(new Answer<SignatureDecision>() {
+                    public SignatureDecision answer(
+                            final InvocationOnMock invocation) {
+                        return new SignatureDecision(mock(PGPSignature.class),
+                                new PgpKeyId("0x00B5050F"), trusted);
+                    }
+                });
+        // A resource is "signed" by its contents with a known prefix
+        when(
+                mockPgpService.isResourceSignedBySignature(
+                        any(InputStream.class), any(InputStream.class)))
+                .thenAnswer(new Answer<Boolean>() {
+                    public Boolean answer(final InvocationOnMock invocation)
+                            throws IOException {
+                        final Object[] arguments = invocation.getArguments();
+                        final byte[] resource = FileCopyUtils
+                                .copyToByteArray((InputStream) arguments[0]);
+                        final byte[] signature = FileCopyUtils
+                                .copyToByteArray((InputStream) arguments[1]);
+                        return Arrays.equals(sign(resource), signature);
+                    }
+                });
+
+        service = new HttpPgpUrlStreamHandlerServiceImpl();
+        service.urlInputStreamService = urlInputStreamService;
+        service.pgpService = mockPgpService;
+        service.cacheDirectory = cacheDirectory;
+        service.executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        service.executor.shutdownNow();
+        FileUtils.deleteRecursively(cacheDirectory);
+    }
+
+    private byte[] sign(final byte[] resource) {
+        return (SIGNATURE_PREFIX + new String(resource)).getBytes();
+    }
+
+    private void publish(final String contents) {
+        urlInputStreamService.resources.put(HTTP_URL, contents.getBytes());
+        urlInputStreamService.resources.put(HTTP_URL + ".asc",
+                sign(contents.getBytes()));
+    }
+
+    private URL getHttpPgpUrl() throws IOException {
+        // No handler is registered for this protocol outside of OSGi
+        return new URL(null, HTTP_URL.replace("http", "httppgp"),
+                new URLStreamHandler() {
+                    @Override
+                    protected URLConnection openConnection(final URL u) {
+                        throw new UnsupportedOperationException();
+                    }
+                });
+    }
+
+    private byte[] open() throws IOException {
+        return FileCopyUtils.copyToByteArray(service.openConnection(
+                getHttpPgpUrl()).getInputStream());
+    }
+
+    private File getResourceCacheDirectory() throws IOException {
+        return new File(cacheDirectory,
+                DigestUtils.sha1Hex(HTTP_URL.getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testVerifiedResourceIsCachedUnderItsSignature()
+            throws IOException {
+        publish("version 1");
+
+        assertArrayEquals("version 1".getBytes(), open());
+        assertArrayEquals("version 1".getBytes(), open());
+
+        assertEquals(1, urlInputStreamService.getDownloads(HTTP_URL));
+        assertEquals(2, urlInputStreamService.getDownloads(HTTP_URL + ".asc"));
+        final File cachedFile = new File(getResourceCacheDirectory(),
+                DigestUtils.sha1Hex(sign("version 1".getBytes())));
+        assertTrue(cachedFile.isFile());
+    }
+
+    @Test
+    public void testChangedSignatureReplacesCachedResource()
+            throws IOException {
+        publish("version 1");
+        open();
+        publish("version 2");
+
+        assertArrayEquals("version 2".getBytes(), open());
+
+        assertEquals(2, urlInputStreamService.getDownloads(HTTP_URL));
+        final File[] cachedFiles = getResourceCacheDirectory().listFiles();
+        assertEquals(1, cachedFiles.length);
+        assertEquals(DigestUtils.sha1Hex(sign("version 2".getBytes())),
+                cachedFiles[0].getName());
+    }
+
+    @Test
+    public void testCachedResourceIsVerifiedBeforeUse() throws IOException {
+        publish("version 1");
+        open();
+        final File cachedFile = new File(getResourceCacheDirectory(),
+                DigestUtils.sha1Hex(sign("version 1".getBytes())));
+        FileCopyUtils.copy("tampered".getBytes(), cachedFile);
+
+        assertArrayEquals("version 1".getBytes(), open());
+
+        assertEquals(2, urlInputStreamService.getDownloads(HTTP_URL));
+    }
+
+    @Test
+    public void testUntrustedResourceIsNotCached() throws IOException {
+        publish("version 1");
+        trusted = false;
+
+        try {
+            open();
+            fail("Expected an IOException");
+        }
+        catch (IOException expected) {
+        }
+
+        final File[] cachedFiles = getResourceCacheDirectory().listFiles();
+        assertTrue(cachedFiles == null || cachedFiles.length == 0);
+    }
+
+    @Test
+    public void testPrefetchCachesResource() throws IOException {
+        publish("version 1");
+
+        service.prefetch(Collections.singleton(getHttpPgpUrl()));
+
+        assertArrayEquals("version 1".getBytes(), open());
+        assertEquals(1, urlInputStreamService.getDownloads(HTTP_URL));
+    }
+
+    /**
+     * Serves fixed resources, counting how often each one is downloaded
+     */
+    private static class StubUrlInputStreamService implements
+            UrlInputStreamService {
+
+        // Fields
+        final Map<String, byte[]> resources = new HashMap<String, byte[]>();
+        private final Map<String, Integer> downloads = new HashMap<String, Integer>();
+
+        public synchronized InputStream openConnection(final URL httpUrl)
+                throws IOException {
+            final String url = httpUrl.toExternalForm();
+            downloads.put(url, getDownloads(url) + 1);
+            final byte[] contents = resources.get(url);
+            if (contents == null) {
+                throw new IOException("Not found: " + url);
+            }
+            return new ByteArrayInputStream(contents);
+        }
+
+        public String getUrlCannotBeOpenedMessage(final URL httpUrl) {
+            return null;
+        }
+
+        synchronized int getDownloads(final String url) {
+            final Integer count = downloads.get(url);
+            return count == null ? 0 : count;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.springframework.roo.felix.pgp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.support.util.FileCopyUtils;
+
+/**
+ * Unit test of the trusted key ring cache in {@link PgpServiceImpl}
+ *
+ * @since 1.2.1
+ */
+public class PgpServiceImplTest {
+
+    // Fixture
+    private File keyRingFile;
+    private CountingPgpService pgpService;
+
+    @Before
+    public void setUp() throws IOException {
+        keyRingFile = File.createTempFile("PgpServiceImplTest", ".bpg");
+        keyRingFile.delete();
+        pgpService = new CountingPgpService();
+        pgpService.keyRingFile = keyRingFile;
+    }
+
+    @After
+    public void tearDown() {
+        keyRingFile.delete();
+    }
+
+    @Test
+    public void testMissingKeyRingIsNotRead() {
+        assertTrue(pgpService.getTrustedKeys().isEmpty());
+        assertEquals(0, pgpService.reads);
+    }
+
+    @Test
+    public void testUnchangedKeyRingIsReadOnce() throws IOException {
+        FileCopyUtils.copy(new byte[1], keyRingFile);
+
+        pgpService.getTrustedKeys();
+        pgpService.getTrustedKeys();
+
+        assertEquals(1, pgpService.reads);
+    }
+
+    @Test
+    public void testKeyRingIsReadAgainWhenItsLengthChanges()
+            throws IOException {
+        FileCopyUtils.copy(new byte[1], keyRingFile);
+        final long lastModified = keyRingFile.lastModified();
+        pgpService.getTrustedKeys();
+
+        FileCopyUtils.copy(new byte[2], keyRingFile);
+        keyRingFile.setLastModified(lastModified);
+        pgpService.getTrustedKeys();
+
+        assertEquals(2, pgpService.reads);
+    }
+
+    @Test
+    public void testKeyRingIsReadAgainWhenItsDateChanges() throws IOException {
+        FileCopyUtils.copy(new byte[1], keyRingFile);
+        pgpService.getTrustedKeys();
+
+        keyRingFile.setLastModified(keyRingFile.lastModified() - 10000);
+        pgpService.getTrustedKeys();
+
+        assertEquals(2, pgpService.reads);
+    }
+
+    @Test
+    public void testKeyRingIsReadAgainAfterWritingIt() throws IOException {
+        FileCopyUtils.copy(new byte[1], keyRingFile);
+
+        pgpService.refresh();
+        pgpService.getTrustedKeys();
+
+        assertEquals(2, pgpService.reads);
+    }
+
+    @Test
+    public void testCallerCannotModifyCachedKeys() throws IOException {
+        FileCopyUtils.copy(new byte[1], keyRingFile);
+
+        pgpService.getTrustedKeys().add(null);
+
+        assertTrue(pgpService.getTrustedKeys().isEmpty());
+    }
+
+    /**
+     * Counts the reads of an (always empty) key ring, so that the contents of
+     * the file don't need to be valid
+     */
+    private static class CountingPgpService extends PgpServiceImpl {
+
+        // Fields
+        int reads;
+
+        @Override
+        List<PGPPublicKeyRing> readTrustedKeys() {
+            reads++;
+            return new ArrayList<PGPPublicKeyRing>();
+        }
+    }
+}
@@ -284,8 +284,8 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
 
                 // Build contents of the monitored location
                 final Map<File, Long> currentExecution = new HashMap<File, Long>();
-                computeEntries(currentExecution, request.getFile(),
-                        includeSubtree);
+                computeEntries(currentExecution, priorExecution.get(request),
+                        request.getFile(), includeSubtree);
 
                 final List<FileEvent> eventsToPublish = new ArrayList<FileEvent>();
 
@@ -425,24 +425,44 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
      * <li>If invoked with a File that is actually a Directory, subdirectories
      * will be added only if "includeSubtree" is true.</li>
      * </ul>
+     * <p>
+     * As this runs over the whole monitored tree on every poll, it keeps the
+     * number of file system calls per file to a minimum. In particular the
+     * canonical path (which requires resolving every element of the path) is
+     * only computed for files that weren't present in the prior execution.
+     * 
+     * @param map the map to add the entries to (required)
+     * @param priorFiles the entries found by the prior execution for the same
+     *            request (can be <code>null</code>)
+     * @param currentFile the file or directory to add (required)
+     * @param includeSubtree whether to descend into subdirectories
      */
     private void computeEntries(final Map<File, Long> map,
-            final File currentFile, final boolean includeSubtree) {
+            final Map<File, Long> priorFiles, final File currentFile,
+            final boolean includeSubtree) {
         Assert.notNull(map, "Map required");
         Assert.notNull(currentFile, "Current file is required");
 
-        if (!currentFile.exists()
-                || (currentFile.getName().length() > 1 && currentFile.getName()
-                        .startsWith("."))) {
+        if (currentFile.getName().length() > 1
+                && currentFile.getName().startsWith(".")) {
             return;
         }
 
-        map.put(currentFile, currentFile.lastModified());
-
-        try {
-            allFiles.add(currentFile.getCanonicalPath());
+        // A zero timestamp either means the file doesn't exist or that the
+        // timestamp is unavailable, so only then do we need to check
+        final long lastModified = currentFile.lastModified();
+        if (lastModified == 0 && !currentFile.exists()) {
+            return;
         }
-        catch (final IOException ignored) {
+
+        map.put(currentFile, lastModified);
+
+        if (priorFiles == null || !priorFiles.containsKey(currentFile)) {
+            try {
+                allFiles.add(currentFile.getCanonicalPath());
+            }
+            catch (final IOException ignored) {
+            }
         }
 
         if (currentFile.isDirectory()) {
@@ -450,8 +470,8 @@ public class PollingFileMonitorService implements NotifiableFileMonitorService {
             if (files == null || files.length == 0)
                 return;
             for (final File file : files) {
-                if (file.isFile() || includeSubtree) {
-                    computeEntries(map, file, includeSubtree);
+                if (includeSubtree || file.isFile()) {
+                    computeEntries(map, priorFiles, file, includeSubtree);
                 }
             }
         }
@@ -1,5 +1,7 @@
 package org.springframework.roo.file.undo;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
@@ -12,6 +14,9 @@ import org.springframework.roo.support.util.Assert;
 
 /**
  * Default implementation of the {@link UndoManager} interface.
+ * <p>
+ * Backups are held in an {@link UndoJournal} rather than as temporary copies
+ * of each file.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -23,16 +28,26 @@ public class DefaultUndoManager implements UndoManager {
     // Fields
     private final Stack<UndoableOperation> stack = new Stack<UndoableOperation>();
     private final Set<UndoListener> listeners = new HashSet<UndoListener>();
+    private final UndoJournal journal = new UndoJournal(
+            UndoJournal.DEFAULT_MEMORY_LIMIT);
     private boolean undoEnabled = true;
 
     protected void activate(final ComponentContext context) {
     }
 
+    protected void deactivate(final ComponentContext context) {
+        journal.clear();
+    }
+
     public void add(final UndoableOperation undoableOperation) {
         Assert.notNull(undoableOperation, "Undoable operation required");
         this.stack.push(undoableOperation);
     }
 
+    public FileBackup backup(final File file) throws IOException {
+        return journal.backup(file);
+    }
+
     public void flush() {
         notifyListeners(UndoOperation.FLUSH);
     }
@@ -50,6 +65,7 @@ public class DefaultUndoManager implements UndoManager {
                                 + "' threw an exception, in violation of the interface contract");
             }
         }
+        clearJournal();
         notifyListeners(UndoOperation.RESET);
     }
 
@@ -80,10 +96,23 @@ public class DefaultUndoManager implements UndoManager {
                                 + "' threw an exception, in violation of the interface contract");
             }
         }
+        clearJournal();
         notifyListeners(UndoOperation.UNDO);
         return undoMode;
     }
 
+    /**
+     * Discards any backups the operations just popped failed to discard,
+     * unless more operations have been added in the meantime
+     */
+    private void clearJournal() {
+        synchronized (stack) {
+            if (stack.empty()) {
+                journal.clear();
+            }
+        }
+    }
+
     public void setUndoEnabled(final boolean undoEnabled) {
         this.undoEnabled = undoEnabled;
     }
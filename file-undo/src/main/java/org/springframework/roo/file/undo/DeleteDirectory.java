@@ -1,7 +1,12 @@
 package org.springframework.roo.file.undo;
 
 import java.io.File;
-import java.util.Date;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.logging.Logger;
 
 import org.springframework.roo.support.logging.HandlerUtils;
@@ -18,14 +23,15 @@ import org.springframework.roo.support.util.StringUtils;
 public class DeleteDirectory implements UndoableOperation {
 
     // Constants
-    private static final File TEMP_DIRECTORY = new File(
-            System.getProperty("java.io.tmpdir"));
     private static final Logger LOGGER = HandlerUtils
             .getLogger(DeleteDirectory.class);
 
     // Fields
     private final File actual;
-    private final File backup;
+    /** the deleted directory and its sub-directories, parents first */
+    private final List<File> directories = new ArrayList<File>();
+    /** key: a deleted file, value: its contents */
+    private final Map<File, FileBackup> backups = new LinkedHashMap<File, FileBackup>();
     private final FilenameResolver filenameResolver;
 
     /**
@@ -62,16 +68,16 @@ public class DeleteDirectory implements UndoableOperation {
         Assert.isTrue(directory.exists(), "File '" + directory + "' must exist");
         Assert.isTrue(directory.isDirectory(), "Path '" + directory
                 + "' must be a directory (not a file)");
-        Assert.isTrue(TEMP_DIRECTORY.isDirectory(), "Temporary directory '"
-                + TEMP_DIRECTORY + "' is not a directory");
         this.actual = directory;
-        this.backup = new File(TEMP_DIRECTORY, "tmp_" + new Date().getTime()
-                + "_dir");
         this.filenameResolver = filenameResolver;
-        if (!FileUtils.copyRecursively(directory, backup, true)) {
+        try {
+            backup(undoManager, directory);
+        }
+        catch (final IOException e) {
+            discardBackups();
             throw new IllegalStateException(
                     "Unable to create a complete backup of directory '"
-                            + directory + "'");
+                            + directory + "'", e);
         }
         if (!FileUtils.deleteRecursively(directory)) {
             throw new IllegalStateException(
@@ -86,29 +92,57 @@ public class DeleteDirectory implements UndoableOperation {
         LOGGER.fine(deletionMessage);
     }
 
-    public void reset() {
-        // Fix for ROO-1555
-        try {
-            if (FileUtils.deleteRecursively(backup)) {
-                LOGGER.finest("Reset manage "
-                        + filenameResolver.getMeaningfulName(backup));
+    private void backup(final UndoManager undoManager, final File directory)
+            throws IOException {
+        directories.add(directory);
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list directory '" + directory
+                    + "'");
+        }
+        for (final File file : files) {
+            if (file.isFile()) {
+                backups.put(file, undoManager.backup(file));
             }
             else {
-                backup.deleteOnExit();
-                LOGGER.fine("Reset failed "
-                        + filenameResolver.getMeaningfulName(backup));
+                backup(undoManager, file);
             }
         }
-        catch (final Throwable ignore) {
-            backup.deleteOnExit();
-            LOGGER.fine("Reset failed "
-                    + filenameResolver.getMeaningfulName(backup));
+    }
+
+    private void discardBackups() {
+        for (final FileBackup backup : backups.values()) {
+            backup.discard();
         }
     }
 
+    public void reset() {
+        discardBackups();
+        LOGGER.finest("Reset manage "
+                + filenameResolver.getMeaningfulName(actual));
+    }
+
     public boolean undo() {
-        final boolean success = FileUtils
-                .copyRecursively(backup, actual, false);
+        boolean success = true;
+        try {
+            for (final File directory : directories) {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    success = false;
+                    break;
+                }
+            }
+            if (success) {
+                for (final Entry<File, FileBackup> entry : backups.entrySet()) {
+                    entry.getValue().restore(entry.getKey());
+                }
+            }
+        }
+        catch (final IOException e) {
+            success = false;
+        }
+        finally {
+            discardBackups();
+        }
         if (success) {
             LOGGER.fine("Undo delete "
                     + filenameResolver.getMeaningfulName(actual));
@@ -6,7 +6,6 @@ import java.util.logging.Logger;
 
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.Assert;
-import org.springframework.roo.support.util.FileCopyUtils;
 import org.springframework.roo.support.util.StringUtils;
 
 /**
@@ -23,7 +22,7 @@ public class DeleteFile implements UndoableOperation {
 
     // Fields
     private final File actual;
-    private final File backup;
+    private final FileBackup backup;
     private final FilenameResolver filenameResolver;
 
     /**
@@ -62,8 +61,7 @@ public class DeleteFile implements UndoableOperation {
                 + "' must be a file (not a directory)");
 
         try {
-            this.backup = File.createTempFile("DeleteFile", "tmp");
-            FileCopyUtils.copy(actual, backup);
+            this.backup = undoManager.backup(actual);
         }
         catch (final IOException ioe) {
             throw new IllegalStateException("Unable to make a backup of file '"
@@ -82,28 +80,14 @@ public class DeleteFile implements UndoableOperation {
     }
 
     public void reset() {
-        // Fix for ROO-1555
-        try {
-            if (backup.delete()) {
-                LOGGER.finest("Reset manage "
-                        + filenameResolver.getMeaningfulName(backup));
-            }
-            else {
-                backup.deleteOnExit();
-                LOGGER.fine("Reset failed "
-                        + filenameResolver.getMeaningfulName(backup));
-            }
-        }
-        catch (final Throwable e) {
-            backup.deleteOnExit();
-            LOGGER.fine("Reset failed "
-                    + filenameResolver.getMeaningfulName(backup));
-        }
+        backup.discard();
+        LOGGER.finest("Reset manage "
+                + filenameResolver.getMeaningfulName(actual));
     }
 
     public boolean undo() {
         try {
-            FileCopyUtils.copy(backup, actual);
+            backup.restore(actual);
             LOGGER.fine("Undo delete "
                     + filenameResolver.getMeaningfulName(actual));
             return true;
@@ -113,6 +97,9 @@ public class DeleteFile implements UndoableOperation {
                     + filenameResolver.getMeaningfulName(actual));
             return false;
         }
+        finally {
+            backup.discard();
+        }
     }
 
 }
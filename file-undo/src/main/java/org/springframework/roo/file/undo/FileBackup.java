@@ -0,0 +1,30 @@
+package org.springframework.roo.file.undo;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A copy of the contents of a file, taken by {@link UndoManager#backup(File)}
+ * so that an {@link UndoableOperation} can restore them.
+ *
+ * @since 1.2.1
+ */
+public interface FileBackup {
+
+    /**
+     * Writes the backed up contents to the given file, creating it if
+     * necessary and replacing any existing contents.
+     *
+     * @param file the file to write (required)
+     * @throws IOException if the contents could not be written
+     */
+    void restore(File file) throws IOException;
+
+    /**
+     * Releases any resources held by this backup, after which it can't be
+     * restored.
+     * <p>
+     * No exceptions may be thrown.
+     */
+    void discard();
+}
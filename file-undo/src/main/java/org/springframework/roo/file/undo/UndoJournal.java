@@ -0,0 +1,234 @@
+package org.springframework.roo.file.undo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.DigestUtils;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.roo.support.util.IOUtils;
+
+/**
+ * Holds the backups taken by an {@link UndoManager}.
+ * <p>
+ * Each backup is compressed and held in memory, with identical contents only
+ * held once. Once the backups held in memory reach a given size, any further
+ * ones are appended to a single temporary journal file instead. The journal
+ * file is deleted once all the backups have been discarded.
+ * <p>
+ * Thread safe.
+ *
+ * @since 1.2.1
+ */
+class UndoJournal {
+
+    // Constants
+    static final int DEFAULT_MEMORY_LIMIT = 16 * 1024 * 1024;
+
+    // Fields
+    private final int memoryLimit;
+    /** key: digest of some backed up contents, value: where they're held */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private int memoryUsed;
+    private File journalFile;
+    private RandomAccessFile journal;
+
+    /**
+     * Constructor
+     *
+     * @param memoryLimit the number of compressed bytes to hold in memory
+     *            before using the journal file
+     */
+    UndoJournal(final int memoryLimit) {
+        Assert.isTrue(memoryLimit >= 0, "Memory limit can't be negative");
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * Backs up the current contents of the given file.
+     *
+     * @param file the file to back up (required, must be an existing file)
+     * @return a non-<code>null</code> backup
+     * @throws IOException if the file couldn't be read or the journal file
+     *             couldn't be written
+     */
+    FileBackup backup(final File file) throws IOException {
+        Assert.notNull(file, "File required");
+        final byte[] contents = FileCopyUtils.copyToByteArray(file);
+        final String digest = DigestUtils.sha1Hex(contents) + ":"
+                + contents.length;
+        synchronized (entries) {
+            Entry entry = entries.get(digest);
+            if (entry == null) {
+                entry = store(digest, compress(contents));
+                entries.put(digest, entry);
+            }
+            entry.references++;
+            return new Backup(entry);
+        }
+    }
+
+    /**
+     * Discards all the backups, including any not yet discarded.
+     */
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+            memoryUsed = 0;
+            IOUtils.closeQuietly(journal);
+            journal = null;
+            if (journalFile != null && !journalFile.delete()) {
+                journalFile.deleteOnExit();
+            }
+            journalFile = null;
+        }
+    }
+
+    /**
+     * Returns the number of backups being held, for testing
+     *
+     * @return see above
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Indicates whether a journal file is in use, for testing
+     *
+     * @return see above
+     */
+    boolean isJournalFileInUse() {
+        synchronized (entries) {
+            return journal != null;
+        }
+    }
+
+    private Entry store(final String digest, final byte[] compressed)
+            throws IOException {
+        if (memoryUsed + compressed.length <= memoryLimit) {
+            memoryUsed += compressed.length;
+            return new Entry(digest, compressed, -1, compressed.length);
+        }
+        if (journal == null) {
+            journalFile = File.createTempFile("roo-undo", ".journal");
+            journalFile.deleteOnExit();
+            journal = new RandomAccessFile(journalFile, "rw");
+        }
+        final long offset = journal.length();
+        journal.seek(offset);
+        journal.write(compressed);
+        return new Entry(digest, null, offset, compressed.length);
+    }
+
+    private byte[] read(final Entry entry) throws IOException {
+        final byte[] compressed;
+        synchronized (entries) {
+            Assert.isTrue(entries.get(entry.digest) == entry,
+                    "Backup has been discarded");
+            if (entry.compressed != null) {
+                compressed = entry.compressed;
+            }
+            else {
+                compressed = new byte[entry.length];
+                journal.seek(entry.offset);
+                journal.readFully(compressed);
+            }
+        }
+        return FileCopyUtils.copyToByteArray(new InflaterInputStream(
+                new ByteArrayInputStream(compressed)));
+    }
+
+    private void release(final Entry entry) {
+        synchronized (entries) {
+            entry.references--;
+            if (entry.references > 0 || entries.get(entry.digest) != entry) {
+                return;
+            }
+            entries.remove(entry.digest);
+            if (entry.compressed != null) {
+                memoryUsed -= entry.length;
+            }
+            if (entries.isEmpty()) {
+                clear();
+            }
+        }
+    }
+
+    private static byte[] compress(final byte[] contents) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+                contents.length / 4 + 16);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            final DeflaterOutputStream outputStream = new DeflaterOutputStream(
+                    compressed, deflater);
+            outputStream.write(contents);
+            outputStream.close();
+        }
+        finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Some backed up contents, and where they're held
+     */
+    private static class Entry {
+
+        // Fields
+        final String digest;
+        /** the compressed contents, or <code>null</code> if in the journal */
+        final byte[] compressed;
+        final long offset;
+        final int length;
+        int references;
+
+        Entry(final String digest, final byte[] compressed, final long offset,
+                final int length) {
+            this.digest = digest;
+            this.compressed = compressed;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A reference to an entry, which can be discarded once
+     */
+    private class Backup implements FileBackup {
+
+        // Fields
+        private final Entry entry;
+        private boolean discarded;
+
+        Backup(final Entry entry) {
+            this.entry = entry;
+        }
+
+        public void restore(final File file) throws IOException {
+            Assert.notNull(file, "File required");
+            Assert.isTrue(!discarded, "Backup has been discarded");
+            FileCopyUtils.copy(read(entry), file);
+        }
+
+        public void discard() {
+            synchronized (entries) {
+                if (!discarded) {
+                    discarded = true;
+                    release(entry);
+                }
+            }
+        }
+    }
+}
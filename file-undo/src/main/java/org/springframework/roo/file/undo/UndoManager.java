@@ -1,5 +1,7 @@
 package org.springframework.roo.file.undo;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Stack;
 
 /**
@@ -23,6 +25,18 @@ public interface UndoManager {
      */
     void add(UndoableOperation undoableOperation);
 
+    /**
+     * Backs up the current contents of the given file, for an
+     * {@link UndoableOperation} that may need to restore them. The backup is
+     * discarded when the {@link Stack} is next cleared, if not before.
+     * 
+     * @param file the file to back up (required, must be an existing file)
+     * @return a non-<code>null</code> backup
+     * @throws IOException if the file can't be backed up
+     * @since 1.2.1
+     */
+    FileBackup backup(File file) throws IOException;
+
     /**
      * Replays the undo {@link Stack}, and guarantees to clear the {@link Stack}
      * .
@@ -6,7 +6,6 @@ import java.util.logging.Logger;
 
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.Assert;
-import org.springframework.roo.support.util.FileCopyUtils;
 
 /**
  * {@link UndoableOperation} to update a file.
@@ -23,7 +22,7 @@ public class UpdateFile implements UndoableOperation {
     // Fields
     private final FilenameResolver filenameResolver;
     private final File actual;
-    private final File backup;
+    private final FileBackup backup;
 
     /**
      * Constructor
@@ -43,8 +42,7 @@ public class UpdateFile implements UndoableOperation {
         Assert.notNull(filenameResolver, "Filename resolver required");
         this.filenameResolver = filenameResolver;
         try {
-            backup = File.createTempFile("UpdateFile", "tmp");
-            FileCopyUtils.copy(actual, backup);
+            backup = undoManager.backup(actual);
         }
         catch (IOException ioe) {
             throw new IllegalStateException("Unable to make a backup of file '"
@@ -55,28 +53,14 @@ public class UpdateFile implements UndoableOperation {
     }
 
     public void reset() {
-        // Fix for ROO-1555
-        try {
-            if (backup.delete()) {
-                LOGGER.finest("Reset manage "
-                        + filenameResolver.getMeaningfulName(backup));
-            }
-            else {
-                backup.deleteOnExit();
-                LOGGER.fine("Reset failed "
-                        + filenameResolver.getMeaningfulName(backup));
-            }
-        }
-        catch (Throwable e) {
-            backup.deleteOnExit();
-            LOGGER.fine("Reset failed "
-                    + filenameResolver.getMeaningfulName(backup));
-        }
+        backup.discard();
+        LOGGER.finest("Reset manage "
+                + filenameResolver.getMeaningfulName(actual));
     }
 
     public boolean undo() {
         try {
-            FileCopyUtils.copy(backup, actual);
+            backup.restore(actual);
             LOGGER.fine("Undo manage "
                     + filenameResolver.getMeaningfulName(actual));
             return true;
@@ -86,5 +70,8 @@ public class UpdateFile implements UndoableOperation {
                     + filenameResolver.getMeaningfulName(actual));
             return false;
         }
+        finally {
+            backup.discard();
+        }
     }
 }
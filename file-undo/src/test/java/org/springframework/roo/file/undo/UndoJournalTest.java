@@ -0,0 +1,124 @@
+package org.springframework.roo.file.undo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.support.util.FileCopyUtils;
+import org.springframework.roo.support.util.FileUtils;
+
+/**
+ * Unit test of {@link UndoJournal}
+ *
+ * @since 1.2.1
+ */
+public class UndoJournalTest {
+
+    // Fixture
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("UndoJournalTest", "");
+        directory.delete();
+        directory.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteRecursively(directory);
+    }
+
+    private File createFile(final String name, final String contents)
+            throws IOException {
+        final File file = new File(directory, name);
+        FileCopyUtils.copy(contents.getBytes(), file);
+        return file;
+    }
+
+    private String read(final File file) throws IOException {
+        return FileCopyUtils.copyToString(file);
+    }
+
+    @Test
+    public void testRestoreBackupHeldInMemory() throws IOException {
+        // Set up
+        final UndoJournal journal = new UndoJournal(
+                UndoJournal.DEFAULT_MEMORY_LIMIT);
+        final File file = createFile("a.txt", "original");
+        final FileBackup backup = journal.backup(file);
+        FileCopyUtils.copy("changed".getBytes(), file);
+
+        // Invoke
+        backup.restore(file);
+
+        // Check
+        assertEquals("original", read(file));
+        assertFalse(journal.isJournalFileInUse());
+    }
+
+    @Test
+    public void testRestoreBackupsHeldInJournalFile() throws IOException {
+        // Set up
+        final UndoJournal journal = new UndoJournal(0);
+        final File first = createFile("a.txt", "first");
+        final File second = createFile("b.txt", "second");
+        final FileBackup firstBackup = journal.backup(first);
+        final FileBackup secondBackup = journal.backup(second);
+        first.delete();
+        second.delete();
+
+        // Invoke
+        secondBackup.restore(second);
+        firstBackup.restore(first);
+
+        // Check
+        assertTrue(journal.isJournalFileInUse());
+        assertEquals("first", read(first));
+        assertEquals("second", read(second));
+    }
+
+    @Test
+    public void testIdenticalContentsAreHeldOnce() throws IOException {
+        // Set up
+        final UndoJournal journal = new UndoJournal(
+                UndoJournal.DEFAULT_MEMORY_LIMIT);
+        final File first = createFile("a.txt", "same");
+        final File second = createFile("b.txt", "same");
+
+        // Invoke
+        final FileBackup firstBackup = journal.backup(first);
+        final FileBackup secondBackup = journal.backup(second);
+
+        // Check
+        assertEquals(1, journal.size());
+        firstBackup.discard();
+        firstBackup.discard();
+        assertEquals(1, journal.size());
+        secondBackup.restore(second);
+        assertEquals("same", read(second));
+        secondBackup.discard();
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    public void testJournalFileIsReleasedWhenAllBackupsAreDiscarded()
+            throws IOException {
+        // Set up
+        final UndoJournal journal = new UndoJournal(0);
+        final FileBackup backup = journal.backup(createFile("a.txt", "a"));
+        assertTrue(journal.isJournalFileInUse());
+
+        // Invoke
+        backup.discard();
+
+        // Check
+        assertFalse(journal.isJournalFileInUse());
+    }
+}
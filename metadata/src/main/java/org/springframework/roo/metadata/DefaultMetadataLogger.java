@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.Stack;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Service;
@@ -15,6 +16,9 @@ import org.springframework.roo.support.util.Assert;
 
 /**
  * Default implementation of {@link MetadataLogger}.
+ * <p>
+ * Event and timer stacks are kept per thread, so that metadata produced
+ * concurrently is logged and timed correctly.
  * 
  * @author Ben Alex
  * @since 1.1.2
@@ -25,10 +29,20 @@ public class DefaultMetadataLogger implements MetadataLogger {
 
     // Fields
     private int traceLevel = 0;
-    private long eventNumber = 0;
+    private final AtomicLong eventNumber = new AtomicLong();
     private FileWriter fileLog;
-    private final Stack<Long> eventStack = new Stack<Long>();
-    private final Stack<TimerEntry> timerStack = new Stack<TimerEntry>();
+    private final ThreadLocal<Stack<Long>> eventStacks = new ThreadLocal<Stack<Long>>() {
+        @Override
+        protected Stack<Long> initialValue() {
+            return new Stack<Long>();
+        }
+    };
+    private final ThreadLocal<Stack<TimerEntry>> timerStacks = new ThreadLocal<Stack<TimerEntry>>() {
+        @Override
+        protected Stack<TimerEntry> initialValue() {
+            return new Stack<TimerEntry>();
+        }
+    };
     /** key: responsible class, value: nanos occupied */
     private final Map<String, Long> timings = new HashMap<String, Long>();
     /**
@@ -64,11 +78,11 @@ public class DefaultMetadataLogger implements MetadataLogger {
     }
 
     public void startEvent() {
-        eventNumber++;
-        eventStack.push(eventNumber);
+        eventStacks.get().push(eventNumber.incrementAndGet());
     }
 
     public void stopEvent() {
+        Stack<Long> eventStack = eventStacks.get();
         Assert.isTrue(
                 eventStack.size() > 0,
                 "Event stack is empty, indicating a mismatched number of timer start/stop calls");
@@ -77,6 +91,7 @@ public class DefaultMetadataLogger implements MetadataLogger {
 
     public void log(final String message) {
         Assert.hasText(message, "Message to log required");
+        Stack<Long> eventStack = eventStacks.get();
         Assert.isTrue(eventStack.size() > 0,
                 "Event stack is empty, so no logging should have been requested at this time");
         StringBuilder sb = new StringBuilder("00000000");
@@ -96,6 +111,7 @@ public class DefaultMetadataLogger implements MetadataLogger {
     public void startTimer(final String responsibleClass) {
         Assert.hasText(responsibleClass, "Responsible class required");
         long now = System.nanoTime();
+        Stack<TimerEntry> timerStack = timerStacks.get();
         if (timerStack.size() > 0) {
             // There is an existing timer on the stack, so we need to stop the
             // clock for it
@@ -113,6 +129,7 @@ public class DefaultMetadataLogger implements MetadataLogger {
     }
 
     public void stopTimer() {
+        Stack<TimerEntry> timerStack = timerStacks.get();
         Assert.isTrue(
                 timerStack.size() > 0,
                 "Timer stack is empty, indicating a mismatched number of timer start/stop calls");
@@ -143,7 +160,7 @@ public class DefaultMetadataLogger implements MetadataLogger {
         }
     }
 
-    private void logToFile(final String line) {
+    private synchronized void logToFile(final String line) {
         if (fileLog == null) {
             try {
                 // Overwrite existing (don't append)
@@ -2,10 +2,14 @@ package org.springframework.roo.metadata;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
@@ -21,9 +25,16 @@ import org.springframework.roo.support.util.Assert;
 /**
  * Default implementation of {@link MetadataService}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * This implementation is thread safe, and recursive requests are detected per
+ * thread. By default all metadata is produced under a single lock, i.e.
+ * serially, exactly as the process manager expects. Setting the
+ * <code>roo.metadata.concurrency</code> system property to a value greater
+ * than one enables the concurrent mode, in which only the production of the
+ * same MID is serialised, so that independent metadata (for example the ITDs
+ * of unrelated types) can be produced at the same time by different threads.
+ * A thread that requests a MID being produced by another thread waits for it,
+ * unless that other thread is itself (directly or indirectly) waiting for the
+ * requesting thread; such a circular request is treated like a recursive one.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -35,28 +46,39 @@ public class DefaultMetadataService extends AbstractMetadataCache implements
         MetadataService {
 
     // Fields
-    @Reference private MetadataDependencyRegistry metadataDependencyRegistry;
-    @Reference private MetadataLogger metadataLogger;
-
-    private int validGets = 0;
-    private int recursiveGets = 0;
-    private int cachePuts = 0;
-    private int cacheHits = 0;
-    private int cacheMisses = 0;
-    private int cacheEvictions = 0;
-    private final Set<MetadataProvider> providers = new HashSet<MetadataProvider>();
-    private final Map<String, MetadataProvider> providerMap = new HashMap<String, MetadataProvider>();
-
-    // Mutex
+    @Reference MetadataDependencyRegistry metadataDependencyRegistry;
+    @Reference MetadataLogger metadataLogger;
+
+    private final AtomicInteger validGets = new AtomicInteger();
+    private final AtomicInteger recursiveGets = new AtomicInteger();
+    private final AtomicInteger cachePuts = new AtomicInteger();
+    private final AtomicInteger cacheHits = new AtomicInteger();
+    private final AtomicInteger cacheMisses = new AtomicInteger();
+    private final AtomicInteger cacheEvictions = new AtomicInteger();
+    private final Set<MetadataProvider> providers = new CopyOnWriteArraySet<MetadataProvider>();
+    private final Map<String, MetadataProvider> providerMap = new ConcurrentHashMap<String, MetadataProvider>();
+
+    // Mutex for provider (un)binding
     private final Object lock = new Object();
 
-    // Request control
-    // List to assist output "stacks"which show the order of requests
-    private final List<String> activeRequests = new ArrayList<String>();
-
-    // List to help us verify correct operation through logs (predictable
-    // ordering)
-    private final List<String> keysToRetry = new ArrayList<String>();
+    // Concurrency control for the production of metadata
+    private final boolean concurrent = Integer.getInteger(
+            "roo.metadata.concurrency", 1) > 1;
+    /** guards all production of metadata in the serial mode */
+    private final Lock serialLock = new ReentrantLock();
+    /** key: MID being produced; value: the thread producing it */
+    private final Map<String, Thread> producers = new HashMap<String, Thread>();
+    /** key: thread waiting to produce a MID; value: that MID */
+    private final Map<Thread, String> waitingProducers = new HashMap<Thread, String>();
+
+    // Request control, kept per thread so that concurrent requests don't
+    // mistake each other for recursion
+    private final ThreadLocal<RequestContext> requestContexts = new ThreadLocal<RequestContext>() {
+        @Override
+        protected RequestContext initialValue() {
+            return new RequestContext();
+        }
+    };
 
     protected void bindMetadataProvider(final MetadataProvider mp) {
         synchronized (lock) {
@@ -103,70 +125,87 @@ public class DefaultMetadataService extends AbstractMetadataCache implements
                         + metadataIdentificationString
                         + "' does not identify a metadata instance");
 
-        synchronized (lock) {
-            validGets++;
+        RequestContext requestContext = requestContexts.get();
+        validGets.incrementAndGet();
 
-            try {
-                metadataLogger.startEvent();
+        try {
+            metadataLogger.startEvent();
 
-                // Do some cache eviction if the caller requested it
-                if (evictCache) {
-                    evict(metadataIdentificationString);
+            // If notifications are being batched, deliver any that could
+            // change the requested item before looking it up
+            if (requestContext.activeRequests.isEmpty()) {
+                metadataDependencyRegistry
+                        .flushNotifications(metadataIdentificationString);
+            }
+
+            // Do some cache eviction if the caller requested it
+            if (evictCache) {
+                evict(metadataIdentificationString);
+                if (metadataLogger.getTraceLevel() > 0) {
+                    metadataLogger.log("Evicting "
+                            + metadataIdentificationString);
+                }
+                cacheEvictions.incrementAndGet();
+            }
+
+            // We can use the cache even for a recursive get (unless of
+            // course the caller has prevented it)
+            if (cacheRetrievalAllowed) {
+                // Try the cache first
+                MetadataItem result = getFromCache(metadataIdentificationString);
+                if (result != null) {
+                    cacheHits.incrementAndGet();
                     if (metadataLogger.getTraceLevel() > 0) {
-                        metadataLogger.log("Evicting "
+                        metadataLogger.log("Cache hit "
                                 + metadataIdentificationString);
                     }
-                    cacheEvictions++;
+                    return result;
                 }
+            }
+
+            // Determine if this MID was already requested earlier by this
+            // thread. We need to stop these infinite requests from occurring.
+            if (requestContext.activeRequests
+                    .contains(metadataIdentificationString)) {
+                recordCacheMiss(metadataIdentificationString);
+                blockRequest(requestContext, metadataIdentificationString,
+                        "Blocked recursive request for ");
+                return null;
+            }
+
+            // Get the destination
+            String mdClassId = MetadataIdentificationUtils
+                    .getMetadataClassId(metadataIdentificationString);
+            MetadataProvider p = providerMap.get(mdClassId);
+            Assert.notNull(
+                    p,
+                    "No metadata provider is currently registered to provide metadata for identifier '"
+                            + metadataIdentificationString
+                            + "' (class '"
+                            + mdClassId + "')");
+
+            // Only one thread may produce a given MID at a time
+            if (!acquire(metadataIdentificationString)) {
+                recordCacheMiss(metadataIdentificationString);
+                blockRequest(requestContext, metadataIdentificationString,
+                        "Blocked circular request across threads for ");
+                return null;
+            }
 
-                // We can use the cache even for a recursive get (unless of
-                // course the caller has prevented it)
+            try {
+                // Another thread may have produced it while we were waiting
                 if (cacheRetrievalAllowed) {
-                    // Try the cache first
                     MetadataItem result = getFromCache(metadataIdentificationString);
                     if (result != null) {
-                        cacheHits++;
-                        if (metadataLogger.getTraceLevel() > 0) {
-                            metadataLogger.log("Cache hit "
-                                    + metadataIdentificationString);
-                        }
+                        cacheHits.incrementAndGet();
                         return result;
                     }
                 }
-
-                if (metadataLogger.getTraceLevel() > 0) {
-                    metadataLogger.log("Cache miss "
-                            + metadataIdentificationString);
-                }
-                cacheMisses++;
-
-                // Determine if this MID was already requested earlier. We need
-                // to stop these infinite requests from occurring.
-                if (activeRequests.contains(metadataIdentificationString)) {
-                    recursiveGets++;
-                    if (!keysToRetry.contains(metadataIdentificationString)) {
-                        if (metadataLogger.getTraceLevel() > 0) {
-                            metadataLogger.log("Blocked recursive request for "
-                                    + metadataIdentificationString);
-                        }
-                        keysToRetry.add(metadataIdentificationString);
-                    }
-                    return null;
-                }
-
-                // Get the destination
-                String mdClassId = MetadataIdentificationUtils
-                        .getMetadataClassId(metadataIdentificationString);
-                MetadataProvider p = providerMap.get(mdClassId);
-                Assert.notNull(
-                        p,
-                        "No metadata provider is currently registered to provide metadata for identifier '"
-                                + metadataIdentificationString
-                                + "' (class '"
-                                + mdClassId + "')");
+                // Only now is it certain that the cache didn't have it
+                recordCacheMiss(metadataIdentificationString);
 
                 // Infinite loop management
-                activeRequests.add(metadataIdentificationString);
+                requestContext.activeRequests.add(metadataIdentificationString);
 
                 // Obtain the item
                 if (metadataLogger.getTraceLevel() > 0) {
@@ -190,7 +229,7 @@ public class DefaultMetadataService extends AbstractMetadataCache implements
                                 + metadataIdentificationString);
                     }
                     evict(metadataIdentificationString);
-                    cacheEvictions++;
+                    cacheEvictions.incrementAndGet();
                 }
 
                 // Put into the cache, provided it isn't null
@@ -200,11 +239,9 @@ public class DefaultMetadataService extends AbstractMetadataCache implements
                                 + metadataIdentificationString);
                     }
                     super.put(result);
-                    cachePuts++;
+                    cachePuts.incrementAndGet();
                 }
 
-                activeRequests.remove(metadataIdentificationString);
-
                 if (metadataLogger.getTraceLevel() > 0) {
                     metadataLogger.log("Returning "
                             + metadataIdentificationString);
@@ -212,55 +249,184 @@ public class DefaultMetadataService extends AbstractMetadataCache implements
 
                 return result;
             }
-            catch (Exception e) {
-                activeRequests.remove(metadataIdentificationString);
-                throw new IllegalStateException(e);
-            }
             finally {
-                // We use another try..finally block as we want to ensure
-                // exceptions don't prevent our metadataLogger.stopEvent()
-                try {
-                    // Have we processed all requests? If so, handle any retries
-                    // we recorded
-                    if (activeRequests.isEmpty()) {
-                        List<String> thisRetry = new ArrayList<String>();
-                        thisRetry.addAll(keysToRetry);
-                        keysToRetry.clear();
-                        if (metadataLogger.getTraceLevel() > 0
-                                && thisRetry.size() > 0) {
-                            metadataLogger.log(thisRetry.size()
-                                    + " keys to retry: " + thisRetry);
-                        }
-                        for (String retryMid : thisRetry) {
-                            // Important: we should not evict any prior version
-                            // from the cache (an interim version is
-                            // acceptable).
-                            // We discard the result of the get; this is purely
-                            // to facilitate updating metadata stored in memory
-                            // and on-disk
-                            if (metadataLogger.getTraceLevel() > 0) {
-                                metadataLogger.log("Retrying " + retryMid);
-                            }
-                            getInternal(retryMid, false, false);
-                        }
-                        if (metadataLogger.getTraceLevel() > 0
-                                && thisRetry.size() > 0) {
-                            metadataLogger.log("Retry group completed "
-                                    + metadataIdentificationString);
+                requestContext.activeRequests
+                        .remove(metadataIdentificationString);
+                release(metadataIdentificationString);
+            }
+        }
+        catch (InterruptedException e) {
+            // Let the caller know it was interrupted
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        finally {
+            // We use another try..finally block as we want to ensure
+            // exceptions don't prevent our metadataLogger.stopEvent()
+            try {
+                // Have we processed all requests? If so, handle any retries
+                // we recorded
+                if (requestContext.activeRequests.isEmpty()) {
+                    List<String> thisRetry = new ArrayList<String>();
+                    thisRetry.addAll(requestContext.keysToRetry);
+                    requestContext.keysToRetry.clear();
+                    if (metadataLogger.getTraceLevel() > 0
+                            && thisRetry.size() > 0) {
+                        metadataLogger.log(thisRetry.size()
+                                + " keys to retry: " + thisRetry);
+                    }
+                    for (String retryMid : thisRetry) {
+                        // Important: we should not evict any prior version
+                        // from the cache (an interim version is
+                        // acceptable).
+                        // We discard the result of the get; this is purely
+                        // to facilitate updating metadata stored in memory
+                        // and on-disk
+                        if (metadataLogger.getTraceLevel() > 0) {
+                            metadataLogger.log("Retrying " + retryMid);
                         }
+                        getInternal(retryMid, false, false);
                     }
+                    if (metadataLogger.getTraceLevel() > 0
+                            && thisRetry.size() > 0) {
+                        metadataLogger.log("Retry group completed "
+                                + metadataIdentificationString);
+                    }
+                }
+            }
+            finally {
+                metadataLogger.stopEvent();
+            }
+        }
+    }
+
+    /**
+     * Records that the given MID was not found in the cache.
+     * 
+     * @param metadataIdentificationString the MID looked up (required)
+     */
+    private void recordCacheMiss(final String metadataIdentificationString) {
+        if (metadataLogger.getTraceLevel() > 0) {
+            metadataLogger.log("Cache miss " + metadataIdentificationString);
+        }
+        cacheMisses.incrementAndGet();
+    }
+
+    /**
+     * Records that the given MID could not be produced right now, so that it
+     * is retried once the calling thread has completed its outermost request.
+     * 
+     * @param requestContext the calling thread's request state (required)
+     * @param metadataIdentificationString the MID being blocked (required)
+     * @param logPrefix the message to log if tracing is enabled
+     */
+    private void blockRequest(final RequestContext requestContext,
+            final String metadataIdentificationString, final String logPrefix) {
+        recursiveGets.incrementAndGet();
+        if (!requestContext.keysToRetry
+                .contains(metadataIdentificationString)) {
+            if (metadataLogger.getTraceLevel() > 0) {
+                metadataLogger.log(logPrefix + metadataIdentificationString);
+            }
+            requestContext.keysToRetry.add(metadataIdentificationString);
+        }
+    }
+
+    /**
+     * Acquires the right to produce the given MID, waiting for any other
+     * thread producing it to finish. The only time it doesn't wait is when
+     * the producing thread is (directly or indirectly) waiting for a MID that
+     * the calling thread is producing, as then neither could ever proceed.
+     * 
+     * @param metadataIdentificationString the MID to produce (required)
+     * @return <code>false</code> if the request is circular, otherwise
+     *         <code>true</code> once the caller may produce the MID
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean acquire(final String metadataIdentificationString)
+            throws InterruptedException {
+        if (!concurrent) {
+            serialLock.lockInterruptibly();
+            return true;
+        }
+        final Thread currentThread = Thread.currentThread();
+        synchronized (producers) {
+            while (true) {
+                final Thread producer = producers
+                        .get(metadataIdentificationString);
+                if (producer == null) {
+                    producers.put(metadataIdentificationString, currentThread);
+                    return true;
+                }
+                if (isWaitingFor(producer, currentThread)) {
+                    return false;
+                }
+                waitingProducers.put(currentThread,
+                        metadataIdentificationString);
+                try {
+                    producers.wait();
                 }
                 finally {
-                    metadataLogger.stopEvent();
+                    waitingProducers.remove(currentThread);
                 }
             }
         }
     }
 
+    /**
+     * Indicates whether the given thread is waiting, directly or through a
+     * chain of other waiting threads, for a MID being produced by the given
+     * target thread. The caller must hold the lock on {@link #producers}.
+     * 
+     * @param thread the thread to check (required)
+     * @param target the thread that may be waited for (required)
+     * @return see above
+     */
+    private boolean isWaitingFor(final Thread thread, final Thread target) {
+        Thread waiter = thread;
+        // Each thread waits for at most one MID, so a longer chain is a loop
+        // that doesn't involve the target
+        for (int i = 0; i <= waitingProducers.size(); i++) {
+            final String awaitedMid = waitingProducers.get(waiter);
+            if (awaitedMid == null) {
+                return false;
+            }
+            waiter = producers.get(awaitedMid);
+            if (waiter == null) {
+                // Just released; the waiter will proceed once woken
+                return false;
+            }
+            if (waiter == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives up the right to produce the given MID, as acquired by
+     * {@link #acquire(String)}.
+     * 
+     * @param metadataIdentificationString the MID produced (required)
+     */
+    private void release(final String metadataIdentificationString) {
+        if (!concurrent) {
+            serialLock.unlock();
+            return;
+        }
+        synchronized (producers) {
+            producers.remove(metadataIdentificationString);
+            producers.notifyAll();
+        }
+    }
+
     @Override
     public void put(final MetadataItem metadataItem) {
         super.put(metadataItem);
-        cachePuts++;
+        cachePuts.incrementAndGet();
     }
 
     public MetadataItem get(final String metadataIdentificationString) {
@@ -277,76 +443,69 @@ public class DefaultMetadataService extends AbstractMetadataCache implements
                 "Downstream dependency is an invalid metadata identification string ('"
                         + downstreamDependency + "')");
 
-        synchronized (lock) {
-            // Get the destination
-            String mdClassId = MetadataIdentificationUtils
-                    .getMetadataClassId(downstreamDependency);
-            MetadataProvider p = providerMap.get(mdClassId);
+        // Get the destination
+        String mdClassId = MetadataIdentificationUtils
+                .getMetadataClassId(downstreamDependency);
+        MetadataProvider p = providerMap.get(mdClassId);
 
-            if (p == null) {
-                // No known provider that can consume this notification, so just
-                // return as per the interface contract
-                return;
-            }
+        if (p == null) {
+            // No known provider that can consume this notification, so just
+            // return as per the interface contract
+            return;
+        }
 
-            if (p instanceof MetadataNotificationListener) {
-                // The provider can directly handle this notification, so we
-                // just need to delegate directly to it.
-                // We rely on the provider to evict items from the cache if
-                // applicable.
-                ((MetadataNotificationListener) p).notify(upstreamDependency,
-                        downstreamDependency);
-            }
-            else {
-                // As per interface contract, we just ensure we evict the item
-                // and recreate it
-                // However, we only do this if the destination is an instance -
-                // if it's a class, "get" is not a meaningful operation.
-                if (MetadataIdentificationUtils
-                        .isIdentifyingInstance(downstreamDependency)) {
-                    get(downstreamDependency, true);
-                }
-                // As per interface contract, we now notify any listeners this
-                // downstream instance has probably now changed
-                metadataDependencyRegistry
-                        .notifyDownstream(downstreamDependency);
+        if (p instanceof MetadataNotificationListener) {
+            // The provider can directly handle this notification, so we
+            // just need to delegate directly to it.
+            // We rely on the provider to evict items from the cache if
+            // applicable. Any metadata the provider (re)creates is obtained
+            // through this service, which guards the production of each MID.
+            ((MetadataNotificationListener) p).notify(upstreamDependency,
+                    downstreamDependency);
+        }
+        else {
+            // As per interface contract, we just ensure we evict the item
+            // and recreate it
+            // However, we only do this if the destination is an instance -
+            // if it's a class, "get" is not a meaningful operation.
+            if (MetadataIdentificationUtils
+                    .isIdentifyingInstance(downstreamDependency)) {
+                get(downstreamDependency, true);
             }
+            // As per interface contract, we now notify any listeners this
+            // downstream instance has probably now changed
+            metadataDependencyRegistry.notifyDownstream(downstreamDependency);
         }
     }
 
     @Override
     public void evict(final String metadataIdentificationString) {
-        synchronized (lock) {
-            // Clear my own cache (which also verifies the argument is valid at
-            // the same time)
-            super.evict(metadataIdentificationString);
-
-            // Finally, evict downstream dependencies (ie metadata that
-            // previously depended on this now-evicted metadata)
-            for (String downstream : metadataDependencyRegistry
-                    .getDownstream(metadataIdentificationString)) {
-                // We only need to evict if it is an instance, as only an
-                // instance will ever go into the cache
-                if (MetadataIdentificationUtils
-                        .isIdentifyingInstance(downstream)) {
-                    evict(downstream);
-                }
+        // Clear my own cache (which also verifies the argument is valid at
+        // the same time)
+        super.evict(metadataIdentificationString);
+
+        // Finally, evict downstream dependencies (ie metadata that
+        // previously depended on this now-evicted metadata)
+        for (String downstream : metadataDependencyRegistry
+                .getDownstream(metadataIdentificationString)) {
+            // We only need to evict if it is an instance, as only an
+            // instance will ever go into the cache
+            if (MetadataIdentificationUtils.isIdentifyingInstance(downstream)) {
+                evict(downstream);
             }
         }
     }
 
     @Override
     public void evictAll() {
-        synchronized (lock) {
-            // Clear my own cache
-            super.evictAll();
-
-            // Clear the caches of any metadata providers which support the
-            // interface
-            for (MetadataProvider p : providers) {
-                if (p instanceof MetadataCache) {
-                    ((MetadataCache) p).evictAll();
-                }
+        // Clear my own cache
+        super.evictAll();
+
+        // Clear the caches of any metadata providers which support the
+        // interface
+        for (MetadataProvider p : providers) {
+            if (p instanceof MetadataCache) {
+                ((MetadataCache) p).evictAll();
             }
         }
     }
@@ -358,14 +517,26 @@ public class DefaultMetadataService extends AbstractMetadataCache implements
     @Override
     public final String toString() {
         ToStringCreator tsc = new ToStringCreator(this);
-        tsc.append("validGets", validGets);
-        tsc.append("recursiveGets", recursiveGets);
-        tsc.append("cachePuts", cachePuts);
-        tsc.append("cacheHits", cacheHits);
-        tsc.append("cacheMisses", cacheMisses);
-        tsc.append("cacheEvictions", cacheEvictions);
+        tsc.append("validGets", validGets.get());
+        tsc.append("recursiveGets", recursiveGets.get());
+        tsc.append("cachePuts", cachePuts.get());
+        tsc.append("cacheHits", cacheHits.get());
+        tsc.append("cacheMisses", cacheMisses.get());
+        tsc.append("cacheEvictions", cacheEvictions.get());
         tsc.append("cacheCurrentSize", getCacheSize());
         tsc.append("cacheMaximumSize", getMaxCapacity());
         return tsc.toString().replaceFirst("@[0-9a-f]+", ":");
     }
-}
\ No newline at end of file
+
+    /**
+     * The request state of a single thread.
+     */
+    private static class RequestContext {
+        // List to assist output "stacks" which show the order of requests
+        final List<String> activeRequests = new ArrayList<String>();
+
+        // List to help us verify correct operation through logs (predictable
+        // ordering)
+        final List<String> keysToRetry = new ArrayList<String>();
+    }
+}
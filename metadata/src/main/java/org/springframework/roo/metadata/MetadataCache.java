@@ -1,5 +1,7 @@
 package org.springframework.roo.metadata;
 
+import java.util.SortedSet;
+
 /**
  * Indicates a cache is maintained by the implementation.
  * <p>
@@ -43,6 +45,23 @@ public interface MetadataCache {
      */
     void setMaxCapacity(int maxCapacity);
 
+    /**
+     * Modifies the maximum estimated number of bytes retained by the cached
+     * items, with the least recently used items being evicted first.
+     * 
+     * @param maxWeight the new maximum weight, or zero for no limit
+     * @since 1.2.1
+     */
+    void setMaxWeight(long maxWeight);
+
+    /**
+     * Returns the usage of this cache by each metadata class.
+     * 
+     * @return a non-<code>null</code> set, sorted by estimated weight
+     * @since 1.2.1
+     */
+    SortedSet<MetadataCacheStatistic> getStatistics();
+
     /**
      * Eagerly inserts an item into the cache. ONLY SPRING ROO INFRASTRUCTURE
      * SHOULD INVOKE THIS METHOD. Do not invoke this method from add-ons, as the
@@ -0,0 +1,45 @@
+package org.springframework.roo.metadata;
+
+/**
+ * Represents an immutable snapshot of the {@link MetadataCache} usage of the
+ * metadata items of a single metadata class, i.e. of a single
+ * {@link MetadataProvider}.
+ * 
+ * @since 1.2.1
+ */
+public interface MetadataCacheStatistic extends
+        Comparable<MetadataCacheStatistic> {
+
+    /**
+     * @return the metadata class identifier these statistics relate to (never
+     *         null or empty)
+     */
+    String getMetadataClassId();
+
+    /**
+     * @return the number of items of this class currently cached
+     */
+    int getEntries();
+
+    /**
+     * @return the estimated number of bytes retained by the cached items of
+     *         this class
+     */
+    long getWeight();
+
+    /**
+     * @return the number of cache lookups for this class that found an item
+     */
+    long getHits();
+
+    /**
+     * @return the number of cache lookups for this class that found no item
+     */
+    long getMisses();
+
+    /**
+     * @return the number of items of this class removed to respect the
+     *         cache's capacity or weight limits (excluding explicit evictions)
+     */
+    long getEvictions();
+}
@@ -150,6 +150,42 @@ public interface MetadataDependencyRegistry {
      */
     void notifyDownstream(String upstreamDependency);
 
+    /**
+     * Starts deferring the delivery of notifications until
+     * {@link #endNotificationBatch()} is called. Batches can be nested, in
+     * which case notifications are delivered when the outermost batch ends.
+     * <p>
+     * While a batch is open, {@link #notifyDownstream(String)} only queues the
+     * notifications it would have delivered. A notification is discarded if an
+     * equivalent one is already queued, being one for the same
+     * instance-specific downstream dependency (whatever its upstream) or for
+     * the same upstream and class-specific downstream dependency.
+     */
+    void beginNotificationBatch();
+
+    /**
+     * Ends the batch started by the corresponding call to
+     * {@link #beginNotificationBatch()}. If this was the outermost batch, the
+     * queued notifications are delivered in the order of the dependency graph
+     * (upstream before downstream), along with any notifications they cause in
+     * turn, before this method returns.
+     */
+    void endNotificationBatch();
+
+    /**
+     * Delivers the notifications queued by the current batch (as described
+     * for {@link #endNotificationBatch()}) if any of them is for the given
+     * metadata instance or any other instance it depends on, directly or
+     * indirectly. The batch remains open. Does nothing if no batch is open or
+     * its notifications are already being delivered.
+     * <p>
+     * This allows metadata to be read while a batch is open without
+     * observing the effects of notifications that have yet to be delivered.
+     * 
+     * @param downstreamDependency the metadata about to be read (required)
+     */
+    void flushNotifications(String downstreamDependency);
+
     /**
      * Obtains the list of the immediate downstream dependencies of the
      * indicated metadata item.
@@ -1,9 +1,17 @@
 package org.springframework.roo.metadata.internal;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.springframework.roo.metadata.MetadataCache;
+import org.springframework.roo.metadata.MetadataCacheStatistic;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataItem;
 import org.springframework.roo.support.util.Assert;
@@ -11,7 +19,21 @@ import org.springframework.roo.support.util.Assert;
 /**
  * Basic {@link MetadataCache} that stores elements on a least recently used
  * (LRU) basis.
- * 
+ * <p>
+ * The cache is bounded by a maximum number of items and optionally by a
+ * maximum weight, being the estimated number of bytes retained by the cached
+ * items (see {@link #weigh(MetadataItem)}). The weight limit defaults to the
+ * number of megabytes given by the <code>roo.metadata.cache.maxWeightMb</code>
+ * system property, or no limit if that is not set; items are only weighed
+ * while a limit applies or when statistics are requested. If the
+ * <code>roo.metadata.cache.softOverflow</code> system property is
+ * <code>true</code>, items removed to respect these limits are kept softly
+ * reachable, so that they can still be returned until the garbage collector
+ * needs their memory.
+ * <p>
+ * Access to the underlying map is synchronized, as the {@link LinkedHashMap}
+ * is kept in access order and is therefore modified even by lookups.
+ *
  * @author Ben Alex
  * @since 1.0
  */
@@ -19,69 +41,258 @@ public abstract class AbstractMetadataCache implements MetadataCache {
 
     // Constants
     private static final float hashTableLoadFactor = 0.75f;
+    private static final long UNWEIGHED = -1;
 
     // Fields
-    private LinkedHashMap<String, MetadataItem> map;
+    private final LinkedHashMap<String, CacheEntry> map = new LinkedHashMap<String, CacheEntry>(
+            16, hashTableLoadFactor, true);
+    private final Map<String, OverflowReference> overflow = new HashMap<String, OverflowReference>();
+    private final ReferenceQueue<MetadataItem> overflowQueue = new ReferenceQueue<MetadataItem>();
+    /** key: metadata class ID, value: its usage of this cache */
+    private final Map<String, ClassStatistics> statistics = new HashMap<String, ClassStatistics>();
+    private final RetainedSizeEstimator retainedSizeEstimator = new RetainedSizeEstimator();
+    private final boolean softOverflow = Boolean
+            .getBoolean("roo.metadata.cache.softOverflow");
     private int maxCapacity = 100000;
+    private long maxWeight = Math.max(0,
+            Long.getLong("roo.metadata.cache.maxWeightMb", 0)) * 1024 * 1024;
+    private long weight;
 
-    protected AbstractMetadataCache() {
-        init();
-    }
-
-    protected int getCacheSize() {
+    protected synchronized int getCacheSize() {
         return map.size();
     }
 
-    public void setMaxCapacity(int maxCapacity) {
+    public synchronized void setMaxCapacity(int maxCapacity) {
         if (maxCapacity < 100) {
             maxCapacity = 100;
         }
         this.maxCapacity = maxCapacity;
-        init();
+        trim();
     }
 
-    public int getMaxCapacity() {
+    public synchronized int getMaxCapacity() {
         return maxCapacity;
     }
 
-    public void put(final MetadataItem metadataItem) {
+    public synchronized void setMaxWeight(final long maxWeight) {
+        this.maxWeight = Math.max(0, maxWeight);
+        if (this.maxWeight > 0) {
+            weighAll();
+            trim();
+        }
+    }
+
+    public synchronized long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public synchronized void put(final MetadataItem metadataItem) {
         Assert.notNull(metadataItem, "A metadata item is required");
-        map.put(metadataItem.getId(), metadataItem);
+        insert(metadataItem);
+    }
+
+    private void insert(final MetadataItem metadataItem) {
+        final String id = metadataItem.getId();
+        remove(id);
+        final CacheEntry entry = new CacheEntry(metadataItem,
+                maxWeight > 0 ? weigh(metadataItem) : UNWEIGHED);
+        map.put(id, entry);
+        final ClassStatistics classStatistics = getClassStatistics(id);
+        classStatistics.entries++;
+        if (entry.weight != UNWEIGHED) {
+            classStatistics.weight += entry.weight;
+            weight += entry.weight;
+        }
+        trim();
     }
 
-    protected MetadataItem getFromCache(
+    protected synchronized MetadataItem getFromCache(
             final String metadataIdentificationString) {
         Assert.isTrue(MetadataIdentificationUtils
                 .isIdentifyingInstance(metadataIdentificationString),
                 "Only metadata instances can be cached (not '"
                         + metadataIdentificationString + "')");
-        return map.get(metadataIdentificationString);
+        final ClassStatistics classStatistics = getClassStatistics(metadataIdentificationString);
+        final CacheEntry entry = map.get(metadataIdentificationString);
+        if (entry != null) {
+            classStatistics.hits++;
+            return entry.metadataItem;
+        }
+        expungeOverflow();
+        final OverflowReference reference = overflow
+                .get(metadataIdentificationString);
+        final MetadataItem metadataItem = reference == null ? null
+                : reference.get();
+        if (metadataItem == null) {
+            classStatistics.misses++;
+            return null;
+        }
+        classStatistics.hits++;
+        insert(metadataItem);
+        return metadataItem;
     }
 
-    public void evict(final String metadataIdentificationString) {
+    public synchronized void evict(
+            final String metadataIdentificationString) {
         Assert.isTrue(MetadataIdentificationUtils
                 .isIdentifyingInstance(metadataIdentificationString),
                 "Only metadata instances can be cached (not '"
                         + metadataIdentificationString + "')");
-        map.remove(metadataIdentificationString);
+        remove(metadataIdentificationString);
+    }
+
+    public synchronized void evictAll() {
+        map.clear();
+        overflow.clear();
+        weight = 0;
+        for (final ClassStatistics classStatistics : statistics.values()) {
+            classStatistics.entries = 0;
+            classStatistics.weight = 0;
+        }
+    }
+
+    public synchronized SortedSet<MetadataCacheStatistic> getStatistics() {
+        weighAll();
+        final SortedSet<MetadataCacheStatistic> result = new TreeSet<MetadataCacheStatistic>();
+        for (final Map.Entry<String, ClassStatistics> entry : statistics
+                .entrySet()) {
+            final ClassStatistics classStatistics = entry.getValue();
+            result.add(new StandardMetadataCacheStatistic(entry.getKey(),
+                    classStatistics.entries, classStatistics.weight,
+                    classStatistics.hits, classStatistics.misses,
+                    classStatistics.evictions));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the estimated number of bytes retained by the given item,
+     * excluding any other metadata items it refers to. Subclasses may override
+     * this method to provide a cheaper or more accurate estimate.
+     *
+     * @param metadataItem the item to weigh (never <code>null</code>)
+     * @return zero or more
+     */
+    protected long weigh(final MetadataItem metadataItem) {
+        return retainedSizeEstimator.estimate(metadataItem);
+    }
+
+    /**
+     * Removes the given item from this cache and from the overflow, if
+     * present.
+     */
+    private void remove(final String metadataIdentificationString) {
+        overflow.remove(metadataIdentificationString);
+        final CacheEntry entry = map.remove(metadataIdentificationString);
+        if (entry == null) {
+            return;
+        }
+        final ClassStatistics classStatistics = getClassStatistics(metadataIdentificationString);
+        classStatistics.entries--;
+        if (entry.weight != UNWEIGHED) {
+            classStatistics.weight -= entry.weight;
+            weight -= entry.weight;
+        }
     }
 
-    public void evictAll() {
-        init();
+    /**
+     * Removes the least recently used items until this cache respects its
+     * capacity and weight limits; the most recently used item is always kept.
+     */
+    private void trim() {
+        final Iterator<Map.Entry<String, CacheEntry>> iterator = map
+                .entrySet().iterator();
+        while (map.size() > maxCapacity
+                || (maxWeight > 0 && weight > maxWeight && map.size() > 1)) {
+            final Map.Entry<String, CacheEntry> eldest = iterator.next();
+            final String id = eldest.getKey();
+            final CacheEntry entry = eldest.getValue();
+            iterator.remove();
+            final ClassStatistics classStatistics = getClassStatistics(id);
+            classStatistics.entries--;
+            classStatistics.evictions++;
+            if (entry.weight != UNWEIGHED) {
+                classStatistics.weight -= entry.weight;
+                weight -= entry.weight;
+            }
+            if (softOverflow) {
+                overflow.put(id, new OverflowReference(id, entry.metadataItem,
+                        overflowQueue));
+            }
+        }
     }
 
-    private void init() {
-        int hashTableCapacity = (int) Math.ceil(maxCapacity
-                / hashTableLoadFactor) + 1;
-        map = new LinkedHashMap<String, MetadataItem>(hashTableCapacity,
-                hashTableLoadFactor, true) {
-            private static final long serialVersionUID = 1;
+    private void weighAll() {
+        for (final Map.Entry<String, CacheEntry> mapEntry : map.entrySet()) {
+            final CacheEntry entry = mapEntry.getValue();
+            if (entry.weight == UNWEIGHED) {
+                entry.weight = weigh(entry.metadataItem);
+                getClassStatistics(mapEntry.getKey()).weight += entry.weight;
+                weight += entry.weight;
+            }
+        }
+    }
 
-            @Override
-            protected boolean removeEldestEntry(
-                    final Map.Entry<String, MetadataItem> eldest) {
-                return size() > maxCapacity;
+    /**
+     * Forgets the overflow items that have been garbage collected.
+     */
+    private void expungeOverflow() {
+        Reference<? extends MetadataItem> reference;
+        while ((reference = overflowQueue.poll()) != null) {
+            final String id = ((OverflowReference) reference).metadataIdentificationString;
+            if (overflow.get(id) == reference) {
+                overflow.remove(id);
             }
-        };
+        }
+    }
+
+    private ClassStatistics getClassStatistics(
+            final String metadataIdentificationString) {
+        final String metadataClassId = MetadataIdentificationUtils
+                .getMetadataClassId(metadataIdentificationString);
+        ClassStatistics classStatistics = statistics.get(metadataClassId);
+        if (classStatistics == null) {
+            classStatistics = new ClassStatistics();
+            statistics.put(metadataClassId, classStatistics);
+        }
+        return classStatistics;
+    }
+
+    /**
+     * A cached item and its weight, if known.
+     */
+    private static class CacheEntry {
+        final MetadataItem metadataItem;
+        long weight;
+
+        CacheEntry(final MetadataItem metadataItem, final long weight) {
+            this.metadataItem = metadataItem;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * The mutable usage counters of a single metadata class.
+     */
+    private static class ClassStatistics {
+        int entries;
+        long weight;
+        long hits;
+        long misses;
+        long evictions;
+    }
+
+    /**
+     * A softly held item that no longer fits in the cache.
+     */
+    private static class OverflowReference extends SoftReference<MetadataItem> {
+        final String metadataIdentificationString;
+
+        OverflowReference(final String metadataIdentificationString,
+                final MetadataItem metadataItem,
+                final ReferenceQueue<MetadataItem> queue) {
+            super(metadataItem, queue);
+            this.metadataIdentificationString = metadataIdentificationString;
+        }
     }
 }
@@ -1,8 +1,14 @@
 package org.springframework.roo.metadata.internal;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -15,14 +21,28 @@ import org.springframework.roo.metadata.MetadataIdentificationUtils;
 import org.springframework.roo.metadata.MetadataLogger;
 import org.springframework.roo.metadata.MetadataNotificationListener;
 import org.springframework.roo.metadata.MetadataService;
+import org.springframework.roo.support.style.ToStringCreator;
 import org.springframework.roo.support.util.Assert;
 
 /**
  * Default implementation of {@link MetadataDependencyRegistry}.
  * <p>
- * This implementation is not thread safe. It should only be accessed by a
- * single thread at a time. This is enforced by the process manager semantics,
- * so we avoid the cost of re-synchronization here.
+ * This implementation is thread safe. Notifications are always delivered
+ * serially on the calling thread, as not every metadata provider (nor the
+ * services they use) can safely be notified concurrently.
+ * <p>
+ * Each MID is interned as an integer node ID, with each node holding the IDs
+ * of its upstream and downstream nodes. A topological order of the nodes is
+ * maintained incrementally as dependencies are registered, so that most
+ * cycle checks are a single comparison and the rest only search the part of
+ * the graph between the two nodes. The sets returned by
+ * {@link #getDownstream(String)} and {@link #getUpstream(String)} are
+ * immutable snapshots, shared between callers until the node's dependencies
+ * change.
+ * <p>
+ * Between {@link #beginNotificationBatch()} and
+ * {@link #endNotificationBatch()}, notifications are queued and coalesced,
+ * then delivered in topological order once the batch ends.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -31,36 +51,61 @@ import org.springframework.roo.support.util.Assert;
 @Service
 public class DefaultMetadataDependencyRegistry implements
         MetadataDependencyRegistry {
-    @Reference private MetadataLogger metadataLogger;
-    /** key: upstream dependency; value: list<downstream dependencies> */
-    private final Map<String, Set<String>> upstreamKeyed = new HashMap<String, Set<String>>();
-    /** key: downstream dependency; value: list<upstream dependencies> */
-    private final Map<String, Set<String>> downstreamKeyed = new HashMap<String, Set<String>>();
-    private MetadataService metadataService;
-    private final Set<MetadataNotificationListener> listeners = new HashSet<MetadataNotificationListener>();
+    @Reference MetadataLogger metadataLogger;
+    /** key: MID; value: the ID of its node in the dependency graph */
+    private final Map<String, Integer> nodeIds = new HashMap<String, Integer>();
+    /** index: node ID; value: node */
+    private final List<Node> nodes = new ArrayList<Node>();
+    private int visitEpoch;
+    /** key: notification key; value: notification (in order of queueing) */
+    private final Map<String, Notification> queuedNotifications = new LinkedHashMap<String, Notification>();
+    /** the upstreams of which the general-purpose listeners are to be notified */
+    private final Set<String> queuedListenerUpstreams = new LinkedHashSet<String>();
+    /**
+     * key: MID affected by a queued notification (see
+     * {@link Notification#affected}); value: how many queued notifications
+     * affect it
+     */
+    private final Map<String, Integer> queuedDownstreams = new HashMap<String, Integer>();
+    /** instance MIDs known not to be affected by the queued notifications */
+    private final Set<String> unaffectedByQueue = new HashSet<String>();
+    private volatile int batchDepth;
+    private volatile boolean delivering;
+    private long checkpoints;
+    private long batches;
+    private long queuedNotificationCount;
+    private long coalescedNotificationCount;
+    private volatile MetadataService metadataService;
+    private final Set<MetadataNotificationListener> listeners = new CopyOnWriteArraySet<MetadataNotificationListener>();
+
+    // Mutex guarding the dependency graph and the notification queue
+    private final Object lock = new Object();
 
     public void registerDependency(final String upstreamDependency,
             final String downstreamDependency) {
-        Assert.isTrue(
-                isValidDependency(upstreamDependency, downstreamDependency),
-                "Invalid dependency between upstream '" + upstreamDependency
-                        + "' and downstream '" + downstreamDependency + "'");
-
-        // Maintain the upstream-keyed map
-        Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-        if (downstream == null) {
-            downstream = new HashSet<String>();
-            upstreamKeyed.put(upstreamDependency, downstream);
-        }
-        downstream.add(downstreamDependency);
+        synchronized (lock) {
+            Assert.isTrue(
+                    isValidDependency(upstreamDependency, downstreamDependency),
+                    "Invalid dependency between upstream '"
+                            + upstreamDependency + "' and downstream '"
+                            + downstreamDependency + "'");
+
+            final Node upstream = getOrCreateNode(upstreamDependency);
+            final Node downstream = getOrCreateNode(downstreamDependency);
+            if (!upstream.downstreamIds.add(downstream.id)) {
+                return;
+            }
+            downstream.upstreamIds.add(upstream.id);
+            upstream.downstreamSnapshot = null;
+            downstream.upstreamSnapshot = null;
+            if (!unaffectedByQueue.isEmpty()) {
+                unaffectedByQueue.clear();
+            }
 
-        // Maintain the downstream-keyed map
-        Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-        if (upstream == null) {
-            upstream = new HashSet<String>();
-            downstreamKeyed.put(downstreamDependency, upstream);
+            if (upstream.order > downstream.order) {
+                reorder(upstream, downstream);
+            }
         }
-        upstream.add(upstreamDependency);
     }
 
     public void deregisterDependencies(final String downstreamDependency) {
@@ -69,17 +114,14 @@ public class DefaultMetadataDependencyRegistry implements
                 "Downstream dependency is an invalid metadata identification string ('"
                         + downstreamDependency + "')");
 
-        // Acquire the keys to delete
-        Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-        if (upstream == null) {
-            return;
-        }
-
-        Set<String> upstreamToDelete = new HashSet<String>(upstream);
-
-        // Delete them normally
-        for (String deleteUpstream : upstreamToDelete) {
-            deregisterDependency(deleteUpstream, downstreamDependency);
+        synchronized (lock) {
+            final Node downstream = getNode(downstreamDependency);
+            if (downstream == null) {
+                return;
+            }
+            for (final int upstreamId : downstream.upstreamIds.toArray()) {
+                unlink(nodes.get(upstreamId), downstream);
+            }
         }
     }
 
@@ -93,16 +135,12 @@ public class DefaultMetadataDependencyRegistry implements
                 "Downstream dependency is an invalid metadata identification string ('"
                         + downstreamDependency + "')");
 
-        // Maintain the upstream-keyed map, if it even exists
-        Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-        if (downstream != null) {
-            downstream.remove(downstreamDependency);
-        }
-
-        // Maintain the downstream-keyed map, if it even exists
-        Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-        if (upstream != null) {
-            upstream.remove(upstreamDependency);
+        synchronized (lock) {
+            final Node upstream = getNode(upstreamDependency);
+            final Node downstream = getNode(downstreamDependency);
+            if (upstream != null && downstream != null) {
+                unlink(upstream, downstream);
+            }
         }
     }
 
@@ -111,13 +149,19 @@ public class DefaultMetadataDependencyRegistry implements
                 "Upstream dependency is an invalid metadata identification string ('"
                         + upstreamDependency + "')");
 
-        Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-        if (downstream == null) {
-            return new HashSet<String>();
-        }
+        synchronized (lock) {
+            final Node upstream = getNode(upstreamDependency);
+            if (upstream == null) {
+                return new HashSet<String>();
+            }
 
-        return Collections.unmodifiableSet(new CopyOnWriteArraySet<String>(
-                downstream));
+            // The snapshot is immutable, so can be shared until the node's
+            // downstream dependencies change
+            if (upstream.downstreamSnapshot == null) {
+                upstream.downstreamSnapshot = getIds(upstream.downstreamIds);
+            }
+            return upstream.downstreamSnapshot;
+        }
     }
 
     public Set<String> getUpstream(final String downstreamDependency) {
@@ -126,12 +170,17 @@ public class DefaultMetadataDependencyRegistry implements
                 "Downstream dependency is an invalid metadata identification string ('"
                         + downstreamDependency + "')");
 
-        Set<String> upstream = downstreamKeyed.get(downstreamDependency);
-        if (upstream == null) {
-            return new HashSet<String>();
-        }
+        synchronized (lock) {
+            final Node downstream = getNode(downstreamDependency);
+            if (downstream == null) {
+                return new HashSet<String>();
+            }
 
-        return Collections.unmodifiableSet(upstream);
+            if (downstream.upstreamSnapshot == null) {
+                downstream.upstreamSnapshot = getIds(downstream.upstreamIds);
+            }
+            return downstream.upstreamSnapshot;
+        }
     }
 
     public boolean isValidDependency(final String upstreamDependency,
@@ -147,40 +196,140 @@ public class DefaultMetadataDependencyRegistry implements
                 "Upstream dependency cannot be the same as the downstream dependency ('"
                         + upstreamDependency + "')");
 
-        // The simplest possible outcome is the relationship already exists, so
-        // quickly return in that case
-        Set<String> downstream = upstreamKeyed.get(upstreamDependency);
-        if (downstream != null && downstream.contains(downstreamDependency)) {
-            return true;
+        synchronized (lock) {
+            // A dependency involving a new node can't close a cycle
+            final Node upstream = getNode(upstreamDependency);
+            final Node downstream = getNode(downstreamDependency);
+            if (upstream == null || downstream == null) {
+                return true;
+            }
+
+            // The simplest possible outcome is the relationship already
+            // exists, so quickly return in that case
+            if (upstream.downstreamIds.contains(downstream.id)) {
+                return true;
+            }
+
+            // Every dependency runs from a node to one later in the
+            // topological order, so the proposed downstream can only reach
+            // the upstream (closing a cycle) if it comes before it
+            if (upstream.order < downstream.order) {
+                return true;
+            }
+            return search(downstream, true, upstream.order, upstream) != null;
         }
-        // Don't need the variable anymore, as we don't care about the other
-        // downstream dependencies
-        downstream = null;
+    }
 
-        // Need to walk the upstream dependency's parent dependency graph,
-        // verifying no presence of the proposed downstream dependency
+    /**
+     * Restores the topological order after adding a dependency from the given
+     * upstream to an earlier downstream, by moving the nodes the downstream
+     * reaches after those that reach the upstream, within the affected region
+     * of the order only (Pearce-Kelly).
+     */
+    private void reorder(final Node upstream, final Node downstream) {
+        final List<Node> reachedFromDownstream = search(downstream, true,
+                upstream.order, null);
+        final List<Node> reachingUpstream = search(upstream, false,
+                downstream.order, null);
+        final Comparator<Node> byOrder = new Comparator<Node>() {
+            public int compare(final Node node1, final Node node2) {
+                return node1.order - node2.order;
+            }
+        };
+        Collections.sort(reachedFromDownstream, byOrder);
+        Collections.sort(reachingUpstream, byOrder);
+
+        final int[] orders = new int[reachedFromDownstream.size()
+                + reachingUpstream.size()];
+        int i = 0;
+        for (final Node node : reachingUpstream) {
+            orders[i++] = node.order;
+        }
+        for (final Node node : reachedFromDownstream) {
+            orders[i++] = node.order;
+        }
+        Arrays.sort(orders);
+        i = 0;
+        for (final Node node : reachingUpstream) {
+            node.order = orders[i++];
+        }
+        for (final Node node : reachedFromDownstream) {
+            node.order = orders[i++];
+        }
+    }
 
-        // Need to build a set representing every eventual upstream dependency
-        // of the indicated upstream dependency
-        Set<String> allUpstreams = new HashSet<String>();
-        buildSetOfAllUpstreamDependencies(allUpstreams, upstreamDependency);
+    /**
+     * Walks the dependency graph from the given node, only visiting nodes
+     * before (when walking downstream) or after (when walking upstream) the
+     * given position in the topological order.
+     * 
+     * @param start the node from which to start (required)
+     * @param downstream whether to walk downstream (or upstream)
+     * @param bound the exclusive bound on the order of the visited nodes
+     * @param target the node at which to stop (can be <code>null</code>)
+     * @return the visited nodes including the start node, or
+     *         <code>null</code> if the target was reached
+     */
+    private List<Node> search(final Node start, final boolean downstream,
+            final int bound, final Node target) {
+        final int epoch = ++visitEpoch;
+        final List<Node> visited = new ArrayList<Node>();
+        final List<Node> pending = new ArrayList<Node>();
+        start.visitEpoch = epoch;
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            final Node node = pending.remove(pending.size() - 1);
+            visited.add(node);
+            final IntHashSet neighbours = downstream ? node.downstreamIds
+                    : node.upstreamIds;
+            for (final int neighbourId : neighbours.toArray()) {
+                final Node neighbour = nodes.get(neighbourId);
+                if (neighbour == target) {
+                    return null;
+                }
+                if (neighbour.visitEpoch != epoch
+                        && (downstream ? neighbour.order < bound
+                                : neighbour.order > bound)) {
+                    neighbour.visitEpoch = epoch;
+                    pending.add(neighbour);
+                }
+            }
+        }
+        return visited;
+    }
 
-        // The dependency is valid if none of the upstreams depend on the
-        // proposed downstream
-        return !allUpstreams.contains(downstreamDependency);
+    private void unlink(final Node upstream, final Node downstream) {
+        // Removing a dependency never invalidates the topological order
+        if (upstream.downstreamIds.remove(downstream.id)) {
+            upstream.downstreamSnapshot = null;
+        }
+        if (downstream.upstreamIds.remove(upstream.id)) {
+            downstream.upstreamSnapshot = null;
+        }
     }
 
-    private void buildSetOfAllUpstreamDependencies(final Set<String> results,
-            final String downstreamDependency) {
-        Set<String> upstreams = downstreamKeyed.get(downstreamDependency);
-        if (upstreams == null) {
-            return;
+    private Node getNode(final String metadataIdentificationString) {
+        final Integer id = nodeIds.get(metadataIdentificationString);
+        return id == null ? null : nodes.get(id);
+    }
+
+    private Node getOrCreateNode(final String metadataIdentificationString) {
+        Node node = getNode(metadataIdentificationString);
+        if (node == null) {
+            // New nodes go last in the topological order
+            node = new Node(metadataIdentificationString, nodes.size());
+            nodes.add(node);
+            nodeIds.put(metadataIdentificationString, node.id);
         }
+        return node;
+    }
 
-        for (String upstream : upstreams) {
-            results.add(upstream);
-            buildSetOfAllUpstreamDependencies(results, upstream);
+    private Set<String> getIds(final IntHashSet neighbourIds) {
+        final Set<String> ids = new HashSet<String>();
+        for (final int nodeId : neighbourIds.toArray()) {
+            ids.add(nodes.get(nodeId).metadataIdentificationString);
         }
+        return Collections.unmodifiableSet(ids);
     }
 
     public void addNotificationListener(
@@ -188,7 +337,7 @@ public class DefaultMetadataDependencyRegistry implements
         Assert.notNull(listener, "Metadata notification listener required");
 
         if (listener instanceof MetadataService) {
-            Assert.isTrue(metadataService == null,
+            Assert.isTrue(this.metadataService == null,
                     "Cannot register more than one MetadataListener");
             this.metadataService = (MetadataService) listener;
             return;
@@ -210,96 +359,461 @@ public class DefaultMetadataDependencyRegistry implements
         this.listeners.remove(listener);
     }
 
-    public void notifyDownstream(final String upstreamDependency) {
+    /**
+     * Notifies the given downstream dependencies of a change to the given
+     * upstream, in the given order.
+     * 
+     * @param metadataService the service to notify (required)
+     * @param upstreamDependency the upstream that changed (required)
+     * @param downstreams the downstreams to notify (can be empty)
+     */
+    private void dispatch(final MetadataService metadataService,
+            final String upstreamDependency, final List<String> downstreams) {
+        for (final String downstream : downstreams) {
+            notify(metadataService, upstreamDependency, downstream);
+        }
+    }
+
+    private void notify(final MetadataService metadataService,
+            final String upstreamDependency, final String downstream) {
+        synchronized (lock) {
+            // Only dequeue a notification as it's delivered, so that those
+            // equivalent to it are coalesced until then
+            if (batchDepth > 0) {
+                dequeue(Notification.getKey(upstreamDependency, downstream));
+            }
+        }
+        try {
+            String responsibleClass = MetadataIdentificationUtils
+                    .getMetadataClass(downstream);
+            metadataLogger.startTimer(responsibleClass);
+            metadataService.notify(upstreamDependency, downstream);
+        }
+        finally {
+            metadataLogger.stopTimer();
+        }
+    }
+
+    public void beginNotificationBatch() {
+        synchronized (lock) {
+            batchDepth++;
+        }
+    }
+
+    public void endNotificationBatch() {
+        synchronized (lock) {
+            Assert.isTrue(batchDepth > 0, "No notification batch to end");
+            if (batchDepth > 1) {
+                batchDepth--;
+                return;
+            }
+            batches++;
+            delivering = true;
+        }
+
+        // Keep the batch open while delivering, so that any notifications
+        // caused by those queued are themselves queued (and coalesced)
         try {
             metadataLogger.startEvent();
+            deliverQueuedNotifications();
+        }
+        finally {
+            metadataLogger.stopEvent();
+            synchronized (lock) {
+                batchDepth--;
+                delivering = false;
+                queuedNotifications.clear();
+                queuedDownstreams.clear();
+                queuedListenerUpstreams.clear();
+                unaffectedByQueue.clear();
+            }
+        }
+    }
 
-            if (metadataService != null) {
-                // First dispatch the fine-grained, instance-specific
-                // dependencies.
-                Set<String> notifiedDownstreams = new HashSet<String>();
-                for (String downstream : getDownstream(upstreamDependency)) {
+    public void flushNotifications(final String downstreamDependency) {
+        Assert.isTrue(
+                MetadataIdentificationUtils.isValid(downstreamDependency),
+                "Downstream dependency is an invalid metadata identification string ('"
+                        + downstreamDependency + "')");
+
+        // Unsynchronized check to keep the common case cheap
+        if (batchDepth == 0 || delivering) {
+            return;
+        }
+        synchronized (lock) {
+            if (batchDepth == 0 || delivering
+                    || !isAffectedByQueue(downstreamDependency)) {
+                return;
+            }
+            checkpoints++;
+            delivering = true;
+        }
+        try {
+            metadataLogger.startEvent();
+            deliverQueuedNotifications();
+        }
+        finally {
+            metadataLogger.stopEvent();
+            synchronized (lock) {
+                delivering = false;
+            }
+        }
+    }
+
+    /**
+     * Indicates whether a queued notification affects the given MID or any of
+     * its direct or indirect upstream dependencies. A class-specific
+     * dependency is taken to be upon the instance for the same governor, as
+     * that is the instance an ITD metadata provider resolves such a
+     * notification to. The MIDs found not to be affected are remembered until
+     * the queue gains a new downstream or the graph a new dependency. Must be
+     * called while holding the lock.
+     */
+    private boolean isAffectedByQueue(final String metadataIdentificationString) {
+        if (queuedDownstreams.isEmpty()
+                || unaffectedByQueue.contains(metadataIdentificationString)) {
+            return false;
+        }
+        final Set<String> visited = new HashSet<String>();
+        final List<String> pending = new ArrayList<String>();
+        pending.add(metadataIdentificationString);
+        while (!pending.isEmpty()) {
+            final String id = pending.remove(pending.size() - 1);
+            if (unaffectedByQueue.contains(id) || !visited.add(id)) {
+                continue;
+            }
+            final String classId = MetadataIdentificationUtils
+                    .getMetadataClassId(id);
+            if (queuedDownstreams.containsKey(id)
+                    || queuedDownstreams.containsKey(classId)) {
+                return true;
+            }
+            addInstanceUpstreams(id, id, pending);
+            addInstanceUpstreams(classId, id, pending);
+        }
+        unaffectedByQueue.addAll(visited);
+        return false;
+    }
+
+    /**
+     * Adds the upstream dependencies of the given MID to the given list, with
+     * any class-specific ones resolved to the instance for the same governor
+     * as the given instance. Must be called while holding the lock.
+     */
+    private void addInstanceUpstreams(final String metadataIdentificationString,
+            final String instanceId, final List<String> upstreams) {
+        final Node node = getNode(metadataIdentificationString);
+        if (node == null) {
+            return;
+        }
+        for (final int upstreamId : node.upstreamIds.toArray()) {
+            final String upstream = nodes.get(upstreamId).metadataIdentificationString;
+            if (MetadataIdentificationUtils.isIdentifyingInstance(upstream)) {
+                upstreams.add(upstream);
+            }
+            else {
+                upstreams.add(MetadataIdentificationUtils.create(
+                        MetadataIdentificationUtils.getMetadataClass(upstream),
+                        MetadataIdentificationUtils
+                                .getMetadataInstance(instanceId)));
+            }
+        }
+    }
+
+    private void enqueue(final Notification notification) {
+        queuedNotifications.put(notification.key, notification);
+        final Integer count = queuedDownstreams.get(notification.affected);
+        queuedDownstreams.put(notification.affected, count == null ? 1
+                : count + 1);
+        if (count == null && !unaffectedByQueue.isEmpty()) {
+            unaffectedByQueue.clear();
+        }
+    }
+
+    private void dequeue(final String key) {
+        final Notification notification = queuedNotifications.remove(key);
+        if (notification == null) {
+            return;
+        }
+        final Integer count = queuedDownstreams.get(notification.affected);
+        if (count == null || count <= 1) {
+            queuedDownstreams.remove(notification.affected);
+        }
+        else {
+            queuedDownstreams.put(notification.affected, count - 1);
+        }
+    }
+
+    /**
+     * Delivers the queued notifications in waves until none remain. Each wave
+     * is delivered in the topological order of the downstream dependencies,
+     * so that a downstream is only notified once its queued upstreams have
+     * been; a notification for a downstream still waiting in the current wave
+     * is therefore coalesced with the one already queued.
+     */
+    private void deliverQueuedNotifications() {
+        while (true) {
+            final List<Notification> wave;
+            final List<String> listenerUpstreams;
+            synchronized (lock) {
+                if (queuedNotifications.isEmpty()
+                        && queuedListenerUpstreams.isEmpty()) {
+                    return;
+                }
+                wave = new ArrayList<Notification>(
+                        queuedNotifications.values());
+                for (final Notification notification : wave) {
+                    final Node downstream = getNode(notification.downstream);
+                    notification.order = downstream == null ? Integer.MAX_VALUE
+                            : downstream.order;
+                }
+                listenerUpstreams = new ArrayList<String>(
+                        queuedListenerUpstreams);
+                queuedListenerUpstreams.clear();
+            }
+            Collections.sort(wave, new Comparator<Notification>() {
+                public int compare(final Notification notification1,
+                        final Notification notification2) {
+                    return notification1.order < notification2.order ? -1
+                            : notification1.order == notification2.order ? 0
+                                    : 1;
+                }
+            });
+
+            final MetadataService metadataService = this.metadataService;
+            int i = 0;
+            while (i < wave.size()) {
+                // Consecutive notifications of the same upstream are siblings,
+                // so can be dispatched together
+                final String upstreamDependency = wave.get(i).upstream;
+                final List<String> downstreams = new ArrayList<String>();
+                for (; i < wave.size()
+                        && wave.get(i).upstream.equals(upstreamDependency); i++) {
+                    downstreams.add(wave.get(i).downstream);
+                }
+                if (metadataService != null) {
+                    dispatch(metadataService, upstreamDependency, downstreams);
+                }
+            }
+            for (final String upstreamDependency : listenerUpstreams) {
+                notifyListeners(upstreamDependency);
+            }
+        }
+    }
+
+    /**
+     * Queues the notifications that would be delivered for the given upstream
+     * dependency, discarding those equivalent to one already queued. Must be
+     * called while holding the lock.
+     */
+    private void queue(final String upstreamDependency) {
+        if (metadataService != null) {
+            final List<String> downstreams = getInstanceDownstreams(upstreamDependency);
+            downstreams.addAll(getClassDownstreams(upstreamDependency,
+                    downstreams));
+            for (final String downstream : downstreams) {
+                queuedNotificationCount++;
+                final Notification notification = new Notification(
+                        upstreamDependency, downstream);
+                if (queuedNotifications.containsKey(notification.key)) {
+                    coalescedNotificationCount++;
                     if (metadataLogger.getTraceLevel() > 0) {
                         metadataLogger.log(upstreamDependency + " -> "
-                                + downstream);
-                    }
-                    // No need to ensure upstreamDependency is different from
-                    // downstream, as that's taken care of in the
-                    // isValidDependency() method
-                    try {
-                        String responsibleClass = MetadataIdentificationUtils
-                                .getMetadataClass(downstream);
-                        metadataLogger.startTimer(responsibleClass);
-                        metadataService.notify(upstreamDependency, downstream);
+                                + downstream + " [coalesced]");
                     }
-                    finally {
-                        metadataLogger.stopTimer();
-                    }
-                    notifiedDownstreams.add(downstream);
                 }
-
-                // Next dispatch the coarse-grained, class-specific
-                // dependencies.
-                // We only do it if the upstream is not class specific, as
-                // otherwise we'd have handled class-specific dispatch in
-                // previous loop
-                if (!MetadataIdentificationUtils
-                        .isIdentifyingClass(upstreamDependency)) {
-                    String asClass = MetadataIdentificationUtils
-                            .getMetadataClassId(upstreamDependency);
-                    for (String downstream : getDownstream(asClass)) {
-                        // We don't notify a downstream if it had a direct
-                        // instance-specific dependency and was already notified
-                        // in previous loop
-                        // We also don't notify if upstream is the same as
-                        // downstream, as it doesn't make sense to notify
-                        // yourself of an event
-                        // (such a condition is only possible if an instance
-                        // registered to receive class-specific notifications
-                        // and that instance
-                        // caused an event to fire)
-                        if (!notifiedDownstreams.contains(downstream)
-                                && !upstreamDependency.equals(downstream)) {
-                            if (metadataLogger.getTraceLevel() > 0) {
-                                metadataLogger.log(upstreamDependency + " -> "
-                                        + downstream + " [via class]");
-                            }
-                            try {
-                                String responsibleClass = MetadataIdentificationUtils
-                                        .getMetadataClass(downstream);
-                                metadataLogger.startTimer(responsibleClass);
-                                metadataService.notify(upstreamDependency,
-                                        downstream);
-                            }
-                            finally {
-                                metadataLogger.stopTimer();
-                            }
-                        }
-                    }
+                else {
+                    enqueue(notification);
                 }
+            }
+        }
+        if (!listeners.isEmpty()) {
+            queuedNotificationCount++;
+            if (!queuedListenerUpstreams.add(upstreamDependency)) {
+                coalescedNotificationCount++;
+            }
+        }
+    }
 
-                notifiedDownstreams = null;
+    /**
+     * Returns the instance-specific downstream dependencies of the given
+     * upstream dependency.
+     */
+    private List<String> getInstanceDownstreams(final String upstreamDependency) {
+        final List<String> downstreams = new ArrayList<String>();
+        for (String downstream : getDownstream(upstreamDependency)) {
+            if (metadataLogger.getTraceLevel() > 0) {
+                metadataLogger.log(upstreamDependency + " -> " + downstream);
             }
+            // No need to ensure upstreamDependency is different from
+            // downstream, as that's taken care of in the isValidDependency()
+            // method
+            downstreams.add(downstream);
+        }
+        return downstreams;
+    }
 
-            // Finally dispatch the general-purpose additional listeners
-            for (MetadataNotificationListener listener : listeners) {
-                if (metadataLogger.getTraceLevel() > 1) {
+    /**
+     * Returns the class-specific downstream dependencies of the given upstream
+     * dependency, excluding those in the given list.
+     */
+    private List<String> getClassDownstreams(final String upstreamDependency,
+            final List<String> instanceDownstreams) {
+        final List<String> classDownstreams = new ArrayList<String>();
+        // We only do it if the upstream is not class specific, as otherwise
+        // we'd have handled class-specific dispatch in previous loop
+        if (MetadataIdentificationUtils.isIdentifyingClass(upstreamDependency)) {
+            return classDownstreams;
+        }
+        final Set<String> notifiedDownstreams = new HashSet<String>(
+                instanceDownstreams);
+        String asClass = MetadataIdentificationUtils
+                .getMetadataClassId(upstreamDependency);
+        for (String downstream : getDownstream(asClass)) {
+            // We don't notify a downstream if it had a direct
+            // instance-specific dependency and was already notified in
+            // previous loop
+            // We also don't notify if upstream is the same as downstream, as
+            // it doesn't make sense to notify yourself of an event
+            // (such a condition is only possible if an instance registered to
+            // receive class-specific notifications and that instance caused an
+            // event to fire)
+            if (!notifiedDownstreams.contains(downstream)
+                    && !upstreamDependency.equals(downstream)) {
+                if (metadataLogger.getTraceLevel() > 0) {
                     metadataLogger.log(upstreamDependency + " -> "
-                            + upstreamDependency + " ["
-                            + listener.getClass().getSimpleName() + "]");
+                            + downstream + " [via class]");
                 }
-                try {
-                    String responsibleClass = listener.getClass().getName();
-                    metadataLogger.startTimer(responsibleClass);
-                    listener.notify(upstreamDependency, null);
-                }
-                finally {
-                    metadataLogger.stopTimer();
+                classDownstreams.add(downstream);
+            }
+        }
+        return classDownstreams;
+    }
+
+    public void notifyDownstream(final String upstreamDependency) {
+        try {
+            metadataLogger.startEvent();
+
+            synchronized (lock) {
+                if (batchDepth > 0) {
+                    queue(upstreamDependency);
+                    return;
                 }
             }
+
+            final MetadataService metadataService = this.metadataService;
+            if (metadataService != null) {
+                // First dispatch the fine-grained, instance-specific
+                // dependencies.
+                final List<String> downstreams = getInstanceDownstreams(upstreamDependency);
+                dispatch(metadataService, upstreamDependency, downstreams);
+
+                // Next dispatch the coarse-grained, class-specific
+                // dependencies.
+                dispatch(metadataService, upstreamDependency,
+                        getClassDownstreams(upstreamDependency, downstreams));
+            }
+
+            // Finally dispatch the general-purpose additional listeners
+            notifyListeners(upstreamDependency);
         }
         finally {
             metadataLogger.stopEvent();
         }
     }
+
+    private void notifyListeners(final String upstreamDependency) {
+        for (MetadataNotificationListener listener : listeners) {
+            if (metadataLogger.getTraceLevel() > 1) {
+                metadataLogger.log(upstreamDependency + " -> "
+                        + upstreamDependency + " ["
+                        + listener.getClass().getSimpleName() + "]");
+            }
+            try {
+                String responsibleClass = listener.getClass().getName();
+                metadataLogger.startTimer(responsibleClass);
+                listener.notify(upstreamDependency, null);
+            }
+            finally {
+                metadataLogger.stopTimer();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            ToStringCreator tsc = new ToStringCreator(this);
+            tsc.append("nodes", nodes.size());
+            tsc.append("notificationBatches", batches);
+            tsc.append("queuedNotifications", queuedNotificationCount);
+            tsc.append("coalescedNotifications", coalescedNotificationCount);
+            tsc.append("notificationCheckpoints", checkpoints);
+            return tsc.toString().replaceFirst("@[0-9a-f]+", ":");
+        }
+    }
+
+    /**
+     * A queued notification of a downstream dependency.
+     */
+    private static class Notification {
+        final String upstream;
+        final String downstream;
+        /** notifications with the same key are equivalent */
+        final String key;
+        /**
+         * the MID this notification causes to be rebuilt: the downstream if
+         * it's instance-specific, otherwise the instance of the downstream
+         * class for the upstream's governor (or the whole class if the
+         * upstream is class-specific too)
+         */
+        final String affected;
+        /** the downstream's topological order when the wave was taken */
+        int order;
+
+        Notification(final String upstream, final String downstream) {
+            this.upstream = upstream;
+            this.downstream = downstream;
+            this.key = getKey(upstream, downstream);
+            if (MetadataIdentificationUtils.isIdentifyingInstance(downstream)
+                    || !MetadataIdentificationUtils
+                            .isIdentifyingInstance(upstream)) {
+                this.affected = downstream;
+            }
+            else {
+                this.affected = MetadataIdentificationUtils.create(
+                        MetadataIdentificationUtils.getMetadataClass(downstream),
+                        MetadataIdentificationUtils.getMetadataInstance(upstream));
+            }
+        }
+
+        static String getKey(final String upstream, final String downstream) {
+            if (MetadataIdentificationUtils.isIdentifyingInstance(downstream)) {
+                return downstream;
+            }
+            return upstream + " -> " + downstream;
+        }
+    }
+
+    /**
+     * A MID in the dependency graph. Nodes are never removed, as MIDs are
+     * typically registered again after being deregistered.
+     */
+    private static class Node {
+        final String metadataIdentificationString;
+        final int id;
+        final IntHashSet downstreamIds = new IntHashSet();
+        final IntHashSet upstreamIds = new IntHashSet();
+        /** this node's position in the topological order */
+        int order;
+        int visitEpoch;
+        Set<String> downstreamSnapshot;
+        Set<String> upstreamSnapshot;
+
+        Node(final String metadataIdentificationString, final int id) {
+            this.metadataIdentificationString = metadataIdentificationString;
+            this.id = id;
+            this.order = id;
+        }
+    }
 }
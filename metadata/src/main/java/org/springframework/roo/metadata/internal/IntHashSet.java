@@ -0,0 +1,132 @@
+package org.springframework.roo.metadata.internal;
+
+import java.util.Arrays;
+
+/**
+ * A set of non-negative <code>int</code>s backed by an open-addressing hash
+ * table, avoiding the boxing and per-entry objects of a
+ * <code>HashSet&lt;Integer&gt;</code>.
+ * <p>
+ * Not thread safe.
+ *
+ * @since 1.2.1
+ */
+class IntHashSet {
+
+    // Constants
+    private static final int FREE = -1;
+    private static final int REMOVED = -2;
+    private static final int[] EMPTY = new int[0];
+
+    // Fields
+    private int[] table = newTable(4);
+    private int size;
+    /** the number of slots that are not free, i.e. values plus tombstones */
+    private int used;
+
+    /**
+     * Adds the given value to this set.
+     *
+     * @param value the value to add (must not be negative)
+     * @return <code>true</code> if the set did not already contain it
+     */
+    boolean add(final int value) {
+        if (contains(value)) {
+            return false;
+        }
+        if ((used + 1) * 4 > table.length * 3) {
+            // Grow if mostly values, otherwise just clear out the tombstones
+            rehash(size * 2 >= table.length ? table.length * 2 : table.length);
+        }
+        int index = indexOf(value);
+        while (table[index] >= 0) {
+            index = (index + 1) & (table.length - 1);
+        }
+        if (table[index] == FREE) {
+            used++;
+        }
+        table[index] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the given value from this set.
+     *
+     * @param value the value to remove
+     * @return <code>true</code> if the set contained it
+     */
+    boolean remove(final int value) {
+        final int index = find(value);
+        if (index < 0) {
+            return false;
+        }
+        table[index] = REMOVED;
+        size--;
+        return true;
+    }
+
+    boolean contains(final int value) {
+        return find(value) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the values in this set, in no particular order.
+     *
+     * @return a new array (never <code>null</code>)
+     */
+    int[] toArray() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        final int[] values = new int[size];
+        int i = 0;
+        for (final int value : table) {
+            if (value >= 0) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    private int find(final int value) {
+        int index = indexOf(value);
+        while (table[index] != FREE) {
+            if (table[index] == value) {
+                return index;
+            }
+            index = (index + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    private int indexOf(final int value) {
+        // Spread sequential IDs across the table
+        final int hash = value * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private void rehash(final int capacity) {
+        final int[] values = toArray();
+        table = newTable(capacity);
+        used = 0;
+        size = 0;
+        for (final int value : values) {
+            add(value);
+        }
+    }
+
+    private static int[] newTable(final int capacity) {
+        final int[] table = new int[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+}
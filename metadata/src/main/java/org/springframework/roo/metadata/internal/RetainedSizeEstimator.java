@@ -0,0 +1,214 @@
+package org.springframework.roo.metadata.internal;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.roo.metadata.MetadataItem;
+
+/**
+ * Estimates the number of bytes retained by a {@link MetadataItem} by walking
+ * its object graph reflectively.
+ * <p>
+ * The estimate assumes a 64-bit JVM without compressed references and is only
+ * intended to compare items with each other. Other metadata items reachable
+ * from the one being weighed are not included, as they are cached (and
+ * weighed) in their own right; nor are classes, enums, threads, class loaders
+ * and references. Objects shared between items are counted once per item.
+ * The walk stops after {@link #MAX_OBJECTS} objects.
+ * <p>
+ * Thread safe.
+ *
+ * @since 1.2.1
+ */
+class RetainedSizeEstimator {
+
+    // Constants
+    static final int MAX_OBJECTS = 100000;
+    private static final int OBJECT_HEADER = 16;
+    private static final int ARRAY_HEADER = 24;
+    private static final int REFERENCE = 8;
+    private static final int MAP_ENTRY = 48;
+    private static final Field[] NO_FIELDS = new Field[0];
+
+    // Fields
+    /** key: class, value: its accessible instance fields of reference type */
+    private final Map<Class<?>, Field[]> referenceFields = new ConcurrentHashMap<Class<?>, Field[]>();
+    /** key: class, value: the shallow size of its instances */
+    private final Map<Class<?>, Long> shallowSizes = new ConcurrentHashMap<Class<?>, Long>();
+
+    /**
+     * Returns the estimated retained size of the given item.
+     *
+     * @param metadataItem the item to weigh (required)
+     * @return the estimated number of bytes (at least the size of an empty
+     *         object)
+     */
+    long estimate(final MetadataItem metadataItem) {
+        final Map<Object, Object> visited = new IdentityHashMap<Object, Object>();
+        final List<Object> pending = new ArrayList<Object>();
+        pending.add(metadataItem);
+        visited.put(metadataItem, metadataItem);
+        long size = 0;
+        while (!pending.isEmpty() && visited.size() <= MAX_OBJECTS) {
+            final Object object = pending.remove(pending.size() - 1);
+            final Class<?> type = object.getClass();
+            if (type == String.class) {
+                // The object plus its character array
+                size += align(OBJECT_HEADER + REFERENCE + 3 * 4)
+                        + align(ARRAY_HEADER + 2L * ((String) object).length());
+                continue;
+            }
+            if (type.isArray()) {
+                size += estimateArray(object, type, visited, pending);
+                continue;
+            }
+            if (object instanceof Collection<?>) {
+                size += estimateCollection((Collection<?>) object, visited,
+                        pending);
+                continue;
+            }
+            if (object instanceof Map<?, ?>) {
+                size += estimateMap((Map<?, ?>) object, visited, pending);
+                continue;
+            }
+            size += getShallowSize(type);
+            for (final Field field : getReferenceFields(type)) {
+                try {
+                    push(field.get(object), visited, pending);
+                }
+                catch (final IllegalAccessException ignored) {
+                }
+            }
+        }
+        return size;
+    }
+
+    private long estimateArray(final Object array, final Class<?> type,
+            final Map<Object, Object> visited, final List<Object> pending) {
+        final int length = Array.getLength(array);
+        final Class<?> componentType = type.getComponentType();
+        if (componentType.isPrimitive()) {
+            return align(ARRAY_HEADER + (long) length
+                    * getPrimitiveSize(componentType));
+        }
+        for (int i = 0; i < length; i++) {
+            push(Array.get(array, i), visited, pending);
+        }
+        return align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+
+    /**
+     * Collections are weighed through their public API, as the fields of JDK
+     * classes may not be accessible.
+     */
+    private long estimateCollection(final Collection<?> collection,
+            final Map<Object, Object> visited, final List<Object> pending) {
+        try {
+            for (final Object element : collection) {
+                push(element, visited, pending);
+            }
+        }
+        catch (final RuntimeException ignored) {
+            // Modified concurrently; settle for the elements seen so far
+        }
+        return align(OBJECT_HEADER + 2 * REFERENCE)
+                + align(ARRAY_HEADER + (long) collection.size() * REFERENCE);
+    }
+
+    private long estimateMap(final Map<?, ?> map,
+            final Map<Object, Object> visited, final List<Object> pending) {
+        try {
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                push(entry.getKey(), visited, pending);
+                push(entry.getValue(), visited, pending);
+            }
+        }
+        catch (final RuntimeException ignored) {
+            // Modified concurrently; settle for the entries seen so far
+        }
+        return align(OBJECT_HEADER + 4 * REFERENCE)
+                + align(ARRAY_HEADER + (long) map.size() * REFERENCE)
+                + map.size() * MAP_ENTRY;
+    }
+
+    private void push(final Object object, final Map<Object, Object> visited,
+            final List<Object> pending) {
+        if (object == null || object instanceof MetadataItem
+                || object instanceof Class<?> || object instanceof Enum<?>
+                || object instanceof Thread || object instanceof ClassLoader
+                || object instanceof Reference<?>
+                || visited.put(object, object) != null) {
+            return;
+        }
+        pending.add(object);
+    }
+
+    private long getShallowSize(final Class<?> type) {
+        Long size = shallowSizes.get(type);
+        if (size == null) {
+            long bytes = OBJECT_HEADER;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        bytes += field.getType().isPrimitive() ? getPrimitiveSize(field
+                                .getType()) : REFERENCE;
+                    }
+                }
+            }
+            size = align(bytes);
+            shallowSizes.put(type, size);
+        }
+        return size;
+    }
+
+    private Field[] getReferenceFields(final Class<?> type) {
+        Field[] fields = referenceFields.get(type);
+        if (fields == null) {
+            final List<Field> result = new ArrayList<Field>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (final Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())
+                            || field.getType().isPrimitive()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        result.add(field);
+                    }
+                    catch (final RuntimeException ignored) {
+                        // Can't follow this field, so don't count its target
+                    }
+                }
+            }
+            fields = result.isEmpty() ? NO_FIELDS : result
+                    .toArray(new Field[result.size()]);
+            referenceFields.put(type, fields);
+        }
+        return fields;
+    }
+
+    private int getPrimitiveSize(final Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private long align(final long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
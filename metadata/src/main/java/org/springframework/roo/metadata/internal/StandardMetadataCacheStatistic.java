@@ -0,0 +1,102 @@
+package org.springframework.roo.metadata.internal;
+
+import org.springframework.roo.metadata.MetadataCacheStatistic;
+import org.springframework.roo.support.util.Assert;
+
+/**
+ * Standard implementation of {@link MetadataCacheStatistic}.
+ * 
+ * @since 1.2.1
+ */
+public class StandardMetadataCacheStatistic implements MetadataCacheStatistic {
+
+    // Constants
+    private static final long BYTES_IN_KILOBYTE = 1024;
+
+    // Fields
+    private final String metadataClassId;
+    private final int entries;
+    private final long weight;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    /**
+     * Constructor
+     * 
+     * @param metadataClassId (required)
+     * @param entries (zero or more)
+     * @param weight the estimated size in bytes (zero or more)
+     * @param hits (zero or more)
+     * @param misses (zero or more)
+     * @param evictions (zero or more)
+     */
+    public StandardMetadataCacheStatistic(final String metadataClassId,
+            final int entries, final long weight, final long hits,
+            final long misses, final long evictions) {
+        Assert.hasText(metadataClassId, "Metadata class ID required");
+        Assert.isTrue(entries >= 0, "Entries must be zero or more");
+        Assert.isTrue(weight >= 0, "Weight must be zero or more");
+        this.metadataClassId = metadataClassId;
+        this.entries = entries;
+        this.weight = weight;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getMetadataClassId() {
+        return metadataClassId;
+    }
+
+    public int getEntries() {
+        return entries;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int compareTo(final MetadataCacheStatistic o) {
+        int result = Long.valueOf(weight).compareTo(o.getWeight());
+        if (result == 0) {
+            result = Integer.valueOf(entries).compareTo(o.getEntries());
+        }
+        if (result == 0) {
+            result = metadataClassId.compareTo(o.getMetadataClassId());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof MetadataCacheStatistic
+                && this.compareTo((MetadataCacheStatistic) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.valueOf(weight).hashCode() * (entries + 1)
+                * metadataClassId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%8d KB; %6d entries; %8d hits; %8d misses; %6d evictions: %s",
+                weight / BYTES_IN_KILOBYTE, entries, hits, misses, evictions,
+                metadataClassId);
+    }
+}
@@ -1,8 +1,17 @@
 package org.springframework.roo.metadata;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class DefaultMetadataServiceTest {
 
@@ -14,10 +23,110 @@ public class DefaultMetadataServiceTest {
             + " cacheMisses = 0,"
             + " cacheEvictions = 0,"
             + " cacheCurrentSize = 0," + " cacheMaximumSize = 100000]";
+    private static final String CONCURRENCY_PROPERTY = "roo.metadata.concurrency";
+    private static final String PROVIDES_TYPE = MetadataIdentificationUtils
+            .create("com.example.FooMetadata");
+    private static final String METADATA_ID = MetadataIdentificationUtils
+            .create("com.example.FooMetadata", "Foo");
+
+    /**
+     * Returns a service whose only provider produces items by means of the
+     * given answer
+     */
+    private DefaultMetadataService getMetadataService(
+            final Answer<MetadataItem> answer) {
+        final DefaultMetadataService metadataService = new DefaultMetadataService();
+        metadataService.metadataDependencyRegistry = mock(MetadataDependencyRegistry.class);
+        metadataService.metadataLogger = mock(MetadataLogger.class);
+        final MetadataProvider mockProvider = mock(MetadataProvider.class);
+        when(mockProvider.getProvidesType()).thenReturn(PROVIDES_TYPE);
+        when(mockProvider.get(METADATA_ID)).thenAnswer(answer);
+        metadataService.bindMetadataProvider(mockProvider);
+        return metadataService;
+    }
+
+    private MetadataItem getMetadataItem() {
+        final MetadataItem mockMetadataItem = mock(MetadataItem.class);
+        when(mockMetadataItem.getId()).thenReturn(METADATA_ID);
+        return mockMetadataItem;
+    }
 
     @Test
     public void testToStringOfNewInstance() {
         assertEquals(TO_STRING_FOR_NEW_INSTANCE,
                 new DefaultMetadataService().toString());
     }
+
+    @Test
+    public void testInterruptedGetKeepsTheInterruptedStatus() {
+        final DefaultMetadataService metadataService = getMetadataService(new Answer<MetadataItem>() {
+            public MetadataItem answer(final InvocationOnMock invocation) {
+                return getMetadataItem();
+            }
+        });
+        Thread.currentThread().interrupt();
+
+        // Invoke
+        try {
+            metadataService.get(METADATA_ID);
+            fail("Expected an IllegalStateException");
+        }
+        catch (final IllegalStateException expected) {
+            // Check
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void testWaitingForAnotherThreadsItemCountsAsOneHit()
+            throws Exception {
+        final MetadataItem metadataItem = getMetadataItem();
+        final CountDownLatch producing = new CountDownLatch(1);
+        final CountDownLatch waiterBlocked = new CountDownLatch(1);
+        final DefaultMetadataService metadataService;
+        System.setProperty(CONCURRENCY_PROPERTY, "2");
+        try {
+            metadataService = getMetadataService(new Answer<MetadataItem>() {
+                public MetadataItem answer(final InvocationOnMock invocation)
+                        throws InterruptedException {
+                    producing.countDown();
+                    waiterBlocked.await();
+                    return metadataItem;
+                }
+            });
+        }
+        finally {
+            System.clearProperty(CONCURRENCY_PROPERTY);
+        }
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                metadataService.get(METADATA_ID);
+            }
+        };
+        producer.start();
+        producing.await();
+        final MetadataItem[] waiterResult = new MetadataItem[1];
+        final Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                waiterResult[0] = metadataService.get(METADATA_ID);
+            }
+        };
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        // Invoke
+        waiterBlocked.countDown();
+        producer.join();
+        waiter.join();
+
+        // Check
+        assertSame(metadataItem, waiterResult[0]);
+        final String statistics = metadataService.toString();
+        assertTrue(statistics, statistics.contains(" cacheHits = 1,"));
+        assertTrue(statistics, statistics.contains(" cacheMisses = 1,"));
+    }
 }
@@ -0,0 +1,122 @@
+package org.springframework.roo.metadata.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Iterator;
+import java.util.SortedSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.roo.metadata.AbstractMetadataItem;
+import org.springframework.roo.metadata.MetadataCacheStatistic;
+import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataItem;
+
+/**
+ * Unit test of {@link AbstractMetadataCache}
+ * 
+ * @since 1.2.1
+ */
+public class AbstractMetadataCacheTest {
+
+    private static final String SMALL_CLASS = "com.example.Small";
+    private static final String LARGE_CLASS = "com.example.Large";
+
+    /**
+     * A cache that weighs each item by the length of its instance name.
+     */
+    private static class TestMetadataCache extends AbstractMetadataCache {
+        @Override
+        protected long weigh(final MetadataItem metadataItem) {
+            return MetadataIdentificationUtils.getMetadataInstance(
+                    metadataItem.getId()).length();
+        }
+
+        MetadataItem get(final String metadataIdentificationString) {
+            return getFromCache(metadataIdentificationString);
+        }
+    }
+
+    private static class TestMetadataItem extends AbstractMetadataItem {
+        TestMetadataItem(final String metadataClass, final String instance) {
+            super(MetadataIdentificationUtils.create(metadataClass, instance));
+        }
+    }
+
+    // Fixture
+    private TestMetadataCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new TestMetadataCache();
+    }
+
+    @Test
+    public void testWeightLimitEvictsLeastRecentlyUsedItems() {
+        final MetadataItem first = new TestMetadataItem(LARGE_CLASS,
+                "0123456789");
+        final MetadataItem second = new TestMetadataItem(LARGE_CLASS,
+                "abcdefghij");
+        final MetadataItem third = new TestMetadataItem(SMALL_CLASS, "x");
+        cache.setMaxWeight(15);
+        cache.put(first);
+        cache.put(third);
+        cache.put(second);
+
+        assertNull(cache.get(first.getId()));
+        assertSame(second, cache.get(second.getId()));
+        assertSame(third, cache.get(third.getId()));
+        assertEquals(2, cache.getCacheSize());
+    }
+
+    @Test
+    public void testStatisticsArePerMetadataClass() {
+        final MetadataItem small = new TestMetadataItem(SMALL_CLASS, "x");
+        final MetadataItem large = new TestMetadataItem(LARGE_CLASS,
+                "0123456789");
+        cache.put(small);
+        cache.put(large);
+        cache.get(small.getId());
+        cache.get(large.getId());
+        cache.get(large.getId());
+        cache.evict(small.getId());
+        cache.get(small.getId());
+
+        final SortedSet<MetadataCacheStatistic> statistics = cache
+                .getStatistics();
+        assertEquals(2, statistics.size());
+        final Iterator<MetadataCacheStatistic> iterator = statistics
+                .iterator();
+        final MetadataCacheStatistic smallStatistic = iterator.next();
+        assertEquals(
+                MetadataIdentificationUtils.create(SMALL_CLASS),
+                smallStatistic.getMetadataClassId());
+        assertEquals(0, smallStatistic.getEntries());
+        assertEquals(0, smallStatistic.getWeight());
+        assertEquals(1, smallStatistic.getHits());
+        assertEquals(1, smallStatistic.getMisses());
+        final MetadataCacheStatistic largeStatistic = iterator.next();
+        assertEquals(1, largeStatistic.getEntries());
+        assertEquals(10, largeStatistic.getWeight());
+        assertEquals(2, largeStatistic.getHits());
+        assertEquals(0, largeStatistic.getEvictions());
+    }
+
+    @Test
+    public void testEvictAllKeepsCounters() {
+        final MetadataItem item = new TestMetadataItem(SMALL_CLASS, "x");
+        cache.put(item);
+        cache.get(item.getId());
+        cache.evictAll();
+
+        assertEquals(0, cache.getCacheSize());
+        assertNull(cache.get(item.getId()));
+        final MetadataCacheStatistic statistic = cache.getStatistics()
+                .first();
+        assertEquals(0, statistic.getEntries());
+        assertEquals(1, statistic.getHits());
+        assertEquals(1, statistic.getMisses());
+    }
+}
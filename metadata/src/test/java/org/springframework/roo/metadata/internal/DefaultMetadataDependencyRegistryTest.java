@@ -1,9 +1,14 @@
 package org.springframework.roo.metadata.internal;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import junit.framework.Assert;
 
 import org.junit.Test;
 import org.springframework.roo.metadata.MetadataIdentificationUtils;
+import org.springframework.roo.metadata.MetadataLogger;
+import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.metadata.internal.DefaultMetadataDependencyRegistry;
 
 public class DefaultMetadataDependencyRegistryTest {
@@ -20,6 +25,66 @@ public class DefaultMetadataDependencyRegistryTest {
             .create("com.Test", "jsp 1");
     private static final String JSP_PAGE_2 = MetadataIdentificationUtils
             .create("com.Test", "jsp 2");
+    private static final String TYPE_CLASS = MetadataIdentificationUtils
+            .create("com.Type");
+    private static final String ITD_CLASS = MetadataIdentificationUtils
+            .create("com.Itd");
+    private static final String OTHER_ITD_CLASS = MetadataIdentificationUtils
+            .create("com.OtherItd");
+    private static final String PERSON_TYPE = MetadataIdentificationUtils
+            .create("com.Type", "com.Person");
+    private static final String PERSON_ITD = MetadataIdentificationUtils
+            .create("com.Itd", "com.Person");
+    private static final String PET_ITD = MetadataIdentificationUtils.create(
+            "com.Itd", "com.Pet");
+    private static final String PERSON_OTHER_ITD = MetadataIdentificationUtils
+            .create("com.OtherItd", "com.Person");
+
+    /**
+     * Returns a registry in which the ITD class depends upon the type class,
+     * with a notification of a change to the Person type queued
+     */
+    private DefaultMetadataDependencyRegistry getBatchingRegistry(
+            final MetadataService metadataService) {
+        final DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+        reg.metadataLogger = mock(MetadataLogger.class);
+        reg.addNotificationListener(metadataService);
+        reg.registerDependency(TYPE_CLASS, ITD_CLASS);
+        reg.beginNotificationBatch();
+        reg.notifyDownstream(PERSON_TYPE);
+        return reg;
+    }
+
+    @Test
+    public void testFlushDeliversQueuedClassLevelNotification() {
+        final MetadataService mockMetadataService = mock(MetadataService.class);
+        final DefaultMetadataDependencyRegistry reg = getBatchingRegistry(mockMetadataService);
+
+        reg.flushNotifications(PERSON_ITD);
+
+        verify(mockMetadataService).notify(PERSON_TYPE, ITD_CLASS);
+    }
+
+    @Test
+    public void testFlushIgnoresClassLevelNotificationForOtherGovernor() {
+        final MetadataService mockMetadataService = mock(MetadataService.class);
+        final DefaultMetadataDependencyRegistry reg = getBatchingRegistry(mockMetadataService);
+
+        reg.flushNotifications(PET_ITD);
+
+        verify(mockMetadataService, never()).notify(PERSON_TYPE, ITD_CLASS);
+    }
+
+    @Test
+    public void testFlushDeliversClassLevelNotificationOfIndirectUpstream() {
+        final MetadataService mockMetadataService = mock(MetadataService.class);
+        final DefaultMetadataDependencyRegistry reg = getBatchingRegistry(mockMetadataService);
+        reg.registerDependency(ITD_CLASS, OTHER_ITD_CLASS);
+
+        reg.flushNotifications(PERSON_OTHER_ITD);
+
+        verify(mockMetadataService).notify(PERSON_TYPE, ITD_CLASS);
+    }
 
     @Test
     public void testRegistration() {
@@ -57,4 +122,30 @@ public class DefaultMetadataDependencyRegistryTest {
         Assert.assertEquals(0, reg.getDownstream(JAVA_TYPE_PERSON).size());
         Assert.assertEquals(2, reg.getDownstream(MVC_CONTROLLER).size());
     }
+
+    @Test
+    public void testCycleDetectionAfterReordering() {
+        DefaultMetadataDependencyRegistry reg = new DefaultMetadataDependencyRegistry();
+
+        // Register the chain from its far end, so each new dependency's
+        // downstream was created before its upstream
+        reg.registerDependency(MVC_CONTROLLER, JSP_PAGE_1);
+        reg.registerDependency(JAVA_TYPE_PERSON, MVC_CONTROLLER);
+        reg.registerDependency(JAVA_TYPE_OBJECT, JAVA_TYPE_PERSON);
+        reg.registerDependency(DISK_FILE, JAVA_TYPE_OBJECT);
+
+        Assert.assertTrue(!reg.isValidDependency(JSP_PAGE_1, DISK_FILE));
+        Assert.assertTrue(!reg.isValidDependency(MVC_CONTROLLER,
+                JAVA_TYPE_OBJECT));
+        Assert.assertTrue(reg.isValidDependency(DISK_FILE, JSP_PAGE_1));
+        Assert.assertTrue(reg.isValidDependency(JSP_PAGE_2, DISK_FILE));
+
+        // Breaking the chain allows the reverse dependency
+        reg.deregisterDependency(JAVA_TYPE_PERSON, MVC_CONTROLLER);
+        Assert.assertTrue(reg.isValidDependency(JSP_PAGE_1, DISK_FILE));
+        reg.registerDependency(JSP_PAGE_1, DISK_FILE);
+        Assert.assertTrue(!reg.isValidDependency(JAVA_TYPE_PERSON,
+                MVC_CONTROLLER));
+        Assert.assertEquals(1, reg.getUpstream(DISK_FILE).size());
+    }
 }
@@ -1,5 +1,7 @@
 package org.springframework.roo.model;
 
+import java.io.Serializable;
+
 import org.springframework.roo.support.util.Assert;
 
 /**
@@ -9,7 +11,7 @@ import org.springframework.roo.support.util.Assert;
  * @since 1.1
  */
 public abstract class AbstractCustomDataAccessorProvider implements
-        CustomDataAccessor {
+        CustomDataAccessor, Serializable {
 
     // Fields
     private final CustomData customData;
@@ -1,5 +1,6 @@
 package org.springframework.roo.model;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -14,7 +15,7 @@ import org.springframework.roo.support.util.Assert;
  * @author Ben Alex
  * @since 1.1
  */
-public class CustomDataImpl implements CustomData {
+public class CustomDataImpl implements CustomData, Serializable {
 
     // Constants
     public static final CustomData NONE = new CustomDataImpl(
@@ -1,5 +1,7 @@
 package org.springframework.roo.model;
 
+import java.io.Serializable;
+
 import org.springframework.roo.support.util.Assert;
 
 /**
@@ -8,7 +10,7 @@ import org.springframework.roo.support.util.Assert;
  * @author Ben Alex
  * @since 1.0
  */
-public class EnumDetails {
+public class EnumDetails implements Serializable {
     private final JavaType type;
     private final JavaSymbolName field;
 
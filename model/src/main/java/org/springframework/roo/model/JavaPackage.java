@@ -1,5 +1,6 @@
 package org.springframework.roo.model;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
 
@@ -14,7 +15,7 @@ import org.springframework.roo.support.util.StringUtils;
  * @author Ben Alex
  * @since 1.0
  */
-public class JavaPackage implements Comparable<JavaPackage> {
+public class JavaPackage implements Comparable<JavaPackage>, Serializable {
 
     // Fields
     private final String fullyQualifiedPackageName;
@@ -1,6 +1,7 @@
 package org.springframework.roo.model;
 
 import java.beans.Introspector;
+import java.io.Serializable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,7 +18,8 @@ import org.springframework.roo.support.util.StringUtils;
  * @author Greg Turnquist
  * @since 1.0
  */
-public class JavaSymbolName implements Comparable<JavaSymbolName> {
+public class JavaSymbolName implements Comparable<JavaSymbolName>,
+        Serializable {
 
     /** Constant for keyword "false" */
     public static final JavaSymbolName FALSE = new JavaSymbolName("false");
@@ -1,6 +1,7 @@
 package org.springframework.roo.model;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,7 +32,7 @@ import org.springframework.roo.support.util.StringUtils;
  * @author Ben Alex
  * @since 1.0
  */
-public class JavaType implements Comparable<JavaType> {
+public class JavaType implements Comparable<JavaType>, Serializable {
 
     // Constants
     public static final JavaType CLASS = new JavaType("java.lang.Class");
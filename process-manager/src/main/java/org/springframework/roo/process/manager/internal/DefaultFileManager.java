@@ -70,9 +70,13 @@ public class DefaultFileManager implements FileManager, UndoListener {
     }
 
     public InputStream getInputStream(final String fileIdentifier) {
-        if (deferredFileWrites.containsKey(fileIdentifier)) {
+        String deferredContents;
+        synchronized (deferredFileWrites) {
+            deferredContents = deferredFileWrites.get(fileIdentifier);
+        }
+        if (deferredContents != null) {
             return new BufferedInputStream(new ByteArrayInputStream(
-                    deferredFileWrites.get(fileIdentifier).getBytes()));
+                    deferredContents.getBytes()));
         }
 
         File file = new File(fileIdentifier);
@@ -193,24 +197,31 @@ public class DefaultFileManager implements FileManager, UndoListener {
                     descriptionOfChange);
         }
         else {
-            deferredFileWrites.put(fileIdentifier, newContents);
+            // Deferred writes may be requested by metadata being produced
+            // concurrently
+            synchronized (deferredFileWrites) {
+                deferredFileWrites.put(fileIdentifier, newContents);
 
-            String deferredDescriptionOfChange = StringUtils.defaultIfEmpty(
-                    deferredDescriptionOfChanges.get(fileIdentifier), "");
-            if (StringUtils.hasText(deferredDescriptionOfChange)
-                    && !deferredDescriptionOfChange.trim().endsWith(";")) {
-                deferredDescriptionOfChange += "; ";
+                String deferredDescriptionOfChange = StringUtils
+                        .defaultIfEmpty(
+                                deferredDescriptionOfChanges
+                                        .get(fileIdentifier), "");
+                if (StringUtils.hasText(deferredDescriptionOfChange)
+                        && !deferredDescriptionOfChange.trim().endsWith(";")) {
+                    deferredDescriptionOfChange += "; ";
+                }
+                deferredDescriptionOfChanges.put(fileIdentifier,
+                        deferredDescriptionOfChange
+                                + StringUtils.trimToEmpty(descriptionOfChange));
             }
-            deferredDescriptionOfChanges.put(
-                    fileIdentifier,
-                    deferredDescriptionOfChange
-                            + StringUtils.trimToEmpty(descriptionOfChange));
         }
     }
 
     public void commit() {
-        Map<String, String> toRemove = new LinkedHashMap<String, String>(
-                deferredFileWrites);
+        Map<String, String> toRemove;
+        synchronized (deferredFileWrites) {
+            toRemove = new LinkedHashMap<String, String>(deferredFileWrites);
+        }
         try {
             for (final Entry<String, String> entry : toRemove.entrySet()) {
                 final String fileIdentifier = entry.getKey();
@@ -228,16 +239,20 @@ public class DefaultFileManager implements FileManager, UndoListener {
             }
         }
         finally {
-            for (String remove : toRemove.keySet()) {
-                deferredFileWrites.remove(remove);
+            synchronized (deferredFileWrites) {
+                for (String remove : toRemove.keySet()) {
+                    deferredFileWrites.remove(remove);
+                }
+                deferredDescriptionOfChanges.clear();
             }
-            deferredDescriptionOfChanges.clear();
         }
     }
 
     public void clear() {
-        deferredFileWrites.clear();
-        deferredDescriptionOfChanges.clear();
+        synchronized (deferredFileWrites) {
+            deferredFileWrites.clear();
+            deferredDescriptionOfChanges.clear();
+        }
     }
 
     public int scan() {
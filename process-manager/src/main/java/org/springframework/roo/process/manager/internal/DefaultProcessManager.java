@@ -14,6 +14,7 @@ import org.springframework.roo.file.monitor.FileMonitorService;
 import org.springframework.roo.file.monitor.MonitoringRequest;
 import org.springframework.roo.file.monitor.NotifiableFileMonitorService;
 import org.springframework.roo.file.undo.UndoManager;
+import org.springframework.roo.metadata.MetadataDependencyRegistry;
 import org.springframework.roo.process.manager.ActiveProcessManager;
 import org.springframework.roo.process.manager.CommandCallback;
 import org.springframework.roo.process.manager.ProcessManager;
@@ -26,6 +27,12 @@ import org.springframework.roo.support.util.ExceptionUtils;
 
 /**
  * Default implementation of {@link ProcessManager} interface.
+ * <p>
+ * If the <code>roo.script.batch</code> system property is <code>true</code>,
+ * the metadata notifications caused by a command are batched until it
+ * completes. This mostly benefits scripts (including those run headless via
+ * <code>roo script</code>), whose commands are all run within the script
+ * command's transaction.
  * 
  * @author Ben Alex
  * @since 1.0
@@ -38,10 +45,19 @@ public class DefaultProcessManager extends
     // Constants
     private static final Logger LOGGER = HandlerUtils
             .getLogger(DefaultProcessManager.class);
+    // How many ms between polls shortly after a change
+    private static final long ACTIVE_POLL_INTERVAL = 100;
+    // How many ms between polls otherwise
+    private static final long IDLE_POLL_INTERVAL = 1000;
+    // How many ms after a change we keep polling frequently
+    private static final long ACTIVITY_PERIOD = 5000;
+    private static final boolean BATCH_NOTIFICATIONS = Boolean
+            .getBoolean("roo.script.batch");
 
     // Fields
     @Reference private UndoManager undoManager;
     @Reference private FileMonitorService fileMonitorService;
+    @Reference private MetadataDependencyRegistry metadataDependencyRegistry;
     @Reference private StartLevel startLevel;
     private boolean developmentMode = false;
     private long minimumDelayBetweenPoll = -1; // How many ms must pass at
@@ -51,8 +67,13 @@ public class DefaultProcessManager extends
     private long lastPollTime = 0; // What time the last poll was completed
     private long lastPollDuration = 0; // How many ms the last poll actually
                                        // took
+    private volatile long lastChangeTime = 0; // When a poll last detected a
+                                              // change
     private String workingDir; // The working directory of the current roo
                                // project
+    private int transactionDepth; // How many transactions the current thread
+                                  // is running, being more than one while
+                                  // a script runs its commands
 
     protected void activate(final ComponentContext context) {
         workingDir = OSGiUtils.getRooWorkingDirectory(context);
@@ -73,7 +94,8 @@ public class DefaultProcessManager extends
                     }
                 });
 
-        // Now start a thread that will undertake a background poll every second
+        // Now start a thread that will undertake a background poll every
+        // second, or more often while files are being changed
         Thread t = new Thread(new Runnable() {
             public void run() {
                 // Unsynchronized lookup of terminated status to avoid anything
@@ -85,7 +107,7 @@ public class DefaultProcessManager extends
                         timerBasedPoll();
                     }
                     try {
-                        Thread.sleep(1000);
+                        Thread.sleep(getPollInterval());
                     }
                     catch (InterruptedException ignoreAndContinue) {
                     }
@@ -218,12 +240,18 @@ public class DefaultProcessManager extends
 
     private <T> T doTransactionally(final CommandCallback<T> callback) {
         T result = null;
+        transactionDepth++;
         try {
             ActiveProcessManager.setActiveProcessManager(this);
 
             // Run the requested operation
             if (callback == null) {
-                fileMonitorService.scanAll();
+                if (scan(true) > 0) {
+                    lastChangeTime = System.currentTimeMillis();
+                }
+            }
+            else if (BATCH_NOTIFICATIONS && transactionDepth == 1) {
+                result = executeBatched(callback);
             }
             else {
                 result = callback.callback();
@@ -235,13 +263,7 @@ public class DefaultProcessManager extends
 
             // Guarantee scans repeat until there are no more changes detected
             while (fileMonitorService.isDirty()) {
-                if (fileMonitorService instanceof NotifiableFileMonitorService) {
-                    ((NotifiableFileMonitorService) fileMonitorService)
-                            .scanNotified();
-                }
-                else {
-                    fileMonitorService.scanAll();
-                }
+                scan(false);
                 undoManager.flush(); // In case something else happened as a
                                      // result of event notifications above
             }
@@ -263,6 +285,7 @@ public class DefaultProcessManager extends
             }
         }
         finally {
+            transactionDepth--;
             // TODO: Review in consultation with Christian as STS is clearing
             // active process manager itself
             // ActiveProcessManager.clearActiveProcessManager();
@@ -271,6 +294,50 @@ public class DefaultProcessManager extends
         return result;
     }
 
+    /**
+     * Runs the given top-level command with the metadata notifications of any
+     * commands it runs in turn (i.e. those of a script) batched until it
+     * completes. Each nested command still writes and scans its file changes,
+     * but the metadata depending on them is only rebuilt once, either at the
+     * end or as soon as a later command reads it.
+     * 
+     * @param callback the command to run (required)
+     * @return the command's result
+     */
+    private <T> T executeBatched(final CommandCallback<T> callback) {
+        metadataDependencyRegistry.beginNotificationBatch();
+        try {
+            return callback.callback();
+        }
+        finally {
+            metadataDependencyRegistry.endNotificationBatch();
+        }
+    }
+
+    /**
+     * Scans for file changes. The metadata notifications caused by the changes
+     * are batched until the scan completes, so that metadata depending on
+     * several changed files is only rebuilt once.
+     * 
+     * @param all whether to scan all monitored files, rather than only those
+     *            notified as changed (if supported)
+     * @return the number of changes detected
+     */
+    private int scan(final boolean all) {
+        metadataDependencyRegistry.beginNotificationBatch();
+        try {
+            if (!all
+                    && fileMonitorService instanceof NotifiableFileMonitorService) {
+                return ((NotifiableFileMonitorService) fileMonitorService)
+                        .scanNotified();
+            }
+            return fileMonitorService.scanAll();
+        }
+        finally {
+            metadataDependencyRegistry.endNotificationBatch();
+        }
+    }
+
     public void timerBasedPoll() {
         try {
             if (minimumDelayBetweenPoll == 0) {
@@ -315,6 +382,21 @@ public class DefaultProcessManager extends
         }
     }
 
+    /**
+     * Returns how long the background thread should wait before its next poll.
+     * While files are being changed (e.g. by an IDE) we poll frequently, so
+     * that related changes are picked up with little delay; once things are
+     * quiet we fall back to polling once a second.
+     * 
+     * @return the number of milliseconds to wait
+     */
+    private long getPollInterval() {
+        if (System.currentTimeMillis() - lastChangeTime < ACTIVITY_PERIOD) {
+            return ACTIVE_POLL_INTERVAL;
+        }
+        return IDLE_POLL_INTERVAL;
+    }
+
     public boolean isDevelopmentMode() {
         return developmentMode;
     }
@@ -4,6 +4,8 @@ import static org.springframework.roo.project.DependencyScope.COMPILE;
 import static org.springframework.roo.support.util.AnsiEscapeCode.FG_CYAN;
 import static org.springframework.roo.support.util.AnsiEscapeCode.decorate;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -11,6 +13,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.logging.Level;
 
 import org.apache.felix.scr.annotations.Component;
@@ -18,6 +21,10 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.ReferenceStrategy;
+import org.osgi.service.component.ComponentContext;
+import org.springframework.roo.file.undo.UndoEvent;
+import org.springframework.roo.file.undo.UndoListener;
+import org.springframework.roo.file.undo.UndoManager;
 import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.model.JavaPackage;
 import org.springframework.roo.process.manager.FileManager;
@@ -26,6 +33,7 @@ import org.springframework.roo.shell.Shell;
 import org.springframework.roo.support.util.Assert;
 import org.springframework.roo.support.util.CollectionUtils;
 import org.springframework.roo.support.util.DomUtils;
+import org.springframework.roo.support.util.FileCopyUtils;
 import org.springframework.roo.support.util.StringUtils;
 import org.springframework.roo.support.util.XmlElementBuilder;
 import org.springframework.roo.support.util.XmlUtils;
@@ -45,7 +53,8 @@ import org.w3c.dom.Element;
 @SuppressWarnings("deprecation")
 @Component(componentAbstract = true)
 @Reference(name = "feature", strategy = ReferenceStrategy.EVENT, policy = ReferencePolicy.DYNAMIC, referenceInterface = Feature.class, cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE)
-public abstract class AbstractProjectOperations implements ProjectOperations {
+public abstract class AbstractProjectOperations implements ProjectOperations,
+        UndoListener {
 
     // Constants
     static final String ADDED = "added";
@@ -60,7 +69,13 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
     @Reference PathResolver pathResolver;
     @Reference protected PomManagementService pomManagementService;
     @Reference protected Shell shell;
+    @Reference UndoManager undoManager;
     private final Map<String, Feature> features = new HashMap<String, Feature>();
+    /**
+     * key: canonical path of a POM, value: its document as last written in
+     * the current transaction
+     */
+    private final Map<String, PomDocument> pomDocuments = new HashMap<String, PomDocument>();
 
     /**
      * Generates a message about the addition of the given items to the POM
@@ -92,6 +107,31 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         return decorate(text, FG_CYAN);
     }
 
+    protected void activate(final ComponentContext context) {
+        undoManager.addUndoListener(this);
+    }
+
+    protected void deactivate(final ComponentContext context) {
+        undoManager.removeUndoListener(this);
+    }
+
+    public void onUndoEvent(final UndoEvent event) {
+        final Map<String, PomDocument> editedPoms;
+        synchronized (pomDocuments) {
+            editedPoms = new HashMap<String, PomDocument>(pomDocuments);
+            pomDocuments.clear();
+        }
+        if (!event.isUndoing()) {
+            // The transaction is complete; let the edited documents be
+            // indexed once the POMs have been written
+            for (final Entry<String, PomDocument> editedPom : editedPoms
+                    .entrySet()) {
+                pomManagementService.addEditedPom(editedPom.getKey(),
+                        editedPom.getValue());
+            }
+        }
+    }
+
     protected void bindFeature(final Feature feature) {
         if (feature != null) {
             features.put(feature.getName(), feature);
@@ -285,8 +325,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element dependenciesElement = DomUtils.createChildIfNotExists(
                 "dependencies", document.getDocumentElement(), document);
         final List<Element> existingDependencyElements = XmlUtils.findElements(
@@ -343,8 +382,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         if (!newDependencies.isEmpty() || !skippedDependencies.isEmpty()) {
             final String message = getPomUpdateMessage(addedDependencies,
                     removedDependencies, skippedDependencies);
-            fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                    XmlUtils.nodeToString(document), message, false);
+            writePom(pom.getPath(), document, message, false);
         }
     }
 
@@ -390,8 +428,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final Element dependenciesElement = XmlUtils.findFirstElement(
                 "/project/dependencies", root);
@@ -429,8 +466,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         final String message = getDescriptionOfChange(REMOVED,
                 removedDependencies, "dependency", "dependencies");
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), message, false);
+        writePom(pom.getPath(), document, message, false);
     }
 
     public void removeDependency(final String moduleName,
@@ -451,8 +487,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final Element dependencyElement = XmlUtils.findFirstElement(
                 "/project/dependencies/dependency[groupId = '"
@@ -496,10 +531,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         }
 
         if (descriptionOfChange != null) {
-            fileManager
-                    .createOrUpdateTextFileIfRequired(pom.getPath(),
-                            XmlUtils.nodeToString(document),
-                            descriptionOfChange, false);
+            writePom(pom.getPath(), document, descriptionOfChange, false);
         }
     }
 
@@ -518,8 +550,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final Element pluginsElement = DomUtils.createChildIfNotExists(
                 "/project/build/plugins", root, document);
@@ -537,8 +568,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         final String message = getDescriptionOfChange(ADDED, newPlugins,
                 "plugin", "plugins");
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), message, false);
+        writePom(pom.getPath(), document, message, false);
     }
 
     public void addBuildPlugin(final String moduleName, final Plugin plugin) {
@@ -607,8 +637,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final Element pluginsElement = XmlUtils.findFirstElement(
                 "/project/build/plugins", root);
@@ -642,8 +671,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         final String message = getDescriptionOfChange(REMOVED, removedPlugins,
                 "plugin", "plugins");
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), message, writeImmediately);
+        writePom(pom.getPath(), document, message, writeImmediately);
     }
 
     public void addRepositories(final String moduleName,
@@ -696,8 +724,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         Assert.notNull(pom,
                 "The pom is not available, so the project type cannot be changed");
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element packaging = DomUtils.createChildIfNotExists("packaging",
                 document.getDocumentElement(), document);
         if (packaging.getTextContent().equals(projectType.getType())) {
@@ -708,8 +735,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         final String descriptionOfChange = highlight(UPDATED + " project type")
                 + " to " + projectType.getType();
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     private void addRepositories(final String moduleName,
@@ -734,8 +760,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element repositoriesElement = DomUtils.createChildIfNotExists(
                 containingPath, document.getDocumentElement(), document);
 
@@ -760,8 +785,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         final String message = getDescriptionOfChange(ADDED, addedRepositories,
                 path, containingPath);
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), message, false);
+        writePom(pom.getPath(), document, message, false);
     }
 
     private void addRepository(final String moduleName,
@@ -793,8 +817,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             }
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
 
         String descriptionOfChange = "";
@@ -808,8 +831,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             }
         }
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     public void addProperty(final String moduleName, final Property property) {
@@ -823,8 +845,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final String descriptionOfChange;
         final Element existing = XmlUtils.findFirstElement(
@@ -845,8 +866,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                     + property.getName() + "' to '" + property.getValue() + "'";
         }
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     public void removeProperty(final String moduleName, final Property property) {
@@ -860,8 +880,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final Element propertiesElement = XmlUtils.findFirstElement(
                 "/project/properties", root);
@@ -879,8 +898,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
         DomUtils.removeTextNodes(propertiesElement);
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     public void addFilter(final String moduleName, final Filter filter) {
@@ -894,8 +912,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final String descriptionOfChange;
         final Element buildElement = XmlUtils.findFirstElement(
@@ -917,8 +934,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
                     + filter.getValue() + "'";
         }
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     public void removeFilter(final String moduleName, final Filter filter) {
@@ -932,8 +948,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
 
         final Element filtersElement = XmlUtils.findFirstElement(
@@ -962,8 +977,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
         DomUtils.removeTextNodes(root);
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     public void addResource(final String moduleName, final Resource resource) {
@@ -977,8 +991,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element buildElement = XmlUtils.findFirstElement(
                 "/project/build", document.getDocumentElement());
         final Element resourcesElement = DomUtils.createChildIfNotExists(
@@ -987,8 +1000,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
         final String descriptionOfChange = highlight(ADDED + " resource") + " "
                 + resource.getSimpleDescription();
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     public void removeResource(final String moduleName, final Resource resource) {
@@ -1002,8 +1014,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
         final Element resourcesElement = XmlUtils.findFirstElement(
                 "/project/build/resources", root);
@@ -1031,8 +1042,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
         DomUtils.removeTextNodes(root);
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
     }
 
     /**
@@ -1057,8 +1067,7 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
             return;
         }
 
-        final Document document = XmlUtils.readXml(fileManager
-                .getInputStream(pom.getPath()));
+        final Document document = getPomDocument(pom.getPath());
         final Element root = document.getDocumentElement();
 
         String descriptionOfChange = "";
@@ -1076,8 +1085,60 @@ public abstract class AbstractProjectOperations implements ProjectOperations {
 
         DomUtils.removeTextNodes(dependenciesElement);
 
-        fileManager.createOrUpdateTextFileIfRequired(pom.getPath(),
-                XmlUtils.nodeToString(document), descriptionOfChange, false);
+        writePom(pom.getPath(), document, descriptionOfChange, false);
+    }
+
+    /**
+     * Returns the document of the given POM for editing, which the caller
+     * should pass to {@link #writePom(String, Document, String, boolean)}
+     * once edited. Within a transaction, the document written by the previous
+     * edit of this POM is reused instead of the POM being parsed again,
+     * provided the {@link FileManager} still has the contents it was written
+     * as.
+     * 
+     * @param pomPath the canonical path of the POM (required)
+     * @return a non-<code>null</code> document
+     */
+    Document getPomDocument(final String pomPath) {
+        final byte[] contents;
+        try {
+            contents = FileCopyUtils.copyToByteArray(fileManager
+                    .getInputStream(pomPath));
+        }
+        catch (final IOException e) {
+            throw new IllegalStateException("Could not read '" + pomPath
+                    + "'", e);
+        }
+        synchronized (pomDocuments) {
+            // Take the document out, so that if the caller abandons its
+            // edits, they can't be written by a later edit
+            final PomDocument pomDocument = pomDocuments.remove(pomPath);
+            if (pomDocument != null && pomDocument.isWrittenAs(contents)) {
+                return pomDocument.getDocument();
+            }
+        }
+        return XmlUtils.readXml(new ByteArrayInputStream(contents));
+    }
+
+    /**
+     * Writes the given POM document once the current transaction completes
+     * (or immediately, if requested), and keeps it for the next edit of that
+     * POM.
+     * 
+     * @param pomPath the canonical path of the POM (required)
+     * @param document the document returned by {@link #getPomDocument(String)}
+     *            and since edited (required)
+     * @param descriptionOfChange the description of the change (can be blank)
+     * @param writeImmediately whether to write the POM now
+     */
+    void writePom(final String pomPath, final Document document,
+            final String descriptionOfChange, final boolean writeImmediately) {
+        final String contents = XmlUtils.nodeToString(document);
+        fileManager.createOrUpdateTextFileIfRequired(pomPath, contents,
+                descriptionOfChange, writeImmediately);
+        synchronized (pomDocuments) {
+            pomDocuments.put(pomPath, new PomDocument(document, contents));
+        }
     }
 
     public String getFocusedProjectName() {
@@ -92,16 +92,14 @@ public class MavenOperationsImpl extends AbstractProjectOperations implements
     private void updateParentModulePom(final String moduleName) {
         final String parentPomPath = pomManagementService.getFocusedModule()
                 .getPath();
-        final Document parentPomDocument = XmlUtils.readXml(fileManager
-                .getInputStream(parentPomPath));
+        final Document parentPomDocument = getPomDocument(parentPomPath);
         final Element parentPomRoot = parentPomDocument.getDocumentElement();
         DomUtils.createChildIfNotExists("packaging", parentPomRoot,
                 parentPomDocument).setTextContent("pom");
         addModuleDeclaration(moduleName, parentPomDocument, parentPomRoot);
         final String addModuleMessage = getDescriptionOfChange(ADDED,
                 Collections.singleton(moduleName), "module", "modules");
-        fileManager.createOrUpdateTextFileIfRequired(getFocusedModule()
-                .getPath(), XmlUtils.nodeToString(parentPomDocument),
+        writePom(getFocusedModule().getPath(), parentPomDocument,
                 addModuleMessage, false);
     }
 
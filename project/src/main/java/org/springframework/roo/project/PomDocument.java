@@ -0,0 +1,63 @@
+package org.springframework.roo.project;
+
+import java.util.Arrays;
+
+import org.springframework.roo.support.util.Assert;
+import org.w3c.dom.Document;
+
+/**
+ * The DOM of an edited POM, along with the text it was last written as. The
+ * document can stand in for the POM file for as long as the file has that
+ * text.
+ *
+ * @since 1.2.1
+ */
+class PomDocument {
+
+    // Fields
+    private final Document document;
+    private final String contents;
+
+    /**
+     * Constructor
+     *
+     * @param document the edited document (required)
+     * @param contents the document as it was written (required)
+     */
+    PomDocument(final Document document, final String contents) {
+        Assert.notNull(document, "Document required");
+        Assert.notNull(contents, "Contents required");
+        this.document = document;
+        this.contents = contents;
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    String getContents() {
+        return contents;
+    }
+
+    /**
+     * Indicates whether the given text is what this document was written as
+     *
+     * @param text the text to compare (can be <code>null</code>)
+     * @return see above
+     */
+    boolean isWrittenAs(final String text) {
+        return contents.equals(text);
+    }
+
+    /**
+     * Indicates whether the given bytes are what this document was written
+     * as, in the platform's default encoding (as used by the
+     * {@link org.springframework.roo.process.manager.FileManager})
+     *
+     * @param bytes the bytes to compare (can be <code>null</code>)
+     * @return see above
+     */
+    boolean isWrittenAs(final byte[] bytes) {
+        return Arrays.equals(contents.getBytes(), bytes);
+    }
+}
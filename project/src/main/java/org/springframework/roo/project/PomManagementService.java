@@ -84,4 +84,16 @@ interface PomManagementService {
      * @return a non-<code>null</code> copy of this collection
      */
     Collection<Pom> getPoms();
+
+    /**
+     * Notifies this service that {@link ProjectOperations} has finished
+     * editing the given POM. When the POM is next parsed, this document is
+     * used instead, as long as the POM file still has the contents the
+     * document was written as.
+     * 
+     * @param canonicalPath the canonical path of the POM (required)
+     * @param pomDocument the edited document (required)
+     * @since 1.2.1
+     */
+    void addEditedPom(String canonicalPath, PomDocument pomDocument);
 }
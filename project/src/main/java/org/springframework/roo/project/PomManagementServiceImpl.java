@@ -3,6 +3,8 @@ package org.springframework.roo.project;
 import static org.springframework.roo.support.util.FileUtils.CURRENT_DIRECTORY;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,10 +30,10 @@ import org.springframework.roo.project.maven.PomFactory;
 import org.springframework.roo.shell.Shell;
 import org.springframework.roo.support.osgi.OSGiUtils;
 import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.FileCopyUtils;
 import org.springframework.roo.support.util.FileUtils;
 import org.springframework.roo.support.util.StringUtils;
 import org.springframework.roo.support.util.XmlUtils;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 @Component
@@ -53,6 +55,8 @@ public class PomManagementServiceImpl implements PomManagementService {
 
     private final Set<String> toBeParsed = new HashSet<String>();
     private final Map<String, Pom> pomMap = new LinkedHashMap<String, Pom>();
+    /** key: canonical path of a POM, value: its last edited document */
+    private final Map<String, PomDocument> editedPoms = new HashMap<String, PomDocument>();
     private String focusedModulePath;
     private String projectRootDirectory;
 
@@ -168,8 +172,8 @@ public class PomManagementServiceImpl implements PomManagementService {
                 final String pomContents = FileUtils.read(new File(
                         pathToChangedPom));
                 if (StringUtils.hasText(pomContents)) {
-                    final Element rootElement = XmlUtils
-                            .stringToElement(pomContents);
+                    final Element rootElement = getPomRoot(pathToChangedPom,
+                            pomContents);
                     resolvePoms(rootElement, pathToChangedPom, pomModuleMap);
                     final String moduleName = getModuleName(FileUtils
                             .getFirstDirectory(pathToChangedPom));
@@ -181,6 +185,9 @@ public class PomManagementServiceImpl implements PomManagementService {
                     pomMap.put(pathToChangedPom, pom);
                     newPoms.add(pom);
                     iter.remove();
+                    synchronized (editedPoms) {
+                        editedPoms.remove(pathToChangedPom);
+                    }
                 }
             }
         }
@@ -219,9 +226,8 @@ public class PomManagementServiceImpl implements PomManagementService {
         if (!alreadyDiscovered) {
             pomSet.put(parentPomPath, pomSet.get(parentPomPath));
             if (new File(parentPomPath).isFile()) {
-                final Document pomDocument = XmlUtils.readXml(fileManager
-                        .getInputStream(parentPomPath));
-                final Element root = pomDocument.getDocumentElement();
+                final Element root = getPomRoot(parentPomPath,
+                        readPom(parentPomPath));
                 resolvePoms(root, parentPomPath, pomSet);
             }
         }
@@ -239,15 +245,44 @@ public class PomManagementServiceImpl implements PomManagementService {
                         .containsKey(modulePath);
                 pomSet.put(modulePath, moduleName);
                 if (!alreadyDiscovered) {
-                    final Document pomDocument = XmlUtils.readXml(fileManager
-                            .getInputStream(modulePath));
-                    final Element root = pomDocument.getDocumentElement();
+                    final Element root = getPomRoot(modulePath,
+                            readPom(modulePath));
                     resolvePoms(root, modulePath, pomSet);
                 }
             }
         }
     }
 
+    private String readPom(final String pomPath) {
+        try {
+            return FileCopyUtils.copyToString(new InputStreamReader(
+                    fileManager.getInputStream(pomPath)));
+        }
+        catch (final IOException e) {
+            throw new IllegalStateException("Could not read '" + pomPath
+                    + "'", e);
+        }
+    }
+
+    /**
+     * Returns the root element of the given POM, using the document last
+     * edited by {@link ProjectOperations} if it was written with the given
+     * contents; this saves parsing them.
+     * 
+     * @param pomPath the canonical path of the POM (required)
+     * @param pomContents the current contents of the POM (required)
+     * @return a non-<code>null</code> element
+     */
+    private Element getPomRoot(final String pomPath, final String pomContents) {
+        synchronized (editedPoms) {
+            final PomDocument editedPom = editedPoms.get(pomPath);
+            if (editedPom != null && editedPom.isWrittenAs(pomContents)) {
+                return editedPom.getDocument().getDocumentElement();
+            }
+        }
+        return XmlUtils.stringToElement(pomContents);
+    }
+
     private String resolveRelativePath(String relativeTo,
             final String relativePath) {
         if (relativeTo.endsWith(File.separator)) {
@@ -311,6 +346,15 @@ public class PomManagementServiceImpl implements PomManagementService {
         }
     }
 
+    public void addEditedPom(final String canonicalPath,
+            final PomDocument pomDocument) {
+        Assert.hasText(canonicalPath, "Canonical path required");
+        Assert.notNull(pomDocument, "POM document required");
+        synchronized (editedPoms) {
+            editedPoms.put(canonicalPath, pomDocument);
+        }
+    }
+
     public Collection<Pom> getPoms() {
         updatePomCache();
         return new ArrayList<Pom>(pomMap.values());
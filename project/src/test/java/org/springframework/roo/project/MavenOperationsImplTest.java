@@ -1,7 +1,9 @@
 package org.springframework.roo.project;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -20,6 +22,8 @@ import org.springframework.roo.metadata.MetadataService;
 import org.springframework.roo.process.manager.FileManager;
 import org.springframework.roo.project.maven.Pom;
 import org.springframework.roo.support.util.StringUtils;
+import org.springframework.roo.support.util.XmlUtils;
+import org.w3c.dom.Document;
 
 /**
  * Unit test of {@link MavenOperationsImpl}
@@ -125,6 +129,38 @@ public class MavenOperationsImplTest {
                 eq(expectedPom), (String) any(), eq(false));
     }
 
+    @Test
+    public void testGetPomDocumentReusesDocumentLastWritten() {
+        // Set up
+        when(mockFileManager.getInputStream(POM_PATH)).thenReturn(
+                new ByteArrayInputStream(POM_BEFORE_DEPENDENCY_REMOVED
+                        .getBytes()));
+        final Document document = projectOperations.getPomDocument(POM_PATH);
+        projectOperations.writePom(POM_PATH, document, "", false);
+        when(mockFileManager.getInputStream(POM_PATH)).thenReturn(
+                new ByteArrayInputStream(XmlUtils.nodeToString(document)
+                        .getBytes()));
+
+        // Invoke and check
+        assertSame(document, projectOperations.getPomDocument(POM_PATH));
+    }
+
+    @Test
+    public void testGetPomDocumentParsesPomChangedSinceLastWritten() {
+        // Set up
+        when(mockFileManager.getInputStream(POM_PATH)).thenReturn(
+                new ByteArrayInputStream(POM_BEFORE_DEPENDENCY_REMOVED
+                        .getBytes()));
+        final Document document = projectOperations.getPomDocument(POM_PATH);
+        projectOperations.writePom(POM_PATH, document, "", false);
+        when(mockFileManager.getInputStream(POM_PATH)).thenReturn(
+                new ByteArrayInputStream(POM_BEFORE_DEPENDENCY_REMOVED
+                        .getBytes()));
+
+        // Invoke and check
+        assertNotSame(document, projectOperations.getPomDocument(POM_PATH));
+    }
+
     @Test
     public void testGetFocusedModuleWhenNoModulesExist() {
         // Set up
@@ -27,6 +27,7 @@ import org.osgi.service.component.ComponentContext;
 import org.springframework.roo.shell.ExecutionStrategy;
 import org.springframework.roo.shell.Parser;
 import org.springframework.roo.shell.Tailor;
+import org.springframework.roo.shell.event.ShellStatusListener;
 import org.springframework.roo.shell.jline.JLineShell;
 import org.springframework.roo.support.osgi.OSGiUtils;
 import org.springframework.roo.support.util.IOUtils;
@@ -53,12 +54,19 @@ public class JLineShellComponent extends JLineShell {
 
     protected void activate(final ComponentContext context) {
         this.context = context;
+        if (parser instanceof ShellStatusListener) {
+            // Lets the parser cache command availability between commands
+            addShellStatusListener((ShellStatusListener) parser);
+        }
         Thread thread = new Thread(this, "Spring Roo JLine Shell");
         thread.start();
     }
 
     protected void deactivate(final ComponentContext context) {
         this.context = null;
+        if (parser instanceof ShellStatusListener) {
+            removeShellStatusListener((ShellStatusListener) parser);
+        }
         closeShell();
     }
 
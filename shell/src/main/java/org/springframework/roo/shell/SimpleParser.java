@@ -12,6 +12,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +29,8 @@ import java.util.regex.Pattern;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.transform.Transformer;
 
+import org.springframework.roo.shell.event.ShellStatus;
+import org.springframework.roo.shell.event.ShellStatusListener;
 import org.springframework.roo.support.logging.HandlerUtils;
 import org.springframework.roo.support.util.Assert;
 import org.springframework.roo.support.util.CollectionUtils;
@@ -46,7 +49,7 @@ import org.w3c.dom.Element;
  * @author Ben Alex
  * @since 1.0
  */
-public class SimpleParser implements Parser {
+public class SimpleParser implements Parser, ShellStatusListener {
 
     // Constants
     private static final Logger LOGGER = HandlerUtils
@@ -58,6 +61,16 @@ public class SimpleParser implements Parser {
     private final Set<Converter<?>> converters = new HashSet<Converter<?>>();
     private final Set<CommandMarker> commands = new HashSet<CommandMarker>();
     private final Map<String, MethodTarget> availabilityIndicators = new HashMap<String, MethodTarget>();
+    /**
+     * key: the first word of a command; value: the methods offering commands
+     * starting with that word
+     */
+    private final SortedMap<String, List<CommandEntry>> commandIndex = new TreeMap<String, List<CommandEntry>>();
+    /**
+     * key: availability indicator; value: its result since the last shell
+     * status change
+     */
+    private final Map<MethodTarget, Boolean> availabilityResults = new HashMap<MethodTarget, Boolean>();
 
     private MethodTarget getAvailabilityIndicator(final String command) {
         return availabilityIndicators.get(command);
@@ -68,6 +81,10 @@ public class SimpleParser implements Parser {
             Assert.notNull(rawInput, "Raw input required");
             final String input = normalise(rawInput);
 
+            // Don't rely on any availability cached during completion, as
+            // the command is about to be executed
+            availabilityResults.clear();
+
             // Locate the applicable targets which match this buffer
             final Collection<MethodTarget> matchingTargets = locateTargets(
                     input, true, true);
@@ -344,57 +361,71 @@ public class SimpleParser implements Parser {
         Assert.notNull(buffer, "Buffer required");
         final Collection<MethodTarget> result = new HashSet<MethodTarget>();
 
-        // The reflection could certainly be optimised, but it's good enough for
-        // now (and cached reflection
-        // is unlikely to be noticeable to a human being using the CLI)
-        for (final CommandMarker command : commands) {
-            for (final Method method : command.getClass().getMethods()) {
-                CliCommand cmd = method.getAnnotation(CliCommand.class);
-                if (cmd != null) {
-                    // We have a @CliCommand.
-                    if (checkAvailabilityIndicators) {
-                        // Decide if this @CliCommand is available at this
-                        // moment
-                        Boolean available = null;
-                        for (String value : cmd.value()) {
-                            MethodTarget mt = getAvailabilityIndicator(value);
-                            if (mt != null) {
-                                Assert.isNull(available,
-                                        "More than one availability indicator is defined for '"
-                                                + method.toGenericString()
-                                                + "'");
-                                try {
-                                    available = (Boolean) mt.getMethod()
-                                            .invoke(mt.getTarget());
-                                    // We should "break" here, but we loop over
-                                    // all to ensure no conflicting availability
-                                    // indicators are defined
-                                }
-                                catch (Exception e) {
-                                    available = false;
-                                }
-                            }
-                        }
-                        // Skip this @CliCommand if it's not available
-                        if (available != null && !available) {
-                            continue;
-                        }
-                    }
-
-                    for (String value : cmd.value()) {
-                        String remainingBuffer = isMatch(buffer, value,
-                                strictMatching);
-                        if (remainingBuffer != null) {
-                            result.add(new MethodTarget(method, command,
-                                    remainingBuffer, value));
-                        }
-                    }
+        // Only commands whose first word starts with the buffer's first word
+        // can match it
+        final int firstSpace = buffer.indexOf(' ');
+        final String firstWord = firstSpace == -1 ? buffer : buffer.substring(
+                0, firstSpace);
+        final Collection<List<CommandEntry>> candidates = "".equals(firstWord) ? commandIndex
+                .values() : commandIndex.subMap(firstWord,
+                firstWord + Character.MAX_VALUE).values();
+        for (final List<CommandEntry> entries : candidates) {
+            for (final CommandEntry entry : entries) {
+                String remainingBuffer = isMatch(buffer, entry.value,
+                        strictMatching);
+                if (remainingBuffer != null
+                        && (!checkAvailabilityIndicators || isAvailable(entry.method))) {
+                    result.add(new MethodTarget(entry.method, entry.command,
+                            remainingBuffer, entry.value));
                 }
             }
         }
         return result;
     }
 
+    /**
+     * Indicates whether the given @CliCommand method is available at this
+     * moment, according to its availability indicator (if any). The
+     * indicator's result is cached until the shell status next changes.
+     */
+    private boolean isAvailable(final Method method) {
+        final CliCommand cmd = method.getAnnotation(CliCommand.class);
+        MethodTarget indicator = null;
+        for (String value : cmd.value()) {
+            MethodTarget mt = getAvailabilityIndicator(value);
+            if (mt != null) {
+                // We loop over all values to ensure no conflicting
+                // availability indicators are defined
+                Assert.isNull(indicator,
+                        "More than one availability indicator is defined for '"
+                                + method.toGenericString() + "'");
+                indicator = mt;
+            }
+        }
+        if (indicator == null) {
+            return true;
+        }
+        Boolean available = availabilityResults.get(indicator);
+        if (available == null) {
+            try {
+                available = (Boolean) indicator.getMethod().invoke(
+                        indicator.getTarget());
+            }
+            catch (Exception e) {
+                available = false;
+            }
+            availabilityResults.put(indicator, available);
+        }
+        return available;
+    }
+
+    public void onShellStatusChange(final ShellStatus oldStatus,
+            final ShellStatus newStatus) {
+        synchronized (mutex) {
+            availabilityResults.clear();
+        }
+    }
+
     static String isMatch(final String buffer, final String command,
             final boolean strictMatching) {
         if ("".equals(buffer.trim())) {
@@ -1369,13 +1400,9 @@ public class SimpleParser implements Parser {
     public Set<String> getEveryCommand() {
         synchronized (mutex) {
             SortedSet<String> result = new TreeSet<String>(COMPARATOR);
-            for (Object o : commands) {
-                Method[] methods = o.getClass().getMethods();
-                for (Method m : methods) {
-                    CliCommand cmd = m.getAnnotation(CliCommand.class);
-                    if (cmd != null) {
-                        result.addAll(Arrays.asList(cmd.value()));
-                    }
+            for (final List<CommandEntry> entries : commandIndex.values()) {
+                for (final CommandEntry entry : entries) {
+                    result.add(entry.value);
                 }
             }
             return result;
@@ -1385,7 +1412,21 @@ public class SimpleParser implements Parser {
     public final void add(final CommandMarker command) {
         synchronized (mutex) {
             commands.add(command);
+            availabilityResults.clear();
             for (final Method method : command.getClass().getMethods()) {
+                CliCommand cliCommand = method.getAnnotation(CliCommand.class);
+                if (cliCommand != null) {
+                    for (String value : cliCommand.value()) {
+                        final String firstWord = value.split(" ")[0];
+                        List<CommandEntry> entries = commandIndex
+                                .get(firstWord);
+                        if (entries == null) {
+                            entries = new ArrayList<CommandEntry>();
+                            commandIndex.put(firstWord, entries);
+                        }
+                        entries.add(new CommandEntry(command, method, value));
+                    }
+                }
                 CliAvailabilityIndicator availability = method
                         .getAnnotation(CliAvailabilityIndicator.class);
                 if (availability != null) {
@@ -1410,6 +1451,20 @@ public class SimpleParser implements Parser {
     public final void remove(final CommandMarker command) {
         synchronized (mutex) {
             commands.remove(command);
+            availabilityResults.clear();
+            for (final Iterator<List<CommandEntry>> iter = commandIndex
+                    .values().iterator(); iter.hasNext();) {
+                final List<CommandEntry> entries = iter.next();
+                for (final Iterator<CommandEntry> entryIter = entries
+                        .iterator(); entryIter.hasNext();) {
+                    if (entryIter.next().command == command) {
+                        entryIter.remove();
+                    }
+                }
+                if (entries.isEmpty()) {
+                    iter.remove();
+                }
+            }
             for (Method m : command.getClass().getMethods()) {
                 CliAvailabilityIndicator availability = m
                         .getAnnotation(CliAvailabilityIndicator.class);
@@ -1433,4 +1488,21 @@ public class SimpleParser implements Parser {
             converters.remove(converter);
         }
     }
+
+    /**
+     * A command offered by a {@link CommandMarker} method, being one of the
+     * values of its {@link CliCommand} annotation.
+     */
+    private static class CommandEntry {
+        final CommandMarker command;
+        final Method method;
+        final String value;
+
+        CommandEntry(final CommandMarker command, final Method method,
+                final String value) {
+            this.command = command;
+            this.method = method;
+            this.value = value;
+        }
+    }
 }
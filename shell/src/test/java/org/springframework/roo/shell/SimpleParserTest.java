@@ -1,5 +1,8 @@
 package org.springframework.roo.shell;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -49,4 +52,70 @@ public class SimpleParserTest {
     private void assertNormalised(final String input, final String output) {
         Assert.assertEquals(output, simpleParser.normalise(input));
     }
+
+    @Test
+    public void testParseOnlyChecksAvailabilityOfMatchingCommand() {
+        final TestCommands commands = new TestCommands();
+        simpleParser.add(commands);
+
+        Assert.assertNotNull(simpleParser.parse("project setup"));
+        Assert.assertEquals(0, commands.availabilityChecks);
+        commands.available = false;
+        Assert.assertNull(simpleParser.parse("persistence setup"));
+        commands.available = true;
+        Assert.assertNotNull(simpleParser.parse("persistence setup"));
+        Assert.assertEquals(2, commands.availabilityChecks);
+    }
+
+    @Test
+    public void testCompletionCachesAvailabilityUntilShellStatusChanges() {
+        final TestCommands commands = new TestCommands();
+        simpleParser.add(commands);
+
+        Assert.assertEquals(2, complete("p").size());
+        commands.available = false;
+        Assert.assertEquals(2, complete("p").size());
+        Assert.assertEquals(1, commands.availabilityChecks);
+
+        simpleParser.onShellStatusChange(null, null);
+        Assert.assertEquals(1, complete("p").size());
+        Assert.assertEquals(2, commands.availabilityChecks);
+    }
+
+    @Test
+    public void testRemovedCommandIsNoLongerOffered() {
+        final TestCommands commands = new TestCommands();
+        simpleParser.add(commands);
+        Assert.assertTrue(simpleParser.getEveryCommand().contains(
+                "persistence setup"));
+
+        simpleParser.remove(commands);
+        Assert.assertTrue(simpleParser.getEveryCommand().isEmpty());
+        Assert.assertTrue(complete("p").isEmpty());
+    }
+
+    private List<Completion> complete(final String buffer) {
+        final List<Completion> candidates = new ArrayList<Completion>();
+        simpleParser.completeAdvanced(buffer, buffer.length(), candidates);
+        return candidates;
+    }
+
+    public static class TestCommands implements CommandMarker {
+        boolean available = true;
+        int availabilityChecks;
+
+        @CliAvailabilityIndicator("persistence setup")
+        public boolean isPersistenceSetupAvailable() {
+            availabilityChecks++;
+            return available;
+        }
+
+        @CliCommand("persistence setup")
+        public void persistenceSetup() {
+        }
+
+        @CliCommand("project setup")
+        public void projectSetup() {
+        }
+    }
 }
@@ -0,0 +1,38 @@
+package org.springframework.roo.support.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Static helper methods relating to message digests. Inspired by the
+ * eponymous class in Apache Commons Codec.
+ * 
+ * @since 1.2.1
+ */
+public final class DigestUtils {
+
+    /**
+     * Returns the SHA-1 digest of the given bytes, encoded as lower case hex
+     * (see {@link HexUtils#toHex(byte[])}).
+     * 
+     * @param bytes the bytes to digest (required)
+     * @return a 40 character string
+     */
+    public static String sha1Hex(final byte[] bytes) {
+        Assert.notNull(bytes, "Bytes required");
+        try {
+            return HexUtils.toHex(MessageDigest.getInstance("SHA1").digest(
+                    bytes));
+        }
+        catch (final NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Constructor is private to prevent instantiation
+     */
+    private DigestUtils() {
+    }
+}
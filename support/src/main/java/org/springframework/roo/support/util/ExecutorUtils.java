@@ -0,0 +1,81 @@
+package org.springframework.roo.support.util;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Static helper methods relating to background work done by an
+ * {@link java.util.concurrent.ExecutorService}.
+ * 
+ * @since 1.2.1
+ */
+public final class ExecutorUtils {
+
+    /**
+     * Returns a factory of daemon threads, so that background work never
+     * prevents the JVM from exiting. Each thread is named after the given
+     * prefix followed by its sequence number, starting from one.
+     * 
+     * @param namePrefix the prefix of the thread names (required)
+     * @return a non-<code>null</code> factory
+     */
+    public static ThreadFactory getDaemonThreadFactory(final String namePrefix) {
+        Assert.hasText(namePrefix, "Thread name prefix required");
+        return new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, namePrefix + " "
+                        + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Waits for every one of the given tasks to finish, then rethrows the
+     * first failure (if any). Unless the calling thread is interrupted, none
+     * of the tasks is still running once this method returns.
+     * 
+     * @param futures the tasks to wait for (required)
+     * @throws RuntimeException the first exception thrown by a task, wrapped
+     *             in an {@link IllegalStateException} if it was checked, or an
+     *             {@link IllegalStateException} if the calling thread was
+     *             interrupted
+     */
+    public static void waitForAll(final Collection<? extends Future<?>> futures) {
+        Assert.notNull(futures, "Futures required");
+        RuntimeException failure = null;
+        for (final Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (final ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e
+                            .getCause() : new IllegalStateException(
+                            e.getCause());
+                }
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new IllegalStateException(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Constructor is private to prevent instantiation
+     */
+    private ExecutorUtils() {
+    }
+}
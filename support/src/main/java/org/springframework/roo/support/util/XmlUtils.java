@@ -16,11 +16,11 @@ import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
@@ -28,6 +28,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import org.w3c.dom.DOMConfiguration;
 import org.w3c.dom.DOMImplementation;
@@ -40,6 +42,7 @@ import org.w3c.dom.ls.DOMImplementationLS;
 import org.w3c.dom.ls.LSException;
 import org.w3c.dom.ls.LSOutput;
 import org.w3c.dom.ls.LSSerializer;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 /**
@@ -56,10 +59,52 @@ public final class XmlUtils {
     // Constants
     private static final DocumentBuilderFactory factory = DocumentBuilderFactory
             .newInstance();
-    private static final Map<String, XPathExpression> compiledExpressionCache = new HashMap<String, XPathExpression>();
     private static final TransformerFactory transformerFactory = TransformerFactory
             .newInstance();
-    private static final XPath xpath = XPathFactory.newInstance().newXPath();
+    /**
+     * An XPath expression consisting only of element names, such as
+     * "/project/dependencies/dependency" or "properties/property"
+     */
+    private static final Pattern SIMPLE_PATH = Pattern
+            .compile("/?[A-Za-z_][\\w.-]*(/[A-Za-z_][\\w.-]*)*");
+    private static final String[] NOT_SIMPLE = new String[0];
+
+    // Class fields
+    /**
+     * key: XPath expression, value: its element names, if it is a simple path
+     * (see {@link #SIMPLE_PATH}), otherwise {@link #NOT_SIMPLE}
+     */
+    private static final Map<String, String[]> simplePaths = new ConcurrentHashMap<String, String[]>();
+    /**
+     * Compiled XPath expressions aren't thread safe, so each thread compiles
+     * its own
+     */
+    private static final ThreadLocal<Map<String, XPathExpression>> compiledExpressionCache = new ThreadLocal<Map<String, XPathExpression>>() {
+        @Override
+        protected Map<String, XPathExpression> initialValue() {
+            return new HashMap<String, XPathExpression>();
+        }
+    };
+    private static final ThreadLocal<XPath> xpath = new ThreadLocal<XPath>() {
+        @Override
+        protected XPath initialValue() {
+            return XPathFactory.newInstance().newXPath();
+        }
+    };
+    private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        protected DocumentBuilder initialValue() {
+            // The factory isn't thread safe
+            synchronized (factory) {
+                try {
+                    return factory.newDocumentBuilder();
+                }
+                catch (final ParserConfigurationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    };
 
     /**
      * Returns the given XML as the root {@link Element} of a new
@@ -74,16 +119,13 @@ public final class XmlUtils {
             return null;
         }
         try {
-            return factory.newDocumentBuilder()
-                    .parse(new ByteArrayInputStream(xml.getBytes()))
+            return getDocumentBuilder().parse(
+                    new InputSource(new StringReader(xml)))
                     .getDocumentElement();
         }
         catch (final IOException e) {
             throw new IllegalStateException(e);
         }
-        catch (final ParserConfigurationException e) {
-            throw new IllegalStateException(e);
-        }
         catch (final SAXException e) {
             throw new IllegalStateException(e);
         }
@@ -397,14 +439,15 @@ public final class XmlUtils {
     public static Node findNode(final String xPathExpression, final Node root) {
         Assert.hasText(xPathExpression, "XPath expression required");
         Assert.notNull(root, "Root element required");
+        final List<Element> elements = findSimplePath(xPathExpression, root,
+                true);
+        if (elements != null) {
+            return elements.isEmpty() ? null : elements.get(0);
+        }
         Node node = null;
         try {
-            XPathExpression expr = compiledExpressionCache.get(xPathExpression);
-            if (expr == null) {
-                expr = xpath.compile(xPathExpression);
-                compiledExpressionCache.put(xPathExpression, expr);
-            }
-            node = (Node) expr.evaluate(root, XPathConstants.NODE);
+            node = (Node) compile(xPathExpression).evaluate(root,
+                    XPathConstants.NODE);
         }
         catch (final XPathExpressionException e) {
             throw new IllegalArgumentException(
@@ -451,16 +494,18 @@ public final class XmlUtils {
      */
     public static List<Element> findElements(final String xPathExpression,
             final Element root) {
+        final List<Element> simplePathElements = findSimplePath(
+                xPathExpression, root, false);
+        if (simplePathElements != null) {
+            return simplePathElements;
+        }
+
         final List<Element> elements = new ArrayList<Element>();
         NodeList nodes = null;
 
         try {
-            XPathExpression expr = compiledExpressionCache.get(xPathExpression);
-            if (expr == null) {
-                expr = xpath.compile(xPathExpression);
-                compiledExpressionCache.put(xPathExpression, expr);
-            }
-            nodes = (NodeList) expr.evaluate(root, XPathConstants.NODESET);
+            nodes = (NodeList) compile(xPathExpression).evaluate(root,
+                    XPathConstants.NODESET);
         }
         catch (final XPathExpressionException e) {
             throw new IllegalArgumentException(
@@ -485,12 +530,8 @@ public final class XmlUtils {
             final Element element) {
         Node attr = null;
         try {
-            XPathExpression expr = compiledExpressionCache.get(xPathExpression);
-            if (expr == null) {
-                expr = xpath.compile(xPathExpression);
-                compiledExpressionCache.put(xPathExpression, expr);
-            }
-            attr = (Node) expr.evaluate(element, XPathConstants.NODE);
+            attr = (Node) compile(xPathExpression).evaluate(element,
+                    XPathConstants.NODE);
         }
         catch (final XPathExpressionException e) {
             throw new IllegalArgumentException(
@@ -499,6 +540,96 @@ public final class XmlUtils {
         return attr;
     }
 
+    private static XPathExpression compile(final String xPathExpression)
+            throws XPathExpressionException {
+        final Map<String, XPathExpression> cache = compiledExpressionCache
+                .get();
+        XPathExpression expr = cache.get(xPathExpression);
+        if (expr == null) {
+            expr = xpath.get().compile(xPathExpression);
+            cache.put(xPathExpression, expr);
+        }
+        return expr;
+    }
+
+    /**
+     * Evaluates the given XPath expression by walking the DOM, if it is a
+     * simple path (see {@link #SIMPLE_PATH}) and the nodes it visits are
+     * unambiguously matched by name, i.e. they have no namespace or prefix.
+     * 
+     * @param xPathExpression the XPath expression (required)
+     * @param root the context node (required)
+     * @param firstOnly whether only the first matching element is required
+     * @return the matching elements in document order, or <code>null</code>
+     *         if the expression has to be evaluated as XPath
+     */
+    private static List<Element> findSimplePath(final String xPathExpression,
+            final Node root, final boolean firstOnly) {
+        String[] names = simplePaths.get(xPathExpression);
+        if (names == null) {
+            names = SIMPLE_PATH.matcher(xPathExpression).matches() ? xPathExpression
+                    .split("/") : NOT_SIMPLE;
+            simplePaths.put(xPathExpression, names);
+        }
+        if (names == NOT_SIMPLE) {
+            return null;
+        }
+
+        Node context = root;
+        if (names[0].length() == 0) {
+            // An absolute path starts from the document
+            while (context.getParentNode() != null) {
+                context = context.getParentNode();
+            }
+            if (context.getNodeType() != Node.DOCUMENT_NODE) {
+                return null;
+            }
+        }
+        final List<Element> elements = new ArrayList<Element>();
+        return findSimplePath(names, names[0].length() == 0 ? 1 : 0, context,
+                firstOnly, elements) ? elements : null;
+    }
+
+    /**
+     * Adds the elements below the given node that match the given names,
+     * starting from the given index.
+     * 
+     * @return <code>false</code> if a node was found that might match a name
+     *         other than by its node name
+     */
+    private static boolean findSimplePath(final String[] names,
+            final int index, final Node node, final boolean firstOnly,
+            final List<Element> elements) {
+        for (Node child = node.getFirstChild(); child != null; child = child
+                .getNextSibling()) {
+            if (child.getNodeType() == Node.ENTITY_REFERENCE_NODE) {
+                // XPath would look inside it
+                return false;
+            }
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            final String nodeName = child.getNodeName();
+            if (child.getNamespaceURI() != null || nodeName.indexOf(':') >= 0) {
+                return false;
+            }
+            if (!nodeName.equals(names[index])) {
+                continue;
+            }
+            if (index == names.length - 1) {
+                elements.add((Element) child);
+            }
+            else if (!findSimplePath(names, index + 1, child, firstOnly,
+                    elements)) {
+                return false;
+            }
+            if (firstOnly && !elements.isEmpty()) {
+                return true;
+            }
+        }
+        return true;
+    }
+
     /**
      * @return a transformer that indents entries by 4 characters (never null)
      */
@@ -518,16 +649,16 @@ public final class XmlUtils {
     }
 
     /**
-     * @return a new document builder (never null)
+     * Returns the calling thread's document builder, reset to its original
+     * configuration. Callers should not keep it, as it is reset again the next
+     * time this method is called.
+     * 
+     * @return a document builder (never null)
      */
     public static DocumentBuilder getDocumentBuilder() {
-        // factory.setNamespaceAware(true);
-        try {
-            return factory.newDocumentBuilder();
-        }
-        catch (final ParserConfigurationException e) {
-            throw new IllegalStateException(e);
-        }
+        final DocumentBuilder builder = documentBuilder.get();
+        builder.reset();
+        return builder;
     }
 
     /**
@@ -0,0 +1,25 @@
+package org.springframework.roo.support.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Unit test of {@link DigestUtils}
+ * 
+ * @since 1.2.1
+ */
+public class DigestUtilsTest {
+
+    @Test
+    public void testSha1HexOfEmptyArray() {
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709",
+                DigestUtils.sha1Hex(new byte[0]));
+    }
+
+    @Test
+    public void testSha1Hex() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+                DigestUtils.sha1Hex("abc".getBytes()));
+    }
+}
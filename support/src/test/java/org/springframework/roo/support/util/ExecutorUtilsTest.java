@@ -0,0 +1,99 @@
+package org.springframework.roo.support.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link ExecutorUtils}
+ * 
+ * @since 1.2.1
+ */
+public class ExecutorUtilsTest {
+
+    // Fixture
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2,
+                ExecutorUtils.getDaemonThreadFactory("test"));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testThreadsAreNamedDaemons() throws Exception {
+        final Thread thread = executor.submit(new Callable<Thread>() {
+            public Thread call() {
+                return Thread.currentThread();
+            }
+        }).get();
+
+        assertTrue(thread.isDaemon());
+        assertEquals("test 1", thread.getName());
+    }
+
+    @Test
+    public void testFirstFailureIsRethrownOnceAllTasksFinish() {
+        final RuntimeException firstFailure = new IllegalArgumentException();
+        final AtomicInteger finished = new AtomicInteger();
+        final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        futures.add(executor.submit(new Callable<Object>() {
+            public Object call() {
+                throw firstFailure;
+            }
+        }));
+        futures.add(executor.submit(new Callable<Object>() {
+            public Object call() throws InterruptedException {
+                Thread.sleep(100);
+                finished.incrementAndGet();
+                throw new IllegalStateException();
+            }
+        }));
+
+        try {
+            ExecutorUtils.waitForAll(futures);
+            fail("Expected the first failure");
+        }
+        catch (final IllegalArgumentException e) {
+            assertSame(firstFailure, e);
+            assertEquals(1, finished.get());
+        }
+    }
+
+    @Test
+    public void testCheckedFailureIsWrapped() {
+        final Exception checked = new Exception();
+        final List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        futures.add(executor.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+                throw checked;
+            }
+        }));
+
+        try {
+            ExecutorUtils.waitForAll(futures);
+            fail("Expected the checked failure to be wrapped");
+        }
+        catch (final IllegalStateException e) {
+            assertSame(checked, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.springframework.roo.support.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Unit test of {@link XmlUtils}
+ *
+ * @since 1.2.1
+ */
+public class XmlUtilsTest {
+
+    private static final String POM = "<project>"
+            + "<dependencies>"
+            + "<dependency><artifactId>a</artifactId></dependency>"
+            + "<dependency><artifactId>b</artifactId></dependency>"
+            + "</dependencies>"
+            + "<build><plugins><plugin><dependencies>"
+            + "<dependency><artifactId>c</artifactId></dependency>"
+            + "</dependencies></plugin></plugins></build>" + "</project>";
+
+    private static final String BEANS = "<beans xmlns:context=\"http://www.springframework.org/schema/context\">"
+            + "<context:component-scan base-package=\"com.example\"/>"
+            + "<bean id=\"a\"/>" + "</beans>";
+
+    private String getArtifactIds(final List<Element> dependencies) {
+        StringBuilder artifactIds = new StringBuilder();
+        for (Element dependency : dependencies) {
+            artifactIds.append(XmlUtils.getTextContent("artifactId",
+                    dependency));
+        }
+        return artifactIds.toString();
+    }
+
+    @Test
+    public void testFindElementsByAbsolutePath() {
+        Element root = XmlUtils.stringToElement(POM);
+        assertEquals("ab", getArtifactIds(XmlUtils.findElements(
+                "/project/dependencies/dependency", root)));
+        assertEquals("c", getArtifactIds(XmlUtils.findElements(
+                "/project/build/plugins/plugin/dependencies/dependency",
+                root)));
+        assertEquals(0, XmlUtils.findElements("/project/dependency", root)
+                .size());
+    }
+
+    @Test
+    public void testFindElementsByAbsolutePathFromDescendant() {
+        Element root = XmlUtils.stringToElement(POM);
+        Element plugin = XmlUtils.findFirstElement(
+                "/project/build/plugins/plugin", root);
+        assertEquals("ab", getArtifactIds(XmlUtils.findElements(
+                "/project/dependencies/dependency", plugin)));
+    }
+
+    @Test
+    public void testFindElementsByRelativePath() {
+        Element root = XmlUtils.stringToElement(POM);
+        Element plugin = XmlUtils.findFirstElement(
+                "/project/build/plugins/plugin", root);
+        assertEquals("c", getArtifactIds(XmlUtils.findElements(
+                "dependencies/dependency", plugin)));
+        assertEquals("ab", getArtifactIds(XmlUtils.findElements(
+                "dependencies/dependency", root)));
+    }
+
+    @Test
+    public void testFindFirstElementReturnsFirstInDocumentOrder() {
+        Element root = XmlUtils.stringToElement(POM);
+        Element first = XmlUtils.findFirstElement(
+                "/project/dependencies/dependency", root);
+        assertSame(XmlUtils.findElements("/project/dependencies/dependency",
+                root).get(0), first);
+        assertNull(XmlUtils.findFirstElement("/project/parent", root));
+    }
+
+    @Test
+    public void testFindElementsAmongPrefixedElements() {
+        Element root = XmlUtils.stringToElement(BEANS);
+        assertEquals(1, XmlUtils.findElements("/beans/bean", root).size());
+        assertEquals("com.example",
+                XmlUtils.findFirstElement("/beans/component-scan", root)
+                        .getAttribute("base-package"));
+    }
+
+    @Test
+    public void testFindElementsWithPredicate() {
+        Element root = XmlUtils.stringToElement(POM);
+        assertEquals("b", getArtifactIds(XmlUtils.findElements(
+                "/project/dependencies/dependency[artifactId='b']", root)));
+    }
+}
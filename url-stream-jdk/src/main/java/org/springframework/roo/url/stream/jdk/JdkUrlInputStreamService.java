@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Map;
 import java.util.logging.Level;
 
 import org.apache.felix.scr.annotations.Component;
@@ -11,6 +12,8 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.springframework.roo.shell.osgi.AbstractFlashingObject;
 import org.springframework.roo.support.util.Assert;
+import org.springframework.roo.support.util.StringUtils;
+import org.springframework.roo.url.stream.ConditionalUrlInputStreamService;
 import org.springframework.roo.url.stream.UrlInputStreamService;
 import org.springframework.roo.url.stream.UrlInputStreamUtils;
 import org.springframework.uaa.client.ProxyService;
@@ -25,13 +28,54 @@ import org.springframework.uaa.client.UaaService;
 @Component
 @Service
 public class JdkUrlInputStreamService extends AbstractFlashingObject implements
-        UrlInputStreamService {
+        UrlInputStreamService, ConditionalUrlInputStreamService {
 
     // Fields
     @Reference private UaaService uaaService;
     @Reference private ProxyService proxyService;
 
     public InputStream openConnection(final URL httpUrl) throws IOException {
+        return new ProgressIndicatingInputStream(prepareConnection(httpUrl));
+    }
+
+    public InputStream openConnectionIfModified(final URL httpUrl,
+            final Map<String, String> validators) throws IOException {
+        Assert.notNull(validators, "Validators required");
+        HttpURLConnection connection = prepareConnection(httpUrl);
+        String etag = validators.get(ETAG);
+        if (StringUtils.hasText(etag)) {
+            connection.setRequestProperty("If-None-Match", etag);
+        }
+        String lastModified = validators.get(LAST_MODIFIED);
+        if (StringUtils.hasText(lastModified)) {
+            connection.setRequestProperty("If-Modified-Since", lastModified);
+        }
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            connection.disconnect();
+            return null;
+        }
+
+        validators.clear();
+        etag = connection.getHeaderField(ETAG);
+        if (etag != null) {
+            validators.put(ETAG, etag);
+        }
+        lastModified = connection.getHeaderField(LAST_MODIFIED);
+        if (lastModified != null) {
+            validators.put(LAST_MODIFIED, lastModified);
+        }
+        return new ProgressIndicatingInputStream(connection);
+    }
+
+    /**
+     * Prepares a connection to the given URL, via any proxy.
+     * 
+     * @param httpUrl the URL to connect to (required, HTTP only)
+     * @return a connection that's not yet connected
+     * @throws IOException
+     */
+    private HttpURLConnection prepareConnection(final URL httpUrl)
+            throws IOException {
         Assert.notNull(httpUrl, "HTTP URL is required");
         Assert.isTrue(httpUrl.getProtocol().equals("http"),
                 "Only HTTP is supported (not " + httpUrl + ")");
@@ -39,9 +83,7 @@ public class JdkUrlInputStreamService extends AbstractFlashingObject implements
         // Fail if we're banned from accessing this domain
         Assert.isNull(getUrlCannotBeOpenedMessage(httpUrl),
                 UrlInputStreamUtils.SETUP_UAA_REQUIRED);
-        HttpURLConnection connection = proxyService
-                .prepareHttpUrlConnection(httpUrl);
-        return new ProgressIndicatingInputStream(connection);
+        return proxyService.prepareHttpUrlConnection(httpUrl);
     }
 
     public String getUrlCannotBeOpenedMessage(final URL httpUrl) {
@@ -0,0 +1,43 @@
+package org.springframework.roo.url.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Optionally implemented by {@link UrlInputStreamService}s that can make
+ * conditional requests, so that a resource is only downloaded again if it has
+ * changed since it was last downloaded.
+ *
+ * @since 1.2.1
+ */
+public interface ConditionalUrlInputStreamService {
+
+    /**
+     * The key of the validator holding the entity tag of a resource
+     */
+    String ETAG = "ETag";
+
+    /**
+     * The key of the validator holding the last modification date of a
+     * resource
+     */
+    String LAST_MODIFIED = "Last-Modified";
+
+    /**
+     * Opens an input stream to the specified connection, unless the resource
+     * has not changed since the validators were obtained. The input stream
+     * represents the resource (no headers).
+     *
+     * @param httpUrl to open (HTTP only, never HTTPS or another protocol)
+     * @param validators the {@link #ETAG} and {@link #LAST_MODIFIED} values
+     *            returned by the previous download of this resource, if any
+     *            (required, can be empty); if the resource is downloaded, they
+     *            are replaced by those of the new version
+     * @return the input stream, or <code>null</code> if the resource has not
+     *         been modified
+     */
+    InputStream openConnectionIfModified(URL httpUrl,
+            Map<String, String> validators) throws IOException;
+}